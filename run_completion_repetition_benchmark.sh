@@ -0,0 +1,13 @@
+#!/bin/bash
+
+# Runs all completion benchmarks in one JVM: run_completion_repetition_benchmark.sh [warmupRuns] [measuredRuns]
+# Compare two result files: run_completion_repetition_benchmark.sh compare baseline.json current.json [threshold]
+
+mvn compile
+
+if [ "$1" == "compare" ]
+then
+	mvn exec:java -Dexec.mainClass="de.rwth.i2.attestor.grammar.confluence.benchmark.CompletionRepetitionBenchmarkRunner" -Dexec.args="$*"
+else
+	mvn exec:java -Dexec.mainClass="de.rwth.i2.attestor.grammar.confluence.benchmark.CompletionRepetitionBenchmarkRunner" -Dexec.args="run $*"
+fi
@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# Runs the JMH benchmarks (arguments: regular expressions that select the benchmarks, all if empty)
+# The results (including the allocation rates) are written to reports/jmh
+
+mvn -P jmh package -DskipTests
+
+java -jar target/benchmarks.jar "$@"
@@ -0,0 +1,29 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Loads the grammars of the JMH benchmarks by name. The grammars in confluenceTestGrammars are parsed with the
+ * separation logic parser, all other names are looked up in the predefined grammars.
+ */
+final class ConfluenceBenchmarkGrammars {
+
+    private ConfluenceBenchmarkGrammars() {
+    }
+
+    static ConfluenceWrapperGrammar load(String grammarName) {
+        if (Arrays.asList(CriticalPairDetectionBenchmarkRunner.grammarNames).contains(grammarName)) {
+            try {
+                return BenchmarkRunner.getSeparationLogicNamedGrammar(grammarName);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not load grammar " + grammarName, e);
+            }
+        } else {
+            return ConfluenceTool.parseGrammar(grammarName);
+        }
+    }
+}
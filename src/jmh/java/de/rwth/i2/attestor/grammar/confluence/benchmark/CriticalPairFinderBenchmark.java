@@ -0,0 +1,40 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes all critical pairs of a grammar (overlappings, joint graphs and joinability).
+ * The canonicalization cache of the grammar is cleared before each invocation, so every invocation starts cold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CriticalPairFinderBenchmark {
+
+    @Param({"InTree", "InTreeLinkedLeaves", "LinkedTree1", "LinkedTree2", "SimpleDLL", "DLList", "SLList", "BT"})
+    public String grammarName;
+
+    private ConfluenceWrapperGrammar grammar;
+
+    @Setup(Level.Trial)
+    public void loadGrammar() {
+        grammar = ConfluenceBenchmarkGrammars.load(grammarName);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        grammar.getCanonicalizationCache().clear();
+    }
+
+    @Benchmark
+    public CriticalPairFinder findCriticalPairs() {
+        return new CriticalPairFinder(grammar);
+    }
+}
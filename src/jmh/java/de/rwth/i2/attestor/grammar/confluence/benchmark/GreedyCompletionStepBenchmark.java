@@ -0,0 +1,72 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.ExampleCompletionAlgorithms;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.CompletionStateLoss;
+import de.rwth.i2.attestor.grammar.confluence.completion.validity.GrammarValidity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes one step of GreedyCompletion: The successors of the initial completion state are evaluated (in the order
+ * of the heuristics) until the first valid successor with a smaller loss is found. The initial completion state is
+ * computed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GreedyCompletionStepBenchmark {
+
+    @Param({"InTree", "InTreeLinkedLeaves", "LinkedTree1", "LinkedTree2", "SimpleDLL", "DLList", "SLList", "BT"})
+    public String grammarName;
+
+    /**
+     * The name of a method in ExampleCompletionAlgorithms
+     */
+    @Param({"joinGeneratedNonterminals", "completionAbstractionBlocking"})
+    public String completionAlgorithm;
+
+    private CompletionAlgorithm algorithm;
+    private CompletionState initialState;
+    private double initialLoss;
+
+    @Setup(Level.Trial)
+    public void computeInitialState() throws ReflectiveOperationException {
+        algorithm = (CompletionAlgorithm) ExampleCompletionAlgorithms.class.getMethod(completionAlgorithm).invoke(null);
+        ConfluenceWrapperGrammar grammar = ConfluenceBenchmarkGrammars.load(grammarName);
+        initialState = new CompletionState(grammar, null);
+        initialLoss = algorithm.getCompletionStateLoss().getLoss(initialState);
+    }
+
+    /**
+     * @return The chosen successor or the initial state if no successor improves the loss
+     */
+    @Benchmark
+    public CompletionState greedyStep() {
+        CompletionStateLoss completionStateLoss = algorithm.getCompletionStateLoss();
+        for (CompletionHeuristic heuristic : algorithm.getHeuristics()) {
+            for (CompletionState nextState : heuristic.applyHeuristic(initialState)) {
+                if (completionStateLoss.getLoss(nextState, initialLoss) < initialLoss && isValid(nextState)) {
+                    return nextState;
+                }
+            }
+        }
+        return initialState;
+    }
+
+    private boolean isValid(CompletionState state) {
+        for (GrammarValidity validityCheck : algorithm.getValidityChecks()) {
+            if (!validityCheck.isValid(state)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
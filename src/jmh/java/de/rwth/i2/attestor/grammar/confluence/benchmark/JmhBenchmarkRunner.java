@@ -0,0 +1,37 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the JMH benchmarks of the confluence engine with the GC profiler (allocation rate) and writes the results as
+ * JSON to reports/jmh.
+ *
+ * Usage: java -jar target/benchmarks.jar [benchmark regex]...
+ * The arguments select the benchmarks (e.g. "CriticalPairFinderBenchmark"), all benchmarks are executed if there are
+ * no arguments.
+ */
+public class JmhBenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        new File("reports/jmh").mkdirs();
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("reports/jmh/jmh__" + CriticalPairDetectionBenchmarkRunner.getDateTime() + ".json");
+        if (args.length == 0) {
+            options.include(JmhBenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark");
+        }
+        for (String benchmark : args) {
+            options.include(benchmark);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,51 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the joinability (both canonicalizations and the isomorphism checks) of all critical pairs of a grammar.
+ * The joint graphs are computed once per trial and the canonicalization cache of the grammar is cleared before each
+ * invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JoinabilityBenchmark {
+
+    @Param({"InTree", "InTreeLinkedLeaves", "LinkedTree1", "LinkedTree2", "SimpleDLL", "DLList", "SLList", "BT"})
+    public String grammarName;
+
+    private ConfluenceWrapperGrammar grammar;
+    private List<CriticalPair> criticalPairs;
+
+    @Setup(Level.Trial)
+    public void computeJointGraphs() {
+        grammar = ConfluenceBenchmarkGrammars.load(grammarName);
+        criticalPairs = new ArrayList<>(new CriticalPairFinder(grammar).getCriticalPairs());
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        grammar.getCanonicalizationCache().clear();
+    }
+
+    @Benchmark
+    public void computeJoinability(Blackhole blackhole) {
+        for (CriticalPair criticalPair : criticalPairs) {
+            CriticalPair recomputed = new CriticalPair(criticalPair.getJointHeapConfiguration(), criticalPair.getContext(),
+                    grammar, criticalPair.getR1(), criticalPair.getR2());
+            blackhole.consume(recomputed.getJoinability());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.EdgeOverlapping;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.HeapConfigurationContext;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.NodeOverlapping;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.Overlapping;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enumerates the edge overlappings and node overlappings of all rule pairs without computing the critical pairs.
+ * The bytes allocated per enumeration are reported by the GC profiler of the JmhBenchmarkRunner (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OverlappingEnumerationBenchmark {
+
+    @Param({"InTree", "InTreeLinkedLeaves", "LinkedTree1", "LinkedTree2", "SimpleDLL", "DLList", "SLList", "BT"})
+    public String grammarName;
+
+    private ConfluenceWrapperGrammar grammar;
+
+    @Setup(Level.Trial)
+    public void loadGrammar() {
+        grammar = ConfluenceBenchmarkGrammars.load(grammarName);
+    }
+
+    /**
+     * Enumerates all edge overlappings and the node overlappings of all valid edge overlappings
+     *
+     * @return The number of enumerated overlappings
+     */
+    @Benchmark
+    public long enumerateOverlappings() {
+        List<GrammarRule> rules = new ArrayList<>(grammar.getActiveRules());
+        long numberOverlappings = 0;
+        for (int i = 0; i < rules.size(); i++) {
+            for (int j = i; j < rules.size(); j++) {
+                HeapConfigurationContext context = new HeapConfigurationContext(
+                        rules.get(i).getCollapsedHeapConfiguration(), rules.get(j).getCollapsedHeapConfiguration());
+                for (Overlapping<?> overlapping : EdgeOverlapping.getEdgeOverlapping(context)) {
+                    numberOverlappings++;
+                    EdgeOverlapping edgeOverlapping = (EdgeOverlapping) overlapping;
+                    if (edgeOverlapping.isEdgeOverlappingValid()) {
+                        for (Overlapping<?> nodeOverlapping : NodeOverlapping.getNodeOverlapping(edgeOverlapping)) {
+                            numberOverlappings++;
+                        }
+                    }
+                }
+            }
+        }
+        return numberOverlappings;
+    }
+}
@@ -0,0 +1,267 @@
+package de.rwth.i2.attestor.grammar;
+
+import de.rwth.i2.attestor.grammar.canonicalization.EmbeddingCheckerProvider;
+import de.rwth.i2.attestor.graph.SelectorLabel;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+
+import java.util.*;
+
+/**
+ * An index over the heap configurations that block the abstraction of a grammar, so that only few patterns have to be
+ * checked with an embedding check.
+ *
+ * A pattern can only be embedded into a heap configuration if
+ * 1. the heap configuration contains at least as many selector edges and nonterminal edges of every label as the
+ *    pattern and
+ * 2. the i-th largest degree (outgoing selector edges + attached nonterminal edges) of a node in the heap configuration
+ *    is at least the i-th largest degree of a node in the pattern (an embedding is injective and maps every edge of
+ *    the pattern to an edge with the same label).
+ *
+ * A pattern is removed from the index if another pattern can be embedded into it, because every heap configuration that
+ * contains the pattern also contains the other pattern (embeddings compose). Of isomorphic patterns only the first one
+ * is kept.
+ *
+ * The signatures and the results of the embedding checks between patterns are indexed by the identity of the patterns
+ * (the patterns are never modified), so the index of a modified grammar reuses them for the patterns it has in common
+ * with the parent index and only checks the new patterns against the other patterns.
+ *
+ * The signatures of the queried heap configurations are cached as well (by identity and shared with the derived
+ * indices), because the critical pairs of a derived grammar query the same joint heap configurations again. The cache
+ * only keeps the signatures of the MAX_CACHED_SIGNATURES most recently queried heap configurations.
+ */
+class AbstractionBlockingIndex {
+    private static final int MAX_CACHED_SIGNATURES = 1024;
+
+    private final List<HeapConfiguration> allPatterns;
+    private final Map<HeapConfiguration, PatternSignature> signatures;
+    // Maps a pattern p and a pattern q to true if p can be embedded into q (only contains the checked pairs and is not
+    // modified after the construction)
+    private final Map<HeapConfiguration, Map<HeapConfiguration, Boolean>> embeddings;
+    // The patterns that are not subsumed by another pattern (in the order of allPatterns)
+    private final List<HeapConfiguration> patterns;
+    private final List<PatternSignature> patternSignatures;
+    private final EmbeddingCheckerProvider embeddingCheckerProvider;
+    private final Map<IdentityKey, PatternSignature> querySignatures;
+
+    /**
+     * @param blockingHeapConfigurations The heap configurations that block the abstraction
+     * @param parent The index of the grammar this grammar is derived from (null to compute all signatures)
+     * @param embeddingCheckerProvider Provides the embedding checks of the canonicalization
+     */
+    AbstractionBlockingIndex(Collection<HeapConfiguration> blockingHeapConfigurations, AbstractionBlockingIndex parent,
+                             EmbeddingCheckerProvider embeddingCheckerProvider) {
+        this.allPatterns = new ArrayList<>(blockingHeapConfigurations);
+        this.embeddingCheckerProvider = embeddingCheckerProvider;
+        this.querySignatures = parent != null ? parent.querySignatures : createSignatureCache();
+        if (parent != null && sameOrder(parent.allPatterns, allPatterns)) {
+            this.signatures = parent.signatures;
+            this.embeddings = parent.embeddings;
+            this.patterns = parent.patterns;
+            this.patternSignatures = parent.patternSignatures;
+            return;
+        }
+
+        this.signatures = new IdentityHashMap<>();
+        for (HeapConfiguration pattern : allPatterns) {
+            PatternSignature signature = parent != null ? parent.signatures.get(pattern) : null;
+            signatures.put(pattern, signature != null ? signature : new PatternSignature(pattern));
+        }
+        this.embeddings = new IdentityHashMap<>();
+        for (int i = 0; i < allPatterns.size(); i++) {
+            embeddings.put(allPatterns.get(i), new IdentityHashMap<>());
+        }
+        this.patterns = new ArrayList<>();
+        this.patternSignatures = new ArrayList<>();
+        for (int i = 0; i < allPatterns.size(); i++) {
+            if (!isSubsumed(i, parent)) {
+                patterns.add(allPatterns.get(i));
+                patternSignatures.add(signatures.get(allPatterns.get(i)));
+            }
+        }
+    }
+
+    /**
+     * @return True if one of the patterns can be embedded into the heap configuration
+     */
+    boolean containsPattern(HeapConfiguration hc) {
+        if (patterns.isEmpty()) {
+            return false;
+        }
+        PatternSignature hcSignature = getQuerySignature(hc);
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patternSignatures.get(i).fitsInto(hcSignature) && embeds(patterns.get(i), hc)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if both indices check the same patterns (so they block the same heap configurations)
+     */
+    boolean hasSamePatterns(AbstractionBlockingIndex other) {
+        return sameOrder(patterns, other.patterns);
+    }
+
+    /**
+     * @return The number of patterns that are removed because another pattern can be embedded into them
+     */
+    int getNumberSubsumedPatterns() {
+        return allPatterns.size() - patterns.size();
+    }
+
+    /**
+     * A pattern is subsumed if another pattern can be embedded into it, unless the two patterns are isomorphic and
+     * the pattern comes first
+     */
+    private boolean isSubsumed(int patternIdx, AbstractionBlockingIndex parent) {
+        HeapConfiguration pattern = allPatterns.get(patternIdx);
+        PatternSignature signature = signatures.get(pattern);
+        for (int otherIdx = 0; otherIdx < allPatterns.size(); otherIdx++) {
+            HeapConfiguration other = allPatterns.get(otherIdx);
+            if (otherIdx == patternIdx || !signatures.get(other).fitsInto(signature) || !embedsPattern(other, pattern, parent)) {
+                continue;
+            }
+            if (otherIdx < patternIdx || !signature.fitsInto(signatures.get(other)) || !embedsPattern(pattern, other, parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return True if pattern can be embedded into otherPattern (taken from the parent index if it has checked both)
+     */
+    private boolean embedsPattern(HeapConfiguration pattern, HeapConfiguration otherPattern, AbstractionBlockingIndex parent) {
+        Map<HeapConfiguration, Boolean> results = embeddings.get(pattern);
+        Boolean result = results.get(otherPattern);
+        if (result == null && parent != null) {
+            Map<HeapConfiguration, Boolean> parentResults = parent.embeddings.get(pattern);
+            result = parentResults != null ? parentResults.get(otherPattern) : null;
+        }
+        if (result == null) {
+            result = embeds(pattern, otherPattern);
+        }
+        results.put(otherPattern, result);
+        return result;
+    }
+
+    /**
+     * The signature is computed outside of the lock (two threads might compute the same signature)
+     */
+    private PatternSignature getQuerySignature(HeapConfiguration hc) {
+        IdentityKey key = new IdentityKey(hc);
+        PatternSignature signature = querySignatures.get(key);
+        if (signature == null) {
+            signature = new PatternSignature(hc);
+            querySignatures.put(key, signature);
+        }
+        return signature;
+    }
+
+    private static Map<IdentityKey, PatternSignature> createSignatureCache() {
+        // Least recently used heap configurations are removed first
+        return Collections.synchronizedMap(new LinkedHashMap<IdentityKey, PatternSignature>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IdentityKey, PatternSignature> eldest) {
+                return size() > MAX_CACHED_SIGNATURES;
+            }
+        });
+    }
+
+    private boolean embeds(HeapConfiguration pattern, HeapConfiguration hc) {
+        return embeddingCheckerProvider.getEmbeddingChecker(hc, pattern).hasMatching();
+    }
+
+    private static boolean sameOrder(List<HeapConfiguration> patterns1, List<HeapConfiguration> patterns2) {
+        if (patterns1.size() != patterns2.size()) {
+            return false;
+        }
+        for (int i = 0; i < patterns1.size(); i++) {
+            if (patterns1.get(i) != patterns2.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares heap configurations by identity (HeapConfiguration.equals checks for isomorphism)
+     */
+    private static class IdentityKey {
+        final HeapConfiguration hc;
+
+        IdentityKey(HeapConfiguration hc) {
+            this.hc = hc;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ((IdentityKey) obj).hc == hc;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(hc);
+        }
+    }
+
+    /**
+     * The number of edges per label and the degrees of the nodes of a heap configuration
+     */
+    private static class PatternSignature {
+        final Map<SelectorLabel, Integer> numberSelectors = new HashMap<>();
+        final Map<String, Integer> numberNonterminals = new HashMap<>();
+        final int[] degrees;  // In descending order
+
+        PatternSignature(HeapConfiguration hc) {
+            degrees = new int[hc.countNodes()];
+            int[] nodeIdx = {0};
+            hc.nodes().forEach(node -> {
+                List<SelectorLabel> selectorLabels = hc.selectorLabelsOf(node);
+                for (SelectorLabel selectorLabel : selectorLabels) {
+                    numberSelectors.merge(selectorLabel, 1, Integer::sum);
+                }
+                degrees[nodeIdx[0]++] = selectorLabels.size() + hc.attachedNonterminalEdgesOf(node).size();
+                return true;
+            });
+            Arrays.sort(degrees);
+            for (int i = 0; i < degrees.length / 2; i++) {
+                int degree = degrees[i];
+                degrees[i] = degrees[degrees.length - 1 - i];
+                degrees[degrees.length - 1 - i] = degree;
+            }
+            // Nonterminals only match nonterminals with the same label
+            hc.nonterminalEdges().forEach(ntEdge -> {
+                numberNonterminals.merge(hc.labelOf(ntEdge).getLabel(), 1, Integer::sum);
+                return true;
+            });
+        }
+
+        /**
+         * @return False if a heap configuration with this signature cannot be embedded into a heap configuration with
+         * the other signature
+         */
+        boolean fitsInto(PatternSignature other) {
+            if (degrees.length > other.degrees.length) {
+                return false;
+            }
+            for (int i = 0; i < degrees.length; i++) {
+                if (degrees[i] > other.degrees[i]) {
+                    return false;
+                }
+            }
+            return containsCounts(other.numberSelectors, numberSelectors)
+                    && containsCounts(other.numberNonterminals, numberNonterminals);
+        }
+
+        private static <T> boolean containsCounts(Map<T, Integer> counts, Map<T, Integer> subCounts) {
+            for (Map.Entry<T, Integer> entry : subCounts.entrySet()) {
+                if (entry.getValue() > counts.getOrDefault(entry.getKey(), 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
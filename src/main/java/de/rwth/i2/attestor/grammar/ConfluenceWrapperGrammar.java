@@ -2,20 +2,29 @@ package de.rwth.i2.attestor.grammar;
 
 import de.rwth.i2.attestor.grammar.canonicalization.*;
 import de.rwth.i2.attestor.grammar.canonicalization.defaultGrammar.DefaultCanonicalizationHelper;
+import de.rwth.i2.attestor.grammar.confluence.AbstractionRuleDelta;
 import de.rwth.i2.attestor.grammar.confluence.completion.GeneratedNonterminal;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.RulePairPrefilter;
 import de.rwth.i2.attestor.grammar.util.ExternalNodesPartitioner;
 import de.rwth.i2.attestor.graph.Nonterminal;
 import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
 import de.rwth.i2.attestor.graph.heap.HeapConfigurationBuilder;
-import de.rwth.i2.attestor.graph.heap.matching.AbstractMatchingChecker;
 import de.rwth.i2.attestor.graph.morphism.MorphismOptions;
 import gnu.trove.list.array.TIntArrayList;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * A grammar with a name, where each rule is numbered.
+ *
+ * A grammar derived from another grammar (see getModifiedGrammar) shares everything that is not affected by the
+ * modification with its parent: the unchanged rules (rules are immutable), the abstraction and concretization grammar
+ * if they contain the same rules, the signatures of the rule pair prefilter and the abstraction blocking index, and
+ * the canonicalization strategy with its cache if the canonicalization is the same. Otherwise the new cache reuses the
+ * cached results of the parent for heap configurations whose canonicalization cannot be affected by the changed rules.
  * TODO: How to integrate with attestor? Maybe extend Grammar class and behave like the concretization grammar.
  * For now: accessor for concreization grammar
  * TODO: Better name for this class?
@@ -27,11 +36,22 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
 
     // TODO: Add methods to access / set this attribute
     final private Collection<HeapConfiguration> abstractionBlockingHeapConfigurations;
+    // Selects the abstraction blocking heap configurations that have to be checked with an embedding check
+    final private AbstractionBlockingIndex abstractionBlockingIndex;
 
     private CanonicalizationStrategy canonicalizationStrategy;
-    private EmbeddingCheckerProvider embeddingCheckerProvider;
+    final private EmbeddingCheckerProvider embeddingCheckerProvider;
+    // Shared by all critical pairs of this grammar
+    private CanonicalizationCache canonicalizationCache;
+    private static final int CANONICALIZATION_CACHE_SIZE = 4096;
+    // Rejects rule pairs without critical pairs before their overlappings are enumerated
+    final private RulePairPrefilter rulePairPrefilter;
 
-    private ConfluenceWrapperGrammar(String grammarName, List<GrammarRuleOriginal> newOriginalRules, Collection<HeapConfiguration> abstractionBlockingHeapConfigurations) {
+    /**
+     * @param parent The grammar this grammar is derived from
+     */
+    private ConfluenceWrapperGrammar(String grammarName, List<GrammarRuleOriginal> newOriginalRules, Collection<HeapConfiguration> abstractionBlockingHeapConfigurations,
+                                     ConfluenceWrapperGrammar parent) {
         // Check that the original rule indices are in increasing order TODO: Can we just remove this sanity check?
         int currentOriginalRuleIdx = -1;
         for (GrammarRuleOriginal originalRule : newOriginalRules) {
@@ -43,14 +63,17 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
 
         this.grammarName = grammarName;
         this.originalRules = newOriginalRules;
-        Map<Nonterminal, Set<HeapConfiguration>> abstractionOriginalRules = new HashMap<>();
-        Map<Nonterminal, Set<CollapsedHeapConfiguration>> abstractionCollapsedRules = new HashMap<>();
 
-        this.abstractionGrammar = getGrammar(newOriginalRules, true);
-        this.concretizationGrammar = getGrammar(newOriginalRules, false);
+        this.abstractionGrammar = containsSameRules(parent.originalRules, newOriginalRules, true) ?
+                parent.abstractionGrammar : getGrammar(newOriginalRules, true);
+        this.concretizationGrammar = containsSameRules(parent.originalRules, newOriginalRules, false) ?
+                parent.concretizationGrammar : getGrammar(newOriginalRules, false);
         this.abstractionBlockingHeapConfigurations = abstractionBlockingHeapConfigurations;
+        this.rulePairPrefilter = new RulePairPrefilter(getAllGrammarRules(), parent.rulePairPrefilter);
 
-        createCanonicalizationStrategy();
+        this.embeddingCheckerProvider = parent.embeddingCheckerProvider;
+        this.abstractionBlockingIndex = new AbstractionBlockingIndex(abstractionBlockingHeapConfigurations, parent.abstractionBlockingIndex, embeddingCheckerProvider);
+        createCanonicalizationStrategy(parent);
     }
 
     public ConfluenceWrapperGrammar(Grammar grammar, String name) {
@@ -83,19 +106,23 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
                 }
             }
         }
+        this.rulePairPrefilter = new RulePairPrefilter(getAllGrammarRules(), null);
 
-        createCanonicalizationStrategy();
+        MorphismOptions options = new AbstractionOptions()
+                .setAdmissibleAbstraction(false)
+                .setAdmissibleConstants(false)
+                .setAdmissibleMarkings(false);
+        this.embeddingCheckerProvider = new EmbeddingCheckerProvider(options);
+        this.abstractionBlockingIndex = new AbstractionBlockingIndex(abstractionBlockingHeapConfigurations, null, embeddingCheckerProvider);
+        createCanonicalizationStrategy(null);
     }
 
     private static Grammar getGrammar(List<GrammarRuleOriginal> grammarRules, boolean abstractionGrammar) {
         GrammarBuilder resultingGrammar = new GrammarBuilder();
         for (GrammarRuleOriginal originalRule : grammarRules) {
-            if (!abstractionGrammar || originalRule.getRuleStatus() == GrammarRule.RuleStatus.ACTIVE || originalRule.getRuleStatus() == GrammarRule.RuleStatus.CONFLUENCE_GENERATED) {
-                // Concretization grammars contain all rules, abstraction grammars only active (and confluence generated) rules
+            if (isContainedInGrammar(originalRule, abstractionGrammar)) {
                 resultingGrammar.addRule(originalRule.getNonterminal(), originalRule.getHeapConfiguration());
-            }
-            for (GrammarRuleCollapsed collapsedRule : originalRule.getCollapsedRules()) {
-                if (!abstractionGrammar || originalRule.getRuleStatus() == GrammarRule.RuleStatus.ACTIVE || originalRule.getRuleStatus() == GrammarRule.RuleStatus.CONFLUENCE_GENERATED) {
+                for (GrammarRuleCollapsed collapsedRule : originalRule.getCollapsedRules()) {
                     // Note: There actually should not be any collapsed rules that are confluence generated!
                     resultingGrammar.addCollapsedRule(collapsedRule.getNonterminal(), collapsedRule.getCollapsedHeapConfiguration());
                 }
@@ -104,18 +131,81 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
         return resultingGrammar.build();
     }
 
-    private void createCanonicalizationStrategy() {
+    /**
+     * Concretization grammars contain all rules, abstraction grammars only active (and confluence generated) rules
+     * (with all of their collapsed rules)
+     */
+    private static boolean isContainedInGrammar(GrammarRuleOriginal originalRule, boolean abstractionGrammar) {
+        return !abstractionGrammar || originalRule.getRuleStatus() == GrammarRule.RuleStatus.ACTIVE
+                || originalRule.getRuleStatus() == GrammarRule.RuleStatus.CONFLUENCE_GENERATED;
+    }
+
+    /**
+     * @return True if getGrammar returns a grammar with the same rules (in the same order) for both rule lists
+     */
+    private static boolean containsSameRules(List<GrammarRuleOriginal> rules1, List<GrammarRuleOriginal> rules2, boolean abstractionGrammar) {
+        Iterator<GrammarRuleOriginal> iterator1 = rules1.iterator();
+        Iterator<GrammarRuleOriginal> iterator2 = rules2.iterator();
+        while (true) {
+            GrammarRuleOriginal rule1 = getNextContainedRule(iterator1, abstractionGrammar);
+            GrammarRuleOriginal rule2 = getNextContainedRule(iterator2, abstractionGrammar);
+            if (rule1 == null || rule2 == null) {
+                return rule1 == rule2;
+            }
+            if (rule1 != rule2 && !haveSameRightHandSides(rule1, rule2)) {
+                return false;
+            }
+        }
+    }
+
+    private static GrammarRuleOriginal getNextContainedRule(Iterator<GrammarRuleOriginal> iterator, boolean abstractionGrammar) {
+        while (iterator.hasNext()) {
+            GrammarRuleOriginal rule = iterator.next();
+            if (isContainedInGrammar(rule, abstractionGrammar)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private static boolean haveSameRightHandSides(GrammarRuleOriginal rule1, GrammarRuleOriginal rule2) {
+        List<GrammarRuleCollapsed> collapsedRules1 = rule1.getCollapsedRules();
+        List<GrammarRuleCollapsed> collapsedRules2 = rule2.getCollapsedRules();
+        if (!rule1.getNonterminal().equals(rule2.getNonterminal()) || rule1.getHeapConfiguration() != rule2.getHeapConfiguration()
+                || collapsedRules1.size() != collapsedRules2.size()) {
+            return false;
+        }
+        for (int i = 0; i < collapsedRules1.size(); i++) {
+            if (collapsedRules1.get(i).getCollapsedHeapConfiguration() != collapsedRules2.get(i).getCollapsedHeapConfiguration()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param parent The grammar this grammar is derived from (or null)
+     */
+    private void createCanonicalizationStrategy(ConfluenceWrapperGrammar parent) {
         if (this.abstractionGrammar == null) {
             throw new IllegalStateException("Abstraction grammar has not been set");
         }
-        MorphismOptions options = new AbstractionOptions()
-                .setAdmissibleAbstraction(false)
-                .setAdmissibleConstants(false)
-                .setAdmissibleMarkings(false);
+        if (parent != null && parent.abstractionGrammar == abstractionGrammar
+                && parent.abstractionBlockingIndex.hasSamePatterns(abstractionBlockingIndex)) {
+            // The canonicalization is the same as in the parent grammar
+            canonicalizationStrategy = parent.canonicalizationStrategy;
+            canonicalizationCache = parent.canonicalizationCache;
+            return;
+        }
 
-        embeddingCheckerProvider = new EmbeddingCheckerProvider(options);
         CanonicalizationHelper canonicalizationHelper = new DefaultCanonicalizationHelper(embeddingCheckerProvider);
         canonicalizationStrategy = new ConfluentCanonicalizationStrategy(this, canonicalizationHelper);
+        if (parent == null) {
+            canonicalizationCache = new CanonicalizationCache(canonicalizationStrategy, CANONICALIZATION_CACHE_SIZE);
+        } else {
+            canonicalizationCache = new CanonicalizationCache(canonicalizationStrategy, CANONICALIZATION_CACHE_SIZE,
+                    parent.canonicalizationCache, new ReuseParentCanonicalization(parent, this));
+        }
     }
 
     public String getGrammarName() {
@@ -126,6 +216,20 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
         return canonicalizationStrategy;
     }
 
+    /**
+     * @return A cache for the canonicalization strategy of this grammar (the cached results must not be modified)
+     */
+    public CanonicalizationCache getCanonicalizationCache() {
+        return canonicalizationCache;
+    }
+
+    /**
+     * @return An index over the collapsed right hand sides of all rules of this grammar
+     */
+    public RulePairPrefilter getRulePairPrefilter() {
+        return rulePairPrefilter;
+    }
+
     public List<GrammarRule> getAllGrammarRules() {
         List<GrammarRule> result = new ArrayList<>();
         for (GrammarRuleOriginal originalRule : originalRules) {
@@ -195,7 +299,7 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
             newAbstractionBlockingHeapConfigurations = abstractionBlockingHeapConfigurations;
         }
 
-        return new ConfluenceWrapperGrammar(grammarName, newOriginalRules, newAbstractionBlockingHeapConfigurations);
+        return new ConfluenceWrapperGrammar(grammarName, newOriginalRules, newAbstractionBlockingHeapConfigurations, this);
     }
 
     public int getMaxOriginalRuleIdx() {
@@ -206,15 +310,12 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
         }
     }
 
+    /**
+     * @return True if one of the abstraction blocking heap configurations can be embedded into hc (then hc must not
+     * be abstracted)
+     */
     public boolean blockHeapAbstraction(HeapConfiguration hc) {
-        for (HeapConfiguration pattern : abstractionBlockingHeapConfigurations) {
-            AbstractMatchingChecker matchingChecker = embeddingCheckerProvider.getEmbeddingChecker(hc, pattern);
-            if (matchingChecker.hasMatching()) {
-                // Don't abstract the heap configuration
-                return true;
-            }
-        }
-        return false;
+        return abstractionBlockingIndex.containsPattern(hc);
     }
 
     public Collection<HeapConfiguration> getAbstractionBlockingHeapConfigurations() {
@@ -246,7 +347,7 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
             newAbstractionBlockingHeapConfigurations.add(replaceNonterminal(hc, nt1, nt2));
         }
 
-        return new ConfluenceWrapperGrammar(grammarName, newOriginalRules, newAbstractionBlockingHeapConfigurations);
+        return new ConfluenceWrapperGrammar(grammarName, newOriginalRules, newAbstractionBlockingHeapConfigurations, this);
     }
 
     /**
@@ -298,4 +399,47 @@ public class ConfluenceWrapperGrammar implements GrammarInterface {
         return abstractionBlockingHeapConfigurations.size();
     }
 
+    /**
+     * @return The number of abstraction blocking heap configurations that are not checked, because another abstraction
+     * blocking heap configuration can be embedded into them
+     */
+    public int getNumberSubsumedAbstractionBlockingRules() {
+        return abstractionBlockingIndex.getNumberSubsumedPatterns();
+    }
+
+
+    /**
+     * Decides if a canonicalization result of the parent grammar can be reused (see AbstractionRuleDelta). The delta
+     * is only computed once the parent cache contains a result that could be reused. The parent grammar is only
+     * weakly referenced and dropped once the delta is computed, so a derived grammar does not keep its ancestors
+     * alive (if the parent grammar has already been collected, no results are reused).
+     */
+    private static class ReuseParentCanonicalization implements Predicate<HeapConfiguration> {
+        private final ConfluenceWrapperGrammar grammar;
+        private WeakReference<ConfluenceWrapperGrammar> parent;
+        private AbstractionRuleDelta delta = null;
+
+        ReuseParentCanonicalization(ConfluenceWrapperGrammar parent, ConfluenceWrapperGrammar grammar) {
+            this.grammar = grammar;
+            this.parent = new WeakReference<>(parent);
+        }
+
+        @Override
+        public boolean test(HeapConfiguration hc) {
+            AbstractionRuleDelta delta = getDelta();
+            return delta != null && !delta.mayAffectCanonicalization(hc);
+        }
+
+        /**
+         * @return The delta to the parent grammar or null if the results of the parent grammar cannot be reused
+         */
+        private synchronized AbstractionRuleDelta getDelta() {
+            if (parent != null) {
+                ConfluenceWrapperGrammar parentGrammar = parent.get();
+                delta = parentGrammar == null ? null : AbstractionRuleDelta.compute(parentGrammar, grammar);
+                parent = null;
+            }
+            return delta;
+        }
+    }
 }
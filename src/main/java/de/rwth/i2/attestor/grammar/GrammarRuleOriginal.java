@@ -39,7 +39,8 @@ public class GrammarRuleOriginal implements GrammarRule {
     }
 
     public GrammarRuleOriginal changeRuleActivation(Collection<GrammarRule> flipActivation) {
-        if (flipActivation.size() == 0) {
+        if (flipActivation.size() == 0 || (!flipActivation.contains(this) && Collections.disjoint(flipActivation, collapsedRules))) {
+            // The rule is not changed (rules are immutable, so the grammars can share it)
             return this;
         }
 
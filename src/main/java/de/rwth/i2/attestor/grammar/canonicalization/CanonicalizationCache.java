@@ -0,0 +1,187 @@
+package de.rwth.i2.attestor.grammar.canonicalization;
+
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import de.rwth.i2.attestor.graph.heap.internal.HeapConfigurationIdConverter;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import gnu.trove.list.array.TIntArrayList;
+import org.json.JSONObject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache for the results of a canonicalization strategy. The heap configurations are identified by a
+ * certificate that contains the complete structure of the heap configuration (including the public and private ids),
+ * so a cached result is exactly the result the canonicalization strategy computes for the heap configuration.
+ * If the cache is full the least recently used result is removed.
+ *
+ * A cache can fall back to the cache of a parent strategy (e.g. the strategy of the grammar a modified grammar is
+ * derived from) for heap configurations whose canonicalization is known to be the same in both strategies. Only the
+ * entries of the parent cache itself are used (not the ones of its own parent) and the parent cache is only weakly
+ * referenced, so a chain of derived caches does not keep the caches of all ancestors alive.
+ *
+ * The returned heap configurations are shared and must not be modified. The cache can be used from multiple threads.
+ */
+public class CanonicalizationCache {
+    private final CanonicalizationStrategy canonicalizationStrategy;
+    private final Map<List<Object>, HeapConfiguration> cache;
+    private final WeakReference<CanonicalizationCache> parentCache;  // null if there is no parent
+    private final Predicate<HeapConfiguration> reuseParentResult;
+    private final LongAdder numberHits = new LongAdder();
+    private final LongAdder numberParentHits = new LongAdder();
+    private final LongAdder numberMisses = new LongAdder();
+    private final LongAdder numberMemoizedHits = new LongAdder();
+
+    /**
+     * @param maxSize The maximal number of cached canonicalization results
+     */
+    public CanonicalizationCache(CanonicalizationStrategy canonicalizationStrategy, int maxSize) {
+        this(canonicalizationStrategy, maxSize, null, null);
+    }
+
+    /**
+     * @param maxSize The maximal number of cached canonicalization results
+     * @param parentCache The cache whose results are reused (only results that are already cached are taken from it
+     *                    while it has not been garbage collected)
+     * @param reuseParentResult Returns true if the canonicalization of a heap configuration is the same in the
+     *                          strategies of both caches
+     */
+    public CanonicalizationCache(CanonicalizationStrategy canonicalizationStrategy, int maxSize,
+                                 CanonicalizationCache parentCache, Predicate<HeapConfiguration> reuseParentResult) {
+        this.canonicalizationStrategy = canonicalizationStrategy;
+        this.parentCache = parentCache == null ? null : new WeakReference<>(parentCache);
+        this.reuseParentResult = reuseParentResult;
+        this.cache = new LinkedHashMap<List<Object>, HeapConfiguration>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, HeapConfiguration> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the canonicalization of heapConfiguration (the cached result if the same heap configuration has already
+     * been canonicalized).
+     */
+    public HeapConfiguration canonicalize(HeapConfiguration heapConfiguration) {
+        List<Object> certificate = getCertificate(heapConfiguration);
+        HeapConfiguration result;
+        synchronized (cache) {
+            result = cache.get(certificate);
+        }
+        if (result != null) {
+            numberHits.increment();
+            return result;
+        }
+        CanonicalizationCache parent = parentCache == null ? null : parentCache.get();
+        if (parent != null) {
+            result = parent.getCachedResult(certificate);
+            if (result != null && reuseParentResult.test(heapConfiguration)) {
+                numberHits.increment();
+                numberParentHits.increment();
+                synchronized (cache) {
+                    cache.put(certificate, result);
+                }
+                return result;
+            }
+        }
+        numberMisses.increment();
+        // Canonicalize outside of the lock (other threads might compute the same result, which is fine)
+        result = canonicalizationStrategy.canonicalize(heapConfiguration);
+        synchronized (cache) {
+            cache.put(certificate, result);
+        }
+        return result;
+    }
+
+    private HeapConfiguration getCachedResult(List<Object> certificate) {
+        synchronized (cache) {
+            return cache.get(certificate);
+        }
+    }
+
+    /**
+     * Logs that a canonicalization result has been reused without a lookup (e.g. memoized in a critical pair)
+     */
+    public void logMemoizedHit() {
+        numberMemoizedHits.increment();
+    }
+
+    /**
+     * Removes all cached results (the statistic is kept)
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public long getNumberHits() {
+        return numberHits.sum();
+    }
+
+    /**
+     * @return The number of hits whose result has been taken from the parent cache
+     */
+    public long getNumberParentHits() {
+        return numberParentHits.sum();
+    }
+
+    public long getNumberMisses() {
+        return numberMisses.sum();
+    }
+
+    public long getNumberMemoizedHits() {
+        return numberMemoizedHits.sum();
+    }
+
+    public JSONObject getJsonStatistic() {
+        JSONObject result = new JSONObject();
+        result.put("numberHits", getNumberHits());
+        result.put("numberParentHits", getNumberParentHits());
+        result.put("numberMisses", getNumberMisses());
+        result.put("numberMemoizedHits", getNumberMemoizedHits());
+        return result;
+    }
+
+    /**
+     * The certificate lists for every element (in the order of the private ids) its public id, label, external index
+     * and its successors (with the edge labels in their order).
+     */
+    private static List<Object> getCertificate(HeapConfiguration heapConfiguration) {
+        Graph graph = (Graph) heapConfiguration;
+        int[] publicIds = new int[graph.size()];
+        Arrays.fill(publicIds, -1);
+        for (TIntArrayList elements : Arrays.asList(heapConfiguration.nodes(), heapConfiguration.nonterminalEdges(),
+                heapConfiguration.variableEdges())) {
+            for (int i = 0; i < elements.size(); i++) {
+                publicIds[HeapConfigurationIdConverter.getGraphId(heapConfiguration, elements.get(i))] = elements.get(i);
+            }
+        }
+
+        List<Object> result = new ArrayList<>();
+        result.add(graph.size());
+        for (int privateId = 0; privateId < graph.size(); privateId++) {
+            result.add(publicIds[privateId]);
+            if (publicIds[privateId] == -1) {
+                // Removed element
+                continue;
+            }
+            result.add(graph.getNodeLabel(privateId));
+            result.add(graph.isExternal(privateId) ? graph.getExternalIndex(privateId) : -1);
+            TIntArrayList successors = graph.getSuccessorsOf(privateId);
+            result.add(successors.size());
+            for (int i = 0; i < successors.size(); i++) {
+                result.add(successors.get(i));
+                result.add(new ArrayList<>(graph.getEdgeLabel(privateId, successors.get(i))));
+            }
+        }
+        return result;
+    }
+}
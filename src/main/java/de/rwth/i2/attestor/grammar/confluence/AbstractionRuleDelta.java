@@ -0,0 +1,179 @@
+package de.rwth.i2.attestor.grammar.confluence;
+
+import de.rwth.i2.attestor.grammar.CollapsedHeapConfiguration;
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.Grammar;
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.SelectorLabel;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+
+import java.util.*;
+
+/**
+ * The abstraction rules that differ between two versions of a grammar (e.g. a rule that has been reactivated).
+ *
+ * The canonicalization tries the abstraction rules in a fixed order and applies the first one that matches. If the
+ * rules that both grammars have in common are tried in the same order (and the grammars block the same heap
+ * configurations), the canonicalization of a heap configuration can only differ if one of the changed rules matches
+ * at some point of the canonicalization. An abstraction step never adds nodes or selector edges, so a changed rule
+ * cannot match if its right hand side has more nodes or more selector edges of some label than the heap
+ * configuration that is canonicalized.
+ * This allows to reuse the joinability of a critical pair of the old grammar if no changed rule can match its joint
+ * graph (the joint graph contains all nodes and selectors of both rule applications).
+ */
+public class AbstractionRuleDelta {
+    private final List<RuleSize> changedRules;
+
+    private AbstractionRuleDelta(List<RuleSize> changedRules) {
+        this.changedRules = changedRules;
+    }
+
+    /**
+     * @return The delta of the abstraction rules or null if the canonicalization of the two grammars might differ
+     * even if no changed rule matches
+     */
+    public static AbstractionRuleDelta compute(ConfluenceWrapperGrammar oldGrammar, ConfluenceWrapperGrammar newGrammar) {
+        if (!sameElements(oldGrammar.getAbstractionBlockingHeapConfigurations(), newGrammar.getAbstractionBlockingHeapConfigurations())) {
+            return null;
+        }
+        if (oldGrammar.getAbstractionGrammar() == newGrammar.getAbstractionGrammar()) {
+            // The grammars share the abstraction rules
+            return new AbstractionRuleDelta(Collections.emptyList());
+        }
+        List<RuleEntry> oldRules = getCanonicalizationOrder(oldGrammar.getAbstractionGrammar());
+        List<RuleEntry> newRules = getCanonicalizationOrder(newGrammar.getAbstractionGrammar());
+        Set<HeapConfiguration> oldRightHandSides = getRightHandSides(oldRules);
+        Set<HeapConfiguration> newRightHandSides = getRightHandSides(newRules);
+
+        List<RuleSize> changedRules = new ArrayList<>();
+        List<RuleEntry> oldCommonRules = new ArrayList<>();
+        List<RuleEntry> newCommonRules = new ArrayList<>();
+        for (RuleEntry rule : oldRules) {
+            if (newRightHandSides.contains(rule.rhs)) {
+                oldCommonRules.add(rule);
+            } else {
+                changedRules.add(new RuleSize(rule.rhs));
+            }
+        }
+        for (RuleEntry rule : newRules) {
+            if (oldRightHandSides.contains(rule.rhs)) {
+                newCommonRules.add(rule);
+            } else {
+                changedRules.add(new RuleSize(rule.rhs));
+            }
+        }
+
+        if (oldCommonRules.size() != newCommonRules.size()) {
+            return null;
+        }
+        for (int i = 0; i < oldCommonRules.size(); i++) {
+            RuleEntry oldRule = oldCommonRules.get(i);
+            RuleEntry newRule = newCommonRules.get(i);
+            if (oldRule.rhs != newRule.rhs || !oldRule.lhs.equals(newRule.lhs)) {
+                // The common rules are tried in a different order
+                return null;
+            }
+        }
+        return new AbstractionRuleDelta(changedRules);
+    }
+
+    /**
+     * @return False if the canonicalization of the heap configuration (and of all heap configurations with a subset of
+     * its nodes and selectors) is the same in both grammars
+     */
+    public boolean mayAffectCanonicalization(HeapConfiguration hc) {
+        if (changedRules.isEmpty()) {
+            return false;
+        }
+        RuleSize size = new RuleSize(hc);
+        for (RuleSize changedRule : changedRules) {
+            if (changedRule.fitsInto(size)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The right hand sides of the abstraction grammar in the order in which the canonicalization tries them
+     */
+    private static List<RuleEntry> getCanonicalizationOrder(Grammar grammar) {
+        List<RuleEntry> result = new ArrayList<>();
+        for (Nonterminal lhs : grammar.getAllLeftHandSides()) {
+            for (HeapConfiguration rhs : grammar.getRightHandSidesFor(lhs)) {
+                result.add(new RuleEntry(lhs, rhs));
+            }
+            for (CollapsedHeapConfiguration rhs : grammar.getCollapsedRightHandSidesFor(lhs)) {
+                result.add(new RuleEntry(lhs, rhs.getCollapsed()));
+            }
+        }
+        return result;
+    }
+
+    private static Set<HeapConfiguration> getRightHandSides(List<RuleEntry> rules) {
+        Set<HeapConfiguration> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RuleEntry rule : rules) {
+            result.add(rule.rhs);
+        }
+        return result;
+    }
+
+    private static boolean sameElements(Collection<HeapConfiguration> hcs1, Collection<HeapConfiguration> hcs2) {
+        if (hcs1 == hcs2) {
+            return true;
+        }
+        if (hcs1 == null || hcs2 == null || hcs1.size() != hcs2.size()) {
+            return false;
+        }
+        Iterator<HeapConfiguration> iterator2 = hcs2.iterator();
+        for (HeapConfiguration hc1 : hcs1) {
+            if (hc1 != iterator2.next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class RuleEntry {
+        final Nonterminal lhs;
+        final HeapConfiguration rhs;  // Compared by identity (the rules of modified grammars share their right hand sides)
+
+        RuleEntry(Nonterminal lhs, HeapConfiguration rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+    }
+
+    /**
+     * The number of nodes and the number of selector edges per label of a heap configuration
+     */
+    private static class RuleSize {
+        final int numberNodes;
+        final Map<SelectorLabel, Integer> numberSelectors = new HashMap<>();
+
+        RuleSize(HeapConfiguration hc) {
+            numberNodes = hc.countNodes();
+            hc.nodes().forEach(node -> {
+                for (SelectorLabel selectorLabel : hc.selectorLabelsOf(node)) {
+                    numberSelectors.merge(selectorLabel, 1, Integer::sum);
+                }
+                return true;
+            });
+        }
+
+        /**
+         * @return True if a heap configuration of this size might be embedded into a heap configuration of the other size
+         */
+        boolean fitsInto(RuleSize other) {
+            if (numberNodes > other.numberNodes) {
+                return false;
+            }
+            for (Map.Entry<SelectorLabel, Integer> entry : numberSelectors.entrySet()) {
+                if (entry.getValue() > other.numberSelectors.getOrDefault(entry.getKey(), 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package de.rwth.i2.attestor.grammar.confluence;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Allows to cooperatively cancel a (critical pair or completion) computation, e.g. from another thread or after a time
+ * budget. The computations regularly check the token and stop as soon as it is cancelled.
+ * The token can be used from multiple threads.
+ */
+public class CancellationToken {
+    /**
+     * A token that is never cancelled (cancel has no effect, so callers can cancel whatever token they were given)
+     */
+    public static final CancellationToken NONE = new CancellationToken() {
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final CancellationToken parent;  // The token is also cancelled if the parent is cancelled (or null)
+    private final long deadline;  // In System.nanoTime (Long.MAX_VALUE if there is no time budget)
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a token that is only cancelled by calling cancel
+     */
+    public CancellationToken() {
+        this(null, 0);
+    }
+
+    /**
+     * Creates a token that is cancelled automatically once the time budget has elapsed
+     *
+     * @param timeBudgetMillis The time budget in milliseconds (no budget if set to 0)
+     */
+    public CancellationToken(long timeBudgetMillis) {
+        this(null, timeBudgetMillis);
+    }
+
+    /**
+     * Creates a token that is cancelled once the time budget has elapsed or the parent token is cancelled
+     * (cancelling the created token does not cancel the parent)
+     *
+     * @param parent The parent token (or null)
+     * @param timeBudgetMillis The time budget in milliseconds (no budget if set to 0)
+     */
+    public CancellationToken(CancellationToken parent, long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("The time budget must not be negative");
+        }
+        this.parent = parent == NONE ? null : parent;
+        this.deadline = timeBudgetMillis == 0 ? Long.MAX_VALUE : System.nanoTime() + timeBudgetMillis * 1000000;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        if (!cancelled && ((deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)
+                || (parent != null && parent.isCancelled()))) {
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException If the token has been cancelled
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("The computation has been cancelled");
+        }
+    }
+}
@@ -22,15 +22,30 @@ public class CriticalPair {
     private final GrammarRule r1, r2;
     private final HeapConfigurationContext context;
     private final Joinability joinability;
+    // The canonical forms of both rule applications (computed on first access)
+    private volatile HeapConfiguration canonical1, canonical2;
+    // The number of isomorphic critical pairs this critical pair represents (see CriticalPairFinder)
+    private int multiplicity = 1;
 
     public CriticalPair(NodeOverlapping nodeOverlapping, EdgeOverlapping edgeOverlapping, ConfluenceWrapperGrammar grammar, GrammarRule r1, GrammarRule r2) {
+        // 1. Compute the joint graph
+        this(new JointHeapConfiguration(edgeOverlapping, nodeOverlapping), nodeOverlapping.getContext(), grammar, r1, r2);
+    }
+
+    /**
+     * Creates a critical pair for an already computed joint graph. The joinability is computed with respect to the
+     * given grammar, so this can be used to reevaluate the overlapping of two rules in a modified grammar.
+     *
+     * @param jointHeapConfiguration The joint graph of the right hand sides of r1 and r2
+     * @param context The context that contains the (collapsed) right hand sides of r1 and r2
+     */
+    public CriticalPair(JointHeapConfiguration jointHeapConfiguration, HeapConfigurationContext context, ConfluenceWrapperGrammar grammar, GrammarRule r1, GrammarRule r2) {
         this.grammar = grammar;
         this.r1 = r1;
         this.r2 = r2;
-        this.context = nodeOverlapping.getContext();
+        this.context = context;
+        this.jointHeapConfiguration = jointHeapConfiguration;
         VF2IsomorphismChecker checker = new VF2IsomorphismChecker();
-        // 1. Compute the joint graph
-        jointHeapConfiguration = new JointHeapConfiguration(edgeOverlapping, nodeOverlapping);
 
         // 2. Compute fully abstracted heap configuration (apply r1 first)
         HeapConfiguration fullyAbstracted1 = getCanonical1();
@@ -63,6 +78,21 @@ public class CriticalPair {
         }
     }
 
+    /**
+     * Creates a copy of the critical pair for a modified grammar in which the canonical forms of both rule
+     * applications are still the same (see AbstractionRuleDelta). The joinability is not computed again.
+     */
+    CriticalPair(CriticalPair criticalPair, ConfluenceWrapperGrammar grammar, GrammarRule r1, GrammarRule r2) {
+        this.grammar = grammar;
+        this.r1 = r1;
+        this.r2 = r2;
+        this.context = criticalPair.context;
+        this.jointHeapConfiguration = criticalPair.jointHeapConfiguration;
+        this.joinability = criticalPair.joinability;
+        this.canonical1 = criticalPair.canonical1;
+        this.canonical2 = criticalPair.canonical2;
+    }
+
     public JointHeapConfiguration getJointHeapConfiguration() {
         return jointHeapConfiguration;
     }
@@ -87,12 +117,44 @@ public class CriticalPair {
         return applyMatching(r2.getNonterminal(), jointHeapConfiguration.getMatching2(), externalIndicesMap);
     }
 
+    /**
+     * Returns the canonical form of the HeapConfiguration with rule1 applied. The result is computed once and shared,
+     * so it must not be modified.
+     */
     public HeapConfiguration getCanonical1() {
-        return grammar.getCanonicalizationStrategy().canonicalize(this.getRule1Applied());
+        HeapConfiguration result = canonical1;
+        if (result == null) {
+            synchronized (this) {
+                result = canonical1;
+                if (result == null) {
+                    result = grammar.getCanonicalizationCache().canonicalize(this.getRule1Applied());
+                    canonical1 = result;
+                    return result;
+                }
+            }
+        }
+        grammar.getCanonicalizationCache().logMemoizedHit();
+        return result;
     }
 
+    /**
+     * Returns the canonical form of the HeapConfiguration with rule2 applied. The result is computed once and shared,
+     * so it must not be modified.
+     */
     public HeapConfiguration getCanonical2() {
-        return grammar.getCanonicalizationStrategy().canonicalize(this.getRule2Applied());
+        HeapConfiguration result = canonical2;
+        if (result == null) {
+            synchronized (this) {
+                result = canonical2;
+                if (result == null) {
+                    result = grammar.getCanonicalizationCache().canonicalize(this.getRule2Applied());
+                    canonical2 = result;
+                    return result;
+                }
+            }
+        }
+        grammar.getCanonicalizationCache().logMemoizedHit();
+        return result;
     }
 
     private HeapConfiguration applyMatching(Nonterminal nt, Matching matching, TIntArrayList externalIndicesMap) {
@@ -117,6 +179,18 @@ public class CriticalPair {
         return builder.build();
     }
 
+    /**
+     * @return The number of isomorphic critical pairs that have been found for the rules (1 if the critical pairs
+     * have not been deduplicated)
+     */
+    public int getMultiplicity() {
+        return multiplicity;
+    }
+
+    void addIsomorphicCriticalPair() {
+        multiplicity++;
+    }
+
     public GrammarRule getR1() {
         return r1;
     }
@@ -125,6 +199,13 @@ public class CriticalPair {
         return r2;
     }
 
+    /**
+     * @return The context that contains the (collapsed) right hand sides of r1 and r2
+     */
+    public HeapConfigurationContext getContext() {
+        return context;
+    }
+
     @Override
     public int hashCode() {
         // Note: Should also include the joint head configuration and its two rule applications, but then hash code does not stay the same over multiple runs
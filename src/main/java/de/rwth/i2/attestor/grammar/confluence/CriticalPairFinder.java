@@ -4,9 +4,17 @@ import de.rwth.i2.attestor.grammar.*;
 import de.rwth.i2.attestor.grammar.confluence.benchmark.OverlappingStatisticCollector;
 import de.rwth.i2.attestor.grammar.confluence.benchmark.StartStopTimer;
 import de.rwth.i2.attestor.grammar.confluence.jointMorphism.*;
+import gnu.trove.list.array.TIntArrayList;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -19,7 +27,34 @@ import java.util.*;
  * TODO: How to correctly cite in javadoc
  *
  *
- * TODO: Add option to early abort if critical pairs already Strong joinable or weak joinable
+ * If not all critical pairs are required (e.g. to check if a grammar is confluent), the static methods
+ * lazyCriticalPairs, streamCriticalPairs and computeJoinability compute the critical pairs lazily and allow to abort early.
+ *
+ * The options below are set with CriticalPairFinderSettings.
+ *
+ * The rule pairs are independent of each other, so they can optionally be processed in parallel by an executor.
+ * The results of the rule pairs are merged in the same order as in the sequential computation, so the critical pairs
+ * (and their order) do not depend on the executor.
+ *
+ * The overlappings of each rule pair are enumerated breadth first by default. Depth first enumeration
+ * (OverlappingEnumerationOrder.DEPTH_FIRST) only needs memory proportional to the depth of the overlappings and finds
+ * the same critical pairs, but in a different order.
+ *
+ * With symmetry reduction the overlappings that are isomorphic by automorphisms of the right hand sides (that keep the
+ * external nodes fixed) are only enumerated once. If a rule is overlapped with itself, the overlappings that only
+ * differ by swapping the two rule applications are also only considered once. Isomorphic overlappings lead to
+ * isomorphic critical pairs, so only the multiplicity of the critical pairs changes. The number of pruned overlappings is part of the statistic.
+ *
+ * With deduplication a critical pair is not added if the joint graph of an already found critical pair of the same
+ * rules is isomorphic (with respect to both matchings, see JointHeapConfigurationIndex). Instead the multiplicity of
+ * the already found critical pair is incremented, so the number of all critical pairs is still available.
+ *
+ * The sequential computation can be stopped as soon as a given number of critical pairs is not strongly joinable
+ * (e.g. if a completion state cannot be better than the current one anyway) and continued later.
+ *
+ * The computation can be cancelled with a CancellationToken. The token is checked between the rule pairs and between
+ * the edge overlappings of a rule pair. A cancelled computation throws a CancellationException and can be continued
+ * later like a computation that was stopped at a threshold.
  *
  * # Benchmarks:
  *
@@ -34,106 +69,531 @@ public class CriticalPairFinder {
     private Joinability joinabilityResult;
     final private Collection<CriticalPair> criticalPairs;
     final private ConfluenceWrapperGrammar underlyingGrammar;
-    private StartStopTimer timer; // Measure the time of the whole critical pair detection
-    private OverlappingStatisticCollector edgeOverlappingStatistic = new OverlappingStatisticCollector();
-    private OverlappingStatisticCollector nodeOverlappingStatistic = new OverlappingStatisticCollector();
-    private OverlappingStatisticCollector validOverlappingStatistic = new OverlappingStatisticCollector();
+    // The results of all rule pairs (in the order of computation). Used to incrementally compute the critical pairs of modified grammars.
+    final private List<RulePairResult> rulePairResults;
+    // The settings without parent finder (so the parent can be garbage collected)
+    final private CriticalPairFinderSettings settings;
+    private final StartStopTimer timer = new StartStopTimer(); // Measure the time of the whole critical pair detection
+    private OverlappingStatisticCollector edgeOverlappingStatistic = OverlappingStatisticCollector.create();
+    private OverlappingStatisticCollector nodeOverlappingStatistic = OverlappingStatisticCollector.create();
+    private OverlappingStatisticCollector validOverlappingStatistic = OverlappingStatisticCollector.create();
+    private int numberComputedRulePairs = 0;
+    private int numberReusedRulePairs = 0;
+    private int numberSkippedRulePairs = 0;  // Rule pairs rejected by the RulePairPrefilter of the grammar
+    // The number of critical pairs that are not strongly joinable (including multiplicities)
+    private int numberNotStronglyJoinable = 0;
+    // The rule pairs that have not been processed yet (only if the computation was stopped at a threshold)
+    private final Deque<Callable<RulePairResult>> remainingTasks = new ArrayDeque<>();
+    private int numberDuplicateCriticalPairs = 0;
+    private int numberReusedJoinabilities = 0;  // Critical pairs whose joinability was taken from the parent finder
 
     public CriticalPairFinder(ConfluenceWrapperGrammar grammar) {
+        this(grammar, new CriticalPairFinderSettings());
+    }
+
+    /**
+     * @param grammar The grammar for which the critical pairs are computed
+     * @param settings Determines how the critical pairs are computed (see CriticalPairFinderSettings)
+     * @throws CancellationException If the computation has been cancelled
+     */
+    public CriticalPairFinder(ConfluenceWrapperGrammar grammar, CriticalPairFinderSettings settings) {
         this.underlyingGrammar = grammar;
+        this.settings = new CriticalPairFinderSettings(settings).setParentFinder(null);
         this.criticalPairs = new ArrayList<>();
+        this.rulePairResults = new ArrayList<>();
         this.joinabilityResult = Joinability.STRONGLY_JOINABLE;
 
-        computeAllCriticalPairs();
+        computeAllCriticalPairs(settings.getParentFinder(), settings.getExecutor(), settings.getMaxNumberNotStronglyJoinable());
     }
 
-    private void computeAllCriticalPairs() {
-        timer = new StartStopTimer();
+    private void computeAllCriticalPairs(CriticalPairFinder parentFinder, ExecutorService executor, int maxNumberNotStronglyJoinable) {
         timer.startTimer();
 
         // Add critical pairs for all getCombinations of rules
 
-        // 1. Convert to a list to reference each rule by one index
-        List<GrammarRule> individualGrammarRules = new ArrayList<>(underlyingGrammar.getActiveRules());
+        // 1. Collect the rule pairs of the parent whose overlappings are still valid
+        Map<List<String>, RulePairResult> reusableResults = getReusableRulePairResults(parentFinder);
+        AbstractionRuleDelta abstractionRuleDelta = reusableResults.isEmpty() ? null
+                : AbstractionRuleDelta.compute(parentFinder.underlyingGrammar, underlyingGrammar);
 
         // 2. Iterate over all pairs of individual grammar rules and add the critical pairs for each pair
+        int numberActiveRules = underlyingGrammar.getActiveRules().size();
+        List<GrammarRule[]> rulePairs = getRulePairs(underlyingGrammar);
+        numberSkippedRulePairs = numberActiveRules * (numberActiveRules + 1) / 2 - rulePairs.size();
+        List<Callable<RulePairResult>> tasks = new ArrayList<>();
+        for (GrammarRule[] rulePair : rulePairs) {
+            GrammarRule r1 = rulePair[0];
+            GrammarRule r2 = rulePair[1];
+            RulePairResult parentResult = reusableResults.get(Arrays.asList(r1.getRuleIdentifier(), r2.getRuleIdentifier()));
+            if (parentResult != null && isUnchangedRule(parentResult.r1, r1) && isUnchangedRule(parentResult.r2, r2)) {
+                // The overlappings of both rules have already been computed
+                numberReusedRulePairs++;
+                tasks.add(() -> reevaluateRulePairResult(parentResult, r1, r2, abstractionRuleDelta));
+            } else {
+                numberComputedRulePairs++;
+                tasks.add(() -> computeCriticalPairsForCollapsedRule(r1, r2));
+            }
+        }
+
+        remainingTasks.addAll(tasks);
+        try {
+            if (executor == null) {
+                processRemainingTasks(maxNumberNotStronglyJoinable);
+            } else {
+                processRemainingTasks(executor);
+            }
+        } finally {
+            timer.stopTimer();
+        }
+    }
 
+    /**
+     * Returns the pairs of active rules in the order in which their critical pairs are computed (also used by
+     * CriticalPairIterator, so both compute the same critical pairs). Rule pairs whose rules do not have any dependent
+     * overlapping (see RulePairPrefilter) are skipped.
+     *
+     * @return The rule pairs (r1, r2)
+     */
+    static List<GrammarRule[]> getRulePairs(ConfluenceWrapperGrammar grammar) {
+        // Convert to a list to reference each rule by one index
+        List<GrammarRule> individualGrammarRules = new ArrayList<>(grammar.getActiveRules());
+        RulePairPrefilter prefilter = grammar.getRulePairPrefilter();
+        List<GrammarRule[]> result = new ArrayList<>();
         for (int i = 0; i < individualGrammarRules.size(); i++) {
             for (int j = i; j < individualGrammarRules.size(); j++) {
                 GrammarRule r1 = individualGrammarRules.get(i);
                 GrammarRule r2 = individualGrammarRules.get(j);
-                addCriticalPairsForCollapsedRule(r1, r2);
+                if (prefilter.mayOverlap(r1, r2)) {
+                    result.add(new GrammarRule[] {r1, r2});
+                }
             }
         }
+        return result;
+    }
 
-        timer.stopTimer();
+    /**
+     * Submits one task per remaining rule pair and merges the results in the order of the sequential computation
+     */
+    private void processRemainingTasks(ExecutorService executor) {
+        List<Future<RulePairResult>> futures = new ArrayList<>();
+        for (Callable<RulePairResult> task : remainingTasks) {
+            futures.add(executor.submit(() -> {
+                settings.getCancellation().throwIfCancelled();
+                return task.call();
+            }));
+        }
+        try {
+            for (Future<RulePairResult> future : futures) {
+                addRulePairResult(future.get());
+                remainingTasks.poll();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Critical pair detection was interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IllegalStateException("Critical pair detection failed", e.getCause());
+        }
     }
 
+    /**
+     * Processes the remaining rule pairs sequentially until there are at least maxNumberNotStronglyJoinable critical
+     * pairs that are not strongly joinable
+     */
+    private void processRemainingTasks(int maxNumberNotStronglyJoinable) {
+        while (!remainingTasks.isEmpty() && numberNotStronglyJoinable < maxNumberNotStronglyJoinable) {
+            settings.getCancellation().throwIfCancelled();
+            RulePairResult result;
+            try {
+                result = remainingTasks.peek().call();
+            } catch (CancellationException e) {
+                // The rule pair stays in remainingTasks, so the computation can be continued
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Critical pair detection failed", e);
+            }
+            remainingTasks.poll();
+            addRulePairResult(result);
+        }
+    }
 
+    /**
+     * Continues a computation that was stopped at a threshold (see CriticalPairFinderSettings). The rule pairs are
+     * processed in the same order, so the result of a complete computation is the same as without threshold.
+     *
+     * @param maxNumberNotStronglyJoinable The new threshold (Integer.MAX_VALUE to compute all critical pairs)
+     * @throws CancellationException If the computation has been cancelled
+     */
+    public void continueComputation(int maxNumberNotStronglyJoinable) {
+        if (!remainingTasks.isEmpty()) {
+            timer.startTimer();
+            try {
+                processRemainingTasks(maxNumberNotStronglyJoinable);
+            } finally {
+                timer.stopTimer();
+            }
+        }
+    }
+
+    /**
+     * @return False if the computation was stopped at a threshold and there are still rule pairs to process
+     */
+    public boolean isComplete() {
+        return remainingTasks.isEmpty();
+    }
+
+    /**
+     * @return The number of critical pairs found so far that are not strongly joinable (including multiplicities)
+     */
+    public int getNumberNotStronglyJoinable() {
+        return numberNotStronglyJoinable;
+    }
+
+    /**
+     * Returns the rule pair results of parentFinder indexed by the identifiers of the two rules. Only results of rule
+     * pairs in the same grammar (name) are returned. The caller still has to check that the rules are unchanged.
+     */
+    private Map<List<String>, RulePairResult> getReusableRulePairResults(CriticalPairFinder parentFinder) {
+        if (parentFinder == null || !parentFinder.underlyingGrammar.getGrammarName().equals(underlyingGrammar.getGrammarName())) {
+            return Collections.emptyMap();
+        }
+        Map<List<String>, RulePairResult> result = new HashMap<>();
+        for (RulePairResult rulePairResult : parentFinder.rulePairResults) {
+            result.put(Arrays.asList(rulePairResult.r1.getRuleIdentifier(), rulePairResult.r2.getRuleIdentifier()), rulePairResult);
+        }
+        return result;
+    }
+
+    /**
+     * A rule is unchanged if it still has the same left hand side and the same right hand side object
+     * (heap configurations of rules are never modified, modified rules always get a new heap configuration).
+     */
+    private static boolean isUnchangedRule(GrammarRule oldRule, GrammarRule newRule) {
+        return oldRule.getHeapConfiguration() == newRule.getHeapConfiguration()
+                && oldRule.getNonterminal().equals(newRule.getNonterminal());
+    }
+
+    private void addRulePairResult(RulePairResult rulePairResult) {
+        rulePairResults.add(rulePairResult);
+        criticalPairs.addAll(rulePairResult.criticalPairs);
+        joinabilityResult = joinabilityResult.getCollectiveJoinability(rulePairResult.joinability);
+        edgeOverlappingStatistic.merge(rulePairResult.edgeOverlappingStatistic);
+        nodeOverlappingStatistic.merge(rulePairResult.nodeOverlappingStatistic);
+        validOverlappingStatistic.merge(rulePairResult.validOverlappingStatistic);
+        numberDuplicateCriticalPairs += rulePairResult.numberDuplicates;
+        numberReusedJoinabilities += rulePairResult.numberReusedJoinabilities;
+        for (CriticalPair criticalPair : rulePairResult.criticalPairs) {
+            if (criticalPair.getJoinability() != Joinability.STRONGLY_JOINABLE) {
+                numberNotStronglyJoinable += criticalPair.getMultiplicity();
+            }
+        }
+    }
+
+    /**
+     * The critical pairs and statistics of a single pair of rules
+     */
+    private static class RulePairResult {
+        final ConfluenceWrapperGrammar grammar;
+        final GrammarRule r1, r2;
+        final HeapConfigurationContext context;
+        // The joint graphs of all overlappings that are not independent (also the ones that are blocked)
+        final List<JointHeapConfiguration> jointHeapConfigurations = new ArrayList<>();
+        final TIntArrayList jointHeapConfigurationLevels = new TIntArrayList();  // The overlapping level of each joint graph
+        final List<CriticalPair> criticalPairs = new ArrayList<>();
+        Joinability joinability = Joinability.STRONGLY_JOINABLE;
+        final OverlappingStatisticCollector edgeOverlappingStatistic = OverlappingStatisticCollector.create();
+        final OverlappingStatisticCollector nodeOverlappingStatistic = OverlappingStatisticCollector.create();
+        final OverlappingStatisticCollector validOverlappingStatistic = OverlappingStatisticCollector.create();
+        // The critical pairs by their joint graphs (null if the critical pairs are not deduplicated)
+        final JointHeapConfigurationIndex<CriticalPair> criticalPairIndex;
+        int numberDuplicates = 0;
+        int numberReusedJoinabilities = 0;
+
+        RulePairResult(ConfluenceWrapperGrammar grammar, GrammarRule r1, GrammarRule r2, HeapConfigurationContext context,
+                       boolean deduplicate) {
+            this.grammar = grammar;
+            this.r1 = r1;
+            this.r2 = r2;
+            this.context = context;
+            this.criticalPairIndex = deduplicate ? new JointHeapConfigurationIndex<>(context) : null;
+        }
+
+        /**
+         * Adds the joint graph of an overlapping that is not independent (the joint graph itself is not added)
+         *
+         * @param parentCriticalPair The critical pair of the joint graph in a previous version of the grammar whose
+         *                           joinability is still valid (null to compute the joinability)
+         * @return The new critical pair (null if the abstraction of the joint graph is blocked or the critical pair
+         * is isomorphic to an existing one)
+         */
+        CriticalPair addCriticalPair(JointHeapConfiguration jointHeapConfiguration, int level, CriticalPair parentCriticalPair) {
+            if (criticalPairIndex != null) {
+                CriticalPair isomorphicCriticalPair = criticalPairIndex.get(jointHeapConfiguration);
+                if (isomorphicCriticalPair != null) {
+                    // The critical pair would be isomorphic to an existing one (and is therefore also not blocked)
+                    isomorphicCriticalPair.addIsomorphicCriticalPair();
+                    numberDuplicates++;
+                    return null;
+                }
+            }
+            CriticalPair newCriticalPair;
+            if (parentCriticalPair != null) {
+                // Both grammars block the same heap configurations, so the abstraction is not blocked either
+                newCriticalPair = new CriticalPair(parentCriticalPair, grammar, r1, r2);
+                numberReusedJoinabilities++;
+            } else if (!grammar.blockHeapAbstraction(jointHeapConfiguration.getHeapConfiguration())) {
+                // This is only a critical pair if the abstraction is not blocked by the grammar
+                newCriticalPair = new CriticalPair(jointHeapConfiguration, context, grammar, r1, r2);
+            } else {
+                return null;
+            }
+            if (criticalPairIndex != null) {
+                criticalPairIndex.put(jointHeapConfiguration, newCriticalPair);
+            }
+            criticalPairs.add(newCriticalPair);
+            joinability = joinability.getCollectiveJoinability(newCriticalPair.getJoinability());
+            validOverlappingStatistic.logPruning(level);
+            return newCriticalPair;
+        }
+    }
 
     /**
-     * This method computes all possible jointly surjective morphisms g1, g2 such that (g1: l1 -> s, g2: l2 -> s)
+     * Enumerates all possible jointly surjective morphisms g1, g2 such that (g1: l1 -> s, g2: l2 -> s)
      * for the two right hand sides (l1, l2) of the rules r1, r2.
      * For each of these morphisms we check if it induces a critical pair.
      *
-     * @param r1 The first rule
-     * @param r2 The second rule
+     * The overlappings are enumerated step by step (see computeNext), so the CriticalPairFinder and the lazy
+     * CriticalPairIterator compute the critical pairs of a rule pair in the same way.
+     * An enumeration does not modify the state of a CriticalPairFinder, so it can be used from multiple threads.
      */
-    private void addCriticalPairsForCollapsedRule(GrammarRule r1,
-                                                  GrammarRule r2) {
-        CollapsedHeapConfiguration hc1 = r1.getCollapsedHeapConfiguration();
-        CollapsedHeapConfiguration hc2 = r2.getCollapsedHeapConfiguration();
-        HeapConfigurationContext context = new HeapConfigurationContext(hc1, hc2);
+    static class RulePairEnumeration {
+        private final RulePairResult result;
+        private final CriticalPairFinderSettings settings;
+        private Iterator<Overlapping<EdgeGraphElement>> edgeOverlappingIterator = null;  // null until the first step
+        private EdgeOverlapping currentEdgeOverlapping = null;  // null if no node overlappings are enumerated
+        private Iterator<Overlapping<NodeGraphElement>> nodeOverlappingIterator = null;
 
-        // Start to measure time for the edge overlapping computation
-        edgeOverlappingStatistic.startTimer();
+        /**
+         * @param settings Only the enumeration order, symmetry reduction, deduplication and cancellation are used
+         */
+        RulePairEnumeration(ConfluenceWrapperGrammar grammar, GrammarRule r1, GrammarRule r2,
+                            CriticalPairFinderSettings settings) {
+            HeapConfigurationContext context = new HeapConfigurationContext(r1.getCollapsedHeapConfiguration(),
+                    r2.getCollapsedHeapConfiguration());
+            this.result = new RulePairResult(grammar, r1, r2, context, settings.isDeduplicate());
+            this.settings = settings;
+        }
 
-        for (Overlapping eOverlapping : EdgeOverlapping.getEdgeOverlapping(context, edgeOverlappingStatistic)) {
-            EdgeOverlapping edgeOverlapping = (EdgeOverlapping) eOverlapping;
-            // Check if the current edgeOverlapping allows for compatible node overlappings
-            if (edgeOverlapping.isEdgeOverlappingValid()) {
+        /**
+         * Enumerates the overlappings until the next critical pair is found. A critical pair that is isomorphic to an
+         * already returned one is not returned, instead the multiplicity of the returned critical pair is incremented
+         * (if deduplication is enabled). So the multiplicities are only final once all overlappings are enumerated.
+         *
+         * @return The next critical pair (null if all overlappings have been enumerated)
+         * @throws java.util.concurrent.CancellationException If the computation has been cancelled
+         */
+        CriticalPair computeNext() {
+            OverlappingStatisticCollector edgeOverlappingStatistic = result.edgeOverlappingStatistic;
+            OverlappingStatisticCollector nodeOverlappingStatistic = result.nodeOverlappingStatistic;
+            OverlappingStatisticCollector validOverlappingStatistic = result.validOverlappingStatistic;
+            OverlappingEnumerationOrder enumerationOrder = settings.getEnumerationOrder();
 
-                // Pause edge overlapping time and start node overlapping time
-                edgeOverlappingStatistic.stopTimer();
+            // No timer runs between two steps
+            if (currentEdgeOverlapping != null) {
                 nodeOverlappingStatistic.startTimer();
-                for (Overlapping nOverlapping : NodeOverlapping.getNodeOverlapping(edgeOverlapping, nodeOverlappingStatistic)) {
-                    // Found a compatible overlapping
-                    NodeOverlapping nodeOverlapping = (NodeOverlapping) nOverlapping;
+            } else {
+                edgeOverlappingStatistic.startTimer();
+                if (edgeOverlappingIterator == null) {
+                    edgeOverlappingIterator = EdgeOverlapping.getEdgeOverlapping(result.context, edgeOverlappingStatistic,
+                            settings.isSymmetryReduction()).inOrder(enumerationOrder).iterator();
+                }
+            }
+
+            while (true) {
+                if (currentEdgeOverlapping != null) {
+                    while (nodeOverlappingIterator.hasNext()) {
+                        // Found a compatible overlapping
+                        NodeOverlapping nodeOverlapping = (NodeOverlapping) nodeOverlappingIterator.next();
 
-                    // Check that the rule applications are not independent (They should share at least one internal node)
-                    if (!nodeOverlapping.isNodeOverlappingIndependent()) {
+                        // Check that the rule applications are not independent (They should share at least one internal node)
+                        if (nodeOverlapping.isNodeOverlappingIndependent()) {
+                            nodeOverlappingStatistic.logPruning(nodeOverlapping.getLevel());
+                            continue;
+                        }
+                        if (!nodeOverlapping.isSwapRepresentative(currentEdgeOverlapping)) {
+                            // The overlapping with swapped rules is isomorphic and enumerated as well
+                            nodeOverlappingStatistic.logSymmetryPruning(nodeOverlapping.getLevel());
+                            continue;
+                        }
                         nodeOverlappingStatistic.stopTimer();
                         validOverlappingStatistic.startTimer();
 
-                        CriticalPair newCriticalPair = new CriticalPair(nodeOverlapping, edgeOverlapping, underlyingGrammar, r1, r2);
-                        if (!underlyingGrammar.blockHeapAbstraction(newCriticalPair.getJointHeapConfiguration().getHeapConfiguration())) {
-                            // This is only a critical pair if the abstraction is not blocked by the grammar
-                            criticalPairs.add(newCriticalPair);
-                            joinabilityResult = joinabilityResult.getCollectiveJoinability(newCriticalPair.getJoinability());
-                            validOverlappingStatistic.logPruning(nodeOverlapping.getLevel());
-                        }
+                        JointHeapConfiguration jointHeapConfiguration = new JointHeapConfiguration(currentEdgeOverlapping, nodeOverlapping);
+                        result.jointHeapConfigurations.add(jointHeapConfiguration);
+                        result.jointHeapConfigurationLevels.add(nodeOverlapping.getLevel());
+                        CriticalPair criticalPair = result.addCriticalPair(jointHeapConfiguration, nodeOverlapping.getLevel(), null);
+
                         validOverlappingStatistic.stopTimer();
+                        if (criticalPair != null) {
+                            return criticalPair;
+                        }
                         nodeOverlappingStatistic.startTimer();
-                    } else {
-                        nodeOverlappingStatistic.logPruning(nodeOverlapping.getLevel());
                     }
+
+                    // Continue edge overlapping time and stop node overlapping time
+                    currentEdgeOverlapping = null;
+                    nodeOverlappingIterator = null;
+                    nodeOverlappingStatistic.stopTimer();
+                    edgeOverlappingStatistic.startTimer();
                 }
 
-                // Continue edge overlapping time and stop node overlapping time
-                nodeOverlappingStatistic.stopTimer();
-                edgeOverlappingStatistic.startTimer();
-            } else {
-                edgeOverlappingStatistic.logPruning(edgeOverlapping.getLevel());
+                if (!edgeOverlappingIterator.hasNext()) {
+                    edgeOverlappingStatistic.stopTimer();
+                    return null;
+                }
+                EdgeOverlapping edgeOverlapping = (EdgeOverlapping) edgeOverlappingIterator.next();
+                settings.getCancellation().throwIfCancelled();
+                // Check if the current edgeOverlapping allows for compatible node overlappings
+                if (edgeOverlapping.isEdgeOverlappingValid()) {
+                    // Pause edge overlapping time and start node overlapping time
+                    edgeOverlappingStatistic.stopTimer();
+                    nodeOverlappingStatistic.startTimer();
+                    currentEdgeOverlapping = edgeOverlapping;
+                    nodeOverlappingIterator = NodeOverlapping.getNodeOverlapping(edgeOverlapping, nodeOverlappingStatistic)
+                            .inOrder(enumerationOrder).iterator();
+                } else {
+                    edgeOverlappingStatistic.logPruning(edgeOverlapping.getLevel());
+                }
             }
         }
+    }
 
-        edgeOverlappingStatistic.stopTimer();
+    /**
+     * Computes the critical pairs of two rules from scratch. This method does not modify the state of the
+     * CriticalPairFinder, so it can be called from multiple threads.
+     *
+     * @param r1 The first rule
+     * @param r2 The second rule
+     * @return The critical pairs of the two rules together with the statistics of their computation
+     */
+    private RulePairResult computeCriticalPairsForCollapsedRule(GrammarRule r1, GrammarRule r2) {
+        RulePairEnumeration enumeration = new RulePairEnumeration(underlyingGrammar, r1, r2, settings);
+        while (enumeration.computeNext() != null) {
+            // The critical pairs are added to the result of the enumeration
+        }
+        return enumeration.result;
+    }
+
+    /**
+     * Computes the critical pairs of two unchanged rules from the joint graphs that have been computed for a previous
+     * version of the grammar. The joinability of each joint graph is computed again in the current grammar, unless
+     * the changed abstraction rules cannot affect the canonicalization of the joint graph.
+     *
+     * @param abstractionRuleDelta The changed abstraction rules (null if all joinabilities have to be recomputed)
+     */
+    private RulePairResult reevaluateRulePairResult(RulePairResult parentResult, GrammarRule r1, GrammarRule r2,
+                                                    AbstractionRuleDelta abstractionRuleDelta) {
+        RulePairResult result = new RulePairResult(underlyingGrammar, r1, r2, parentResult.context, settings.isDeduplicate());
+        result.validOverlappingStatistic.startTimer();
+        Map<JointHeapConfiguration, CriticalPair> parentCriticalPairs = new IdentityHashMap<>();
+        if (abstractionRuleDelta != null) {
+            for (CriticalPair criticalPair : parentResult.criticalPairs) {
+                parentCriticalPairs.put(criticalPair.getJointHeapConfiguration(), criticalPair);
+            }
+        }
+        for (int i = 0; i < parentResult.jointHeapConfigurations.size(); i++) {
+            JointHeapConfiguration jointHeapConfiguration = parentResult.jointHeapConfigurations.get(i);
+            int level = parentResult.jointHeapConfigurationLevels.get(i);
+            result.jointHeapConfigurations.add(jointHeapConfiguration);
+            result.jointHeapConfigurationLevels.add(level);
+            CriticalPair parentCriticalPair = parentCriticalPairs.get(jointHeapConfiguration);
+            if (parentCriticalPair != null && abstractionRuleDelta.mayAffectCanonicalization(jointHeapConfiguration.getHeapConfiguration())) {
+                parentCriticalPair = null;
+            }
+            result.addCriticalPair(jointHeapConfiguration, level, parentCriticalPair);
+        }
+        result.validOverlappingStatistic.stopTimer();
+        return result;
+    }
+
+    /**
+     * Lazily computes the critical pairs of the grammar (the same critical pairs in the same order as
+     * new CriticalPairFinder(grammar)). Each call to iterator() starts a new computation.
+     *
+     * @param maxJoinability Only critical pairs that are joinable by at most maxJoinability are returned
+     */
+    public static Iterable<CriticalPair> lazyCriticalPairs(ConfluenceWrapperGrammar grammar, Joinability maxJoinability) {
+        return lazyCriticalPairs(grammar, new CriticalPairFinderSettings(), maxJoinability);
+    }
+
+    /**
+     * Lazily computes the critical pairs of the grammar (the same critical pairs in the same order as
+     * new CriticalPairFinder(grammar, settings), see CriticalPairIterator). Each call to iterator() starts a new
+     * computation.
+     *
+     * @param maxJoinability Only critical pairs that are joinable by at most maxJoinability are returned
+     */
+    public static Iterable<CriticalPair> lazyCriticalPairs(ConfluenceWrapperGrammar grammar, CriticalPairFinderSettings settings,
+                                                           Joinability maxJoinability) {
+        CriticalPairFinderSettings iteratorSettings = new CriticalPairFinderSettings(settings);
+        return () -> new CriticalPairIterator(grammar, iteratorSettings, maxJoinability);
+    }
+
+    /**
+     * Same as lazyCriticalPairs but returns a sequential stream. Short-circuiting operations (e.g. findFirst, limit)
+     * stop the computation of further critical pairs.
+     */
+    public static Stream<CriticalPair> streamCriticalPairs(ConfluenceWrapperGrammar grammar, Joinability maxJoinability) {
+        return StreamSupport.stream(lazyCriticalPairs(grammar, maxJoinability).spliterator(), false);
+    }
+
+    /**
+     * Computes the collective joinability of all critical pairs, but stops as soon as a critical pair with a
+     * joinability of at most abortJoinability is found.
+     * E.g. with abortJoinability == WEAKLY_JOINABLE the result is STRONGLY_JOINABLE if and only if the grammar is
+     * confluent, but the computation stops at the first critical pair that is not strongly joinable.
+     *
+     * @return The collective joinability of all critical pairs that have been computed before the abort
+     */
+    public static Joinability computeJoinability(ConfluenceWrapperGrammar grammar, Joinability abortJoinability) {
+        Joinability result = Joinability.STRONGLY_JOINABLE;
+        // Critical pairs that cannot trigger the abort are still required for the collective joinability
+        for (CriticalPair criticalPair : lazyCriticalPairs(grammar, Joinability.STRONGLY_JOINABLE)) {
+            result = result.getCollectiveJoinability(criticalPair.getJoinability());
+            if (criticalPair.getJoinability().getValue() <= abortJoinability.getValue()) {
+                return result;
+            }
+        }
+        return result;
     }
 
     public Collection<CriticalPair> getCriticalPairs() {
         return Collections.unmodifiableCollection(criticalPairs);
     }
 
+    /**
+     * @return The number of critical pairs including the ones that are only represented by the multiplicity of an
+     * isomorphic critical pair
+     */
+    public int getNumberCriticalPairs() {
+        return getNumberCriticalPairs(criticalPairs);
+    }
+
+    /**
+     * @return The sum of the multiplicities of the given critical pairs
+     */
+    public static int getNumberCriticalPairs(Collection<CriticalPair> criticalPairs) {
+        int result = 0;
+        for (CriticalPair criticalPair : criticalPairs) {
+            result += criticalPair.getMultiplicity();
+        }
+        return result;
+    }
+
     /**
      * Returns the critical pairs that are joinable by at most the given joinability.
      * So if maxJoinability == WEAKLY_JOINABLE then only critical pairs that are not joinable or weakly joinable are returned.
@@ -158,6 +618,15 @@ public class CriticalPairFinder {
         result.put("nodeOverlappingStatistic", nodeOverlappingStatistic.getJsonStatistic());
         result.put("validOverlappingStatistic", validOverlappingStatistic.getJsonStatistic());
         result.put("completeRuntime", timer.getRuntime());
+        result.put("numberComputedRulePairs", numberComputedRulePairs);
+        result.put("numberReusedRulePairs", numberReusedRulePairs);
+        result.put("numberSkippedRulePairs", numberSkippedRulePairs);
+        result.put("numberRemainingRulePairs", remainingTasks.size());
+        result.put("numberDuplicateCriticalPairs", numberDuplicateCriticalPairs);
+        result.put("numberReusedJoinabilities", numberReusedJoinabilities);
+        result.put("canonicalizationCacheStatistic", underlyingGrammar.getCanonicalizationCache().getJsonStatistic());
+        result.put("numberSymmetryPrunedOverlappings", edgeOverlappingStatistic.getNumberSymmetryPruned()
+                + nodeOverlappingStatistic.getNumberSymmetryPruned());
         return result;
     }
 }
@@ -0,0 +1,150 @@
+package de.rwth.i2.attestor.grammar.confluence;
+
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.OverlappingEnumerationOrder;
+import de.rwth.i2.attestor.phases.communication.InputSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Determines how a CriticalPairFinder computes the critical pairs. The default settings compute all critical pairs of
+ * a grammar sequentially and from scratch (the same as new CriticalPairFinder(grammar)).
+ */
+public class CriticalPairFinderSettings {
+
+    private CriticalPairFinder parentFinder = null;
+    private ExecutorService executor = null;
+    private OverlappingEnumerationOrder enumerationOrder = OverlappingEnumerationOrder.BREADTH_FIRST;
+    private boolean symmetryReduction = false;
+    private boolean deduplicate = false;
+    private int maxNumberNotStronglyJoinable = Integer.MAX_VALUE;
+    private CancellationToken cancellation = CancellationToken.NONE;
+
+    public CriticalPairFinderSettings() {
+    }
+
+    /**
+     * Creates a copy of the given settings
+     */
+    public CriticalPairFinderSettings(CriticalPairFinderSettings settings) {
+        this.parentFinder = settings.parentFinder;
+        this.executor = settings.executor;
+        this.enumerationOrder = settings.enumerationOrder;
+        this.symmetryReduction = settings.symmetryReduction;
+        this.deduplicate = settings.deduplicate;
+        this.maxNumberNotStronglyJoinable = settings.maxNumberNotStronglyJoinable;
+        this.cancellation = settings.cancellation;
+    }
+
+    /**
+     * Creates the settings selected on the command line (see ConfluenceCommandLinePhase). If more than one critical
+     * pair worker is selected, the settings contain a new executor, which has to be shut down by the caller.
+     */
+    public static CriticalPairFinderSettings fromInputSettings(InputSettings inputSettings) {
+        CriticalPairFinderSettings settings = new CriticalPairFinderSettings()
+                .setEnumerationOrder(inputSettings.getOverlappingEnumerationOrder())
+                .setSymmetryReduction(inputSettings.isSymmetryReduction());
+        if (inputSettings.getCriticalPairWorkers() > 1) {
+            settings.setExecutor(Executors.newFixedThreadPool(inputSettings.getCriticalPairWorkers()));
+        }
+        return settings;
+    }
+
+    public CriticalPairFinder getParentFinder() {
+        return parentFinder;
+    }
+
+    /**
+     * Computes the critical pairs of a grammar that was derived from the grammar of parentFinder (e.g. with
+     * ConfluenceWrapperGrammar.getModifiedGrammar). The overlappings of rule pairs whose rules are unchanged are taken
+     * from parentFinder, so only rule pairs involving added or reactivated rules have to be enumerated. Rule pairs
+     * involving deactivated or removed rules are dropped. The joinability of the reused overlappings is recomputed in
+     * the new grammar (unless no changed abstraction rule can affect it, see AbstractionRuleDelta), so the result is the
+     * same as computing the critical pairs from scratch.
+     *
+     * @param parentFinder The critical pairs of a previous version of the grammar (null to compute from scratch)
+     */
+    public CriticalPairFinderSettings setParentFinder(CriticalPairFinder parentFinder) {
+        this.parentFinder = parentFinder;
+        return this;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor The executor used to process the rule pairs in parallel. If set to null the critical pairs are
+     *                 computed sequentially in the current thread.
+     */
+    public CriticalPairFinderSettings setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public OverlappingEnumerationOrder getEnumerationOrder() {
+        return enumerationOrder;
+    }
+
+    /**
+     * @param enumerationOrder The order in which the edge and node overlappings of a rule pair are enumerated
+     */
+    public CriticalPairFinderSettings setEnumerationOrder(OverlappingEnumerationOrder enumerationOrder) {
+        this.enumerationOrder = enumerationOrder;
+        return this;
+    }
+
+    public boolean isSymmetryReduction() {
+        return symmetryReduction;
+    }
+
+    /**
+     * @param symmetryReduction If true only one of several isomorphic overlappings is considered
+     */
+    public CriticalPairFinderSettings setSymmetryReduction(boolean symmetryReduction) {
+        this.symmetryReduction = symmetryReduction;
+        return this;
+    }
+
+    public boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * @param deduplicate If true only one representative of isomorphic critical pairs is kept (with its multiplicity)
+     */
+    public CriticalPairFinderSettings setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+        return this;
+    }
+
+    public int getMaxNumberNotStronglyJoinable() {
+        return maxNumberNotStronglyJoinable;
+    }
+
+    /**
+     * Stops the computation as soon as at least maxNumberNotStronglyJoinable critical pairs (including multiplicities)
+     * are not strongly joinable. The rule pairs are still processed completely, so more critical pairs might be found.
+     * The remaining rule pairs can be processed later with CriticalPairFinder.continueComputation. The threshold is
+     * only used for the sequential computation (no executor).
+     *
+     * @param maxNumberNotStronglyJoinable The threshold at which the computation stops (Integer.MAX_VALUE to compute
+     *                                     all critical pairs)
+     */
+    public CriticalPairFinderSettings setMaxNumberNotStronglyJoinable(int maxNumberNotStronglyJoinable) {
+        this.maxNumberNotStronglyJoinable = maxNumberNotStronglyJoinable;
+        return this;
+    }
+
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * @param cancellation The token that cancels the computation (also used by CriticalPairFinder.continueComputation)
+     */
+    public CriticalPairFinderSettings setCancellation(CancellationToken cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+}
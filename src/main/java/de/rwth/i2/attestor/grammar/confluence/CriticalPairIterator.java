@@ -0,0 +1,58 @@
+package de.rwth.i2.attestor.grammar.confluence;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.util.SimpleIterator;
+
+import java.util.Iterator;
+
+/**
+ * Lazily computes the critical pairs of a grammar. The critical pairs are computed in the same way and returned in the
+ * same order as by a CriticalPairFinder with the same settings (both use CriticalPairFinder.getRulePairs and
+ * CriticalPairFinder.RulePairEnumeration), but the next critical pair is only computed when it is requested. This
+ * allows to stop the computation as soon as the answer to a question is known (e.g. is the grammar confluent).
+ *
+ * The critical pairs are always computed sequentially and from scratch (the executor, parent finder and threshold of
+ * the settings are ignored). With deduplication the multiplicity of a returned critical pair is only final once the
+ * iterator has continued with the next rule pair (or has no more critical pairs).
+ *
+ * Only critical pairs with a joinability of at most maxJoinability are returned.
+ */
+class CriticalPairIterator extends SimpleIterator<CriticalPair> {
+    private final ConfluenceWrapperGrammar grammar;
+    private final CriticalPairFinderSettings settings;
+    private final Joinability maxJoinability;
+    private final Iterator<GrammarRule[]> rulePairIterator;
+    private CriticalPairFinder.RulePairEnumeration currentRulePair = null;
+
+    CriticalPairIterator(ConfluenceWrapperGrammar grammar, CriticalPairFinderSettings settings, Joinability maxJoinability) {
+        this.grammar = grammar;
+        this.settings = settings;
+        this.maxJoinability = maxJoinability;
+        this.rulePairIterator = CriticalPairFinder.getRulePairs(grammar).iterator();
+    }
+
+    @Override
+    public CriticalPair computeNext() {
+        while (true) {
+            // 1. Search the remaining overlappings of the current rule pair
+            if (currentRulePair != null) {
+                CriticalPair criticalPair;
+                while ((criticalPair = currentRulePair.computeNext()) != null) {
+                    if (criticalPair.getJoinability().getValue() <= maxJoinability.getValue()) {
+                        return criticalPair;
+                    }
+                }
+            }
+
+            // 2. Continue with the next rule pair
+            if (!rulePairIterator.hasNext()) {
+                // All rule pairs have been considered
+                return null;
+            }
+            settings.getCancellation().throwIfCancelled();
+            GrammarRule[] rulePair = rulePairIterator.next();
+            currentRulePair = new CriticalPairFinder.RulePairEnumeration(grammar, rulePair[0], rulePair[1], settings);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.*;
@@ -38,20 +39,33 @@ public class CompletionBenchmarkRunner {
 
 
     /**
-     * Returns all method marked with the BenchmarkCompletionAlgorithm annotation
+     * Returns the results of all methods marked with the BenchmarkCompletionAlgorithm annotation
      */
     private static Iterable<CompletionAlgorithm> getCompletionAlgorithms() {
         List<CompletionAlgorithm> result = new ArrayList<>();
-        for (Method m : ExampleCompletionAlgorithms.class.getDeclaredMethods()) {
+        for (Method m : getCompletionAlgorithmMethods()) {
+            try {
+                result.add((CompletionAlgorithm) m.invoke(null));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return result;
+    }
 
+    /**
+     * Returns all methods marked with the BenchmarkCompletionAlgorithm annotation (each call of such a method creates
+     * a new completion algorithm)
+     */
+    static List<Method> getCompletionAlgorithmMethods() {
+        List<Method> result = new ArrayList<>();
+        for (Method m : ExampleCompletionAlgorithms.class.getDeclaredMethods()) {
             if (m.isAnnotationPresent(BenchmarkCompletionAlgorithm.class)) {
-                try {
-                    result.add((CompletionAlgorithm) m.invoke(null));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                result.add(m);
             }
         }
+        // getDeclaredMethods does not return the methods in a particular order
+        result.sort(Comparator.comparing(Method::getName));
         return result;
     }
 
@@ -87,12 +101,13 @@ public class CompletionBenchmarkRunner {
         JSONObject benchmarkResult = new JSONObject();
         benchmarkResult.put("grammarName", grammar.getGrammarName());
         benchmarkResult.put("initialNumberCriticalPairs", initialNumberCriticalPairs);
-        benchmarkResult.put("finalNumberCriticalPairs", resultingCompletionState.getCriticalPairs().size());
+        benchmarkResult.put("finalNumberCriticalPairs", CriticalPairFinder.getNumberCriticalPairs(resultingCompletionState.getCriticalPairs()));
         benchmarkResult.put("algorithmStatistic", algorithm.getStatistic());
 
         benchmarkResult.put("initialNumberGrammarRules", grammar.getNumberActivatedRules());
         benchmarkResult.put("finalNumberGrammarRules", resultingCompletionState.getGrammar().getNumberActivatedRules());
         benchmarkResult.put("numberAbstractionBlockingRules", resultingCompletionState.getGrammar().getNumberAbstractionBlockingRules());
+        benchmarkResult.put("numberSubsumedAbstractionBlockingRules", resultingCompletionState.getGrammar().getNumberSubsumedAbstractionBlockingRules());
 
         benchmarkResult.put("date", dateTime);
 
@@ -1,24 +1,45 @@
 package de.rwth.i2.attestor.grammar.confluence.benchmark;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Collects how often a completion heuristic has been applied successfully. The collector can be used from multiple
+ * threads (e.g. if the same completion algorithm is executed for multiple grammars in parallel).
+ */
 public class CompletionHeuristicStatisticCollector {
-    private StartStopTimer timer = new StartStopTimer();
-    private int numSuccess = 0;
-    private int numLossFunctionFail = 0;
-    private int numGrammarValidityCheckFail = 0;
+    private static final CompletionHeuristicStatisticCollector NO_OP = new NoOpCollector();
+
+    private final StartStopTimer timer;
+    private final LongAdder numSuccess = new LongAdder();
+    private final LongAdder numLossFunctionFail = new LongAdder();
+    private final LongAdder numGrammarValidityCheckFail = new LongAdder();
 
     // Saves for each heuristic invocation how many tries were needed to successfully apply the heuristic
     // The key is the number tries required and the value is the count of how often this occurred
-    private Map<Integer,Integer> numTriesPerSuccessfulHeuristicInvocation = new HashMap<>();
+    private final Map<Integer, LongAdder> numTriesPerSuccessfulHeuristicInvocation = new ConcurrentHashMap<>();
 
     // Same as above for unsuccessful heuristic application
-    private Map<Integer,Integer> numTriesPerUnsuccessfulHeuristicInvocation = new HashMap<>();
+    private final Map<Integer, LongAdder> numTriesPerUnsuccessfulHeuristicInvocation = new ConcurrentHashMap<>();
+
+    public CompletionHeuristicStatisticCollector() {
+        this(new StartStopTimer());
+    }
+
+    private CompletionHeuristicStatisticCollector(StartStopTimer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * @return A new collector or a collector that ignores all calls if statistics are disabled (see
+     * StatisticCollectorSettings)
+     */
+    public static CompletionHeuristicStatisticCollector create() {
+        return StatisticCollectorSettings.isEnabled() ? new CompletionHeuristicStatisticCollector() : NO_OP;
+    }
 
     public void startTimer() {
         timer.startTimer();
@@ -28,35 +49,79 @@ public class CompletionHeuristicStatisticCollector {
         timer.stopTimer();
     }
 
+    /**
+     * Adds the runtime of work for this heuristic that was done in another thread
+     */
+    public void addRuntime(StartStopTimer otherTimer) {
+        timer.merge(otherTimer);
+    }
+
     public void incrementNumSuccess() {
-        numSuccess++;
+        numSuccess.increment();
     }
 
     public void incrementNumLossFunctionFail() {
-        numLossFunctionFail++;
+        numLossFunctionFail.increment();
     }
 
     public void incrementNumGrammarValidityCheckFails() {
-        numGrammarValidityCheckFail++;
+        numGrammarValidityCheckFail.increment();
     }
 
     public void saveSuccessAtTry(int numTries) {
-        numTriesPerSuccessfulHeuristicInvocation.merge(numTries, 1, Integer::sum);
+        numTriesPerSuccessfulHeuristicInvocation.computeIfAbsent(numTries, key -> new LongAdder()).increment();
     }
 
     public void saveFailureAtTry(int numTries) {
-        numTriesPerUnsuccessfulHeuristicInvocation.merge(numTries, 1, Integer::sum);
+        numTriesPerUnsuccessfulHeuristicInvocation.computeIfAbsent(numTries, key -> new LongAdder()).increment();
     }
 
     public JSONObject getJsonResult() {
         JSONObject result = new JSONObject();
         result.put("time", timer.getRuntime());
-        result.put("numSuccess", numSuccess);
-        result.put("numLossFunctionFail", numLossFunctionFail);
-        result.put("numGrammarValidityCheckFail", numGrammarValidityCheckFail);
-        result.put("numTriesPerSuccessfulHeuristicInvocation", new JSONObject(numTriesPerSuccessfulHeuristicInvocation));
-        result.put("numTriesPerUnsuccessfulHeuristicInvocation", new JSONObject(numTriesPerUnsuccessfulHeuristicInvocation));
+        result.put("numSuccess", numSuccess.sum());
+        result.put("numLossFunctionFail", numLossFunctionFail.sum());
+        result.put("numGrammarValidityCheckFail", numGrammarValidityCheckFail.sum());
+        result.put("numTriesPerSuccessfulHeuristicInvocation", new JSONObject(OverlappingStatisticCollector.getHistogram(numTriesPerSuccessfulHeuristicInvocation)));
+        result.put("numTriesPerUnsuccessfulHeuristicInvocation", new JSONObject(OverlappingStatisticCollector.getHistogram(numTriesPerUnsuccessfulHeuristicInvocation)));
         return result;
     }
 
+    private static class NoOpCollector extends CompletionHeuristicStatisticCollector {
+        NoOpCollector() {
+            super(StartStopTimer.noOp());
+        }
+
+        @Override
+        public void startTimer() {
+        }
+
+        @Override
+        public void stopTimer() {
+        }
+
+        @Override
+        public void addRuntime(StartStopTimer otherTimer) {
+        }
+
+        @Override
+        public void incrementNumSuccess() {
+        }
+
+        @Override
+        public void incrementNumLossFunctionFail() {
+        }
+
+        @Override
+        public void incrementNumGrammarValidityCheckFails() {
+        }
+
+        @Override
+        public void saveSuccessAtTry(int numTries) {
+        }
+
+        @Override
+        public void saveFailureAtTry(int numTries) {
+        }
+    }
 }
@@ -0,0 +1,278 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs all completion benchmarks (the grammars and algorithms of CompletionBenchmarkRunner) in one JVM. Each
+ * combination of grammar and completion algorithm is executed warmupRuns times without and measuredRuns times with
+ * measurement. Every run uses a newly loaded grammar and a new completion algorithm, so no caches or statistics are
+ * shared between the runs.
+ *
+ * For each run the CPU time and the allocated bytes of the benchmark thread, the wall time and the peak heap usage
+ * are measured. The results (all runs and the median, 90th and 99th percentile of each metric) are written to one
+ * JSON and one CSV file in reports/completion_repetition.
+ *
+ * Usage:
+ *   run [warmupRuns] [measuredRuns]
+ *   compare baseline.json current.json [threshold]
+ * The comparison prints the relative change of the medians of all combinations that are contained in both files and
+ * flags every metric that increased by more than threshold (default 0.1, i.e. 10%). The process exits with status 1
+ * if there is a regression.
+ */
+public class CompletionRepetitionBenchmarkRunner {
+    static final String[] METRICS = new String[] {"cpuTime", "wallTime", "allocatedBytes", "peakHeapBytes"};
+    static final double[] PERCENTILES = new double[] {0.5, 0.9, 0.99};
+    static final String[] PERCENTILE_NAMES = new String[] {"median", "p90", "p99"};
+
+    static int warmupRuns = 2;
+    static int measuredRuns = 10;
+
+    static ConfluenceWrapperGrammar loadGrammar(String grammarName) {
+        if (Arrays.asList(CompletionBenchmarkRunner.completionGrammarNames).contains(grammarName)) {
+            try {
+                return BenchmarkRunner.getSeparationLogicNamedGrammar(grammarName);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Could not load grammar " + grammarName, e);
+            }
+        } else {
+            return ConfluenceTool.parseGrammar(grammarName);
+        }
+    }
+
+    static CompletionAlgorithm createCompletionAlgorithm(Method algorithmMethod) {
+        try {
+            return (CompletionAlgorithm) algorithmMethod.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create completion algorithm " + algorithmMethod.getName(), e);
+        }
+    }
+
+    /**
+     * Executes the completion algorithm once and measures it
+     */
+    static JSONObject runOnce(String grammarName, Method algorithmMethod) {
+        ConfluenceWrapperGrammar grammar = loadGrammar(grammarName);
+        CompletionAlgorithm algorithm = createCompletionAlgorithm(algorithmMethod);
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                heapPools.add(pool);
+            }
+        }
+
+        // Start every run with the same (collected) heap
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long cpuTimeBefore = threadMXBean.getCurrentThreadCpuTime();
+        long wallTimeBefore = System.nanoTime();
+        CompletionState result = algorithm.runCompletionAlgorithm(grammar);
+        long wallTime = System.nanoTime() - wallTimeBefore;
+        long cpuTime = threadMXBean.getCurrentThreadCpuTime() - cpuTimeBefore;
+        long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeapBytes += pool.getPeakUsage().getUsed();
+        }
+
+        JSONObject run = new JSONObject();
+        run.put("cpuTime", cpuTime);
+        run.put("wallTime", wallTime);
+        run.put("allocatedBytes", allocatedBytes);
+        run.put("peakHeapBytes", peakHeapBytes);
+        run.put("finalNumberCriticalPairs", CriticalPairFinder.getNumberCriticalPairs(result.getCriticalPairs()));
+        return run;
+    }
+
+    static JSONObject runBenchmarkForGrammarAndAlgorithm(String grammarName, Method algorithmMethod) {
+        System.out.println("Start completion benchmark. Grammar: " + grammarName + " Completion Algorithm: " + algorithmMethod.getName());
+        for (int i = 0; i < warmupRuns; i++) {
+            runOnce(grammarName, algorithmMethod);
+        }
+
+        JSONArray runs = new JSONArray();
+        for (int i = 0; i < measuredRuns; i++) {
+            runs.put(runOnce(grammarName, algorithmMethod));
+        }
+
+        JSONObject benchmarkResult = new JSONObject();
+        benchmarkResult.put("grammarName", grammarName);
+        benchmarkResult.put("algorithmIdentifier", createCompletionAlgorithm(algorithmMethod).getAlgorithmIdentifier());
+        benchmarkResult.put("warmupRuns", warmupRuns);
+        benchmarkResult.put("measuredRuns", measuredRuns);
+        benchmarkResult.put("finalNumberCriticalPairs", runs.getJSONObject(0).getInt("finalNumberCriticalPairs"));
+        for (String metric : METRICS) {
+            long[] values = new long[runs.length()];
+            for (int i = 0; i < runs.length(); i++) {
+                values[i] = runs.getJSONObject(i).getLong(metric);
+            }
+            benchmarkResult.put(metric, getPercentiles(values));
+        }
+        benchmarkResult.put("runs", runs);
+        return benchmarkResult;
+    }
+
+    /**
+     * @return The median, 90th and 99th percentile (nearest rank) of the values
+     */
+    static JSONObject getPercentiles(long[] values) {
+        long[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        JSONObject result = new JSONObject();
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            int rank = (int) Math.ceil(PERCENTILES[i] * sorted.length);
+            result.put(PERCENTILE_NAMES[i], sorted[Math.max(rank, 1) - 1]);
+        }
+        return result;
+    }
+
+    static JSONArray runAllCompletionBenchmarks() {
+        List<String> grammarNames = new ArrayList<>(Arrays.asList(CompletionBenchmarkRunner.completionGrammarNames));
+        grammarNames.addAll(Arrays.asList(CompletionBenchmarkRunner.predefinedGrammarNames));
+
+        JSONArray result = new JSONArray();
+        for (String grammarName : grammarNames) {
+            for (Method algorithmMethod : CompletionBenchmarkRunner.getCompletionAlgorithmMethods()) {
+                result.put(runBenchmarkForGrammarAndAlgorithm(grammarName, algorithmMethod));
+            }
+        }
+        return result;
+    }
+
+    static String toCsv(JSONArray results) {
+        StringBuilder csv = new StringBuilder("grammarName,algorithmIdentifier,warmupRuns,measuredRuns,finalNumberCriticalPairs");
+        for (String metric : METRICS) {
+            for (String percentile : PERCENTILE_NAMES) {
+                csv.append(',').append(metric).append('_').append(percentile);
+            }
+        }
+        csv.append('\n');
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject benchmarkResult = results.getJSONObject(i);
+            csv.append(benchmarkResult.getString("grammarName"))
+                    .append(',').append(benchmarkResult.getString("algorithmIdentifier"))
+                    .append(',').append(benchmarkResult.getInt("warmupRuns"))
+                    .append(',').append(benchmarkResult.getInt("measuredRuns"))
+                    .append(',').append(benchmarkResult.getInt("finalNumberCriticalPairs"));
+            for (String metric : METRICS) {
+                for (String percentile : PERCENTILE_NAMES) {
+                    csv.append(',').append(benchmarkResult.getJSONObject(metric).getLong(percentile));
+                }
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Compares the medians of all combinations of grammar and completion algorithm that are contained in both results
+     *
+     * @param threshold The maximal allowed relative increase of a metric (e.g. 0.1 for 10%)
+     * @return A description of all regressions (empty if there are no regressions)
+     */
+    static List<String> compareResults(JSONArray baseline, JSONArray current, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (int i = 0; i < current.length(); i++) {
+            JSONObject currentResult = current.getJSONObject(i);
+            JSONObject baselineResult = findResult(baseline, currentResult.getString("grammarName"), currentResult.getString("algorithmIdentifier"));
+            String combination = currentResult.getString("grammarName") + " / " + currentResult.getString("algorithmIdentifier");
+            if (baselineResult == null) {
+                System.out.println(combination + ": not contained in the baseline");
+                continue;
+            }
+            for (String metric : METRICS) {
+                long baselineMedian = baselineResult.getJSONObject(metric).getLong("median");
+                long currentMedian = currentResult.getJSONObject(metric).getLong("median");
+                double change = baselineMedian == 0 ? 0 : (double) (currentMedian - baselineMedian) / baselineMedian;
+                String line = String.format("%s %s: %d -> %d (%+.1f%%)", combination, metric, baselineMedian, currentMedian, change * 100);
+                if (change > threshold) {
+                    regressions.add(line);
+                    line += " REGRESSION";
+                }
+                System.out.println(line);
+            }
+            if (baselineResult.getInt("finalNumberCriticalPairs") != currentResult.getInt("finalNumberCriticalPairs")) {
+                System.out.println(combination + ": the final number of critical pairs changed from "
+                        + baselineResult.getInt("finalNumberCriticalPairs") + " to " + currentResult.getInt("finalNumberCriticalPairs"));
+            }
+        }
+        return regressions;
+    }
+
+    private static JSONObject findResult(JSONArray results, String grammarName, String algorithmIdentifier) {
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            if (result.getString("grammarName").equals(grammarName) && result.getString("algorithmIdentifier").equals(algorithmIdentifier)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private static JSONArray readResults(String fileName) throws IOException {
+        return new JSONArray(new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("compare")) {
+            double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+            List<String> regressions = compareResults(readResults(args[1]), readResults(args[2]), threshold);
+            System.out.println(regressions.size() + " regression(s) above " + threshold * 100 + "%");
+            if (!regressions.isEmpty()) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (args.length > 0 && !args[0].equals("run")) {
+            System.err.println("Usage: run [warmupRuns] [measuredRuns] | compare baseline.json current.json [threshold]");
+            System.exit(2);
+        }
+        if (args.length > 1) {
+            warmupRuns = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            measuredRuns = Integer.parseInt(args[2]);
+        }
+        if (measuredRuns < 1) {
+            throw new IllegalArgumentException("At least one measured run is required");
+        }
+
+        JSONArray result = runAllCompletionBenchmarks();
+
+        // Output to files
+        new File("reports/completion_repetition").mkdirs();
+        String fileName = "reports/completion_repetition/completionRepetition__" + CompletionBenchmarkRunner.getDateTime();
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName + ".json"))) {
+            result.write(writer);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName + ".csv"))) {
+            writer.write(toCsv(result));
+        }
+        System.out.println("Results written to " + fileName + ".json and " + fileName + ".csv");
+    }
+}
@@ -2,16 +2,51 @@ package de.rwth.i2.attestor.grammar.confluence.benchmark;
 
 import org.json.JSONObject;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Collects how many overlappings have been pruned at which level. The collector can be used from multiple threads.
+ */
 public class OverlappingStatisticCollector {
-    StartStopTimer runtime = new StartStopTimer();
-    Map<Integer, Integer> pruningLevels = new HashMap<>();
+    private static final OverlappingStatisticCollector NO_OP = new NoOpCollector();
+
+    final StartStopTimer runtime;
+    final Map<Integer, LongAdder> pruningLevels = new ConcurrentHashMap<>();
+    final Map<Integer, LongAdder> symmetryPruningLevels = new ConcurrentHashMap<>();
+
+    public OverlappingStatisticCollector() {
+        this(new StartStopTimer());
+    }
+
+    private OverlappingStatisticCollector(StartStopTimer runtime) {
+        this.runtime = runtime;
+    }
+
+    /**
+     * @return A new collector or a collector that ignores all calls if statistics are disabled (see
+     * StatisticCollectorSettings)
+     */
+    public static OverlappingStatisticCollector create() {
+        return StatisticCollectorSettings.isEnabled() ? new OverlappingStatisticCollector() : NO_OP;
+    }
 
     public void logPruning(int level) {
         // Increment value for
-        pruningLevels.merge(level, 1, Integer::sum);
+        pruningLevels.computeIfAbsent(level, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Logs an overlapping that has been pruned because it is isomorphic to another overlapping
+     */
+    public void logSymmetryPruning(int level) {
+        symmetryPruningLevels.computeIfAbsent(level, key -> new LongAdder()).increment();
+    }
+
+    public int getNumberSymmetryPruned() {
+        return (int) symmetryPruningLevels.values().stream().mapToLong(LongAdder::sum).sum();
     }
 
     public void startTimer() {
@@ -22,10 +57,54 @@ public class OverlappingStatisticCollector {
         runtime.stopTimer();
     }
 
+    /**
+     * Adds the pruning levels and the runtime of another collector to this collector.
+     * Used to combine the statistics of rule pairs that have been processed in parallel.
+     */
+    public void merge(OverlappingStatisticCollector other) {
+        other.pruningLevels.forEach((level, count) -> pruningLevels.computeIfAbsent(level, key -> new LongAdder()).add(count.sum()));
+        other.symmetryPruningLevels.forEach((level, count) -> symmetryPruningLevels.computeIfAbsent(level, key -> new LongAdder()).add(count.sum()));
+        runtime.merge(other.runtime);
+    }
+
+    static Map<Integer, Long> getHistogram(Map<Integer, LongAdder> counts) {
+        Map<Integer, Long> result = new TreeMap<>();
+        counts.forEach((key, count) -> result.put(key, count.sum()));
+        return result;
+    }
+
     public JSONObject getJsonStatistic() {
         JSONObject result = new JSONObject();
-        result.put("pruningLevels", new JSONObject(pruningLevels));
+        result.put("pruningLevels", new JSONObject(getHistogram(pruningLevels)));
+        result.put("symmetryPruningLevels", new JSONObject(getHistogram(symmetryPruningLevels)));
+        result.put("numberSymmetryPruned", getNumberSymmetryPruned());
         result.put("time", runtime.getRuntime());
         return result;
     }
+
+    private static class NoOpCollector extends OverlappingStatisticCollector {
+        NoOpCollector() {
+            super(StartStopTimer.noOp());
+        }
+
+        @Override
+        public void logPruning(int level) {
+        }
+
+        @Override
+        public void logSymmetryPruning(int level) {
+        }
+
+        @Override
+        public void startTimer() {
+        }
+
+        @Override
+        public void stopTimer() {
+        }
+
+        @Override
+        public void merge(OverlappingStatisticCollector other) {
+        }
+    }
 }
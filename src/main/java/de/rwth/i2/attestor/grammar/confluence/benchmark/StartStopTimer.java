@@ -1,17 +1,22 @@
 package de.rwth.i2.attestor.grammar.confluence.benchmark;
 
 import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Allows to measure time. If the timer is started multiple times, the timer has to be stopped the same number of times.
+ *
+ * The timer measures the CPU time of the threads in which it is started. It can be used from multiple threads at the
+ * same time: Every thread has its own nesting depth and start time (stored thread-locally) and the CPU times of all
+ * threads are added up when the timer is stopped.
  */
 public class StartStopTimer {
-    long timer = 0; // Accumulated time for which the timer has run
-    final long TIMER_NOT_RUNNING = -1;
-    long startTime = TIMER_NOT_RUNNING; // Timestamp when the timer was started
-    int timerDepth = 0;
+    private static final StartStopTimer NO_OP = new NoOpTimer();
+
+    private final LongAdder timer = new LongAdder(); // Accumulated time for which the timer has run
+    // The start time and nesting depth of the current thread
+    private final ThreadLocal<RunningTimer> runningTimer = ThreadLocal.withInitial(RunningTimer::new);
 
     static ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
 
@@ -25,33 +30,78 @@ public class StartStopTimer {
         }
     }
 
+    /**
+     * @return A timer that ignores all calls and always has the runtime 0 (used if statistics are disabled)
+     */
+    public static StartStopTimer noOp() {
+        return NO_OP;
+    }
+
     private long getTime() {
         return threadMXBean.getCurrentThreadCpuTime();
     }
 
     public void startTimer() {
-        if (startTime == TIMER_NOT_RUNNING) {
-            startTime = getTime();
+        RunningTimer current = runningTimer.get();
+        if (current.depth == 0) {
+            current.startTime = getTime();
         }
-        timerDepth++;
+        current.depth++;
     }
 
     public void stopTimer() {
-        timerDepth--;
-        if (timerDepth < 0 || startTime == TIMER_NOT_RUNNING) {
+        RunningTimer current = runningTimer.get();
+        if (current.depth == 0) {
             throw new RuntimeException("The timer is not running. Cannot stop a non running timer.");
-        } else if (timerDepth == 0) {
-            timer += getTime() - startTime;
-            startTime = TIMER_NOT_RUNNING;
-        } // else: Did not reach timerDepth == 0 -> Keep timer running
+        }
+        current.depth--;
+        if (current.depth == 0) {
+            timer.add(getTime() - current.startTime);
+        } // else: Did not reach depth == 0 -> Keep timer running
     }
 
+    /**
+     * @return The accumulated runtime including the current runtime of the calling thread (if the timer is running in
+     * it). The runtime of other threads is only included after they have stopped the timer.
+     */
     public long getRuntime() {
-        if (startTime == TIMER_NOT_RUNNING) {
-            return timer;
-        } else {
-            return timer + (getTime() - startTime);
+        long result = timer.sum();
+        RunningTimer current = runningTimer.get();
+        if (current.depth > 0) {
+            result += getTime() - current.startTime;
         }
+        return result;
+    }
+
+    /**
+     * Adds the accumulated runtime of another (stopped) timer to this timer. This is used to combine timers that
+     * measured work done in different threads.
+     */
+    public void merge(StartStopTimer other) {
+        timer.add(other.getRuntime());
+    }
+
+    private static class RunningTimer {
+        long startTime; // Timestamp when the timer was started
+        int depth = 0;
     }
 
+    private static class NoOpTimer extends StartStopTimer {
+        @Override
+        public void startTimer() {
+        }
+
+        @Override
+        public void stopTimer() {
+        }
+
+        @Override
+        public long getRuntime() {
+            return 0;
+        }
+
+        @Override
+        public void merge(StartStopTimer other) {
+        }
+    }
 }
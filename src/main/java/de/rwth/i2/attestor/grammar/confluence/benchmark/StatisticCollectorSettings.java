@@ -0,0 +1,25 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+/**
+ * Determines if the statistic collectors that are created by OverlappingStatisticCollector.create() and
+ * CompletionHeuristicStatisticCollector.create() collect statistics. If statistics are disabled the collectors ignore
+ * all calls, so collecting statistics does not cost anything in production runs.
+ * Statistics are enabled by default (the benchmarks rely on them).
+ */
+public final class StatisticCollectorSettings {
+    private static volatile boolean enabled = true;
+
+    private StatisticCollectorSettings() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Only affects collectors that are created afterwards
+     */
+    public static void setEnabled(boolean enabled) {
+        StatisticCollectorSettings.enabled = enabled;
+    }
+}
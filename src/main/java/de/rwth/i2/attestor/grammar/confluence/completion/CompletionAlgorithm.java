@@ -1,6 +1,8 @@
 package de.rwth.i2.attestor.grammar.confluence.completion;
 
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinderSettings;
 import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
 import de.rwth.i2.attestor.grammar.confluence.completion.loss.CompletionStateLoss;
 import de.rwth.i2.attestor.grammar.confluence.completion.strategies.CompletionStrategy;
@@ -25,6 +27,14 @@ import java.util.List;
  *
  * Optionally it is possible to call 'addGrammarValidityCheck' to rule out grammars that don't fulfill some conditions.
  *
+ * The algorithm can be run as an anytime algorithm: With 'setTimeBudget' the run is cancelled once the (wall-clock)
+ * time budget has elapsed and the best completion state found so far (the incumbent) is returned. Listeners added with
+ * 'addIncumbentListener' are notified every time the incumbent improves (e.g. to write snapshots with the
+ * CompletionSnapshotWriter).
+ *
+ * With 'setCriticalPairFinderSettings' the critical pairs of all completion states are computed with the given settings
+ * (e.g. in parallel or with symmetry reduction).
+ *
  */
 public class CompletionAlgorithm {
     private final String algorithmIdentifier; // An identifier used to identify the completion
@@ -32,11 +42,15 @@ public class CompletionAlgorithm {
     private final List<GrammarValidity> validityChecks;
     private CompletionStateLoss completionStateLoss;
     private CompletionStrategy completionStrategy;
+    private final List<IncumbentListener> incumbentListeners;
+    private long timeBudgetMillis = 0;
+    private CriticalPairFinderSettings criticalPairFinderSettings = new CriticalPairFinderSettings();
 
     public CompletionAlgorithm(String algorithmIdentifier) {
         this.algorithmIdentifier = algorithmIdentifier;
         this.heuristics = new ArrayList<>();
         this.validityChecks = new ArrayList<>();
+        this.incumbentListeners = new ArrayList<>();
     }
 
     // Builder style setters
@@ -61,6 +75,34 @@ public class CompletionAlgorithm {
         return this;
     }
 
+    /**
+     * @param timeBudgetMillis The wall-clock time after which the run returns the best completion state found so far
+     *                         (no budget if set to 0). The critical pairs of the input grammar are always computed
+     *                         completely.
+     */
+    public CompletionAlgorithm setTimeBudget(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("The time budget must not be negative");
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+        return this;
+    }
+
+    /**
+     * @param settings The settings used to compute the critical pairs of the completion states, if the algorithm is run
+     *                 on a grammar (a given initial state keeps its own settings). The parent finder, the deduplication
+     *                 and the threshold are set by the completion states.
+     */
+    public CompletionAlgorithm setCriticalPairFinderSettings(CriticalPairFinderSettings settings) {
+        this.criticalPairFinderSettings = settings;
+        return this;
+    }
+
+    public CompletionAlgorithm addIncumbentListener(IncumbentListener listener) {
+        this.incumbentListeners.add(listener);
+        return this;
+    }
+
     // Getters
 
     public List<CompletionHeuristic> getHeuristics() {
@@ -79,6 +121,24 @@ public class CompletionAlgorithm {
         return completionStrategy;
     }
 
+    public long getTimeBudget() {
+        return timeBudgetMillis;
+    }
+
+    public CriticalPairFinderSettings getCriticalPairFinderSettings() {
+        return criticalPairFinderSettings;
+    }
+
+    /**
+     * Notifies all incumbent listeners. Must be called by the completion strategies with the initial state and every
+     * time they find a completion state with a smaller loss than all previous states.
+     */
+    public void notifyIncumbentImproved(CompletionState state, double loss) {
+        for (IncumbentListener listener : incumbentListeners) {
+            listener.onIncumbentImproved(state, loss);
+        }
+    }
+
     // Run algorithm
 
     /**
@@ -86,10 +146,29 @@ public class CompletionAlgorithm {
      * must be called at least once before calling this method
      */
     public CompletionState runCompletionAlgorithm(ConfluenceWrapperGrammar inputGrammar) {
+        return runCompletionAlgorithm(CompletionState.create(inputGrammar, criticalPairFinderSettings));
+    }
+
+    /**
+     * Runs the completion algorithm starting from initialState. The run stops when the CancellationToken of the
+     * initial state is cancelled (or the time budget of the algorithm has elapsed) and returns the best completion
+     * state found so far (see CompletionStrategy).
+     *
+     * @throws IllegalStateException 'setCompletionStateLoss', 'setCompletionStrategy' and 'addHeuristic'
+     * must be called at least once before calling this method
+     */
+    public CompletionState runCompletionAlgorithm(CompletionState initialState) {
+        checkParameters();
+        if (timeBudgetMillis > 0) {
+            initialState = initialState.withCancellation(new CancellationToken(initialState.getCancellation(), timeBudgetMillis));
+        }
+        return completionStrategy.executeCompletionStrategy(initialState, this);
+    }
+
+    private void checkParameters() {
         if (heuristics.size() == 0 || completionStateLoss == null || completionStrategy == null) {
             throw new IllegalStateException("The completion algorithm is missing a necessary parameter.");
         }
-        return completionStrategy.executeCompletionStrategy(inputGrammar, this);
     }
 
     public String getAlgorithmIdentifier() {
@@ -101,6 +180,9 @@ public class CompletionAlgorithm {
         result.put("algorithmIdentifier", algorithmIdentifier);
         result.put("completionStateLoss", completionStateLoss.getDescription());
         result.put("completionStrategy", completionStrategy.getDescription());
+        if (timeBudgetMillis > 0) {
+            result.put("timeBudget", timeBudgetMillis);
+        }
 
         JSONArray grammarValiditySummary = new JSONArray();
         for (GrammarValidity grammarValidity : validityChecks) {
@@ -2,6 +2,7 @@ package de.rwth.i2.attestor.grammar.confluence.completion;
 
 import de.rwth.i2.attestor.grammar.Grammar;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinderSettings;
 import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.*;
 import de.rwth.i2.attestor.grammar.confluence.completion.loss.NumberCriticalPairLoss;
 import de.rwth.i2.attestor.grammar.confluence.completion.strategies.GreedyCompletion;
@@ -47,13 +48,26 @@ public class CompletionPhase extends AbstractPhase implements GrammarTransformer
         InputSettings inputSettings = getPhase(InputSettingsTransformer.class).getInputSettings();
         if(!inputSettings.getCompletionHeuristics().isEmpty() || !inputSettings.getCompletionAlgorithm().isEmpty()) {
             isActive = true;
-            CompletionAlgorithm completionAlgorithm = buildCompletionAlgorithm(inputSettings.getCompletionAlgorithm());
-            addHeuristicsCompletionAlgorithm(completionAlgorithm, inputSettings.getCompletionHeuristics());
+            CompletionAlgorithm completionAlgorithm = buildCompletionAlgorithm(inputSettings.getCompletionAlgorithm(), inputSettings.getCompletionHeuristics());
+            completionAlgorithm.setTimeBudget(inputSettings.getCompletionTimeBudget() * 1000);
+            if (outputSettings.getCompletionSnapshotPath() != null) {
+                completionAlgorithm.addIncumbentListener(new CompletionSnapshotWriter(outputSettings.getCompletionSnapshotPath()));
+            }
+            CriticalPairFinderSettings settings = CriticalPairFinderSettings.fromInputSettings(inputSettings);
+            completionAlgorithm.setCriticalPairFinderSettings(settings);
             ConfluenceWrapperGrammar confluenceWrapperGrammar = new ConfluenceWrapperGrammar(this.grammar, inputSettings.getGrammarName());
-            CompletionState result = completionAlgorithm.runCompletionAlgorithm(confluenceWrapperGrammar);
-            grammar = result.getGrammar().getConcretizationGrammar();
-            if(result.getCriticalPairs().isEmpty()){
-                isConfluent = true;
+            CompletionState result;
+            try {
+                result = completionAlgorithm.runCompletionAlgorithm(confluenceWrapperGrammar);
+                grammar = result.getGrammar().getConcretizationGrammar();
+                // Computes the remaining critical pairs (if required) before the executor is shut down
+                if(result.getCriticalPairs().isEmpty()){
+                    isConfluent = true;
+                }
+            } finally {
+                if (settings.getExecutor() != null) {
+                    settings.getExecutor().shutdownNow();
+                }
             }
             try {
                 exportLatex(result);
@@ -64,7 +78,17 @@ public class CompletionPhase extends AbstractPhase implements GrammarTransformer
 
     }
 
-    private CompletionAlgorithm buildCompletionAlgorithm(String algorithm) throws IOException {
+    /**
+     * Creates a new instance of the predefined completion algorithm with the given name ("" for a user defined
+     * algorithm) extended by the given heuristics
+     *
+     * @throws IOException If the algorithm or one of the heuristics is unknown
+     */
+    public static CompletionAlgorithm buildCompletionAlgorithm(String algorithm, List<String> heuristics) throws IOException {
+        return addHeuristicsCompletionAlgorithm(buildCompletionAlgorithm(algorithm), heuristics);
+    }
+
+    private static CompletionAlgorithm buildCompletionAlgorithm(String algorithm) throws IOException {
         switch(algorithm){
             case "completionAbstractionBlocking":
                 return ExampleCompletionAlgorithms.completionAbstractionBlocking();
@@ -98,7 +122,7 @@ public class CompletionPhase extends AbstractPhase implements GrammarTransformer
         }
     }
 
-    private CompletionAlgorithm addHeuristicsCompletionAlgorithm(CompletionAlgorithm algorithm, List<String> heuristics) throws IOException {
+    private static CompletionAlgorithm addHeuristicsCompletionAlgorithm(CompletionAlgorithm algorithm, List<String> heuristics) throws IOException {
         for(String heuristic: heuristics){
             switch(heuristic){
                 case "AddRuleHandleWithSubgraph":
@@ -133,7 +157,7 @@ public class CompletionPhase extends AbstractPhase implements GrammarTransformer
         return algorithm;
     }
 
-    private boolean containsLocalConcretizability(CompletionAlgorithm algorithm) {
+    private static boolean containsLocalConcretizability(CompletionAlgorithm algorithm) {
         for(GrammarValidity validity: algorithm.getValidityChecks()){
             if(validity instanceof  LocalConcretizability){
                 return true;
@@ -0,0 +1,200 @@
+package de.rwth.i2.attestor.grammar.confluence.completion;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.benchmark.StartStopTimer;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.CompletionStateLoss;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Runs multiple completion algorithms concurrently on the same grammar, because it is not known in advance which
+ * algorithm completes a grammar best (or fastest).
+ *
+ * The critical pairs of the input grammar are computed once before the algorithms are started. All runs start from
+ * this completion state, so they share its critical pairs (the successor states of all runs reuse the overlappings
+ * of its rule pairs) and the canonicalization cache of the input grammar.
+ *
+ * All runs are cancelled cooperatively (see CancellationToken) as soon as one run finds a completion state without
+ * critical pairs or the time budget expires. The result is the completion state with the smallest loss (according to
+ * the loss of the portfolio) of all runs. Ties are broken by the order in which the algorithms have been added.
+ *
+ * Every algorithm must be a separate instance (the heuristics and strategies collect statistics while running).
+ */
+public class CompletionPortfolio {
+    private final List<CompletionAlgorithm> algorithms = new ArrayList<>();
+    private final CompletionStateLoss completionStateLoss;
+    private final long timeBudgetMillis;
+    private final int parallelism;
+
+    /**
+     * @param completionStateLoss The loss used to compare the results of the algorithms
+     * @param timeBudgetMillis The time after which all runs are cancelled (no budget if set to 0)
+     * @param parallelism The maximal number of algorithms that are executed at the same time
+     */
+    public CompletionPortfolio(CompletionStateLoss completionStateLoss, long timeBudgetMillis, int parallelism) {
+        if (timeBudgetMillis < 0 || parallelism < 1) {
+            throw new IllegalArgumentException("Invalid portfolio settings");
+        }
+        this.completionStateLoss = completionStateLoss;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.parallelism = parallelism;
+    }
+
+    public CompletionPortfolio addAlgorithm(CompletionAlgorithm algorithm) {
+        for (CompletionAlgorithm otherAlgorithm : algorithms) {
+            if (otherAlgorithm == algorithm) {
+                throw new IllegalArgumentException("The algorithm has already been added");
+            }
+        }
+        algorithms.add(algorithm);
+        return this;
+    }
+
+    /**
+     * Runs all algorithms on the input grammar
+     *
+     * @throws IllegalStateException If no algorithm has been added or the portfolio was interrupted
+     */
+    public PortfolioResult runPortfolio(ConfluenceWrapperGrammar inputGrammar) {
+        if (algorithms.isEmpty()) {
+            throw new IllegalStateException("The portfolio does not contain any completion algorithm.");
+        }
+        CancellationToken cancellation = new CancellationToken(timeBudgetMillis);
+        // The critical pairs of the initial state are always computed completely (even if the budget expires)
+        CompletionState initialState = new CompletionState(inputGrammar, null).withCancellation(cancellation);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, algorithms.size()));
+        try {
+            CompletionService<AlgorithmRun> completionService = new ExecutorCompletionService<>(executor);
+            for (CompletionAlgorithm algorithm : algorithms) {
+                completionService.submit(() -> runAlgorithm(algorithm, initialState));
+            }
+
+            AlgorithmRun[] runs = new AlgorithmRun[algorithms.size()];
+            for (int i = 0; i < algorithms.size(); i++) {
+                AlgorithmRun run = completionService.take().get();
+                runs[algorithms.indexOf(run.algorithm)] = run;
+                if (run.state != null && run.state.getCriticalPairs().isEmpty()) {
+                    // No other run can find a better completion state
+                    cancellation.cancel();
+                }
+            }
+            return new PortfolioResult(initialState, runs, timeBudgetMillis);
+        } catch (InterruptedException e) {
+            cancellation.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Completion portfolio was interrupted", e);
+        } catch (ExecutionException e) {
+            // runAlgorithm catches all exceptions of the algorithms
+            cancellation.cancel();
+            throw new IllegalStateException("Completion portfolio failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AlgorithmRun runAlgorithm(CompletionAlgorithm algorithm, CompletionState initialState) {
+        StartStopTimer runtime = new StartStopTimer();
+        runtime.startTimer();
+        CompletionState state = null;
+        double loss = Double.POSITIVE_INFINITY;
+        String error = null;
+        try {
+            state = algorithm.runCompletionAlgorithm(initialState);
+            loss = completionStateLoss.getLoss(state);
+        } catch (RuntimeException e) {
+            // The other runs are not affected by the failure of one algorithm
+            state = null;
+            error = e.toString();
+        }
+        runtime.stopTimer();
+        return new AlgorithmRun(algorithm, state, loss, initialState.getCancellation().isCancelled(), error, runtime.getRuntime());
+    }
+
+    /**
+     * The result of a single algorithm of the portfolio
+     */
+    private static class AlgorithmRun {
+        final CompletionAlgorithm algorithm;
+        final CompletionState state;  // null if the algorithm failed
+        final double loss;
+        final boolean cancelled;  // True if the portfolio was cancelled when the run finished
+        final String error;  // null if the algorithm did not fail
+        final long runtime;
+
+        AlgorithmRun(CompletionAlgorithm algorithm, CompletionState state, double loss, boolean cancelled, String error, long runtime) {
+            this.algorithm = algorithm;
+            this.state = state;
+            this.loss = loss;
+            this.cancelled = cancelled;
+            this.error = error;
+            this.runtime = runtime;
+        }
+
+        JSONObject getJsonStatistic() {
+            JSONObject result = new JSONObject();
+            result.put("algorithmIdentifier", algorithm.getAlgorithmIdentifier());
+            result.put("cancelled", cancelled);
+            result.put("runtime", runtime);
+            if (state != null) {
+                result.put("loss", loss);
+                result.put("numberCriticalPairs", CriticalPairFinder.getNumberCriticalPairs(state.getCriticalPairs()));
+            } else {
+                result.put("error", error);
+            }
+            result.put("statistic", algorithm.getStatistic());
+            return result;
+        }
+    }
+
+    public static class PortfolioResult {
+        private final AlgorithmRun bestRun;  // null if all algorithms failed
+        private final CompletionState bestState;
+        private final JSONObject statistic;
+
+        private PortfolioResult(CompletionState initialState, AlgorithmRun[] runs, long timeBudgetMillis) {
+            AlgorithmRun best = null;
+            JSONArray runStatistics = new JSONArray();
+            for (AlgorithmRun run : runs) {
+                if (run.state != null && (best == null || run.loss < best.loss)) {
+                    best = run;
+                }
+                runStatistics.put(run.getJsonStatistic());
+            }
+            this.bestRun = best;
+            this.bestState = best == null ? initialState : best.state;
+
+            statistic = new JSONObject();
+            statistic.put("timeBudget", timeBudgetMillis);
+            statistic.put("bestAlgorithm", best == null ? JSONObject.NULL : best.algorithm.getAlgorithmIdentifier());
+            statistic.put("runs", runStatistics);
+        }
+
+        /**
+         * @return The completion state with the smallest loss (the initial state if all algorithms failed)
+         */
+        public CompletionState getBestState() {
+            return bestState;
+        }
+
+        /**
+         * @return The algorithm that found the best completion state (null if all algorithms failed)
+         */
+        public CompletionAlgorithm getBestAlgorithm() {
+            return bestRun == null ? null : bestRun.algorithm;
+        }
+
+        /**
+         * @return The result and statistic of every algorithm
+         */
+        public JSONObject getStatistic() {
+            return statistic;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package de.rwth.i2.attestor.grammar.confluence.completion;
+
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.io.FileUtils;
+import de.rwth.i2.attestor.io.jsonExport.inputFormat.GrammarToInputFormatExporter;
+import de.rwth.i2.attestor.io.tikzOutput.TikzExport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes every new incumbent of a completion run to disk, so a long (anytime) completion run can be inspected while
+ * it is running and its best result is not lost if the run is aborted.
+ *
+ * The i-th snapshot is written to the directory <directory>/snapshot<i> and contains
+ * - grammar.json: The grammar of the completion state in the input format of grammars
+ * - grammar.tex: The grammar of the completion state as tikz pictures
+ * - summary.json: The loss, the number of remaining critical pairs and the time since the writer was created
+ *
+ * Failing to write a snapshot is logged, but does not stop the completion.
+ */
+public class CompletionSnapshotWriter implements IncumbentListener {
+    private static final Logger logger = LogManager.getLogger("CompletionSnapshotWriter");
+
+    private final String directory;
+    private final long startTime = System.currentTimeMillis();
+    private int numberSnapshots = 0;
+
+    public CompletionSnapshotWriter(String directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized void onIncumbentImproved(CompletionState state, double loss) {
+        String snapshotDirectory = directory + File.separator + "snapshot" + numberSnapshots;
+        JSONObject summary = new JSONObject();
+        summary.put("snapshot", numberSnapshots);
+        summary.put("loss", loss);
+        summary.put("numberCriticalPairs", CriticalPairFinder.getNumberCriticalPairs(state.getCriticalPairs()));
+        summary.put("time", System.currentTimeMillis() - startTime);
+        numberSnapshots++;
+
+        try {
+            FileUtils.createDirectories(snapshotDirectory);
+            try (Writer writer = new FileWriter(snapshotDirectory + File.separator + "grammar.json")) {
+                writer.write(GrammarToInputFormatExporter.getInInputFormat(state.getGrammar().getConcretizationGrammar()).toString(2));
+            }
+
+            TikzExport exportGrammar = new TikzExport(snapshotDirectory + File.separator + "grammar.tex", true);
+            exportGrammar.exportGrammar(state.getGrammar(), false);
+            exportGrammar.finishExport();
+
+            try (Writer writer = new FileWriter(snapshotDirectory + File.separator + "summary.json")) {
+                writer.write(summary.toString(2));
+            }
+        } catch (IOException e) {
+            logger.error("Could not write completion snapshot to " + snapshotDirectory, e);
+        }
+    }
+
+    /**
+     * @return The number of incumbents that have been reported so far
+     */
+    public synchronized int getNumberSnapshots() {
+        return numberSnapshots;
+    }
+}
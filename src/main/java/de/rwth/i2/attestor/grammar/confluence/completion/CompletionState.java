@@ -1,48 +1,210 @@
 package de.rwth.i2.attestor.grammar.confluence.completion;
 
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinderSettings;
 import de.rwth.i2.attestor.grammar.confluence.Joinability;
 import de.rwth.i2.attestor.grammar.typedness.GrammarTypedness;
 
 import java.util.*;
 
+/**
+ * A grammar together with its critical pairs that are not strongly joinable.
+ *
+ * The critical pairs are computed lazily: getNumberCriticalPairs(limit) only computes as many critical pairs as needed
+ * to decide if there are fewer than limit critical pairs, so states that are worse than the current state can be
+ * rejected without computing all their critical pairs. The methods are synchronized, so a state can be evaluated in
+ * another thread than the one that created it.
+ *
+ * The computation of the critical pairs can be cancelled with the CancellationToken of the state (a CancellationException
+ * is thrown). Successor states inherit the token of their parent state.
+ *
+ * The critical pairs are computed with the CriticalPairFinderSettings of the state (e.g. an executor or the enumeration
+ * order), which successor states also inherit from their parent state.
+ */
 public class CompletionState {
     private final CompletionState parentState;
     private final ConfluenceWrapperGrammar grammar;
-    private final Collection<CriticalPair> criticalPairs;  // Does not contain strongly joinable critical pairs
     private final GrammarTypedness types;
+    // The settings of the critical pair computation (without parent finder, the state sets it for every computation)
+    private final CriticalPairFinderSettings settings;
+    // The finder of the parent state, so only the overlappings of new rules have to be computed (set to null once the
+    // critical pairs are computed completely)
+    private CriticalPairFinder parentFinder;
+    // Contains the overlappings of all rule pairs, so successor states only have to compute the overlappings of new rules
+    // (null if the computation has not started yet, possibly incomplete if the computation was stopped at a limit)
+    private CriticalPairFinder criticalPairFinder;
+    private Collection<CriticalPair> criticalPairs;  // Does not contain strongly joinable critical pairs (null until computed)
 
     /**
-     * Initializes a completion state for the given grammar.
+     * Initializes a completion state for the given grammar. If a parent state is given, the critical pairs are
+     * computed incrementally from the critical pairs of the parent state.
      */
     public CompletionState(ConfluenceWrapperGrammar grammar, CompletionState parentState) {
+        this(grammar, parentState, getSettings(parentState));
+    }
+
+    private CompletionState(ConfluenceWrapperGrammar grammar, CompletionState parentState, CriticalPairFinderSettings settings) {
         this.grammar = grammar;
-        CriticalPairFinder criticalPairFinder = new CriticalPairFinder(grammar);
-        this.criticalPairs = criticalPairFinder.getCriticalPairsMaxJoinability(Joinability.WEAKLY_JOINABLE);
+        this.parentFinder = parentState == null ? null : parentState.getCriticalPairFinder();
+        this.criticalPairFinder = null;
+        this.criticalPairs = null;
         this.parentState = parentState;
-        this.types = new GrammarTypedness(grammar.getConcretizationGrammar());
+        this.types = getTypes(grammar, parentState);
+        this.settings = settings;
+    }
+
+    /**
+     * Initializes a completion state without parent state whose critical pair computation (and the computation of all
+     * its successors) can be cancelled with the given token. In contrast to withCancellation the critical pairs of
+     * the state itself are also computed with the token.
+     */
+    public static CompletionState createCancellable(ConfluenceWrapperGrammar grammar, CancellationToken cancellation) {
+        return create(grammar, new CriticalPairFinderSettings().setCancellation(cancellation));
     }
 
     /**
+     * Initializes a completion state without parent state whose critical pairs (and the critical pairs of all its
+     * successors) are computed with the given settings. The parent finder, the deduplication and the threshold of the
+     * settings are ignored, because the state sets them itself. The computation can be cancelled with the token of the
+     * settings.
+     */
+    public static CompletionState create(ConfluenceWrapperGrammar grammar, CriticalPairFinderSettings settings) {
+        return new CompletionState(grammar, null, new CriticalPairFinderSettings(settings).setParentFinder(null));
+    }
+
+    /**
+     * The finder of this state (used by getNumberCriticalPairs(Joinability) and the successor states) is still computed
+     * lazily for the grammar of this state (incrementally from the finder of the parent state).
+     *
      * @param criticalPairs  Must not include strongly joinable critical pairs
      */
     public CompletionState(ConfluenceWrapperGrammar grammar, Collection<CriticalPair> criticalPairs, CompletionState parentState) {
         this.grammar = grammar;
         this.criticalPairs = criticalPairs;
-        this.types = new GrammarTypedness(grammar.getConcretizationGrammar());
+        this.criticalPairFinder = null;
+        this.parentFinder = parentState == null ? null : parentState.getCriticalPairFinder();
+        this.types = getTypes(grammar, parentState);
         this.parentState = parentState;
+        this.settings = getSettings(parentState);
+    }
+
+    /**
+     * Creates a copy of state (sharing the computed critical pairs) whose successors can be cancelled with the given token
+     */
+    private CompletionState(CompletionState state, CancellationToken cancellation) {
+        this.grammar = state.grammar;
+        this.criticalPairFinder = state.getCriticalPairFinder();
+        this.criticalPairs = state.getCriticalPairs();
+        this.parentFinder = null;
+        this.types = state.types;
+        this.parentState = state.parentState;
+        this.settings = new CriticalPairFinderSettings(state.settings).setCancellation(cancellation);
+    }
+
+    /**
+     * The typedness is derived from the parent state (only the types of added rules have to be propagated)
+     */
+    private static GrammarTypedness getTypes(ConfluenceWrapperGrammar grammar, CompletionState parentState) {
+        return GrammarTypedness.derive(grammar.getConcretizationGrammar(), parentState == null ? null : parentState.types);
+    }
+
+    private static CriticalPairFinderSettings getSettings(CompletionState parentState) {
+        return parentState == null ? new CriticalPairFinderSettings() : parentState.settings;
+    }
+
+    /**
+     * Returns a state with the same grammar and critical pairs (the critical pairs are computed if required) whose
+     * successors can be cancelled with the given token. This allows to share the critical pairs of a state between
+     * multiple completion runs that are cancelled independently.
+     */
+    public CompletionState withCancellation(CancellationToken cancellation) {
+        return new CompletionState(this, cancellation);
+    }
+
+    public CancellationToken getCancellation() {
+        return settings.getCancellation();
     }
 
     public ConfluenceWrapperGrammar getGrammar() {
         return grammar;
     }
 
-    public Collection<CriticalPair> getCriticalPairs() {
+    public synchronized Collection<CriticalPair> getCriticalPairs() {
+        computeCriticalPairs(Integer.MAX_VALUE);
         return Collections.unmodifiableCollection(criticalPairs);
     }
 
+    /**
+     * Returns the number of critical pairs (including multiplicities) if it is smaller than limit. Otherwise a number
+     * that is at least limit is returned. The critical pairs are only computed until limit is reached.
+     */
+    public synchronized int getNumberCriticalPairs(int limit) {
+        computeCriticalPairs(limit);
+        if (criticalPairs != null) {
+            return CriticalPairFinder.getNumberCriticalPairs(criticalPairs);
+        } else {
+            return criticalPairFinder.getNumberNotStronglyJoinable();
+        }
+    }
+
+    /**
+     * Returns the number of critical pairs (including multiplicities) with the given joinability. This also includes
+     * the strongly joinable critical pairs, which are not part of getCriticalPairs.
+     */
+    public synchronized int getNumberCriticalPairs(Joinability joinability) {
+        int result = 0;
+        for (CriticalPair criticalPair : getCriticalPairFinder().getCriticalPairs()) {
+            if (criticalPair.getJoinability() == joinability) {
+                result += criticalPair.getMultiplicity();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the critical pairs until there are at least limit critical pairs that are not strongly joinable
+     */
+    private void computeCriticalPairs(int limit) {
+        if (criticalPairs != null) {
+            return;
+        }
+        computeCriticalPairFinder(limit);
+        if (criticalPairFinder.isComplete()) {
+            criticalPairs = criticalPairFinder.getCriticalPairsMaxJoinability(Joinability.WEAKLY_JOINABLE);
+        }
+    }
+
+    /**
+     * Computes the critical pairs of the finder until there are at least limit critical pairs that are not strongly
+     * joinable (also if the critical pairs of the state were given explicitly)
+     */
+    private void computeCriticalPairFinder(int limit) {
+        if (criticalPairFinder == null) {
+            // Isomorphic critical pairs are only kept once (the losses use the multiplicities), so the heuristics do
+            // not have to process the same critical pair multiple times
+            criticalPairFinder = new CriticalPairFinder(grammar, new CriticalPairFinderSettings(settings)
+                    .setParentFinder(parentFinder)
+                    .setDeduplicate(true)
+                    .setMaxNumberNotStronglyJoinable(limit));
+        } else if (!criticalPairFinder.isComplete()) {
+            criticalPairFinder.continueComputation(limit);
+        }
+        if (criticalPairFinder.isComplete()) {
+            parentFinder = null;
+        }
+    }
+
+    /**
+     * @return The finder that computed the critical pairs of this state (computes the critical pairs if required)
+     */
+    private synchronized CriticalPairFinder getCriticalPairFinder() {
+        computeCriticalPairFinder(Integer.MAX_VALUE);
+        return criticalPairFinder;
+    }
+
     public GrammarTypedness getTypes() {
         return types;
     }
@@ -127,6 +127,20 @@ public class ExampleCompletionAlgorithms {
                 .addGrammarValidityCheck(new CheckDataStructureGrammar());
     }
 
+    @BenchmarkCompletionAlgorithm
+    public static CompletionAlgorithm combinedAlgorithmAdaptive() {  // Same heuristics as combinedAlgorithm1, but the order is chosen by the observed success rates
+        return new CompletionAlgorithm("combinedAlgorithmAdaptive")
+                .setCompletionStrategy(new GreedyCompletion(0, 1, true, 0))
+                .setCompletionStateLoss(new NumberCriticalPairLoss())
+                .addHeuristic(new CompletionAbstractionBlockingHeuristic())
+                .addHeuristic(new AddRulesNewNonterminalHeuristic())
+                .addHeuristic(new JoinGeneratedNonterminalsHeuristic())
+                .addHeuristic(new SingleNonterminalRuleAddingHeuristic())
+                .addHeuristic(new CompletionRuleRestrictionHeuristic(false, true))
+                .addGrammarValidityCheck(new LocalConcretizability())
+                .addGrammarValidityCheck(new CheckDataStructureGrammar());
+    }
+
     @BenchmarkCompletionAlgorithm
     public static CompletionAlgorithm combinedAlgorithm1NoLocalConcretizabilityCheck() {
         return new CompletionAlgorithm("combinedAlgorithm1NoLocalConcretizabilityCheck")
@@ -155,6 +169,23 @@ public class ExampleCompletionAlgorithms {
 
 
 
+    // Portfolios
+
+    /**
+     * Runs the combined completion algorithms concurrently and returns the best result
+     *
+     * @param timeBudgetMillis The time after which all algorithms are cancelled (no budget if set to 0)
+     * @param parallelism The maximal number of algorithms that are executed at the same time
+     */
+    public static CompletionPortfolio combinedPortfolio(long timeBudgetMillis, int parallelism) {
+        return new CompletionPortfolio(new NumberCriticalPairLoss(), timeBudgetMillis, parallelism)
+                .addAlgorithm(combinedAlgorithm1())
+                .addAlgorithm(combinedAlgorithm2())
+                .addAlgorithm(combinedAlgorithmAdaptive())
+                .addAlgorithm(combinedAlgorithm1NoLocalConcretizabilityCheck())
+                .addAlgorithm(combinedAlgorithm2NoLocalConcretizabilityCheck());
+    }
+
     // TODO: Remove this method
     public static void main(String[] args) {
         ConfluenceWrapperGrammar grammar = null; // = ConfluenceTool.parseGrammar("DLList");
@@ -176,7 +207,7 @@ public class ExampleCompletionAlgorithms {
         int numberInitialCriticalPairs = finder.getCriticalPairsMaxJoinability(Joinability.WEAKLY_JOINABLE).size();
         System.out.println("Number initial critical pairs: " + numberInitialCriticalPairs);
         CompletionState resultingState = combinedAlgorithm1().runCompletionAlgorithm(grammar);
-        System.out.println("Number remaining critical pairs: " + resultingState.getCriticalPairs().size());
+        System.out.println("Number remaining critical pairs: " + CriticalPairFinder.getNumberCriticalPairs(resultingState.getCriticalPairs()));
 
         try {
             TikzExport exporter = new TikzExport("reports/remaining-critical-pairs.tex", true);
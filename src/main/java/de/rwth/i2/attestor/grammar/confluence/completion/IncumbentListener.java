@@ -0,0 +1,17 @@
+package de.rwth.i2.attestor.grammar.confluence.completion;
+
+/**
+ * Is notified by the completion strategies whenever the best completion state found so far (the incumbent) changes
+ * (see CompletionAlgorithm.addIncumbentListener).
+ */
+public interface IncumbentListener {
+
+    /**
+     * Called with the initial state and afterwards every time a completion state with a smaller loss is found. The
+     * critical pairs of the state have been computed completely.
+     *
+     * @param state The new incumbent
+     * @param loss The loss of the new incumbent
+     */
+    void onIncumbentImproved(CompletionState state, double loss);
+}
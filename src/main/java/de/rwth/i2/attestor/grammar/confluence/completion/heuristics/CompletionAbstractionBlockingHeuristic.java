@@ -19,7 +19,6 @@ import java.util.Collections;
  *
  * TODO: Add option to block only one critical pair in one step
  * TODO: Add option to unblock critical pairs
- * TODO: Add optimization to check if block HC is subgraph of other block HC
  */
 public class CompletionAbstractionBlockingHeuristic extends CompletionHeuristic {
 
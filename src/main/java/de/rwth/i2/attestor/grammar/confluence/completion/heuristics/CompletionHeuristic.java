@@ -1,10 +1,18 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.heuristics;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
 import de.rwth.i2.attestor.grammar.confluence.benchmark.CompletionHeuristicStatisticCollector;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
 /**
  * Interface for all completion heuristics. A completion heuristic returns all possible ways the heuristic can be applied
  * in the current state.
@@ -14,7 +22,7 @@ import org.json.JSONObject;
  * be larger than the other original rule indices.
  */
 public abstract class CompletionHeuristic {
-    CompletionHeuristicStatisticCollector statistic = new CompletionHeuristicStatisticCollector();
+    CompletionHeuristicStatisticCollector statistic = CompletionHeuristicStatisticCollector.create();
 
     /**
      * @param state The state on which the heuristic should be applied
@@ -22,8 +30,44 @@ public abstract class CompletionHeuristic {
      */
     public abstract Iterable<CompletionState> applyHeuristic(CompletionState state);
 
+    /**
+     * Returns the same successors as applyHeuristic (in the same order), but as candidates that only compute the
+     * completion state when get() is called. This allows to compute the (expensive) completion states in parallel, so
+     * get() must be thread-safe.
+     * The default implementation already computes each completion state while iterating over the candidates.
+     */
+    public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state) {
+        return getSuccessorCandidates(state, null);
+    }
+
+    /**
+     * Returns the successor candidates like getSuccessorCandidates(state), but considers the critical pairs of the
+     * state in the given order. This allows a completion strategy to try the critical pairs first that are more likely
+     * to be fixed. The order is passed per invocation (and not stored in the heuristic), so the same heuristic can be
+     * used by multiple completion runs in parallel.
+     * The default implementation ignores the order and returns the successors of applyHeuristic.
+     *
+     * @param criticalPairOrder The order of the critical pairs (null to use the order of the completion state)
+     */
+    public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state,
+                                                                      Comparator<CriticalPair> criticalPairOrder) {
+        return Iterables.transform(applyHeuristic(state), nextState -> () -> nextState);
+    }
+
     public abstract String getIdentifier();
 
+    /**
+     * @return The critical pairs of the state in the given order (the sort is stable, null to use the order of the state)
+     */
+    static Collection<CriticalPair> getCriticalPairs(CompletionState state, Comparator<CriticalPair> criticalPairOrder) {
+        if (criticalPairOrder == null) {
+            return state.getCriticalPairs();
+        }
+        List<CriticalPair> result = new ArrayList<>(state.getCriticalPairs());
+        result.sort(criticalPairOrder);
+        return result;
+    }
+
     JSONObject getStatistic() {
         return statistic.getJsonResult();
     }
@@ -1,5 +1,6 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.heuristics;
 
+import com.google.common.collect.Iterables;
 import de.rwth.i2.attestor.grammar.GrammarRuleOriginal;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
@@ -10,6 +11,7 @@ import de.rwth.i2.attestor.util.Pair;
 import gnu.trove.list.array.TIntArrayList;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Abstract class for all heuristics that try to add one or more rules for every critical pair.
@@ -20,16 +22,22 @@ public abstract class CompletionRuleAddingHeuristic extends CompletionHeuristic
 
     @Override
     public Iterable<CompletionState> applyHeuristic(CompletionState state) {
-        return new Iterable<CompletionState>() {
+        return Iterables.transform(getSuccessorCandidates(state), Supplier::get);
+    }
+
+    @Override
+    public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state,
+                                                                      Comparator<CriticalPair> criticalPairOrder) {
+        return new Iterable<Supplier<CompletionState>>() {
             @Override
-            public Iterator<CompletionState> iterator() {
-                Iterator<CriticalPair> criticalPairIterator = state.getCriticalPairs().iterator();
+            public Iterator<Supplier<CompletionState>> iterator() {
+                Iterator<CriticalPair> criticalPairIterator = getCriticalPairs(state, criticalPairOrder).iterator();
 
-                return new Iterator<CompletionState>() {
+                return new Iterator<Supplier<CompletionState>>() {
                     Iterator<Collection<Pair<Nonterminal, HeapConfiguration>>> newRuleIterator = Collections.emptyIterator();
-                    CompletionState nextCompletionState = computeNext();
+                    Supplier<CompletionState> nextCompletionState = computeNext();
 
-                    private CompletionState computeNext() {
+                    private Supplier<CompletionState> computeNext() {
                         while (true) {  // Search until all rules are growing
                             while (!newRuleIterator.hasNext()) {
                                 if (criticalPairIterator.hasNext()) {
@@ -57,9 +65,11 @@ public abstract class CompletionRuleAddingHeuristic extends CompletionHeuristic
                                 originialRuleIdx++;
                             }
                             if (allRulesAreGrowing) {
-                                // Add state with the new rules
-                                ConfluenceWrapperGrammar newGrammar = grammar.getModifiedGrammar(Collections.EMPTY_LIST, newGrammarRules, grammar.getAbstractionBlockingHeapConfigurations());
-                                return new CompletionState(newGrammar, state);
+                                // Add state with the new rules (computed when the candidate is evaluated)
+                                return () -> {
+                                    ConfluenceWrapperGrammar newGrammar = grammar.getModifiedGrammar(Collections.EMPTY_LIST, newGrammarRules, grammar.getAbstractionBlockingHeapConfigurations());
+                                    return new CompletionState(newGrammar, state);
+                                };
                             }
                         }
                     }
@@ -70,8 +80,8 @@ public abstract class CompletionRuleAddingHeuristic extends CompletionHeuristic
                     }
 
                     @Override
-                    public CompletionState next() {
-                        CompletionState oldCompletionState = nextCompletionState;
+                    public Supplier<CompletionState> next() {
+                        Supplier<CompletionState> oldCompletionState = nextCompletionState;
                         nextCompletionState = computeNext();
                         return oldCompletionState;
                     }
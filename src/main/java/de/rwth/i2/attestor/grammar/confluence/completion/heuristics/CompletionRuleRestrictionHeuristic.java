@@ -1,5 +1,6 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.heuristics;
 
+import com.google.common.collect.Iterables;
 import de.rwth.i2.attestor.grammar.GrammarRule;
 import de.rwth.i2.attestor.grammar.GrammarRuleCollapsed;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
@@ -8,12 +9,17 @@ import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Deactivates a rule so it can only be used for concretization, but not abstraction. Removes critical pairs that involve
  * the deactivated rule, but might introduce other critical pairs.
- * Therefore when a rule restriction heuristic is used ALL critical pairs have to be recomputed
- * (because removing a rule means strongly joinable rule might not be joinable now).
+ * Therefore when a rule restriction heuristic is used the joinability of the remaining critical pairs has to be
+ * recomputed (because removing a rule means strongly joinable rule might not be joinable now). Only the critical pairs
+ * that the flipped rule might affect are recomputed (see AbstractionRuleDelta in CriticalPairFinder).
+ *
+ * The successors are generated lazily in the order of the critical pairs, so a completion strategy only pays for the
+ * candidates it actually evaluates.
  *
  */
 public class CompletionRuleRestrictionHeuristic extends CompletionHeuristic {
@@ -31,24 +37,34 @@ public class CompletionRuleRestrictionHeuristic extends CompletionHeuristic {
 
     @Override
     public Iterable<CompletionState> applyHeuristic(CompletionState state) {
-        List<CompletionState> result = new ArrayList<>();
+        return Iterables.transform(getSuccessorCandidates(state), Supplier::get);
+    }
+
+    /**
+     * The rules to flip are determined up front (this only requires the critical pairs of the state), but the modified
+     * grammar and its completion state are only created when a candidate is evaluated.
+     */
+    @Override
+    public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state,
+                                                                      Comparator<CriticalPair> criticalPairOrder) {
+        List<GrammarRule> rulesToFlip = new ArrayList<>();
         Set<GrammarRule> alreadyFlippedGrammarRules = new HashSet<>();
 
         // Find problematic rules
-        for (CriticalPair criticalPair : state.getCriticalPairs()) {
+        for (CriticalPair criticalPair : getCriticalPairs(state, criticalPairOrder)) {
             // Add new states one with rule 1 disable and one with rule 2 disabled
-            flipRuleActivation(state, criticalPair.getR1(), alreadyFlippedGrammarRules, result);
-            flipRuleActivation(state, criticalPair.getR2(), alreadyFlippedGrammarRules, result);
+            addRuleToFlip(criticalPair.getR1(), alreadyFlippedGrammarRules, rulesToFlip);
+            addRuleToFlip(criticalPair.getR2(), alreadyFlippedGrammarRules, rulesToFlip);
         }
 
         if (reactivateRules) {
             // Reactivate rules that have been disabled
             for (GrammarRule deactivatedRule : state.getGrammar().getInactiveRules()) {
-                flipRuleActivation(state, deactivatedRule, alreadyFlippedGrammarRules, result);
+                addRuleToFlip(deactivatedRule, alreadyFlippedGrammarRules, rulesToFlip);
             }
         }
 
-        return result;
+        return Iterables.transform(rulesToFlip, ruleToFlip -> () -> flipRuleActivation(state, ruleToFlip));
     }
 
     private boolean preventFlip(GrammarRule rule) {
@@ -61,15 +77,19 @@ public class CompletionRuleRestrictionHeuristic extends CompletionHeuristic {
         }
     }
 
-    private void flipRuleActivation(CompletionState state, GrammarRule ruleToFlip, Set<GrammarRule> alreadyFlippedGrammarRules, List<CompletionState> result) {
-        if (!preventFlip(ruleToFlip) && !alreadyFlippedGrammarRules.contains(ruleToFlip)) {
-            ConfluenceWrapperGrammar modifiedGrammar = state.getGrammar().getModifiedGrammar(Collections.singleton(ruleToFlip), Collections.emptySet(), state.getGrammar().getAbstractionBlockingHeapConfigurations());
-            // Add the new state where all critical pairs are recomputed TODO: If the rule is activated we don't need to recompute everything
-            result.add(new CompletionState(modifiedGrammar, state));
-            alreadyFlippedGrammarRules.add(ruleToFlip);
+    private void addRuleToFlip(GrammarRule ruleToFlip, Set<GrammarRule> alreadyFlippedGrammarRules, List<GrammarRule> rulesToFlip) {
+        if (!preventFlip(ruleToFlip) && alreadyFlippedGrammarRules.add(ruleToFlip)) {
+            rulesToFlip.add(ruleToFlip);
         }
     }
 
+    private static CompletionState flipRuleActivation(CompletionState state, GrammarRule ruleToFlip) {
+        ConfluenceWrapperGrammar modifiedGrammar = state.getGrammar().getModifiedGrammar(Collections.singleton(ruleToFlip), Collections.emptySet(), state.getGrammar().getAbstractionBlockingHeapConfigurations());
+        // The overlappings of the rule pairs that are still active are reused and the joinability of the critical
+        // pairs is only recomputed if the flipped rule can affect it (see CriticalPairFinder)
+        return new CompletionState(modifiedGrammar, state);
+    }
+
     @Override
     public String getIdentifier() {
         return "ruleRestriction";
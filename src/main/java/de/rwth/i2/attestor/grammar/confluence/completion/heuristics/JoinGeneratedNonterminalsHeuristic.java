@@ -1,5 +1,6 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.heuristics;
 
+import com.google.common.collect.Iterables;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
@@ -9,7 +10,9 @@ import de.rwth.i2.attestor.graph.Nonterminal;
 import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
 import gnu.trove.list.array.TIntArrayList;
 
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.function.Supplier;
 
 /**
  * If both fully abstracted HCs are handles of newly introduced nonterminals of the same rank -> Try to join them
@@ -18,19 +21,26 @@ import java.util.Iterator;
 public class JoinGeneratedNonterminalsHeuristic extends CompletionHeuristic {
     @Override
     public Iterable<CompletionState> applyHeuristic(CompletionState state) {
-        return new Iterable<CompletionState>() {
+        return Iterables.transform(getSuccessorCandidates(state), Supplier::get);
+    }
+
+    @Override
+    public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state,
+                                                                      Comparator<CriticalPair> criticalPairOrder) {
+        return new Iterable<Supplier<CompletionState>>() {
             @Override
-            public Iterator<CompletionState> iterator() {
-                Iterator<CriticalPair> criticalPairIterator = state.getCriticalPairs().iterator();
+            public Iterator<Supplier<CompletionState>> iterator() {
+                Iterator<CriticalPair> criticalPairIterator = getCriticalPairs(state, criticalPairOrder).iterator();
 
-                return new SimpleIterator<CompletionState>() {
+                return new SimpleIterator<Supplier<CompletionState>>() {
                     @Override
-                    public CompletionState computeNext() {
+                    public Supplier<CompletionState> computeNext() {
                         while (criticalPairIterator.hasNext()) {
                             ConfluenceWrapperGrammar newGrammar = fixCriticalPair(state, criticalPairIterator.next());
                             if (newGrammar != null) {
-                                // The current critical pair can be fixed -> Compute the following completion state
-                                return new CompletionState(newGrammar, state);
+                                // The current critical pair can be fixed -> The following completion state is computed
+                                // when the candidate is evaluated
+                                return () -> new CompletionState(newGrammar, state);
                             }
                         }
                         return null;
@@ -20,5 +20,30 @@ public interface CompletionStateLoss {
      */
     double getLoss(CompletionState state);
 
+    /**
+     * Returns the loss of the given completion state if it is smaller than threshold. Otherwise a value that is at
+     * least threshold is returned. This allows to stop the computation of the critical pairs as soon as the state
+     * provably cannot be better than a state with loss threshold.
+     */
+    default double getLoss(CompletionState state, double threshold) {
+        return getLoss(state);
+    }
+
+    /**
+     * Returns the smallest number of critical pairs for which a state with the given loss of everything else (lossWithoutCriticalPairs)
+     * has a loss of at least threshold
+     */
+    static int getCriticalPairLimit(double threshold, double lossWithoutCriticalPairs, double criticalPairWeight) {
+        if (criticalPairWeight == 0) {
+            // The critical pairs do not influence the loss
+            return 0;
+        }
+        if (criticalPairWeight < 0 || Double.isInfinite(threshold) || Double.isNaN(threshold)) {
+            return Integer.MAX_VALUE;
+        }
+        double limit = Math.ceil((threshold - lossWithoutCriticalPairs) / criticalPairWeight);
+        return (int) Math.max(0, Math.min(limit, Integer.MAX_VALUE));
+    }
+
     JSONObject getDescription();
 }
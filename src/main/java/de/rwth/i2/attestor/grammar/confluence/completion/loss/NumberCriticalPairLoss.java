@@ -1,18 +1,30 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.loss;
 
 import com.google.common.collect.ImmutableMap;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import org.json.JSONObject;
 
 import java.util.Map;
 
 /**
- * A simple loss function that just takes the number of critical pairs into account.
+ * A simple loss function that just takes the number of critical pairs (including their multiplicities) into account.
  */
 public class NumberCriticalPairLoss implements CompletionStateLoss {
     @Override
     public double getLoss(CompletionState state) {
-        return state.getCriticalPairs().size();
+        return CriticalPairFinder.getNumberCriticalPairs(state.getCriticalPairs());
+    }
+
+    @Override
+    public double getLoss(CompletionState state, double threshold) {
+        int limit = CompletionStateLoss.getCriticalPairLimit(threshold, 0, 1);
+        int numberCriticalPairs = state.getNumberCriticalPairs(limit);
+        if (numberCriticalPairs >= limit) {
+            // Not all critical pairs have been computed
+            return Math.max(numberCriticalPairs, threshold);
+        }
+        return numberCriticalPairs;
     }
 
     @Override
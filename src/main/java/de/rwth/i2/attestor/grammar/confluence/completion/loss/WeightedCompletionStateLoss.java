@@ -2,6 +2,7 @@ package de.rwth.i2.attestor.grammar.confluence.completion.loss;
 
 import com.google.common.collect.ImmutableMap;
 import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import org.json.JSONObject;
 
@@ -22,7 +23,31 @@ public class WeightedCompletionStateLoss implements CompletionStateLoss {
 
     @Override
     public double getLoss(CompletionState state) {
-        double loss = state.getCriticalPairs().size() * numCriticalPairWeight + state.getGrammar().getActiveRules().size() * numRulesWeight;
+        return computeLoss(state, CriticalPairFinder.getNumberCriticalPairs(state.getCriticalPairs()));
+    }
+
+    /**
+     * The rule and external node terms are known before any critical pair is computed, so the critical pairs only
+     * have to be computed until the loss reaches the threshold
+     */
+    @Override
+    public double getLoss(CompletionState state, double threshold) {
+        double lossWithoutCriticalPairs = computeLoss(state, 0);
+        if (numCriticalPairWeight == 0) {
+            // The critical pairs do not have to be computed at all
+            return lossWithoutCriticalPairs;
+        }
+        int limit = CompletionStateLoss.getCriticalPairLimit(threshold, lossWithoutCriticalPairs, numCriticalPairWeight);
+        int numberCriticalPairs = state.getNumberCriticalPairs(limit);
+        if (numberCriticalPairs >= limit) {
+            // Not all critical pairs have been computed
+            return Math.max(computeLoss(state, numberCriticalPairs), threshold);
+        }
+        return computeLoss(state, numberCriticalPairs);
+    }
+
+    private double computeLoss(CompletionState state, int numberCriticalPairs) {
+        double loss = numberCriticalPairs * numCriticalPairWeight + state.getGrammar().getActiveRules().size() * numRulesWeight;
         if (numExternalNodesWeight != 0) {
             int numberExternalNodes = 0;
             for (GrammarRule rule : state.getGrammar().getActiveRules()) {
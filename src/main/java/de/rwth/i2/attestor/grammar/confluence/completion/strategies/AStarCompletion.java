@@ -1,25 +1,321 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
 
 import com.google.common.collect.ImmutableMap;
-import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
+import de.rwth.i2.attestor.grammar.confluence.benchmark.CompletionHeuristicStatisticCollector;
+import de.rwth.i2.attestor.grammar.confluence.benchmark.StartStopTimer;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.CompletionStateLoss;
+import de.rwth.i2.attestor.grammar.confluence.completion.validity.GrammarValidity;
 import org.json.JSONObject;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
 /**
- * A more complex completion strategy that might find better solutions than the greedy approach.
+ * A best first search over the completion states that might find better solutions than the greedy approach.
+ * The completion state with the smallest loss is expanded next (by applying all heuristics to it). Only valid
+ * completion states are added to the queue and completion states with the same grammar (see GrammarFingerprint) are
+ * only added once.
+ *
+ * The search is bounded by the maximal size of the queue (the states with the largest loss are removed), the beam
+ * width (only the best successors of each expanded state are added to the queue) and the number of expanded states.
+ * The search stops as soon as a completion state without critical pairs is found and returns the completion state
+ * with the smallest loss. If the search is cancelled (see CompletionState.getCancellation) the completion state with
+ * the smallest loss found so far is returned.
+ *
+ * The search statistic (e.g. the number of expanded states) is collected per run and published when the run is
+ * finished, so getDescription describes the last finished run (also if the strategy is used by multiple runs).
  */
 public class AStarCompletion implements CompletionStrategy {
+    final int maxQueueSize;
+    final int beamWidth;
+    final int nodeBudget;
+    final int parallelism;
+    final StartStopTimer completeRuntime = new StartStopTimer();
+    private volatile SearchStatistic lastSearchStatistic = new SearchStatistic();
+
+    /**
+     * Creates an unbounded (besides the queue size of 1000) sequential search
+     */
+    public AStarCompletion() {
+        this(1000, 0, 0, 1);
+    }
+
+    /**
+     * @param maxQueueSize The maximal number of completion states in the queue
+     * @param beamWidth The maximal number of successors of one completion state that are added to the queue (no maximum if set to 0)
+     * @param nodeBudget The maximal number of completion states that are expanded (no maximum if set to 0)
+     * @param parallelism The number of threads that compute the successors of a completion state (sequential if set to 1)
+     */
+    public AStarCompletion(int maxQueueSize, int beamWidth, int nodeBudget, int parallelism) {
+        if (maxQueueSize < 1 || beamWidth < 0 || nodeBudget < 0 || parallelism < 1) {
+            throw new IllegalArgumentException("Invalid search bounds");
+        }
+        this.maxQueueSize = maxQueueSize;
+        this.beamWidth = beamWidth;
+        this.nodeBudget = nodeBudget;
+        this.parallelism = parallelism;
+    }
+
     @Override
-    public CompletionState executeCompletionStrategy(ConfluenceWrapperGrammar inputGrammar, CompletionAlgorithm completionSettings) {
-        // TODO
-        throw new UnsupportedOperationException();
+    public CompletionState executeCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings) {
+        ExecutorService executor = null;
+        if (parallelism > 1) {
+            executor = Executors.newFixedThreadPool(parallelism);
+        }
+        try {
+            return executeCompletionStrategy(initialState, completionSettings, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private CompletionState executeCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings,
+                                                      ExecutorService executor) {
+        SearchStatistic statistic = new SearchStatistic();
+        completeRuntime.startTimer();
+        try {
+            return search(initialState, completionSettings, executor, statistic);
+        } finally {
+            completeRuntime.stopTimer();
+            lastSearchStatistic = statistic;
+        }
+    }
+
+    private CompletionState search(CompletionState initialState, CompletionAlgorithm completionSettings, ExecutorService executor,
+                                   SearchStatistic statistic) {
+        CompletionStateLoss completionStateLoss = completionSettings.getCompletionStateLoss();
+        CancellationToken cancellation = initialState.getCancellation();
+
+        // The queue is ordered by the loss. States with the same loss are ordered by the time they were found, so the
+        // search is deterministic.
+        TreeSet<SearchNode> queue = new TreeSet<>();
+        Set<GrammarFingerprint> visited = new HashSet<>();
+        int nextSequenceNumber = 0;
+
+        SearchNode bestNode = new SearchNode(initialState, completionStateLoss.getLoss(initialState), nextSequenceNumber++);
+        queue.add(bestNode);
+        visited.add(new GrammarFingerprint(initialState.getGrammar()));
+        completionSettings.notifyIncumbentImproved(bestNode.state, bestNode.loss);
+
+        while (!queue.isEmpty() && bestNode.state.getCriticalPairs().size() > 0
+                && (nodeBudget == 0 || statistic.numberExpandedNodes < nodeBudget) && !cancellation.isCancelled()) {
+            SearchNode node = queue.pollFirst();
+            statistic.numberExpandedNodes++;
+
+            List<EvaluatedSuccessor> evaluatedSuccessors;
+            try {
+                evaluatedSuccessors = expand(node, completionSettings, executor);
+            } catch (CancellationException e) {
+                // The successors of the node are incomplete
+                break;
+            }
+            List<SearchNode> successors = new ArrayList<>();
+            for (EvaluatedSuccessor successor : evaluatedSuccessors) {
+                if (!successor.isValid) {
+                    continue;
+                }
+                if (!visited.add(successor.fingerprint)) {
+                    statistic.numberDuplicateStates++;
+                    continue;
+                }
+                successors.add(new SearchNode(successor.state, successor.loss, nextSequenceNumber++));
+            }
+
+            // Only keep the best successors
+            Collections.sort(successors);
+            if (beamWidth > 0 && successors.size() > beamWidth) {
+                successors = successors.subList(0, beamWidth);
+            }
+
+            for (SearchNode successor : successors) {
+                if (successor.loss < bestNode.loss) {
+                    bestNode = successor;
+                    completionSettings.notifyIncumbentImproved(bestNode.state, bestNode.loss);
+                }
+                queue.add(successor);
+                statistic.numberQueuedStates++;
+                if (queue.size() > maxQueueSize) {
+                    queue.pollLast();
+                }
+            }
+        }
+
+        return bestNode.state;
+    }
+
+    /**
+     * Computes all successors of the node (for all heuristics, in the order of the heuristics). The successors are
+     * evaluated by the executor (if not null). The statistic collectors of the heuristics are updated.
+     */
+    private List<EvaluatedSuccessor> expand(SearchNode node, CompletionAlgorithm completionSettings, ExecutorService executor) {
+        List<EvaluatedSuccessor> result = new ArrayList<>();
+        for (CompletionHeuristic heuristic : completionSettings.getHeuristics()) {
+            CompletionHeuristicStatisticCollector statisticCollector = heuristic.getStatisticCollector();
+            statisticCollector.startTimer();
+
+            List<EvaluatedSuccessor> heuristicSuccessors;
+            try {
+                heuristicSuccessors = evaluateSuccessors(heuristic, node, completionSettings, executor);
+            } catch (CancellationException e) {
+                statisticCollector.stopTimer();
+                throw e;
+            }
+
+            // Update statistic (a successor is successful if it is valid and improves the loss of the expanded state)
+            int numHeuristicTries = 0;
+            int firstSuccessAtTry = 0;
+            for (EvaluatedSuccessor successor : heuristicSuccessors) {
+                numHeuristicTries++;
+                if (successor.runtime != null) {
+                    statisticCollector.addRuntime(successor.runtime);
+                }
+                if (!successor.isValid) {
+                    statisticCollector.incrementNumGrammarValidityCheckFails();
+                } else if (successor.loss >= node.loss) {
+                    statisticCollector.incrementNumLossFunctionFail();
+                } else {
+                    statisticCollector.incrementNumSuccess();
+                    if (firstSuccessAtTry == 0) {
+                        firstSuccessAtTry = numHeuristicTries;
+                    }
+                }
+            }
+            if (firstSuccessAtTry > 0) {
+                statisticCollector.saveSuccessAtTry(firstSuccessAtTry);
+            } else {
+                statisticCollector.saveFailureAtTry(numHeuristicTries);
+            }
+
+            statisticCollector.stopTimer();
+            result.addAll(heuristicSuccessors);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates all successor candidates of the heuristic for the node (in the order of the heuristic)
+     *
+     * @throws CancellationException If the evaluation has been cancelled
+     */
+    private List<EvaluatedSuccessor> evaluateSuccessors(CompletionHeuristic heuristic, SearchNode node,
+                                                        CompletionAlgorithm completionSettings, ExecutorService executor) {
+        List<EvaluatedSuccessor> heuristicSuccessors = new ArrayList<>();
+        if (executor == null) {
+            for (Supplier<CompletionState> candidate : heuristic.getSuccessorCandidates(node.state)) {
+                heuristicSuccessors.add(evaluateSuccessor(candidate, completionSettings, false));
+            }
+        } else {
+            List<Future<EvaluatedSuccessor>> futures = new ArrayList<>();
+            for (Supplier<CompletionState> candidate : heuristic.getSuccessorCandidates(node.state)) {
+                futures.add(executor.submit(() -> evaluateSuccessor(candidate, completionSettings, true)));
+            }
+            try {
+                for (Future<EvaluatedSuccessor> future : futures) {
+                    heuristicSuccessors.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Completion was interrupted", e);
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                if (e.getCause() instanceof CancellationException) {
+                    throw (CancellationException) e.getCause();
+                }
+                throw new IllegalStateException("Evaluation of a completion candidate failed", e.getCause());
+            }
+        }
+        return heuristicSuccessors;
+    }
+
+    private static EvaluatedSuccessor evaluateSuccessor(Supplier<CompletionState> candidate, CompletionAlgorithm completionSettings,
+                                                        boolean measureRuntime) {
+        StartStopTimer runtime = null;
+        if (measureRuntime) {
+            runtime = new StartStopTimer();
+            runtime.startTimer();
+        }
+        CompletionState state = candidate.get();
+        double loss = completionSettings.getCompletionStateLoss().getLoss(state);
+        boolean isValid = true;
+        for (GrammarValidity validityCheck : completionSettings.getValidityChecks()) {
+            if (!validityCheck.isValid(state)) {
+                isValid = false;
+                break;
+            }
+        }
+        GrammarFingerprint fingerprint = isValid ? new GrammarFingerprint(state.getGrammar()) : null;
+        if (runtime != null) {
+            runtime.stopTimer();
+        }
+        return new EvaluatedSuccessor(state, loss, isValid, fingerprint, runtime);
     }
 
     @Override
     public JSONObject getDescription() {
-        return new JSONObject(ImmutableMap.of(
-                "name", "aStar"
-        ));
+        SearchStatistic statistic = lastSearchStatistic;
+        return new JSONObject(ImmutableMap.builder()
+                .put("name", "aStar")
+                .put("maxQueueSize", maxQueueSize)
+                .put("beamWidth", beamWidth)
+                .put("nodeBudget", nodeBudget)
+                .put("parallelism", parallelism)
+                .put("numberExpandedNodes", statistic.numberExpandedNodes)
+                .put("numberQueuedStates", statistic.numberQueuedStates)
+                .put("numberDuplicateStates", statistic.numberDuplicateStates)
+                .put("runtime", completeRuntime.getRuntime())
+                .build()
+        );
+    }
+
+    /**
+     * The statistic of one run (only modified by the thread that executes the run)
+     */
+    private static class SearchStatistic {
+        int numberExpandedNodes = 0;
+        int numberQueuedStates = 0;  // The successors that were added to the queue (after the beam width was applied)
+        int numberDuplicateStates = 0;
+    }
+
+    private static class SearchNode implements Comparable<SearchNode> {
+        final CompletionState state;
+        final double loss;
+        final int sequenceNumber;
+
+        SearchNode(CompletionState state, double loss, int sequenceNumber) {
+            this.state = state;
+            this.loss = loss;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(SearchNode other) {
+            int result = Double.compare(loss, other.loss);
+            return result != 0 ? result : Integer.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    private static class EvaluatedSuccessor {
+        final CompletionState state;
+        final double loss;
+        final boolean isValid;
+        final GrammarFingerprint fingerprint;  // null if the successor is not valid
+        final StartStopTimer runtime;  // null if the successor was evaluated in the calling thread
+
+        EvaluatedSuccessor(CompletionState state, double loss, boolean isValid, GrammarFingerprint fingerprint,
+                           StartStopTimer runtime) {
+            this.state = state;
+            this.loss = loss;
+            this.isValid = isValid;
+            this.fingerprint = fingerprint;
+            this.runtime = runtime;
+        }
     }
 }
@@ -0,0 +1,150 @@
+package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
+
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.util.Pair;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Decides in which order the heuristics (and the critical pairs) are tried by GreedyCompletion, based on the
+ * success statistics observed during the current completion run.
+ *
+ * - The heuristics are ranked by their (Laplace smoothed) success rate per evaluated candidate
+ *   (successes + 1) / (tries + 1). Each evaluated candidate requires the construction of a completion state, so this
+ *   ranks the heuristics by the expected cost per successful step. Heuristics that have not been tried yet have the
+ *   maximal rate, so every heuristic is tried at least once. Ties are broken by the order of the completion algorithm,
+ *   so the schedule is deterministic.
+ * - A heuristic that did not find an improving candidate for a completion state is not tried again on the same state
+ *   (the result would be the same).
+ * - A heuristic is skipped for the rest of the run if it needed more than maxTriesWithoutSuccess tries since its last
+ *   success (or since the start of the run).
+ * - The critical pairs are ordered by the number of successful steps they have survived (ascending). A critical pair
+ *   that survives a step could not be fixed by any of the candidates that were tried before the successful one, so
+ *   critical pairs that keep failing are moved to the end.
+ */
+class AdaptiveHeuristicScheduler {
+    private final List<HeuristicArm> arms = new ArrayList<>();
+    private final int maxTriesWithoutSuccess;
+    // The number of successful steps the critical pairs of the rule pair have survived
+    private final Map<Pair<GrammarRule, GrammarRule>, Integer> criticalPairAges = new HashMap<>();
+
+    /**
+     * @param maxTriesWithoutSuccess The number of tries without success after which a heuristic is skipped (no limit
+     *                               if set to 0)
+     */
+    AdaptiveHeuristicScheduler(List<CompletionHeuristic> heuristics, int maxTriesWithoutSuccess) {
+        for (CompletionHeuristic heuristic : heuristics) {
+            arms.add(new HeuristicArm(heuristic));
+        }
+        this.maxTriesWithoutSuccess = maxTriesWithoutSuccess;
+    }
+
+    /**
+     * @return The next heuristic that should be applied to the state or null if no heuristic can be applied anymore
+     */
+    CompletionHeuristic getNextHeuristic(CompletionState state) {
+        HeuristicArm best = null;
+        for (HeuristicArm arm : arms) {
+            if (arm.exhaustedState != state && !isSkipped(arm)
+                    && (best == null || arm.getSuccessRate() > best.getSuccessRate())) {
+                best = arm;
+            }
+        }
+        return best == null ? null : best.heuristic;
+    }
+
+    /**
+     * @return The order in which the heuristics should consider the critical pairs
+     */
+    Comparator<CriticalPair> getCriticalPairOrder() {
+        return Comparator.comparingInt(criticalPair -> criticalPairAges.getOrDefault(getRulePair(criticalPair), 0));
+    }
+
+    void recordTry(CompletionHeuristic heuristic) {
+        HeuristicArm arm = getArm(heuristic);
+        arm.tries++;
+        arm.triesSinceSuccess++;
+    }
+
+    /**
+     * Records that the heuristic found the new state
+     */
+    void recordSuccess(CompletionHeuristic heuristic, CompletionState newState) {
+        HeuristicArm arm = getArm(heuristic);
+        arm.successes++;
+        arm.triesSinceSuccess = 0;
+
+        // Age the critical pairs that survived the step and forget the fixed ones
+        Map<Pair<GrammarRule, GrammarRule>, Integer> newAges = new HashMap<>();
+        for (CriticalPair criticalPair : newState.getCriticalPairs()) {
+            Pair<GrammarRule, GrammarRule> rulePair = getRulePair(criticalPair);
+            Integer age = criticalPairAges.get(rulePair);
+            newAges.put(rulePair, age == null ? 0 : age + 1);
+        }
+        criticalPairAges.clear();
+        criticalPairAges.putAll(newAges);
+    }
+
+    /**
+     * Records that the heuristic did not find an improving candidate for the state
+     */
+    void recordExhausted(CompletionHeuristic heuristic, CompletionState state) {
+        getArm(heuristic).exhaustedState = state;
+    }
+
+    JSONObject getJsonStatistic() {
+        JSONArray heuristics = new JSONArray();
+        for (HeuristicArm arm : arms) {
+            JSONObject heuristic = new JSONObject();
+            heuristic.put("identifier", arm.heuristic.getIdentifier());
+            heuristic.put("tries", arm.tries);
+            heuristic.put("successes", arm.successes);
+            heuristic.put("skipped", isSkipped(arm));
+            heuristics.put(heuristic);
+        }
+        JSONObject result = new JSONObject();
+        result.put("heuristics", heuristics);
+        return result;
+    }
+
+    private boolean isSkipped(HeuristicArm arm) {
+        return maxTriesWithoutSuccess > 0 && arm.triesSinceSuccess > maxTriesWithoutSuccess;
+    }
+
+    private HeuristicArm getArm(CompletionHeuristic heuristic) {
+        for (HeuristicArm arm : arms) {
+            if (arm.heuristic == heuristic) {
+                return arm;
+            }
+        }
+        throw new IllegalArgumentException("The heuristic is not scheduled");
+    }
+
+    private static Pair<GrammarRule, GrammarRule> getRulePair(CriticalPair criticalPair) {
+        return new Pair<>(criticalPair.getR1(), criticalPair.getR2());
+    }
+
+    /**
+     * The statistic of a single heuristic in the current run
+     */
+    private static class HeuristicArm {
+        final CompletionHeuristic heuristic;
+        int tries = 0;
+        int successes = 0;
+        int triesSinceSuccess = 0;
+        CompletionState exhaustedState = null;  // The last state for which the heuristic found no improving candidate
+
+        HeuristicArm(CompletionHeuristic heuristic) {
+            this.heuristic = heuristic;
+        }
+
+        double getSuccessRate() {
+            return (successes + 1.0) / (tries + 1.0);
+        }
+    }
+}
@@ -14,7 +14,19 @@ public interface CompletionStrategy {
     /**
      * Executes the completion strategy with the given settings for the inputGrammar
      */
-    CompletionState executeCompletionStrategy(ConfluenceWrapperGrammar inputGrammar, CompletionAlgorithm completionSettings);
+    default CompletionState executeCompletionStrategy(ConfluenceWrapperGrammar inputGrammar, CompletionAlgorithm completionSettings) {
+        return executeCompletionStrategy(CompletionState.create(inputGrammar, completionSettings.getCriticalPairFinderSettings()), completionSettings);
+    }
+
+    /**
+     * Executes the completion strategy with the given settings starting from initialState. The initial state might be
+     * shared by multiple strategies that are executed in parallel.
+     *
+     * The strategy stops as soon as the CancellationToken of the initial state is cancelled and returns the best
+     * completion state found so far (the critical pairs of the returned state are computed completely). If the token
+     * is cancelled before the critical pairs of the initial state are computed, a CancellationException is thrown.
+     */
+    CompletionState executeCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings);
 
 
     JSONObject getDescription();
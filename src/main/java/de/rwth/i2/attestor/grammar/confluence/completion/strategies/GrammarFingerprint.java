@@ -0,0 +1,51 @@
+package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Identifies a grammar by its active rules and its abstraction blocking heap configurations. The right hand sides are
+ * compared up to isomorphism (HeapConfiguration.equals), so grammars that are reached by applying the same
+ * modifications in a different order have the same fingerprint.
+ */
+public final class GrammarFingerprint {
+    // For each nonterminal the number of active rules for each (isomorphism class of the) right hand side
+    private final Map<Nonterminal, Map<HeapConfiguration, Integer>> activeRules = new HashMap<>();
+    private final Map<HeapConfiguration, Integer> abstractionBlockingHeapConfigurations = new HashMap<>();
+    private final int hashCode;
+
+    public GrammarFingerprint(ConfluenceWrapperGrammar grammar) {
+        for (GrammarRule rule : grammar.getActiveRules()) {
+            activeRules.computeIfAbsent(rule.getNonterminal(), nonterminal -> new HashMap<>())
+                    .merge(rule.getHeapConfiguration(), 1, Integer::sum);
+        }
+        for (HeapConfiguration hc : grammar.getAbstractionBlockingHeapConfigurations()) {
+            abstractionBlockingHeapConfigurations.merge(hc, 1, Integer::sum);
+        }
+        hashCode = 31 * activeRules.hashCode() + abstractionBlockingHeapConfigurations.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GrammarFingerprint)) {
+            return false;
+        }
+        GrammarFingerprint other = (GrammarFingerprint) o;
+        return hashCode == other.hashCode
+                && activeRules.equals(other.activeRules)
+                && abstractionBlockingHeapConfigurations.equals(other.abstractionBlockingHeapConfigurations);
+    }
+}
@@ -1,37 +1,109 @@
 package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
 
 import com.google.common.collect.ImmutableMap;
-import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
 import de.rwth.i2.attestor.grammar.confluence.benchmark.CompletionHeuristicStatisticCollector;
 import de.rwth.i2.attestor.grammar.confluence.benchmark.StartStopTimer;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
-import de.rwth.i2.attestor.grammar.confluence.completion.loss.CompletionStateLoss;
 import de.rwth.i2.attestor.grammar.confluence.completion.validity.GrammarValidity;
 import org.json.JSONObject;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
 /**
  * Applies one heuristic as long as no further improvements can be made then moves to the next.
  * Cycles as long as improvements are possible.
+ *
+ * With adaptive scheduling the heuristics are not applied in the fixed order of the completion algorithm. Instead
+ * the heuristic with the best success rate observed in the current run is applied next and the critical pairs that
+ * could not be fixed in earlier steps are considered last (see AdaptiveHeuristicScheduler). This reduces the number
+ * of completion states that have to be constructed per successful step, but might lead to a different result.
  */
 public class GreedyCompletion implements CompletionStrategy {
     final int maxSearchDepth;
+    final int parallelWindow;
+    final boolean adaptiveScheduling;
+    final int maxTriesWithoutSuccess;
     final StartStopTimer completeRuntime = new StartStopTimer();
+    // The scheduling statistic of the last finished run (every run collects its own statistic and publishes it at the end)
+    private volatile JSONObject lastSchedulingStatistic = new JSONObject();
 
     /**
      * @param maxSearchDepth The maximum number of successful heuristic applications (no maximum if set to 0)
      */
     public GreedyCompletion(int maxSearchDepth) {
+        this(maxSearchDepth, 1);
+    }
+
+    /**
+     * Evaluates up to parallelWindow candidate successors of the current completion state concurrently. The first
+     * improving and valid candidate (in the order of the heuristic) is chosen and the evaluation of all later
+     * candidates is cancelled, so the result is the same as the result of the sequential strategy.
+     *
+     * @param maxSearchDepth The maximum number of successful heuristic applications (no maximum if set to 0)
+     * @param parallelWindow The maximum number of candidates that are evaluated at the same time (sequential if set to 1)
+     */
+    public GreedyCompletion(int maxSearchDepth, int parallelWindow) {
+        this(maxSearchDepth, parallelWindow, false, 0);
+    }
+
+    /**
+     * @param maxSearchDepth The maximum number of successful heuristic applications (no maximum if set to 0)
+     * @param parallelWindow The maximum number of candidates that are evaluated at the same time (sequential if set to 1)
+     * @param adaptiveScheduling If true the heuristics and critical pairs are ordered by the observed success statistics
+     * @param maxTriesWithoutSuccess With adaptive scheduling a heuristic is skipped for the rest of the run after this
+     *                               number of tries without success (no limit if set to 0)
+     */
+    public GreedyCompletion(int maxSearchDepth, int parallelWindow, boolean adaptiveScheduling, int maxTriesWithoutSuccess) {
+        if (parallelWindow < 1) {
+            throw new IllegalArgumentException("The parallel window must be at least 1");
+        }
+        if (maxTriesWithoutSuccess < 0) {
+            throw new IllegalArgumentException("The maximal number of tries without success must not be negative");
+        }
         this.maxSearchDepth = maxSearchDepth;
+        this.parallelWindow = parallelWindow;
+        this.adaptiveScheduling = adaptiveScheduling;
+        this.maxTriesWithoutSuccess = maxTriesWithoutSuccess;
     }
 
     @Override
-    public CompletionState executeCompletionStrategy(ConfluenceWrapperGrammar inputGrammar, CompletionAlgorithm completionSettings) {
-        completeRuntime.startTimer();
-        CompletionState currentState = new CompletionState(inputGrammar, null);
-        CompletionStateLoss completionStateLoss = completionSettings.getCompletionStateLoss();
-        double currentLoss = completionStateLoss.getLoss(currentState);
+    public CompletionState executeCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings) {
+        ExecutorService executor = null;
+        if (parallelWindow > 1) {
+            executor = Executors.newFixedThreadPool(Math.min(parallelWindow, Runtime.getRuntime().availableProcessors()));
+        }
+        try {
+            completeRuntime.startTimer();
+            if (adaptiveScheduling) {
+                return executeAdaptiveCompletionStrategy(initialState, completionSettings, executor);
+            } else {
+                return executeCompletionStrategy(initialState, completionSettings, executor);
+            }
+        } finally {
+            completeRuntime.stopTimer();
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private CompletionState executeCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings,
+                                                      ExecutorService executor) {
+        CancellationToken cancellation = initialState.getCancellation();
+        CompletionState currentState = initialState;
+        double currentLoss = completionSettings.getCompletionStateLoss().getLoss(currentState);
+        completionSettings.notifyIncumbentImproved(currentState, currentLoss);
         int currentSearchDepth = 0;
         boolean madeProgress = true;
 
@@ -40,61 +112,28 @@ public class GreedyCompletion implements CompletionStrategy {
             madeProgress = false;
 
             for (CompletionHeuristic heuristic : completionSettings.getHeuristics()) {
+                if (cancellation.isCancelled()) {
+                    return currentState;
+                }
                 CompletionHeuristicStatisticCollector statisticCollector = heuristic.getStatisticCollector();
                 statisticCollector.startTimer();
 
-                boolean appliedHeuristic = true;
-                while (appliedHeuristic) {
-                    appliedHeuristic = false;
-
-                    int numHeuristicTries = 0;  // Keep track of how many times we tried to apply the heuristic
-                    for (CompletionState nextState : heuristic.applyHeuristic(currentState)) {
-                        numHeuristicTries++;
-                        // Compute loss
-                        double nextLoss = completionStateLoss.getLoss(nextState);
-                        if (nextLoss < currentLoss) {
-                            // Check if the new completion state is valid
-                            boolean isValid = true;
-                            for (GrammarValidity validityCheck : completionSettings.getValidityChecks()) {
-                                if (!validityCheck.isValid(nextState)) {
-                                    isValid = false;
-                                    break;
-                                }
-                            }
-
-                            if (isValid) {
-                                // Update statistic
-                                statisticCollector.incrementNumSuccess();
-                                statisticCollector.saveSuccessAtTry(numHeuristicTries);
-
-                                //System.out.println("Current number critical pairs: " + nextState.getCriticalPairs().size());
-                                // Update state & loss
-                                currentState = nextState;
-                                currentLoss = nextLoss;
-
-                                // Try to find another possible optimization using this strategy
-                                appliedHeuristic = true;
-                                // Cycle through all heuristics again later
-                                madeProgress = true;
-                                // Increment the search depth and check if we have to abort
-                                currentSearchDepth++;
-                                if ((maxSearchDepth > 0 && currentSearchDepth >= maxSearchDepth) || currentState.getCriticalPairs().size() == 0) {
-                                    completeRuntime.stopTimer();
-                                    return currentState;
-                                }
-                                // Reinitialize possible next states for the current heuristic
-                                break;
-                            } else {
-                                statisticCollector.incrementNumGrammarValidityCheckFails();
-                            }
-                        } else {
-                            statisticCollector.incrementNumLossFunctionFail();
-                        }
-                    }
+                // Apply the heuristic as long as it finds improvements
+                EvaluatedCandidate next;
+                while ((next = findImprovingCandidate(heuristic, currentState, currentLoss, completionSettings, executor, null)) != null) {
+                    //System.out.println("Current number critical pairs: " + nextState.getCriticalPairs().size());
+                    // Update state & loss
+                    currentState = next.state;
+                    currentLoss = next.loss;
+                    completionSettings.notifyIncumbentImproved(currentState, currentLoss);
 
-                    if (!appliedHeuristic) {
-                        // No heuristic could be applied
-                        statisticCollector.saveFailureAtTry(numHeuristicTries);
+                    // Cycle through all heuristics again later
+                    madeProgress = true;
+                    // Increment the search depth and check if we have to abort
+                    currentSearchDepth++;
+                    if ((maxSearchDepth > 0 && currentSearchDepth >= maxSearchDepth) || currentState.getCriticalPairs().size() == 0) {
+                        statisticCollector.stopTimer();
+                        return currentState;
                     }
                 }
 
@@ -103,17 +142,243 @@ public class GreedyCompletion implements CompletionStrategy {
         }
 
         //System.out.println("No more progress: Abort");
-        completeRuntime.stopTimer();
         // Return the result
         return currentState;
     }
 
+    private CompletionState executeAdaptiveCompletionStrategy(CompletionState initialState, CompletionAlgorithm completionSettings,
+                                                              ExecutorService executor) {
+        CancellationToken cancellation = initialState.getCancellation();
+        AdaptiveHeuristicScheduler scheduler = new AdaptiveHeuristicScheduler(completionSettings.getHeuristics(), maxTriesWithoutSuccess);
+        try {
+            CompletionState currentState = initialState;
+            double currentLoss = completionSettings.getCompletionStateLoss().getLoss(currentState);
+            completionSettings.notifyIncumbentImproved(currentState, currentLoss);
+            int currentSearchDepth = 0;
+
+            // Apply the most promising heuristic as long as one of the heuristics finds improvements
+            CompletionHeuristic heuristic;
+            while (!cancellation.isCancelled() && (heuristic = scheduler.getNextHeuristic(currentState)) != null) {
+                CompletionHeuristicStatisticCollector statisticCollector = heuristic.getStatisticCollector();
+                statisticCollector.startTimer();
+                EvaluatedCandidate next = findImprovingCandidate(heuristic, currentState, currentLoss, completionSettings, executor, scheduler);
+                statisticCollector.stopTimer();
+
+                if (next == null) {
+                    if (!cancellation.isCancelled()) {
+                        scheduler.recordExhausted(heuristic, currentState);
+                    }
+                } else {
+                    currentState = next.state;
+                    currentLoss = next.loss;
+                    completionSettings.notifyIncumbentImproved(currentState, currentLoss);
+                    scheduler.recordSuccess(heuristic, currentState);
+
+                    currentSearchDepth++;
+                    if ((maxSearchDepth > 0 && currentSearchDepth >= maxSearchDepth) || currentState.getCriticalPairs().size() == 0) {
+                        break;
+                    }
+                }
+            }
+            return currentState;
+        } finally {
+            lastSchedulingStatistic = scheduler.getJsonStatistic();
+        }
+    }
+
+    /**
+     * Evaluates the successor candidates of the heuristic (in the order of the heuristic) until an improving and valid
+     * candidate is found and updates the statistic of the heuristic. Stops if the cancellation token of the current
+     * state is cancelled.
+     *
+     * If the candidates are evaluated in parallel, they are computed with a child token of the current state's token
+     * (the critical pair computations only check the token and not the interrupt flag of their thread). The child
+     * token is cancelled as soon as the result is known, so the remaining candidates of the window stop and do not
+     * block the executor for the next step. The returned state gets the token of the current state again.
+     *
+     * @param scheduler The scheduler that records the tries of the heuristic and orders the critical pairs (null if the
+     *                  heuristics are not scheduled adaptively)
+     * @return The first improving and valid candidate or null if there is none (or the search has been cancelled)
+     */
+    private EvaluatedCandidate findImprovingCandidate(CompletionHeuristic heuristic, CompletionState currentState, double currentLoss,
+                                                      CompletionAlgorithm completionSettings, ExecutorService executor,
+                                                      AdaptiveHeuristicScheduler scheduler) {
+        CancellationToken cancellation = currentState.getCancellation();
+        if (executor == null) {
+            return findImprovingCandidate(heuristic, currentState, currentLoss, completionSettings, null, scheduler, cancellation);
+        }
+        CancellationToken windowCancellation = new CancellationToken(cancellation, 0);
+        try {
+            // The critical pairs of the current state are already computed, so the copy is cheap
+            EvaluatedCandidate next = findImprovingCandidate(heuristic, currentState.withCancellation(windowCancellation),
+                    currentLoss, completionSettings, executor, scheduler, cancellation);
+            if (next == null) {
+                return null;
+            }
+            // The critical pairs of the improving candidate have been computed completely
+            return new EvaluatedCandidate(next.state.withCancellation(cancellation), next.loss, next.isValid, next.runtime);
+        } finally {
+            windowCancellation.cancel();
+        }
+    }
+
+    /**
+     * @param cancellation The token of the current state (currentState might have a child token of it)
+     */
+    private EvaluatedCandidate findImprovingCandidate(CompletionHeuristic heuristic, CompletionState currentState, double currentLoss,
+                                                      CompletionAlgorithm completionSettings, ExecutorService executor,
+                                                      AdaptiveHeuristicScheduler scheduler, CancellationToken cancellation) {
+        CompletionHeuristicStatisticCollector statisticCollector = heuristic.getStatisticCollector();
+        int numHeuristicTries = 0;  // Keep track of how many times we tried to apply the heuristic
+        Iterator<Supplier<CompletionState>> candidates = heuristic.getSuccessorCandidates(currentState,
+                scheduler == null ? null : scheduler.getCriticalPairOrder()).iterator();
+        Deque<Future<EvaluatedCandidate>> pendingCandidates = new ArrayDeque<>();
+        while (true) {
+            // Evaluate the next candidate (the candidates in the window are evaluated in the background)
+            EvaluatedCandidate next;
+            try {
+                if (cancellation.isCancelled()) {
+                    cancelAll(pendingCandidates);
+                    return null;
+                }
+                if (executor == null) {
+                    if (!candidates.hasNext()) {
+                        break;
+                    }
+                    next = evaluateCandidate(candidates.next(), currentLoss, completionSettings, false);
+                } else {
+                    while (pendingCandidates.size() < parallelWindow && candidates.hasNext()) {
+                        Supplier<CompletionState> candidate = candidates.next();
+                        pendingCandidates.add(executor.submit(() -> evaluateCandidate(candidate, currentLoss, completionSettings, true)));
+                    }
+                    if (pendingCandidates.isEmpty()) {
+                        break;
+                    }
+                    next = getEvaluatedCandidate(pendingCandidates);
+                }
+            } catch (CancellationException e) {
+                // The critical pair detection of the candidate has been cancelled
+                cancelAll(pendingCandidates);
+                return null;
+            }
+
+            // The statistic is only updated for the candidates that the sequential strategy would also
+            // evaluate (in the same order)
+            numHeuristicTries++;
+            if (scheduler != null) {
+                scheduler.recordTry(heuristic);
+            }
+            if (next.runtime != null) {
+                statisticCollector.addRuntime(next.runtime);
+            }
+            if (next.loss < currentLoss) {
+                if (next.isValid) {
+                    // The later candidates are not needed anymore
+                    cancelAll(pendingCandidates);
+
+                    // Update statistic
+                    statisticCollector.incrementNumSuccess();
+                    statisticCollector.saveSuccessAtTry(numHeuristicTries);
+                    return next;
+                } else {
+                    statisticCollector.incrementNumGrammarValidityCheckFails();
+                }
+            } else {
+                statisticCollector.incrementNumLossFunctionFail();
+            }
+        }
+
+        // No heuristic could be applied
+        statisticCollector.saveFailureAtTry(numHeuristicTries);
+        return null;
+    }
+
+    /**
+     * Computes the completion state of the candidate and its loss. The validity checks are only executed if the loss
+     * is smaller than currentLoss (otherwise the candidate is not chosen anyway). If the loss is not smaller than
+     * currentLoss, the returned loss might only be a lower bound (that is at least currentLoss).
+     *
+     * @param measureRuntime Whether the runtime of the evaluation should be measured (required if the candidate is
+     *                       not evaluated in the thread that measures the runtime of the heuristic)
+     */
+    private static EvaluatedCandidate evaluateCandidate(Supplier<CompletionState> candidate, double currentLoss,
+                                                        CompletionAlgorithm completionSettings, boolean measureRuntime) {
+        StartStopTimer runtime = null;
+        if (measureRuntime) {
+            runtime = new StartStopTimer();
+            runtime.startTimer();
+        }
+        CompletionState state = candidate.get();
+        // The critical pairs are only computed until it is clear that the candidate is not better than the current state
+        double loss = completionSettings.getCompletionStateLoss().getLoss(state, currentLoss);
+        boolean isValid = true;
+        if (loss < currentLoss) {
+            // Check if the new completion state is valid
+            for (GrammarValidity validityCheck : completionSettings.getValidityChecks()) {
+                if (!validityCheck.isValid(state)) {
+                    isValid = false;
+                    break;
+                }
+            }
+        }
+        if (runtime != null) {
+            runtime.stopTimer();
+        }
+        return new EvaluatedCandidate(state, loss, isValid, runtime);
+    }
+
+    /**
+     * Waits for the first pending candidate and removes it from pendingCandidates
+     */
+    private static EvaluatedCandidate getEvaluatedCandidate(Deque<Future<EvaluatedCandidate>> pendingCandidates) {
+        Future<EvaluatedCandidate> future = pendingCandidates.poll();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelAll(pendingCandidates);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Completion was interrupted", e);
+        } catch (ExecutionException e) {
+            cancelAll(pendingCandidates);
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw new IllegalStateException("Evaluation of a completion candidate failed", e.getCause());
+        }
+    }
+
+    private static void cancelAll(Deque<Future<EvaluatedCandidate>> pendingCandidates) {
+        pendingCandidates.forEach(future -> future.cancel(true));
+        pendingCandidates.clear();
+    }
+
     @Override
     public JSONObject getDescription() {
-        return new JSONObject(ImmutableMap.of(
+        JSONObject result = new JSONObject(ImmutableMap.of(
                 "name", "greedyCompletion",
                 "maxSearchDepth", maxSearchDepth,
+                "parallelWindow", parallelWindow,
                 "runtime", completeRuntime.getRuntime()
         ));
+        if (adaptiveScheduling) {
+            result.put("adaptiveScheduling", true);
+            result.put("maxTriesWithoutSuccess", maxTriesWithoutSuccess);
+            result.put("schedulingStatistic", lastSchedulingStatistic);
+        }
+        return result;
+    }
+
+    private static class EvaluatedCandidate {
+        final CompletionState state;
+        final double loss;
+        final boolean isValid;
+        final StartStopTimer runtime;  // null if the candidate was evaluated in the calling thread
+
+        EvaluatedCandidate(CompletionState state, double loss, boolean isValid, StartStopTimer runtime) {
+            this.state = state;
+            this.loss = loss;
+            this.isValid = isValid;
+            this.runtime = runtime;
+        }
     }
 }
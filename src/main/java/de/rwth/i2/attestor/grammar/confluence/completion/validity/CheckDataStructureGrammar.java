@@ -13,6 +13,7 @@ import org.json.JSONObject;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Ensures that the modified grammar is still a data structure grammar
@@ -22,8 +23,8 @@ import java.util.Set;
  * for each attached tentacle does not overlap
  */
 public class CheckDataStructureGrammar implements GrammarValidity {
-    int numSuccess = 0;
-    int numFailure = 0;
+    final LongAdder numSuccess = new LongAdder();  // The candidates of a completion may be checked in parallel
+    final LongAdder numFailure = new LongAdder();
 
     @Override
     public boolean isValid(CompletionState newCompletionState) {
@@ -44,10 +45,10 @@ public class CheckDataStructureGrammar implements GrammarValidity {
                         int attachedNodeId = attachedNodes.get(tentacle);
                         if (node == attachedNodeId) {
                             // Found a tentacle of the node
-                            Set<SelectorLabel> recursiveOutgoingSelectors = types.getTentacleType(nonterminal, tentacle).getAllTypes();
+                            Set<SelectorLabel> recursiveOutgoingSelectors = types.getTypesAtTentacle(nonterminal, tentacle);
                             // Check that the selectors are not already contained in the outgoingSelectors set
                             if (!Collections.disjoint(outgoingSelectors, recursiveOutgoingSelectors)) {
-                                numFailure++;
+                                numFailure.increment();
                                 return false;
                             }
                             // Add the selectors to the set
@@ -59,7 +60,7 @@ public class CheckDataStructureGrammar implements GrammarValidity {
 
             }
         }
-        numSuccess++;
+        numSuccess.increment();
         return true;
     }
 
@@ -67,8 +68,8 @@ public class CheckDataStructureGrammar implements GrammarValidity {
     public JSONObject getDescription() {
         return new JSONObject(ImmutableMap.of(
                 "name", "checkDatastructureGrammar",
-                "numSuccess", numSuccess,
-                "numFailure", numFailure
+                "numSuccess", numSuccess.sum(),
+                "numFailure", numFailure.sum()
         ));
     }
 
@@ -10,6 +10,7 @@ import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
 import org.json.JSONObject;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Ensures that the modified grammar is still local concretisable, given that the input grammar is local concretisable.
@@ -21,8 +22,8 @@ import java.util.*;
  *
  */
 public class LocalConcretizability implements GrammarValidity {
-    int numSuccess = 0;
-    int numFailure = 0;
+    final LongAdder numSuccess = new LongAdder();
+    final LongAdder numFailure = new LongAdder();
 
     /**
      * Assuming the old grammar was locally concretizable is the new grammar locally concretizable?
@@ -54,10 +55,10 @@ public class LocalConcretizability implements GrammarValidity {
     @Override
     public boolean isValid(CompletionState newCompletionState) {
         if (checkLocalConcretizability(newCompletionState.getGrammar(), newCompletionState.getTypes(), false)) {
-            numSuccess++;
+            numSuccess.increment();
             return true;
         } else {
-            numFailure++;
+            numFailure.increment();
             return false;
         }
     }
@@ -134,8 +135,8 @@ public class LocalConcretizability implements GrammarValidity {
     public JSONObject getDescription() {
         return new JSONObject(ImmutableMap.of(
                 "name", "localConcretizability",
-                "numSuccess", numSuccess,
-                "numFailure", numFailure
+                "numSuccess", numSuccess.sum(),
+                "numFailure", numFailure.sum()
         ));
     }
 
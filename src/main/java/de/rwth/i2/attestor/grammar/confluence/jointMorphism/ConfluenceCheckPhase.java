@@ -4,6 +4,8 @@ import de.rwth.i2.attestor.grammar.Grammar;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
 import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinderSettings;
+import de.rwth.i2.attestor.grammar.confluence.Joinability;
 import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
 import de.rwth.i2.attestor.io.FileUtils;
 import de.rwth.i2.attestor.io.tikzOutput.TikzExport;
@@ -17,12 +19,15 @@ import de.rwth.i2.attestor.phases.transformers.OutputSettingsTransformer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 
 public class ConfluenceCheckPhase extends AbstractPhase {
 
     private int numberWeaklyJoinable = 0;
     private int numberStronglyJoinable = 0;
     private int numberNotJoinable = 0;
+    private boolean abortedEarly = false;
 
     public ConfluenceCheckPhase(Scene scene) {
         super(scene);
@@ -45,9 +50,17 @@ public class ConfluenceCheckPhase extends AbstractPhase {
         }
         InputSettings inputSettings = getPhase(InputSettingsTransformer.class).getInputSettings();
         ConfluenceWrapperGrammar confluenceWrapperGrammar = new ConfluenceWrapperGrammar(grammar, inputSettings.getGrammarName());
-        CriticalPairFinder finder = checkGrammar(confluenceWrapperGrammar);
+        CriticalPairFinderSettings settings = CriticalPairFinderSettings.fromInputSettings(inputSettings);
+        Collection<CriticalPair> criticalPairs;
         try {
-            exportLatex(finder, confluenceWrapperGrammar);
+            criticalPairs = checkGrammar(confluenceWrapperGrammar, settings, inputSettings.isConfluenceCheckEarlyAbort());
+        } finally {
+            if (settings.getExecutor() != null) {
+                settings.getExecutor().shutdownNow();
+            }
+        }
+        try {
+            exportLatex(criticalPairs, confluenceWrapperGrammar);
         } catch (IOException e) {
             logger.error("Could not output latex code.",e);
         }
@@ -65,6 +78,9 @@ public class ConfluenceCheckPhase extends AbstractPhase {
         logSum(String.format("| Weakly Joinable Pair    | %16d |",numberWeaklyJoinable));
         logSum(String.format("| Not Joinable Pair       | %16d |",numberNotJoinable));
         logSum("+-------------------------+------------------+");
+        if (abortedEarly) {
+            logSum("The check stopped at the first critical pair that is not strongly joinable.");
+        }
     }
 
     @Override
@@ -72,10 +88,26 @@ public class ConfluenceCheckPhase extends AbstractPhase {
         return true;
     }
 
-    private CriticalPairFinder checkGrammar(ConfluenceWrapperGrammar confluenceWrapperGrammar){
-
-        CriticalPairFinder criticalPairFinder = new CriticalPairFinder(confluenceWrapperGrammar);
-        for(CriticalPair criticalPair : criticalPairFinder.getCriticalPairs()) {
+    /**
+     * Counts the critical pairs of the grammar by their joinability.
+     *
+     * @param settings The settings selected on the command line
+     * @param earlyAbort If set, the critical pairs are computed lazily and the computation stops at the first critical
+     *                   pair that is not strongly joinable
+     * @return The computed critical pairs
+     */
+    private Collection<CriticalPair> checkGrammar(ConfluenceWrapperGrammar confluenceWrapperGrammar,
+                                                  CriticalPairFinderSettings settings, boolean earlyAbort){
+
+        Iterable<CriticalPair> criticalPairs;
+        if (earlyAbort) {
+            criticalPairs = CriticalPairFinder.lazyCriticalPairs(confluenceWrapperGrammar, settings, Joinability.STRONGLY_JOINABLE);
+        } else {
+            criticalPairs = new CriticalPairFinder(confluenceWrapperGrammar, settings).getCriticalPairs();
+        }
+        Collection<CriticalPair> result = new ArrayList<>();
+        for(CriticalPair criticalPair : criticalPairs) {
+            result.add(criticalPair);
             switch (criticalPair.getJoinability()) {
                 case WEAKLY_JOINABLE:
                     numberWeaklyJoinable++;
@@ -87,11 +119,15 @@ public class ConfluenceCheckPhase extends AbstractPhase {
                     numberNotJoinable++;
                     break;
             }
+            if (earlyAbort && !isConfluent()) {
+                abortedEarly = true;
+                break;
+            }
         }
-        return criticalPairFinder;
+        return result;
     }
 
-    private void exportLatex(CriticalPairFinder result, ConfluenceWrapperGrammar grammar) throws IOException {
+    private void exportLatex(Collection<CriticalPair> criticalPairs, ConfluenceWrapperGrammar grammar) throws IOException {
         OutputSettings outputSettings = getPhase(OutputSettingsTransformer.class).getOutputSettings();
 
         if(outputSettings.getExportLatexPath() == null){
@@ -104,7 +140,7 @@ public class ConfluenceCheckPhase extends AbstractPhase {
         FileUtils.createDirectories(outputSettings.getExportLatexPath());
 
         TikzExport exportCriticalPairs = new TikzExport(outputSettings.getExportLatexPath() + File.separator + "criticalPairs.tex", true);
-        exportCriticalPairs.exportCriticalPairs(result.getCriticalPairs());
+        exportCriticalPairs.exportCriticalPairs(criticalPairs);
         exportCriticalPairs.finishExport();
 
         TikzExport exportGrammar = new TikzExport(outputSettings.getExportLatexPath() + File.separator + "grammar.tex", true);
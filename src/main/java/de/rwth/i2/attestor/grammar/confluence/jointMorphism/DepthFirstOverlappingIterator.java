@@ -0,0 +1,70 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.util.Pair;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the same overlappings as the OverlappingIterator, but depth first (in pre-order). The children of an
+ * overlapping are computed one at a time, so only the overlappings on the path from the base overlapping to the
+ * current overlapping are stored.
+ */
+class DepthFirstOverlappingIterator<Element extends GraphElement> implements Iterator<Overlapping<Element>> {
+    private final Deque<PathElement<Element>> path;
+    private Overlapping<Element> next;
+
+    DepthFirstOverlappingIterator(Overlapping<Element> baseOverlapping) {
+        path = new ArrayDeque<>();
+        next = baseOverlapping;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = computeNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Overlapping<Element> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Overlapping<Element> result = next;
+        next = null;
+        // The children of the result are enumerated next
+        path.push(new PathElement<>(result));
+        return result;
+    }
+
+    /**
+     * Returns the next child of the deepest overlapping on the path that still has children
+     */
+    private Overlapping<Element> computeNext() {
+        while (!path.isEmpty()) {
+            PathElement<Element> current = path.peek();
+            Pair<Element, Element> nextEquivalence = current.overlapping.getNextCompatibleEquivalence(current.previousEquivalence);
+            if (nextEquivalence != null) {
+                current.previousEquivalence = nextEquivalence;
+                return current.overlapping.getOverlapping(nextEquivalence);
+            }
+            // All children of the current overlapping have been enumerated
+            path.pop();
+        }
+        return null;
+    }
+
+    private static class PathElement<Element extends GraphElement> {
+        final Overlapping<Element> overlapping;
+        Pair<Element, Element> previousEquivalence;  // The equivalence of the last child that has been returned
+
+        PathElement(Overlapping<Element> overlapping) {
+            this.overlapping = overlapping;
+            this.previousEquivalence = overlapping.getLastAddedEquivalence();
+        }
+    }
+}
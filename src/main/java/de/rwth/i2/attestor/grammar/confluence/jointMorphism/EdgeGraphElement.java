@@ -14,6 +14,11 @@ public class EdgeGraphElement extends GraphElement {
         super(privateId, selectorLabel);
     }
 
+    @Override
+    EdgeGraphElement getImage(int[] privateIdMap) {
+        return new EdgeGraphElement(privateIdMap[getPrivateId()], getSelectorLabel());
+    }
+
     /**
      * Returns a list of GraphElements that represent the nodes connected to this edge. This object must be an edge in
      * the given graph.
@@ -1,9 +1,7 @@
 package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
 
 import de.rwth.i2.attestor.grammar.confluence.benchmark.OverlappingStatisticCollector;
-import de.rwth.i2.attestor.graph.digraph.NodeLabel;
 import de.rwth.i2.attestor.graph.morphism.Graph;
-import de.rwth.i2.attestor.types.Type;
 import de.rwth.i2.attestor.util.Pair;
 
 import java.util.*;
@@ -17,7 +15,13 @@ import java.util.*;
  *
  */
 public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
-    final private Map<NodeGraphElement, NodeGraphElement> mapNodeHc1ToHc2, mapNodeHc2ToHc1;  // TODO: We probably only need one map
+    /**
+     * The node equivalences are stored as arrays indexed by the private ids of the nodes (-1 if there is no equivalent
+     * node). Like the edge equivalences they are only computed from the parent overlapping when they are needed.
+     */
+    private EdgeOverlapping parent;  // Set to null once the node equivalences are materialized
+    private int[] mapNodeHc1ToHc2, mapNodeHc2ToHc1;
+    private int numberNodesHc1, numberNodesHc2;  // Number of nodes with an equivalent node
 
     /**
      * Returns a new empty Overlapping
@@ -25,92 +29,102 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
     private EdgeOverlapping(HeapConfigurationContext context, Collection<EdgeGraphElement> hc1Remaining,
                             Collection<EdgeGraphElement> hc2Remaining, OverlappingStatisticCollector statisticCollector) {
         super(context, hc1Remaining, hc2Remaining, statisticCollector);
-        // Initialize empty node equivalences
-        this.mapNodeHc1ToHc2 = new HashMap<>();
-        this.mapNodeHc2ToHc1 = new HashMap<>();
+        // Initialize empty node equivalences (the arrays must be large enough for the private ids of both graphs)
+        int size = Math.max(context.getGraph1().size(), context.getGraph2().size());
+        this.mapNodeHc1ToHc2 = new int[size];
+        Arrays.fill(this.mapNodeHc1ToHc2, -1);
+        this.mapNodeHc2ToHc1 = new int[size];
+        Arrays.fill(this.mapNodeHc2ToHc1, -1);
+        this.numberNodesHc1 = 0;
+        this.numberNodesHc2 = 0;
+        this.parent = null;
         // Null nodes in both graphs must be equal
+        Pair<NodeGraphElement, NodeGraphElement> nullNodes = getNullNodes(context);
+        if (nullNodes != null) {
+            addNodeEquivalence(nullNodes.first(), nullNodes.second());
+        }
+    }
+
+    private EdgeOverlapping(EdgeOverlapping oldEdgeOverlapping, Pair<EdgeGraphElement, EdgeGraphElement> newEquivalence) {
+        super(oldEdgeOverlapping, newEquivalence);
+        // The node equivalences are computed lazily from the parent
+        this.parent = oldEdgeOverlapping;
+    }
+
+    private static Pair<NodeGraphElement, NodeGraphElement> getNullNodes(HeapConfigurationContext context) {
         NodeGraphElement nullHc1 = NodeGraphElement.getNullNode(context.getGraph1());
         NodeGraphElement nullHc2 = NodeGraphElement.getNullNode(context.getGraph1());
         if (nullHc1 != null && nullHc2 != null) {
-            this.mapNodeHc1ToHc2.put(nullHc1, nullHc2);
-            this.mapNodeHc2ToHc1.put(nullHc2, nullHc1);
+            return new Pair<>(nullHc1, nullHc2);
+        } else {
+            return null;
         }
     }
 
-    private EdgeOverlapping(EdgeOverlapping oldEdgeOverlapping, Pair<EdgeGraphElement, EdgeGraphElement> newEquivalence) {
-        super(oldEdgeOverlapping, newEquivalence);
-        // 1. Copy old node equivalences
-        this.mapNodeHc1ToHc2 = new HashMap<>(oldEdgeOverlapping.mapNodeHc1ToHc2);
-        this.mapNodeHc2ToHc1 = new HashMap<>(oldEdgeOverlapping.mapNodeHc2ToHc1);
-
-        // 2. Add node equivalences induced by the added edge
-        EdgeGraphElement hc1Edge = newEquivalence.first();
-        EdgeGraphElement hc2Edge = newEquivalence.second();
-        List<NodeGraphElement> connectedNodesHc1 = hc1Edge.getConnectedNodes(getContext().getGraph1());
-        List<NodeGraphElement> connectedNodesHc2 = hc2Edge.getConnectedNodes(getContext().getGraph2());
-        for (int i = 0; i<connectedNodesHc1.size(); i++) {
-            NodeGraphElement nodeHc1 = connectedNodesHc1.get(i);
-            NodeGraphElement nodeHc2 = connectedNodesHc2.get(i);
-            this.mapNodeHc1ToHc2.put(nodeHc1, nodeHc2);
-            this.mapNodeHc2ToHc1.put(nodeHc2, nodeHc1);
+    private void materializeNodeEquivalences() {
+        if (parent != null) {
+            // 1. Copy old node equivalences
+            parent.materializeNodeEquivalences();
+            this.mapNodeHc1ToHc2 = parent.mapNodeHc1ToHc2.clone();
+            this.mapNodeHc2ToHc1 = parent.mapNodeHc2ToHc1.clone();
+            this.numberNodesHc1 = parent.numberNodesHc1;
+            this.numberNodesHc2 = parent.numberNodesHc2;
+            parent = null;
+
+            // 2. Add node equivalences induced by the added edge
+            OverlappingCompatibility compatibility = getContext().getCompatibility();
+            int[] connectedNodesHc1 = compatibility.getGraph1().getConnectedNodes(getLastAddedEquivalence().first());
+            int[] connectedNodesHc2 = compatibility.getGraph2().getConnectedNodes(getLastAddedEquivalence().second());
+            for (int i = 0; i<connectedNodesHc1.length; i++) {
+                addNodeEquivalence(connectedNodesHc1[i], connectedNodesHc2[i]);
+            }
+        }
+    }
+
+    private void addNodeEquivalence(NodeGraphElement nodeHc1, NodeGraphElement nodeHc2) {
+        addNodeEquivalence(nodeHc1.getPrivateId(), nodeHc2.getPrivateId());
+    }
+
+    private void addNodeEquivalence(int id1, int id2) {
+        if (mapNodeHc1ToHc2[id1] < 0) {
+            numberNodesHc1++;
         }
+        if (mapNodeHc2ToHc1[id2] < 0) {
+            numberNodesHc2++;
+        }
+        mapNodeHc1ToHc2[id1] = id2;
+        mapNodeHc2ToHc1[id2] = id1;
     }
 
     Map<NodeGraphElement, NodeGraphElement> getNodeMapHC1ToHC2() {
-        return Collections.unmodifiableMap(this.mapNodeHc1ToHc2);
+        materializeNodeEquivalences();
+        return new NodeEquivalenceMap(this.mapNodeHc1ToHc2, numberNodesHc1, this, false);
     }
 
     Map<NodeGraphElement, NodeGraphElement> getNodeMapHC2ToHC1() {
-        return Collections.unmodifiableMap(this.mapNodeHc2ToHc1);
+        materializeNodeEquivalences();
+        return new NodeEquivalenceMap(this.mapNodeHc2ToHc1, numberNodesHc2, this, true);
     }
 
     @Override
     boolean isNextPairCompatible(Pair<EdgeGraphElement, EdgeGraphElement> newPair) {  // TODO: Only one outgoing selector of one type in union
-        int id1 = newPair.first().getPrivateId();
-        int id2 = newPair.second().getPrivateId();
-        String labelHc1 = newPair.first().getSelectorLabel();
-        String labelHc2 = newPair.second().getSelectorLabel();
-
-        // 1. Check if the edge types are compatible
-        if (labelHc1 == null && labelHc2 == null) {
-            // Two hyperedges -> Need to get the type
-            NodeLabel nodeLabelHc1 = getContext().getGraph1().getNodeLabel(id1);
-            NodeLabel nodeLabelHc2 = getContext().getGraph2().getNodeLabel(id2);
-            if (!nodeLabelHc1.matches(nodeLabelHc2)) {
-                return false;
-            }
-        } else if (labelHc1 != null && labelHc2 != null) {
-            // Two selector edges
-            if (!labelHc1.equals(labelHc2)) {
-                // The selector edges are not the same
-                return false;
-            }
-        } else {
-            // Two incompatible edges
+        OverlappingCompatibility compatibility = getContext().getCompatibility();
+
+        // 1. Check if the edge types, the types of the connected nodes and the tentacles are compatible (precomputed)
+        if (!compatibility.isCompatible(newPair.first(), newPair.second())) {
             return false;
         }
 
-        // 2. Consider induced node equivalences
-        List<NodeGraphElement> connectedNodesHC1, connectedNodesHC2;
-        // Calculate the connected nodes (the lists must have same length because the types match)
-        connectedNodesHC1 = newPair.first().getConnectedNodes(getContext().getGraph1());
-        connectedNodesHC2 = newPair.second().getConnectedNodes(getContext().getGraph2());
-        // We need to keep track of the additional node equivalences (in case one of the tentacles connects to the same node and another one does not)
-        Map<NodeGraphElement, NodeGraphElement> newMapNodeHc1ToHc2 = new HashMap<>();
-        Map<NodeGraphElement, NodeGraphElement> newMapNodeHc2ToHc1 = new HashMap<>();
-        for (int i = 0; i < connectedNodesHC1.size(); i++) {
-            NodeGraphElement connectedNode1 = connectedNodesHC1.get(i);
-            NodeGraphElement connectedNode2 = connectedNodesHC2.get(i);
-            if (!addToNodeEquivalences(newMapNodeHc1ToHc2, getNodeMapHC1ToHC2(), connectedNode1, connectedNode2)
-                    || !addToNodeEquivalences(newMapNodeHc2ToHc1, getNodeMapHC2ToHC1(), connectedNode2, connectedNode1)) {
-                return false;
-            }
-
-            Type t1 = (Type) getContext().getGraph1().getNodeLabel(connectedNode1.getPrivateId());
-            Type t2 = (Type) getContext().getGraph2().getNodeLabel(connectedNode2.getPrivateId());
-
-            if (!t1.matches(t2)) {
-                // The types of connected nodes do not match
+        // 2. Consider the node equivalences of this overlapping
+        int[] connectedNodesHC1 = compatibility.getGraph1().getConnectedNodes(newPair.first());
+        int[] connectedNodesHC2 = compatibility.getGraph2().getConnectedNodes(newPair.second());
+        materializeNodeEquivalences();
+        for (int i = 0; i < connectedNodesHC1.length; i++) {
+            int connectedNode1 = connectedNodesHC1[i];
+            int connectedNode2 = connectedNodesHC2[i];
+            if ((mapNodeHc1ToHc2[connectedNode1] >= 0 && mapNodeHc1ToHc2[connectedNode1] != connectedNode2)
+                    || (mapNodeHc2ToHc1[connectedNode2] >= 0 && mapNodeHc2ToHc1[connectedNode2] != connectedNode1)) {
+                // One of the nodes is already equivalent to another node
                 return false;
             }
         }
@@ -119,24 +133,6 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
         return true;
     }
 
-
-    /**
-     * Adds the new equivalence (newKey, newValue) to the modifiableMap if it is not already in the unmodifiableMap.
-     * Returns true, if there are no violations. There is a violation if the newKey is already in the modifiableMap or the unmodifiableMap but maps to a different value than newValue
-     */
-    private boolean addToNodeEquivalences(Map<NodeGraphElement, NodeGraphElement> modifiableMap, Map<NodeGraphElement, NodeGraphElement> unmodifiableMap, NodeGraphElement newKey, NodeGraphElement newValue) {
-        if ((unmodifiableMap.containsKey(newKey) && !unmodifiableMap.get(newKey).equals(newValue))
-                || (modifiableMap.containsKey(newKey) && !modifiableMap.get(newKey).equals(newValue))) {
-            return false;
-        } else {
-            if (!unmodifiableMap.containsKey(newKey)) {
-                modifiableMap.put(newKey, newValue);
-            }
-            return true;
-        }
-
-    }
-
     @Override
     EdgeOverlapping getOverlapping(Pair<EdgeGraphElement, EdgeGraphElement> newPair) {
         return new EdgeOverlapping(this, newPair);
@@ -154,10 +150,12 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
      */
     public boolean isEdgeOverlappingValid() {
         // Check if the edge overlapping is valid for the edges not in the intersection in Hc1 and in Hc2
-        return areRemainingEdgesValid(getHc1Remaining(), mapNodeHc1ToHc2, getContext().getGraph1(), getContext().getGraph2())
-                && areRemainingEdgesValid(getHc2Remaining(), mapNodeHc2ToHc1, getContext().getGraph2(), getContext().getGraph1())
-                && validOutgoingSelectors(getContext().getGraph1(), getContext().getGraph2(), getMapHC1toHC2(), mapNodeHc1ToHc2)
-                && validOutgoingSelectors(getContext().getGraph2(), getContext().getGraph1(), getMapHC2toHC1(), mapNodeHc2ToHc1);
+        materializeNodeEquivalences();
+        OverlappingCompatibility compatibility = getContext().getCompatibility();
+        return areRemainingEdgesValid(getHc1Remaining(), mapNodeHc1ToHc2, compatibility.getGraph1(), getContext().getGraph2())
+                && areRemainingEdgesValid(getHc2Remaining(), mapNodeHc2ToHc1, compatibility.getGraph2(), getContext().getGraph1())
+                && validOutgoingSelectors(compatibility, compatibility.getGraph1(), compatibility.getGraph2(), getMapHC1toHC2(), mapNodeHc1ToHc2)
+                && validOutgoingSelectors(compatibility, compatibility.getGraph2(), compatibility.getGraph1(), getMapHC2toHC1(), mapNodeHc2ToHc1);
     }
 
     /**
@@ -179,36 +177,34 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
      *      -> No violation
      *
      * TODO: Does valid selectors in graph1 imply valid selectors in graph2?
-     * TODO: Optimization potential (finding the corresponding selector in case 1.2)
      */
-    private boolean validOutgoingSelectors(Graph graph1, Graph graph2, Map<EdgeGraphElement, EdgeGraphElement> mapEdge1To2, Map<NodeGraphElement, NodeGraphElement> mapNode1To2) {
+    private static boolean validOutgoingSelectors(OverlappingCompatibility compatibility, OverlappingCompatibility.GraphSignature graph1,
+                                                  OverlappingCompatibility.GraphSignature graph2,
+                                                  Map<EdgeGraphElement, EdgeGraphElement> mapEdge1To2, int[] mapNode1To2) {
 
-        for (Pair<NodeGraphElement, NodeGraphElement> selectorNodePair : EdgeGraphElement.getSelectorNodePairs(graph1)) {
-            NodeGraphElement selectorSourceHc1 = selectorNodePair.first();
-            NodeGraphElement selectorTargetHc1 = selectorNodePair.second();
+        for (int pairIdx = 0; pairIdx < graph1.getNumberSelectorNodePairs(); pairIdx++) {
+            int selectorSourceHc1 = graph1.getSelectorNodePairSource(pairIdx);
+            int selectorTargetHc1 = graph1.getSelectorNodePairTarget(pairIdx);
 
             // There can only be a violation if at least the source node is in the intersection
-            if (mapNode1To2.containsKey(selectorSourceHc1)) {
-                NodeGraphElement selectorSourceHc2 = mapNode1To2.get(selectorSourceHc1);
-                Collection<String> selectorsHc1 = EdgeGraphElement.getSelectorLabels(graph1, selectorNodePair);  // Selectors between source and target in hc1
-                // TODO: Performance optimization: Keep map of already calculated outgoing selectors of selectorsHc2
-                Collection<String> selectorsHc2 = selectorSourceHc2.getOutgoingSelectors(graph2);  // All outgoing selectors of source in hc2
+            if (mapNode1To2[selectorSourceHc1] >= 0) {
+                BitSet selectorsHc1 = graph1.getSelectorNodePairLabels(pairIdx);  // Selectors between source and target in hc1
+                BitSet selectorsHc2 = graph2.getOutgoingSelectors(mapNode1To2[selectorSourceHc1]);  // All outgoing selectors of source in hc2
 
-                if (mapNode1To2.containsKey(selectorTargetHc1)) {
+                if (mapNode1To2[selectorTargetHc1] >= 0) {
                     // 1. Case: src and target are in intersection. Check that all labels between those nodes are either
-                    for (String selectorLabel : selectorsHc1) {
-                        EdgeGraphElement selectorEdge = selectorSourceHc1.getOutgoingSelectorEdge(selectorLabel);
-                        if (!mapEdge1To2.containsKey(selectorEdge)) {
-                            // The selectorEdge is not in the intersection -> Check if selectorSourceHc2 has an outgoing selector of the same type
-                            if (selectorsHc2.contains(selectorLabel)) {
-                                // Found a conflict
+                    for (int selectorId = selectorsHc1.nextSetBit(0); selectorId >= 0; selectorId = selectorsHc1.nextSetBit(selectorId + 1)) {
+                        if (selectorsHc2.get(selectorId)) {
+                            EdgeGraphElement selectorEdge = new EdgeGraphElement(selectorSourceHc1, compatibility.getSelectorLabel(selectorId));
+                            if (!mapEdge1To2.containsKey(selectorEdge)) {
+                                // The selectorEdge is not in the intersection, but selectorSourceHc2 has an outgoing selector of the same type
                                 return false;
                             }
                         }
                     }
                 } else {
                     // 2. Case: Check that the selectorSource node in the other graph does not share any outgoing selector types
-                    if (!Collections.disjoint(selectorsHc1, selectorsHc2)) {
+                    if (selectorsHc1.intersects(selectorsHc2)) {
                         // There is at least one outgoing selector of the same type in both graphs
                         return false;
                     }
@@ -226,25 +222,20 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
      * internal node in graph2.
      *
      * @param remainingEdges1  The remaining edges for which violations are considered
-     * @param mapNode1To2  A map of nodes from graph1 to graph2
+     * @param mapNode1To2  The node equivalences from graph1 to graph2 (indexed by private id, -1 if there is none)
      * @param graph1  The graph that contain the edges from remainingEdges1
      * @param graph2  The graph that does *not* contain the edges from remainingEdges1
      * @return  true if there are no violations
      */
-    private boolean areRemainingEdgesValid(Collection<EdgeGraphElement> remainingEdges1, Map<NodeGraphElement, NodeGraphElement> mapNode1To2, Graph graph1, Graph graph2) {
+    private static boolean areRemainingEdgesValid(Collection<EdgeGraphElement> remainingEdges1, int[] mapNode1To2,
+                                                  OverlappingCompatibility.GraphSignature graph1, Graph graph2) {
         for (EdgeGraphElement edge : remainingEdges1) {
-            for (NodeGraphElement connectedNode1 : edge.getConnectedNodes(graph1)) {
-                // Check if connectedNode1 is already in the intersection
-                if (mapNode1To2.containsKey(connectedNode1)) {
-                    // Check if the corresponding other node is external in graph2
-                    NodeGraphElement connectedNode2 = mapNode1To2.get(connectedNode1);
-                    if (!graph2.isExternal(connectedNode2.getPrivateId())) {
-                        // Found a violation. connectedNode1 corresponds to an internal node in graph2.
-                        return false;
-                    }
-
+            for (int connectedNode1 : graph1.getConnectedNodes(edge)) {
+                // Check if connectedNode1 is already in the intersection and if the corresponding other node is external in graph2
+                if (mapNode1To2[connectedNode1] >= 0 && !graph2.isExternal(mapNode1To2[connectedNode1])) {
+                    // Found a violation. connectedNode1 corresponds to an internal node in graph2.
+                    return false;
                 }
-
             }
         }
         return true;
@@ -259,16 +250,105 @@ public class EdgeOverlapping extends Overlapping<EdgeGraphElement> {
      * @param context This context contains the two HeapConfiguration objects for the overlapping.
      */
     public static EdgeOverlapping getEdgeOverlapping(HeapConfigurationContext context, OverlappingStatisticCollector statisticCollector) {
+        return getEdgeOverlapping(context, statisticCollector, false);
+    }
+
+    /**
+     * @param symmetryReduction If true only one overlapping is enumerated for overlappings that are isomorphic by
+     *                          automorphisms of the graphs (that keep the external nodes fixed). The node overlappings
+     *                          of the edge overlappings are reduced in the same way. If both graphs are
+     *                          the same, overlappings that are isomorphic by swapping the graphs are marked
+     *                          (see NodeOverlapping.isSwapRepresentative).
+     */
+    public static EdgeOverlapping getEdgeOverlapping(HeapConfigurationContext context, OverlappingStatisticCollector statisticCollector,
+                                                     boolean symmetryReduction) {
         // Extract edges from the graphs
         Collection<EdgeGraphElement> edgesGraph1, edgesGraph2;
-        edgesGraph1 = EdgeGraphElement.getEdgesOfGraph(context.getGraph1());
-        edgesGraph2 = EdgeGraphElement.getEdgesOfGraph(context.getGraph2());
-
-        return new EdgeOverlapping(context, edgesGraph1, edgesGraph2, statisticCollector);
+        edgesGraph1 = context.getCompatibility().getGraph1().edges;
+        edgesGraph2 = context.getCompatibility().getGraph2().edges;
+
+        EdgeOverlapping result = new EdgeOverlapping(context, edgesGraph1, edgesGraph2, statisticCollector);
+        if (symmetryReduction) {
+            result.setSymmetries(OverlappingSymmetry.getSymmetries(context));
+            // A rule that is overlapped with itself
+            result.setSwapSymmetric(context.getHc1() == context.getHc2());
+        }
+        return result;
     }
 
     public static EdgeOverlapping getEdgeOverlapping(HeapConfigurationContext context) {
         return getEdgeOverlapping(context, null);
     }
 
+    /**
+     * An unmodifiable map view on node equivalences that are stored as an array indexed by private ids.
+     *
+     * The entries are iterated in a defined order: First the equivalence of the null nodes, then the node equivalences
+     * of the added edge equivalences in the order the edge equivalences have been added.
+     */
+    private static class NodeEquivalenceMap extends AbstractMap<NodeGraphElement, NodeGraphElement> {
+        private final int[] map;
+        private final int size;
+        private final EdgeOverlapping edgeOverlapping;
+        private final boolean inverse;  // true if the keys are nodes in HC2
+        private Map<NodeGraphElement, NodeGraphElement> entries;  // Computed lazily on the first iteration
+
+        NodeEquivalenceMap(int[] map, int size, EdgeOverlapping edgeOverlapping, boolean inverse) {
+            this.map = map;
+            this.size = size;
+            this.edgeOverlapping = edgeOverlapping;
+            this.inverse = inverse;
+        }
+
+        @Override
+        public NodeGraphElement get(Object key) {
+            if (key instanceof NodeGraphElement) {
+                int privateId = ((NodeGraphElement) key).getPrivateId();
+                if (privateId >= 0 && privateId < map.length && map[privateId] >= 0) {
+                    return new NodeGraphElement(map[privateId]);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<NodeGraphElement, NodeGraphElement>> entrySet() {
+            if (entries == null) {
+                HeapConfigurationContext context = edgeOverlapping.getContext();
+                Map<NodeGraphElement, NodeGraphElement> result = new LinkedHashMap<>();
+                Pair<NodeGraphElement, NodeGraphElement> nullNodes = getNullNodes(context);
+                if (nullNodes != null) {
+                    putNodeEquivalence(result, nullNodes.first(), nullNodes.second());
+                }
+                for (Pair<EdgeGraphElement, EdgeGraphElement> edgeEquivalence : edgeOverlapping.getAddedEquivalences()) {
+                    List<NodeGraphElement> connectedNodesHc1 = edgeEquivalence.first().getConnectedNodes(context.getGraph1());
+                    List<NodeGraphElement> connectedNodesHc2 = edgeEquivalence.second().getConnectedNodes(context.getGraph2());
+                    for (int i = 0; i<connectedNodesHc1.size(); i++) {
+                        putNodeEquivalence(result, connectedNodesHc1.get(i), connectedNodesHc2.get(i));
+                    }
+                }
+                entries = Collections.unmodifiableMap(result);
+            }
+            return entries.entrySet();
+        }
+
+        private void putNodeEquivalence(Map<NodeGraphElement, NodeGraphElement> result, NodeGraphElement nodeHc1, NodeGraphElement nodeHc2) {
+            if (inverse) {
+                result.put(nodeHc2, nodeHc1);
+            } else {
+                result.put(nodeHc1, nodeHc2);
+            }
+        }
+    }
+
 }
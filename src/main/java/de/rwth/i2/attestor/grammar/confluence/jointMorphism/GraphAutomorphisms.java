@@ -0,0 +1,122 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.digraph.NodeLabel;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes the automorphisms of the graph of a right hand side that keep every external node fixed.
+ * Applying a rule with a matching that is composed with such an automorphism leads to the same result, therefore
+ * overlappings that only differ by these automorphisms lead to isomorphic critical pairs.
+ *
+ * The automorphisms are given as maps from private ids to private ids (elements that are not part of the graph are
+ * mapped to themselves).
+ */
+class GraphAutomorphisms {
+
+    /**
+     * Returns at most maxNumber automorphisms of the graph. The first automorphism is always the identity.
+     * If there are more automorphisms only some of them are returned.
+     */
+    static List<int[]> getAutomorphisms(Graph graph, int maxNumber) {
+        List<int[]> result = new ArrayList<>();
+        int[] map = new int[graph.size()];
+        Arrays.fill(map, -1);
+        boolean[] used = new boolean[graph.size()];
+        search(graph, 0, map, used, result, maxNumber);
+        return result;
+    }
+
+    private static void search(Graph graph, int privateId, int[] map, boolean[] used, List<int[]> result, int maxNumber) {
+        if (result.size() >= maxNumber) {
+            return;
+        }
+        if (privateId == graph.size()) {
+            if (isTentacleOrderPreserved(graph, map)) {
+                result.add(map.clone());
+            }
+            return;
+        }
+        // Try the identity first, so the identity is the first automorphism that is found
+        for (int offset = 0; offset < graph.size(); offset++) {
+            int image = (privateId + offset) % graph.size();
+            if (!used[image] && isCompatible(graph, privateId, image, map)) {
+                map[privateId] = image;
+                used[image] = true;
+                search(graph, privateId + 1, map, used, result, maxNumber);
+                used[image] = false;
+                map[privateId] = -1;
+            }
+        }
+    }
+
+    /**
+     * Checks if privateId can be mapped to image given the mapping of all smaller private ids
+     */
+    private static boolean isCompatible(Graph graph, int privateId, int image, int[] map) {
+        NodeLabel label = graph.getNodeLabel(privateId);
+        if (label == null || graph.isExternal(privateId) || graph.isExternal(image)) {
+            // Removed elements and external nodes are fixed
+            return image == privateId;
+        }
+        if (!label.equals(graph.getNodeLabel(image))
+                || graph.getSuccessorsOf(privateId).size() != graph.getSuccessorsOf(image).size()
+                || graph.getPredecessorsOf(privateId).size() != graph.getPredecessorsOf(image).size()
+                || !haveSameLabels(graph.getEdgeLabel(privateId, privateId), graph.getEdgeLabel(image, image))) {
+            return false;
+        }
+        for (int other = 0; other < privateId; other++) {
+            if (!haveSameLabels(graph.getEdgeLabel(other, privateId), graph.getEdgeLabel(map[other], image))
+                    || !haveSameLabels(graph.getEdgeLabel(privateId, other), graph.getEdgeLabel(image, map[other]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The attached nodes of a nonterminal edge must be mapped to the attached nodes of the image in the same order
+     */
+    private static boolean isTentacleOrderPreserved(Graph graph, int[] map) {
+        for (int privateId = 0; privateId < graph.size(); privateId++) {
+            if (graph.getNodeLabel(privateId) instanceof Nonterminal) {
+                TIntArrayList attachedNodes = graph.getSuccessorsOf(privateId);
+                TIntArrayList imageAttachedNodes = graph.getSuccessorsOf(map[privateId]);
+                for (int i = 0; i < attachedNodes.size(); i++) {
+                    if (map[attachedNodes.get(i)] != imageAttachedNodes.get(i)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if both lists contain the same labels (ignoring the order)
+     */
+    static boolean haveSameLabels(List<Object> labels1, List<Object> labels2) {
+        if (labels1 == null || labels2 == null) {
+            return labels1 == labels2;
+        }
+        if (labels1.size() != labels2.size()) {
+            return false;
+        }
+        List<Object> remaining = new ArrayList<>(labels2);
+        for (Object label : labels1) {
+            if (!remaining.remove(label)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isFixed(int[] map, int privateId) {
+        return privateId >= map.length || map[privateId] == privateId;
+    }
+}
@@ -36,6 +36,11 @@ public abstract class GraphElement implements Comparable<GraphElement> {
         return selectorLabel;
     }
 
+    /**
+     * Returns the element that corresponds to this element if the private ids are mapped by privateIdMap
+     */
+    abstract GraphElement getImage(int[] privateIdMap);
+
     @Override
     public int compareTo(GraphElement graphElement) {
         if (privateId != graphElement.privateId) {
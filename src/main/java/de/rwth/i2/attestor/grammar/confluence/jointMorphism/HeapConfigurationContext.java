@@ -10,6 +10,7 @@ import gnu.trove.list.array.TIntArrayList;
  */
 public class HeapConfigurationContext {
     private final CollapsedHeapConfiguration hc1, hc2;
+    private OverlappingCompatibility compatibility;  // Computed when it is needed for the first time
 
     /**
      * @param hc1 The first HeapConfiguration (the object class must implement the Graph interface)
@@ -67,4 +68,17 @@ public class HeapConfigurationContext {
     public Graph getGraph2() {
         return (Graph) hc2.getCollapsed();
     }
+
+    /**
+     * @return The precomputed compatibilities of the edges and nodes of both graphs
+     */
+    OverlappingCompatibility getCompatibility() {
+        OverlappingCompatibility result = compatibility;
+        if (result == null) {
+            // If multiple threads compute it at the same time they get equal results
+            result = new OverlappingCompatibility(this);
+            compatibility = result;
+        }
+        return result;
+    }
 }
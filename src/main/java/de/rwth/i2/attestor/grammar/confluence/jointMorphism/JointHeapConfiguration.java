@@ -23,6 +23,8 @@ import java.util.*;
 public class JointHeapConfiguration {
     private final HeapConfiguration hc;
     private final Matching matching1, matching2;
+    // The matchings as maps from the private ids of the patterns to the private ids of the joint graph
+    private final int[] privateMatching1, privateMatching2;
 
     /**
      * Creates a new HeapConfiguration that is the union between the two HeapConfigurations in the context object.
@@ -71,14 +73,16 @@ public class JointHeapConfiguration {
         hc = builder.build();
 
         // 4. Create the corresponding matchings
-        matching1 = new InternalMatching(context.getHc1(), getMorphism(context.getGraph1(), hc1PubIdMap), hc);
-        matching2 = new InternalMatching(context.getHc2(), getMorphism(context.getGraph2(), hc2PubIdMap), hc);
+        privateMatching1 = getPrivateMatching(context.getGraph1(), hc1PubIdMap);
+        privateMatching2 = getPrivateMatching(context.getGraph2(), hc2PubIdMap);
+        matching1 = new InternalMatching(context.getHc1(), new Morphism(privateMatching1), hc);
+        matching2 = new InternalMatching(context.getHc2(), new Morphism(privateMatching2), hc);
 
         // 5. Save which elements are involved in the rule applications
         // TODO: Setup reverse matching
     }
 
-    private Morphism getMorphism(Graph patternGraph, Map<GraphElement, Integer> patternPrivateToTargetPublic){
+    private int[] getPrivateMatching(Graph patternGraph, Map<GraphElement, Integer> patternPrivateToTargetPublic){
         int morphism[] = new int[patternGraph.size()];
         for (int patternPrivateId = 0; patternPrivateId < morphism.length; patternPrivateId++) {
             GraphElement graphElement;
@@ -96,7 +100,7 @@ public class JointHeapConfiguration {
             int targetPrivateId = HeapConfigurationIdConverter.getGraphId(hc, targetPublicId);
             morphism[patternPrivateId] = targetPrivateId;
         }
-        return new Morphism(morphism);
+        return morphism;
     }
 
     public HeapConfiguration getHeapConfiguration() {
@@ -132,6 +136,14 @@ public class JointHeapConfiguration {
         return matching2;
     }
 
+    int[] getPrivateMatching1() {
+        return privateMatching1;
+    }
+
+    int[] getPrivateMatching2() {
+        return privateMatching2;
+    }
+
     /**
      * Adds edges from graph that are not yet in the pubIdMap to the builder.
      * It stores which graph edges correspond to which pubId and saves the mapping in the pubIdMap
@@ -194,6 +206,8 @@ public class JointHeapConfiguration {
 
     /**
      * Adds entries to the valuePubIdMap that correspond to the overlapping graph elements from the overlapping that are already present in the keyPubIdMap
+     * If several keys are mapped to the same value, the key that comes last in the iteration order of the overlapping
+     * wins. The overlapping maps iterate in the order the equivalences have been added, so the result is deterministic.
      *
      * @param keyPubIdMap  Maps GraphElements (that are keys in the overlapping) to public ids in the joint heap configuration (its key-set must contain at least the keys of the overlapping)
      * @param overlapping  Maps GraphElements from one graph to equivalent GraphElements of the other graph
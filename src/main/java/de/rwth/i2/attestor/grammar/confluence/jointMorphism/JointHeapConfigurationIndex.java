@@ -0,0 +1,188 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.graph.digraph.NodeLabel;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.*;
+
+/**
+ * Stores values for the joint graphs of one pair of rules and finds the value of an isomorphic joint graph.
+ *
+ * Two joint graphs are isomorphic (with respect to the matchings) if there is an isomorphism phi between them and
+ * automorphisms a1, a2 of the right hand sides (that keep the external nodes fixed) such that
+ * phi o matching1 = matching1' o a1 and phi o matching2 = matching2' o a2. Then both rule applications lead to
+ * isomorphic heap configurations, so both joint graphs lead to the same critical pair. If a rule is overlapped with
+ * itself the two matchings may also be swapped.
+ *
+ * A joint graph is the union of the images of both matchings, so phi is determined by the matchings and the
+ * automorphisms. The joint graphs are first compared by a cheap invariant hash and the isomorphism is only checked for
+ * joint graphs with the same hash.
+ */
+public class JointHeapConfigurationIndex<V> {
+    /**
+     * The maximal number of automorphisms that are computed per right hand side
+     */
+    private static final int MAX_AUTOMORPHISMS = 64;
+
+    private final HeapConfigurationContext context;
+    private final boolean swapSymmetric;
+    private final Map<Integer, List<Entry<V>>> entries = new HashMap<>();
+    private List<int[]> automorphisms1, automorphisms2;  // Computed on the first hash collision
+    private int numberIsomorphismChecks = 0;
+
+    public JointHeapConfigurationIndex(HeapConfigurationContext context) {
+        this.context = context;
+        this.swapSymmetric = context.getHc1() == context.getHc2();
+    }
+
+    /**
+     * @return The value of a stored joint graph that is isomorphic to jointHeapConfiguration or null if there is none
+     */
+    public V get(JointHeapConfiguration jointHeapConfiguration) {
+        List<Entry<V>> candidates = entries.get(getInvariantHash(jointHeapConfiguration));
+        if (candidates == null) {
+            return null;
+        }
+        for (Entry<V> candidate : candidates) {
+            if (isIsomorphic(jointHeapConfiguration, candidate.jointHeapConfiguration)) {
+                return candidate.value;
+            }
+        }
+        return null;
+    }
+
+    public void put(JointHeapConfiguration jointHeapConfiguration, V value) {
+        entries.computeIfAbsent(getInvariantHash(jointHeapConfiguration), hash -> new ArrayList<>())
+                .add(new Entry<>(jointHeapConfiguration, value));
+    }
+
+    /**
+     * @return The number of isomorphism checks (joint graphs with the same invariant hash)
+     */
+    public int getNumberIsomorphismChecks() {
+        return numberIsomorphismChecks;
+    }
+
+    /**
+     * The hash only depends on the labels and degrees of the elements and on the number of elements that are matched
+     * by both rules, so it is the same for isomorphic joint graphs (also if the matchings are swapped).
+     */
+    private static int getInvariantHash(JointHeapConfiguration jointHeapConfiguration) {
+        Graph graph = (Graph) jointHeapConfiguration.getHeapConfiguration();
+        int[] elementHashes = new int[graph.size()];
+        for (int privateId = 0; privateId < graph.size(); privateId++) {
+            NodeLabel label = graph.getNodeLabel(privateId);
+            elementHashes[privateId] = Objects.hash(label, graph.getSuccessorsOf(privateId).size(),
+                    graph.getPredecessorsOf(privateId).size());
+        }
+        Arrays.sort(elementHashes);
+
+        BitSet image1 = new BitSet();
+        for (int target : jointHeapConfiguration.getPrivateMatching1()) {
+            image1.set(target);
+        }
+        int numberShared = 0;
+        for (int target : jointHeapConfiguration.getPrivateMatching2()) {
+            if (image1.get(target)) {
+                numberShared++;
+            }
+        }
+        return 31 * Arrays.hashCode(elementHashes) + numberShared;
+    }
+
+    private boolean isIsomorphic(JointHeapConfiguration jhc, JointHeapConfiguration other) {
+        numberIsomorphismChecks++;
+        if (automorphisms1 == null) {
+            automorphisms1 = GraphAutomorphisms.getAutomorphisms(context.getGraph1(), MAX_AUTOMORPHISMS);
+            automorphisms2 = swapSymmetric ? automorphisms1
+                    : GraphAutomorphisms.getAutomorphisms(context.getGraph2(), MAX_AUTOMORPHISMS);
+        }
+        int[] matching1 = jhc.getPrivateMatching1();
+        int[] matching2 = jhc.getPrivateMatching2();
+        int[] otherMatching1 = other.getPrivateMatching1();
+        int[] otherMatching2 = other.getPrivateMatching2();
+        for (int[] automorphism1 : automorphisms1) {
+            for (int[] automorphism2 : automorphisms2) {
+                if (isInducedIsomorphism(jhc, other, matching1, otherMatching1, automorphism1, matching2, otherMatching2, automorphism2)) {
+                    return true;
+                }
+                if (swapSymmetric && isInducedIsomorphism(jhc, other, matching1, otherMatching2, automorphism1, matching2, otherMatching1, automorphism2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if phi with phi(matching1[p]) = otherMatching1[automorphism1[p]] and
+     * phi(matching2[p]) = otherMatching2[automorphism2[p]] is a well defined isomorphism of the joint graphs
+     */
+    private static boolean isInducedIsomorphism(JointHeapConfiguration jhc, JointHeapConfiguration other,
+                                                int[] matching1, int[] otherMatching1, int[] automorphism1,
+                                                int[] matching2, int[] otherMatching2, int[] automorphism2) {
+        Graph graph = (Graph) jhc.getHeapConfiguration();
+        Graph otherGraph = (Graph) other.getHeapConfiguration();
+        if (graph.size() != otherGraph.size()) {
+            return false;
+        }
+        int[] phi = new int[graph.size()];
+        Arrays.fill(phi, -1);
+        boolean[] used = new boolean[graph.size()];
+        if (!addToIsomorphism(phi, used, matching1, otherMatching1, automorphism1)
+                || !addToIsomorphism(phi, used, matching2, otherMatching2, automorphism2)) {
+            return false;
+        }
+
+        for (int privateId = 0; privateId < graph.size(); privateId++) {
+            int image = phi[privateId];
+            if (image == -1) {
+                // Not part of any of the rule applications (cannot happen for joint graphs)
+                return false;
+            }
+            if (!Objects.equals(graph.getNodeLabel(privateId), otherGraph.getNodeLabel(image))) {
+                return false;
+            }
+            TIntArrayList successors = graph.getSuccessorsOf(privateId);
+            TIntArrayList otherSuccessors = otherGraph.getSuccessorsOf(image);
+            if (successors.size() != otherSuccessors.size()) {
+                return false;
+            }
+            for (int i = 0; i < successors.size(); i++) {
+                int successor = successors.get(i);
+                if (!GraphAutomorphisms.haveSameLabels(graph.getEdgeLabel(privateId, successor), otherGraph.getEdgeLabel(image, phi[successor]))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean addToIsomorphism(int[] phi, boolean[] used, int[] matching, int[] otherMatching, int[] automorphism) {
+        for (int patternId = 0; patternId < matching.length; patternId++) {
+            int source = matching[patternId];
+            int target = otherMatching[automorphism[patternId]];
+            if (phi[source] == -1) {
+                if (used[target]) {
+                    return false;
+                }
+                phi[source] = target;
+                used[target] = true;
+            } else if (phi[source] != target) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Entry<V> {
+        final JointHeapConfiguration jointHeapConfiguration;
+        final V value;
+
+        Entry(JointHeapConfiguration jointHeapConfiguration, V value) {
+            this.jointHeapConfiguration = jointHeapConfiguration;
+            this.value = value;
+        }
+    }
+}
@@ -25,6 +25,11 @@ public class NodeGraphElement extends GraphElement {
         return "node" + getPrivateId();
     }
 
+    @Override
+    NodeGraphElement getImage(int[] privateIdMap) {
+        return new NodeGraphElement(privateIdMap[getPrivateId()]);
+    }
+
     /**
      * Returns a collection of all nodes in the given graph excluding the specified nodes.
      */
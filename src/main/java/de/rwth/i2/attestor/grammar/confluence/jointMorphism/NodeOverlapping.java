@@ -58,14 +58,15 @@ public class NodeOverlapping extends Overlapping<NodeGraphElement> {
 
         // 2. Check compatibility with edges not in the intersection
         // Note: The given node cannot be connected to edges in the intersection!
-        if (isNodeViolationPointInGraph(graph1, node1, graph2, node2) ||
-                isNodeViolationPointInGraph(graph2, node2, graph1, node1)) {
+        OverlappingCompatibility compatibility = getContext().getCompatibility();
+        if (isNodeViolationPointInGraph(compatibility.getGraph1(), id1, graph2, id2) ||
+                isNodeViolationPointInGraph(compatibility.getGraph2(), id2, graph1, id1)) {
             // There is a violation
             return false;
         }
 
         // 3. Check that join does not create two outgoing selectors at node (outgoing selectors must be disjoint)
-        if (Collections.disjoint(node1.getOutgoingSelectors(graph1), node2.getOutgoingSelectors(graph2))) {
+        if (!compatibility.haveCommonOutgoingSelector(id1, id2)) {
             // The outgoing selectors are disjoint -> no violation
             return true;
         } else {
@@ -80,18 +81,18 @@ public class NodeOverlapping extends Overlapping<NodeGraphElement> {
      *
      * We require that edges that are in the intersection cannot be connected to the node.
      *
-     * @param node1  The NodeGraphElement of the node in graph1
-     * @param node2  The NodeGraphElement of the node in graph2
+     * @param node1  The private id of the node in graph1
+     * @param node2  The private id of the node in graph2
      */
-    private static boolean isNodeViolationPointInGraph(Graph graph1, NodeGraphElement node1, Graph graph2, NodeGraphElement node2) {
+    private static boolean isNodeViolationPointInGraph(OverlappingCompatibility.GraphSignature graph1, int node1, Graph graph2, int node2) {
         // 1. Check if node is internal in graph
-        if (graph2.isExternal(node2.getPrivateId())) {
+        if (graph2.isExternal(node2)) {
             // The node is external -> Cannot be a violation point
             return false;
         }
 
         // 2. Check if there are any connected edges (Only necessary if isolated nodes are allowed in RHS)
-        return node1.hasConnectedEdges(graph1);
+        return graph1.hasConnectedEdges(node1);
     }
 
     @Override
@@ -115,7 +116,51 @@ public class NodeOverlapping extends Overlapping<NodeGraphElement> {
         boolean isIndependent = edgeOverlapping.isEmpty();
 
         // Return the NodeOverlapping
-        return new NodeOverlapping(edgeOverlapping.getContext(), hc1Remaining, hc2Remaining, mapHc1toHc2, mapHc2toHc1, statisticCollector, isIndependent, edgeOverlapping.getLevel()+1);
+        NodeOverlapping result = new NodeOverlapping(edgeOverlapping.getContext(), hc1Remaining, hc2Remaining, mapHc1toHc2, mapHc2toHc1, statisticCollector, isIndependent, edgeOverlapping.getLevel()+1);
+        if (edgeOverlapping.hasSymmetries()) {
+            // Only the symmetries that do not change the edge overlapping can be used to prune node overlappings
+            result.setSymmetries(edgeOverlapping.getStabilizingSymmetries());
+        }
+        return result;
+    }
+
+    /**
+     * If a rule is overlapped with itself the overlapping with swapped sides leads to an isomorphic critical pair.
+     * Swapped overlappings cannot be pruned during the enumeration, because the overlappings with repeated HC1 elements
+     * have no swapped counterpart. Instead this method checks for the complete overlapping (edge overlapping and this
+     * node overlapping) if a swapped overlapping (possibly combined with a symmetry) is lexicographically smaller. In
+     * this case the swapped overlapping is enumerated as well and this overlapping can be skipped.
+     *
+     * @param edgeOverlapping The edge overlapping this node overlapping is based on
+     * @return false if the overlapping can be skipped
+     */
+    public boolean isSwapRepresentative(EdgeOverlapping edgeOverlapping) {
+        if (!edgeOverlapping.isSwapSymmetric() || !edgeOverlapping.isInjective() || !this.isInjective()) {
+            return true;
+        }
+        long[] edges = edgeOverlapping.encodeAddedEquivalences(null, null, false, edgeOverlapping::getHc1Index);
+        long[] nodes = this.encodeAddedEquivalences(null, null, false, GraphElement::getPrivateId);
+        if (isSwappedSmaller(edgeOverlapping, edges, nodes, null, null)) {
+            return false;
+        }
+        for (OverlappingSymmetry symmetry : edgeOverlapping.getSymmetries()) {
+            if (isSwappedSmaller(edgeOverlapping, edges, nodes, symmetry.getPrivateIdMap1(), symmetry.getPrivateIdMap2())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSwappedSmaller(EdgeOverlapping edgeOverlapping, long[] edges, long[] nodes,
+                                     int[] privateIdMap1, int[] privateIdMap2) {
+        long[] swappedEdges = edgeOverlapping.encodeAddedEquivalences(privateIdMap1, privateIdMap2, true, edgeOverlapping::getHc1Index);
+        int comparison = compareLexicographically(swappedEdges, edges);
+        if (comparison != 0) {
+            return comparison < 0;
+        }
+        // The swapped edge overlapping is the same -> compare the node overlappings
+        long[] swappedNodes = this.encodeAddedEquivalences(privateIdMap1, privateIdMap2, true, GraphElement::getPrivateId);
+        return compareLexicographically(swappedNodes, nodes) < 0;
     }
 
     public static NodeOverlapping getNodeOverlapping(EdgeOverlapping edgeOverlapping) {
@@ -4,6 +4,8 @@ import de.rwth.i2.attestor.grammar.confluence.benchmark.OverlappingStatisticColl
 import de.rwth.i2.attestor.util.Pair;
 
 import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.ToIntFunction;
 
 /**
  * An overlapping describes how two graphs (HC1 & HC2) overlap to build a new graph H.
@@ -13,65 +15,83 @@ import java.util.*;
  */
 public abstract class Overlapping<Element extends GraphElement> implements Iterable<Overlapping<Element>> {
     /**
-     * TODO:
-     * The attributes hc1Remaining, hc2Remaining might better use a different data structures.
-     * Instead of a TreeSet hc2Remaining might better use two hash maps that points to the successor / predecessor (and to save the smallest element)  --> Constant lookup time instead of O(log(n))
-     * And hc1Remaining might better use an ArrayList.
-     *
-     * TODO:
-     * Don't copy every information into the new object, but only add the new information. Save a pointer to the previous
-     * element.
-     * Advantage: Faster object creation
-     * Drawback: Slower queries on object
-     */
-    private final TreeSet<Element> hc1Remaining, hc2Remaining;
-    private final Pair<Element, Element> lastAddedEquivalence;
-    private final Map<Element, Element> mapHC1toHC2, mapHC2toHC1;
-    private final HeapConfigurationContext context;
-    private final OverlappingStatisticCollector statisticCollector;
+     * The overlappings are persistent: All overlappings that are derived from the same base overlapping share one
+     * OverlappingFamily that assigns an index to each element. A new overlapping only stores a pointer to its parent
+     * and the added equivalence, so creating a child overlapping is O(1).
+     * The remaining elements (as bitsets over the element indices) and the equivalences (as arrays of element indices)
+     * are materialized from the parent when the overlapping is queried for the first time. After that the parent
+     * pointer is dropped, so a materialized overlapping does not keep its ancestors alive (only the small list of
+     * added equivalences is shared).
+     */
+    private final OverlappingFamily<Element> family;
+    private final AddedEquivalence<Element> addedEquivalences;  // The last added equivalence (null for the base overlapping)
     private final int level;
+    private Overlapping<Element> parent;  // Set to null once the overlapping is materialized
+    private BitSet hc1Remaining, hc2Remaining;
+    private int[] hc1ToHc2, hc2ToHc1;  // Index of the equivalent element in the other graph (or -1)
+    private int numberHc1Equivalences, numberHc2Equivalences;  // Number of elements with an added equivalence
 
     Overlapping(HeapConfigurationContext context, Collection<Element> hc1Remaining,
                           Collection<Element> hc2Remaining, Map<Element, Element> mapHC1toHC2,
                           Map<Element, Element> mapHC2toHC1, OverlappingStatisticCollector statisticCollector, int level) {
-        this.context = context;
-        this.hc1Remaining = new TreeSet<>(hc1Remaining);
-        this.hc2Remaining = new TreeSet<>(hc2Remaining);
-        this.mapHC1toHC2 = mapHC1toHC2;
-        this.mapHC2toHC1 = mapHC2toHC1;
-        this.lastAddedEquivalence = null;
-        this.statisticCollector = statisticCollector;
+        this.family = new OverlappingFamily<>(context, hc1Remaining, hc2Remaining, mapHC1toHC2, mapHC2toHC1, statisticCollector);
+        this.addedEquivalences = null;
         this.level = level;
+        this.parent = null;
+        initializeBase();
     }
 
     /**
      * Initializes an overlapping where all Elements are disjoint
      */
     Overlapping(HeapConfigurationContext context, Collection<Element> hc1, Collection<Element> hc2, OverlappingStatisticCollector statisticCollector) {
-        this.context = context;
-        hc1Remaining = new TreeSet<>(hc1);
-        hc2Remaining = new TreeSet<>(hc2);
-        lastAddedEquivalence = null;
-        mapHC1toHC2 =  new HashMap<>();
-        mapHC2toHC1 =  new HashMap<>();
-        this.statisticCollector = statisticCollector;
-        this.level = 0;
+        this(context, hc1, hc2, Collections.emptyMap(), Collections.emptyMap(), statisticCollector, 0);
     }
 
 
     Overlapping(Overlapping<Element> oldOverlapping, Pair<Element, Element> newEquivalence) {
-        context = oldOverlapping.context;
-        hc1Remaining = new TreeSet<>(oldOverlapping.hc1Remaining);
-        hc1Remaining.remove(newEquivalence.first());
-        hc2Remaining = new TreeSet<>(oldOverlapping.hc2Remaining);
-        hc2Remaining.remove(newEquivalence.second());
-        lastAddedEquivalence = newEquivalence;
-        mapHC1toHC2 =  new HashMap<>(oldOverlapping.mapHC1toHC2);
-        mapHC1toHC2.put(newEquivalence.first(), newEquivalence.second());
-        mapHC2toHC1 =  new HashMap<>(oldOverlapping.mapHC2toHC1);
-        mapHC2toHC1.put(newEquivalence.second(), newEquivalence.first());
-        this.statisticCollector = oldOverlapping.statisticCollector;
-        this.level = oldOverlapping.level + 1;
+        family = oldOverlapping.family;
+        addedEquivalences = new AddedEquivalence<>(newEquivalence, oldOverlapping.addedEquivalences);
+        level = oldOverlapping.level + 1;
+        parent = oldOverlapping;
+    }
+
+    private void initializeBase() {
+        int size1 = family.hc1Elements.size();
+        int size2 = family.hc2Elements.size();
+        hc1Remaining = new BitSet(size1);
+        hc1Remaining.set(0, size1);
+        hc2Remaining = new BitSet(size2);
+        hc2Remaining.set(0, size2);
+        hc1ToHc2 = new int[size1];
+        Arrays.fill(hc1ToHc2, -1);
+        hc2ToHc1 = new int[size2];
+        Arrays.fill(hc2ToHc1, -1);
+        numberHc1Equivalences = 0;
+        numberHc2Equivalences = 0;
+    }
+
+    /**
+     * Computes the remaining elements and equivalences from the parent overlapping (if not already done)
+     */
+    private void materialize() {
+        if (parent != null) {
+            parent.materialize();
+            Pair<Element, Element> lastAddedEquivalence = getLastAddedEquivalence();
+            int idx1 = family.hc1Indices.get(lastAddedEquivalence.first());
+            int idx2 = family.hc2Indices.get(lastAddedEquivalence.second());
+            hc1Remaining = (BitSet) parent.hc1Remaining.clone();
+            hc1Remaining.clear(idx1);
+            hc2Remaining = (BitSet) parent.hc2Remaining.clone();
+            hc2Remaining.clear(idx2);
+            hc1ToHc2 = parent.hc1ToHc2.clone();
+            hc2ToHc1 = parent.hc2ToHc1.clone();
+            numberHc1Equivalences = parent.numberHc1Equivalences + (hc1ToHc2[idx1] < 0 ? 1 : 0);
+            numberHc2Equivalences = parent.numberHc2Equivalences + (hc2ToHc1[idx2] < 0 ? 1 : 0);
+            hc1ToHc2[idx1] = idx2;
+            hc2ToHc1[idx2] = idx1;
+            parent = null;
+        }
     }
 
     /**
@@ -82,52 +102,66 @@ public abstract class Overlapping<Element extends GraphElement> implements Itera
      *         If there are no more successors this method return null.
      */
     Pair<Element, Element> getNextEquivalence(Pair<Element, Element> previousPair) {
+        materialize();
         if (hc1Remaining.isEmpty() || hc2Remaining.isEmpty()) {
             // No overlapping possible
             return null;
         }
-        Element hc1Old, hc2Old;
+        Pair<Element, Element> lastAddedEquivalence = getLastAddedEquivalence();
+        int hc1Old, hc2Old;
         if (previousPair == null) {
             if (lastAddedEquivalence == null) {
                 // This is the base overlapping
-                return new Pair<>(hc1Remaining.first(), hc2Remaining.first());
+                return getPair(hc1Remaining.nextSetBit(0), hc2Remaining.nextSetBit(0));
             } else {
                 // This is not the base overlapping -> The last added equivalence is the actual oldPair
-                hc1Old = hc1Remaining.higher(lastAddedEquivalence.first());
-                if (hc1Old == null) {
+                hc1Old = hc1Remaining.nextSetBit(family.hc1Indices.get(lastAddedEquivalence.first()) + 1);
+                if (hc1Old < 0) {
                     return null;
                 }
-                hc2Old = hc2Remaining.first();
-                return new Pair<>(hc1Old, hc2Old);
+                hc2Old = hc2Remaining.nextSetBit(0);
+                return getPair(hc1Old, hc2Old);
             }
         } else {
-            hc1Old = previousPair.first();
-            hc2Old = previousPair.second();
+            hc1Old = family.hc1Indices.get(previousPair.first());
+            hc2Old = family.hc2Indices.get(previousPair.second());
         }
 
-        Element hc1New, hc2New;
-        hc2New = hc2Remaining.higher(hc2Old);
-        if (hc2New == null) {
+        int hc1New, hc2New;
+        hc2New = hc2Remaining.nextSetBit(hc2Old + 1);
+        if (hc2New < 0) {
             // If there is no higher node in hc2 the next equivalence we look for a higher node in hc1
-            hc1New = hc1Remaining.higher(hc1Old);
-            if (hc1New == null) {
+            hc1New = hc1Remaining.nextSetBit(hc1Old + 1);
+            if (hc1New < 0) {
                 // There are no more valid Element in hc1
                 return null;
             }
             // Start again by the lowest available node in hc2
-            hc2New = hc2Remaining.first(); // hc2Remaining is not empty (checked at the beginning)
+            hc2New = hc2Remaining.nextSetBit(0); // hc2Remaining is not empty (checked at the beginning)
         } else {
             hc1New = hc1Old;
         }
-        return new Pair<>(hc1New, hc2New);
+        return getPair(hc1New, hc2New);
     }
 
-    TreeSet<Element> getHc1Remaining() {
-        return hc1Remaining;
+    private Pair<Element, Element> getPair(int hc1Idx, int hc2Idx) {
+        return new Pair<>(family.hc1Elements.get(hc1Idx), family.hc2Elements.get(hc2Idx));
     }
 
-    TreeSet<Element> getHc2Remaining() {
-        return hc2Remaining;
+    /**
+     * @return The elements of HC1 that are not in the intersection (in ascending order)
+     */
+    Collection<Element> getHc1Remaining() {
+        materialize();
+        return new RemainingElements<>(family.hc1Elements, hc1Remaining);
+    }
+
+    /**
+     * @return The elements of HC2 that are not in the intersection (in ascending order)
+     */
+    Collection<Element> getHc2Remaining() {
+        materialize();
+        return new RemainingElements<>(family.hc2Elements, hc2Remaining);
     }
 
     /**
@@ -140,36 +174,268 @@ public abstract class Overlapping<Element extends GraphElement> implements Itera
      */
     @Deprecated
     Collection<Overlapping<Element>> getAllNextOverlappings() {
-        Pair<Element, Element> nextNodeEquivalence;
-        nextNodeEquivalence = getNextEquivalence(lastAddedEquivalence);
         Collection<Overlapping<Element>> result = new ArrayList<>();
+        Pair<Element, Element> nextNodeEquivalence = getNextCompatibleEquivalence(getLastAddedEquivalence());
+        while (nextNodeEquivalence != null) {
+            result.add(getOverlapping(nextNodeEquivalence));
+            nextNodeEquivalence = getNextCompatibleEquivalence(nextNodeEquivalence);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the next equivalence after previousPair (according to getNextEquivalence) that is compatible with this
+     * overlapping. Incompatible equivalences are logged in the statistic collector.
+     *
+     * @param previousPair  The last equivalence returned by this method (the last added equivalence for the first call)
+     * @return The next compatible equivalence or null if there is none
+     */
+    Pair<Element, Element> getNextCompatibleEquivalence(Pair<Element, Element> previousPair) {
+        Pair<Element, Element> nextNodeEquivalence = getNextEquivalence(previousPair);
         while (nextNodeEquivalence != null) {
             if (this.isNextPairCompatible(nextNodeEquivalence)) {
-                result.add(getOverlapping(nextNodeEquivalence));
-            } else if (statisticCollector != null) {
+                if (isMinimalInOrbit(nextNodeEquivalence)) {
+                    return nextNodeEquivalence;
+                } else if (family.statisticCollector != null) {
+                    // The new overlapping is isomorphic to an overlapping that is enumerated anyway
+                    family.statisticCollector.logSymmetryPruning(this.getLevel());
+                }
+            } else if (family.statisticCollector != null) {
                 // Keep a statistic on the level at which we were able to prune
-                statisticCollector.logPruning(this.getLevel());
+                family.statisticCollector.logPruning(this.getLevel());
             }
             nextNodeEquivalence = getNextEquivalence(nextNodeEquivalence);
         }
+        return null;
+    }
+
+    /**
+     * Restricts the enumeration to one representative for each orbit of the overlappings under the given symmetries.
+     * The representative is the overlapping whose (sorted) equivalences are lexicographically minimal in the orbit.
+     * If an overlapping is not minimal none of its extensions is minimal, so the enumeration does not need to consider
+     * them.
+     * This method must be called on the base overlapping before the enumeration starts. Symmetries that do not map
+     * the elements of the base overlapping onto themselves are ignored.
+     */
+    void setSymmetries(List<OverlappingSymmetry> symmetries) {
+        if (addedEquivalences != null) {
+            throw new IllegalStateException("Symmetries can only be set for the base overlapping");
+        }
+        family.symmetries = new ArrayList<>();
+        family.hc1Permutations = new ArrayList<>();
+        family.hc2Permutations = new ArrayList<>();
+        for (OverlappingSymmetry symmetry : symmetries) {
+            int[] hc1Permutation = getIndexPermutation(family.hc1Elements, family.hc1Indices, symmetry.getPrivateIdMap1());
+            int[] hc2Permutation = getIndexPermutation(family.hc2Elements, family.hc2Indices, symmetry.getPrivateIdMap2());
+            if (hc1Permutation != null && hc2Permutation != null) {
+                family.symmetries.add(symmetry);
+                family.hc1Permutations.add(hc1Permutation);
+                family.hc2Permutations.add(hc2Permutation);
+            }
+        }
+    }
+
+    boolean hasSymmetries() {
+        return !family.symmetries.isEmpty();
+    }
+
+    List<OverlappingSymmetry> getSymmetries() {
+        return family.symmetries;
+    }
+
+    /**
+     * Marks that both graphs of the context are the same graph (a rule is overlapped with itself). Then swapping the
+     * two sides of an overlapping leads to an isomorphic critical pair (the same rule applications in the other order).
+     * The swap cannot be used to prune the enumeration (see NodeOverlapping.isSwapRepresentative).
+     */
+    void setSwapSymmetric(boolean swapSymmetric) {
+        family.swapSymmetric = swapSymmetric;
+    }
+
+    boolean isSwapSymmetric() {
+        return family.swapSymmetric;
+    }
+
+    /**
+     * @return true if no element of HC1 occurs in more than one added equivalence
+     */
+    boolean isInjective() {
+        Set<Element> hc1Elements = new HashSet<>();
+        for (AddedEquivalence<Element> current = addedEquivalences; current != null; current = current.previous) {
+            if (!hc1Elements.add(current.equivalence.first())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the images of the added equivalences as sorted longs (code of the HC1 element in the upper bits and code
+     * of the HC2 element in the lower bits). The elements are mapped by the private id maps (null for the identity).
+     * If swapped is true the HC2 element of an equivalence is used as the HC1 element of the image and vice versa
+     * (this is only meaningful if both graphs are the same).
+     */
+    long[] encodeAddedEquivalences(int[] privateIdMap1, int[] privateIdMap2, boolean swapped, ToIntFunction<Element> code) {
+        List<Long> result = new ArrayList<>();
+        for (AddedEquivalence<Element> current = addedEquivalences; current != null; current = current.previous) {
+            GraphElement image1 = privateIdMap1 == null ? current.equivalence.first() : current.equivalence.first().getImage(privateIdMap1);
+            GraphElement image2 = privateIdMap2 == null ? current.equivalence.second() : current.equivalence.second().getImage(privateIdMap2);
+            if (swapped) {
+                GraphElement tmp = image1;
+                image1 = image2;
+                image2 = tmp;
+            }
+            result.add(encode(code.applyAsInt(castElement(image1)), code.applyAsInt(castElement(image2))));
+        }
+        long[] sortedResult = new long[result.size()];
+        for (int i = 0; i < sortedResult.length; i++) {
+            sortedResult[i] = result.get(i);
+        }
+        Arrays.sort(sortedResult);
+        return sortedResult;
+    }
+
+    /**
+     * The image of an element under a private id map is an element of the same class
+     */
+    @SuppressWarnings("unchecked")
+    private static <Element extends GraphElement> Element castElement(GraphElement element) {
+        return (Element) element;
+    }
+
+    /**
+     * @return The index of the element in the (sorted) HC1 elements of the base overlapping
+     */
+    int getHc1Index(Element element) {
+        return family.hc1Indices.get(element);
+    }
+
+    /**
+     * @return The symmetries that map the added equivalences of this overlapping onto themselves
+     */
+    List<OverlappingSymmetry> getStabilizingSymmetries() {
+        List<OverlappingSymmetry> result = new ArrayList<>();
+        long[] equivalences = getEncodedEquivalences(null);
+        for (int i = 0; i < family.symmetries.size(); i++) {
+            long[] image = applyPermutation(equivalences, family.hc1Permutations.get(i), family.hc2Permutations.get(i));
+            if (Arrays.equals(equivalences, image)) {
+                result.add(family.symmetries.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the overlapping with the additional equivalence newPair is lexicographically minimal in its orbit
+     */
+    private boolean isMinimalInOrbit(Pair<Element, Element> newPair) {
+        if (family.symmetries.isEmpty()) {
+            return true;
+        }
+        long[] equivalences = getEncodedEquivalences(newPair);
+        for (int i = 0; i < family.symmetries.size(); i++) {
+            long[] image = applyPermutation(equivalences, family.hc1Permutations.get(i), family.hc2Permutations.get(i));
+            if (compareLexicographically(image, equivalences) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encodes the added equivalences (and newPair if it is not null) as sorted longs (index in HC1 in the upper bits and
+     * index in HC2 in the lower bits)
+     */
+    private long[] getEncodedEquivalences(Pair<Element, Element> newPair) {
+        List<Pair<Element, Element>> equivalences = getAddedEquivalences();
+        if (newPair != null) {
+            equivalences.add(newPair);
+        }
+        long[] result = new long[equivalences.size()];
+        int i = 0;
+        for (Pair<Element, Element> equivalence : equivalences) {
+            result[i++] = encode(family.hc1Indices.get(equivalence.first()), family.hc2Indices.get(equivalence.second()));
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long[] applyPermutation(long[] equivalences, int[] hc1Permutation, int[] hc2Permutation) {
+        long[] result = new long[equivalences.length];
+        for (int i = 0; i < equivalences.length; i++) {
+            int hc1Index = (int) (equivalences[i] >>> 32);
+            int hc2Index = (int) equivalences[i];
+            result[i] = encode(hc1Permutation[hc1Index], hc2Permutation[hc2Index]);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long encode(int hc1Index, int hc2Index) {
+        return ((long) hc1Index << 32) | hc2Index;
+    }
+
+    static int compareLexicographically(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Long.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the permutation of the element indices that is induced by privateIdMap or null if privateIdMap does not
+     * map the elements onto themselves
+     */
+    private static <Element extends GraphElement> int[] getIndexPermutation(List<Element> elements, Map<Element, Integer> indices, int[] privateIdMap) {
+        int[] result = new int[elements.size()];
+        for (int i = 0; i < elements.size(); i++) {
+            Integer imageIndex = indices.get(elements.get(i).getImage(privateIdMap));
+            if (imageIndex == null) {
+                return null;
+            }
+            result[i] = imageIndex;
+        }
         return result;
     }
 
     public HeapConfigurationContext getContext() {
-        return context;
+        return family.context;
     }
 
     @Override
     public Iterator<Overlapping<Element>> iterator() {
-        return new OverlappingIterator<>(this);
+        return iterator(OverlappingEnumerationOrder.BREADTH_FIRST);
+    }
+
+    /**
+     * Returns an iterator over this overlapping and all overlappings that extend it in the given order
+     */
+    public Iterator<Overlapping<Element>> iterator(OverlappingEnumerationOrder enumerationOrder) {
+        switch (enumerationOrder) {
+            case BREADTH_FIRST:
+                return new OverlappingIterator<>(this);
+            case DEPTH_FIRST:
+                return new DepthFirstOverlappingIterator<>(this);
+        }
+        throw new IllegalArgumentException("Unexpected enumeration order");
+    }
+
+    public Iterable<Overlapping<Element>> inOrder(OverlappingEnumerationOrder enumerationOrder) {
+        return () -> iterator(enumerationOrder);
     }
 
     Map<Element, Element> getMapHC1toHC2() {
-        return Collections.unmodifiableMap(mapHC1toHC2);
+        materialize();
+        return new EquivalenceMap<>(family.baseMapHC1toHC2, family.hc1Indices, family.hc2Elements, hc1ToHc2,
+                numberHc1Equivalences, addedEquivalences, false);
     }
 
     Map<Element, Element> getMapHC2toHC1() {
-        return Collections.unmodifiableMap(mapHC2toHC1);
+        materialize();
+        return new EquivalenceMap<>(family.baseMapHC2toHC1, family.hc2Indices, family.hc1Elements, hc2ToHc1,
+                numberHc2Equivalences, addedEquivalences, true);
     }
 
     /**
@@ -178,7 +444,7 @@ public abstract class Overlapping<Element extends GraphElement> implements Itera
      * @return true if there are no elements in the intersection
      */
     public boolean isEmpty() {
-        return mapHC1toHC2.isEmpty();
+        return addedEquivalences == null && family.baseMapHC1toHC2.isEmpty();
     }
 
     /**
@@ -198,4 +464,188 @@ public abstract class Overlapping<Element extends GraphElement> implements Itera
         return level;
     }
 
+    Pair<Element, Element> getLastAddedEquivalence() {
+        return addedEquivalences == null ? null : addedEquivalences.equivalence;
+    }
+
+    /**
+     * @return The equivalences that have been added to the base overlapping (in the order they have been added)
+     */
+    List<Pair<Element, Element>> getAddedEquivalences() {
+        return AddedEquivalence.toList(addedEquivalences);
+    }
+
+    /**
+     * A persistent list of the added equivalences (shared between an overlapping and its children)
+     */
+    private static class AddedEquivalence<Element> {
+        final Pair<Element, Element> equivalence;
+        final AddedEquivalence<Element> previous;
+
+        AddedEquivalence(Pair<Element, Element> equivalence, AddedEquivalence<Element> previous) {
+            this.equivalence = equivalence;
+            this.previous = previous;
+        }
+
+        static <Element> List<Pair<Element, Element>> toList(AddedEquivalence<Element> last) {
+            LinkedList<Pair<Element, Element>> result = new LinkedList<>();
+            for (AddedEquivalence<Element> current = last; current != null; current = current.previous) {
+                result.addFirst(current.equivalence);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The data that is shared by all overlappings that are derived from the same base overlapping
+     */
+    private static class OverlappingFamily<Element extends GraphElement> {
+        final HeapConfigurationContext context;
+        final OverlappingStatisticCollector statisticCollector;
+        final List<Element> hc1Elements, hc2Elements;  // The elements that are remaining in the base overlapping (in ascending order)
+        final Map<Element, Integer> hc1Indices, hc2Indices;
+        final Map<Element, Element> baseMapHC1toHC2, baseMapHC2toHC1;  // The equivalences of the base overlapping
+        // The symmetries used to prune isomorphic overlappings and the permutations of the element indices they induce
+        List<OverlappingSymmetry> symmetries = Collections.emptyList();
+        List<int[]> hc1Permutations = Collections.emptyList();
+        List<int[]> hc2Permutations = Collections.emptyList();
+        boolean swapSymmetric = false;
+
+        OverlappingFamily(HeapConfigurationContext context, Collection<Element> hc1Remaining,
+                          Collection<Element> hc2Remaining, Map<Element, Element> mapHC1toHC2,
+                          Map<Element, Element> mapHC2toHC1, OverlappingStatisticCollector statisticCollector) {
+            this.context = context;
+            this.statisticCollector = statisticCollector;
+            this.hc1Elements = getSortedElements(hc1Remaining);
+            this.hc2Elements = getSortedElements(hc2Remaining);
+            this.hc1Indices = getIndices(hc1Elements);
+            this.hc2Indices = getIndices(hc2Elements);
+            this.baseMapHC1toHC2 = mapHC1toHC2;
+            this.baseMapHC2toHC1 = mapHC2toHC1;
+        }
+
+        private static <Element extends GraphElement> List<Element> getSortedElements(Collection<Element> elements) {
+            List<Element> result = new ArrayList<>(elements);
+            Collections.sort(result);
+            return result;
+        }
+
+        private static <Element> Map<Element, Integer> getIndices(List<Element> elements) {
+            Map<Element, Integer> result = new HashMap<>();
+            for (int i = 0; i < elements.size(); i++) {
+                result.put(elements.get(i), i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * An unmodifiable view on the elements whose index is set in the bitset
+     */
+    private static class RemainingElements<Element> extends AbstractCollection<Element> {
+        private final List<Element> elements;
+        private final BitSet remaining;
+
+        RemainingElements(List<Element> elements, BitSet remaining) {
+            this.elements = elements;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public Iterator<Element> iterator() {
+            return new Iterator<Element>() {
+                int nextIdx = remaining.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return nextIdx >= 0;
+                }
+
+                @Override
+                public Element next() {
+                    if (nextIdx < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    Element result = elements.get(nextIdx);
+                    nextIdx = remaining.nextSetBit(nextIdx + 1);
+                    return result;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return remaining.cardinality();
+        }
+    }
+
+    /**
+     * An unmodifiable map view that combines the equivalences of the base overlapping with the added equivalences
+     * (given by an array of element indices).
+     *
+     * Lookups only use the arrays. The entries are iterated in a defined order: First the equivalences of the base
+     * overlapping (in their iteration order), then the added equivalences in the order they have been added.
+     */
+    private static class EquivalenceMap<Element> extends AbstractMap<Element, Element> {
+        private final Map<Element, Element> baseMap;
+        private final Map<Element, Integer> keyIndices;
+        private final List<Element> valueElements;
+        private final int[] keyToValue;
+        private final int numberAddedKeys;
+        private final AddedEquivalence<Element> addedEquivalences;
+        private final boolean inverse;  // true if the keys are the second elements of the added equivalences
+        private Map<Element, Element> entries;  // Computed lazily on the first iteration
+
+        EquivalenceMap(Map<Element, Element> baseMap, Map<Element, Integer> keyIndices, List<Element> valueElements,
+                       int[] keyToValue, int numberAddedKeys, AddedEquivalence<Element> addedEquivalences, boolean inverse) {
+            this.baseMap = baseMap;
+            this.keyIndices = keyIndices;
+            this.valueElements = valueElements;
+            this.keyToValue = keyToValue;
+            this.numberAddedKeys = numberAddedKeys;
+            this.addedEquivalences = addedEquivalences;
+            this.inverse = inverse;
+        }
+
+        @Override
+        public Element get(Object key) {
+            Integer keyIdx = keyIndices.get(key);
+            if (keyIdx == null) {
+                // The key was not remaining in the base overlapping
+                return baseMap.get(key);
+            }
+            int valueIdx = keyToValue[keyIdx];
+            return valueIdx < 0 ? null : valueElements.get(valueIdx);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return baseMap.size() + numberAddedKeys;
+        }
+
+        @Override
+        public Set<Entry<Element, Element>> entrySet() {
+            if (addedEquivalences == null) {
+                return Collections.unmodifiableMap(baseMap).entrySet();
+            }
+            if (entries == null) {
+                Map<Element, Element> result = new LinkedHashMap<>(baseMap);
+                for (Pair<Element, Element> equivalence : AddedEquivalence.toList(addedEquivalences)) {
+                    if (inverse) {
+                        result.put(equivalence.second(), equivalence.first());
+                    } else {
+                        result.put(equivalence.first(), equivalence.second());
+                    }
+                }
+                entries = Collections.unmodifiableMap(result);
+            }
+            return entries.entrySet();
+        }
+    }
+
 }
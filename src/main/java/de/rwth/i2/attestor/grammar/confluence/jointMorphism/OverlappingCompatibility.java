@@ -0,0 +1,219 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.graph.digraph.NodeLabel;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import de.rwth.i2.attestor.types.Type;
+import de.rwth.i2.attestor.util.Pair;
+
+import java.util.*;
+
+/**
+ * Precomputed data of a HeapConfigurationContext that is used by EdgeOverlapping and NodeOverlapping, so the
+ * enumeration of the overlappings does not have to derive it from the graphs for every candidate pair.
+ *
+ * - An edge-by-edge compatibility matrix: compatible[i].get(j) is true if the i-th edge of graph1 can be overlapped
+ *   with the j-th edge of graph2 without considering the other equivalences of an overlapping (same selector label or
+ *   matching nonterminals, matching types of the attached nodes, and the same tentacles are attached to the same node)
+ * - The connected nodes of all edges
+ * - For every node the outgoing selectors as a bitset over the selector labels of both graphs
+ * - For every node if it is connected to any edge
+ * - The pairs of nodes that are connected by selectors (with the selector labels as bitset)
+ *
+ * The data does not change after construction, so it can be used from multiple threads.
+ */
+class OverlappingCompatibility {
+    private final GraphSignature graph1, graph2;
+    private final BitSet[] compatible;
+    private final List<String> selectorLabels = new ArrayList<>();  // The selector label of each selector id
+    private final Map<String, Integer> selectorIds = new HashMap<>();
+
+    OverlappingCompatibility(HeapConfigurationContext context) {
+        this.graph1 = new GraphSignature(context.getGraph1());
+        this.graph2 = new GraphSignature(context.getGraph2());
+
+        compatible = new BitSet[graph1.edges.size()];
+        for (int i = 0; i < compatible.length; i++) {
+            compatible[i] = new BitSet(graph2.edges.size());
+            for (int j = 0; j < graph2.edges.size(); j++) {
+                if (isEdgePairCompatible(i, j)) {
+                    compatible[i].set(j);
+                }
+            }
+        }
+    }
+
+    GraphSignature getGraph1() {
+        return graph1;
+    }
+
+    GraphSignature getGraph2() {
+        return graph2;
+    }
+
+    /**
+     * @return True if the edges can be overlapped without considering the other equivalences of an overlapping
+     */
+    boolean isCompatible(EdgeGraphElement edge1, EdgeGraphElement edge2) {
+        return compatible[graph1.getEdgeIndex(edge1)].get(graph2.getEdgeIndex(edge2));
+    }
+
+    /**
+     * @return The selector label with the given id
+     */
+    String getSelectorLabel(int selectorId) {
+        return selectorLabels.get(selectorId);
+    }
+
+    /**
+     * @return True if the node of graph1 and the node of graph2 have an outgoing selector with the same label
+     */
+    boolean haveCommonOutgoingSelector(int node1, int node2) {
+        return graph1.outgoingSelectors[node1].intersects(graph2.outgoingSelectors[node2]);
+    }
+
+    private int getSelectorId(String selectorLabel) {
+        Integer result = selectorIds.get(selectorLabel);
+        if (result == null) {
+            result = selectorLabels.size();
+            selectorLabels.add(selectorLabel);
+            selectorIds.put(selectorLabel, result);
+        }
+        return result;
+    }
+
+    private boolean isEdgePairCompatible(int idx1, int idx2) {
+        EdgeGraphElement edge1 = graph1.edges.get(idx1);
+        EdgeGraphElement edge2 = graph2.edges.get(idx2);
+
+        // 1. Check if the edge types are compatible
+        if (!edge1.isSelector() && !edge2.isSelector()) {
+            NodeLabel nodeLabel1 = graph1.graph.getNodeLabel(edge1.getPrivateId());
+            NodeLabel nodeLabel2 = graph2.graph.getNodeLabel(edge2.getPrivateId());
+            if (!nodeLabel1.matches(nodeLabel2)) {
+                return false;
+            }
+        } else if (edge1.isSelector() && edge2.isSelector()) {
+            if (!edge1.getSelectorLabel().equals(edge2.getSelectorLabel())) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+
+        // 2. Check the attached nodes
+        int[] connectedNodes1 = graph1.connectedNodes[idx1];
+        int[] connectedNodes2 = graph2.connectedNodes[idx2];
+        if (connectedNodes1.length != connectedNodes2.length) {
+            return false;
+        }
+        for (int i = 0; i < connectedNodes1.length; i++) {
+            Type t1 = (Type) graph1.graph.getNodeLabel(connectedNodes1[i]);
+            Type t2 = (Type) graph2.graph.getNodeLabel(connectedNodes2[i]);
+            if (!t1.matches(t2)) {
+                return false;
+            }
+            // Tentacles that are attached to the same node in one graph must be attached to the same node in the other graph
+            for (int j = 0; j < i; j++) {
+                if ((connectedNodes1[j] == connectedNodes1[i]) != (connectedNodes2[j] == connectedNodes2[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The precomputed data of a single graph
+     */
+    class GraphSignature {
+        final Graph graph;
+        final List<EdgeGraphElement> edges;  // In the iteration order of EdgeGraphElement.getEdgesOfGraph
+        private final Map<EdgeGraphElement, Integer> edgeIndices = new HashMap<>();
+        private final int[][] connectedNodes;  // The private ids of the connected nodes of each edge
+        private final BitSet[] outgoingSelectors;  // The selector ids of the outgoing selectors (indexed by private id)
+        private final boolean[] hasConnectedEdges;  // Indexed by private id
+        private final int[][] selectorNodePairs;  // Source and target of all pairs of nodes connected by selectors
+        private final BitSet[] selectorNodePairLabels;  // The selector ids of the selectors between the node pairs
+
+        private GraphSignature(Graph graph) {
+            this.graph = graph;
+            this.edges = new ArrayList<>(EdgeGraphElement.getEdgesOfGraph(graph));
+            this.connectedNodes = new int[edges.size()][];
+            for (int i = 0; i < edges.size(); i++) {
+                edgeIndices.put(edges.get(i), i);
+                List<NodeGraphElement> nodes = edges.get(i).getConnectedNodes(graph);
+                connectedNodes[i] = new int[nodes.size()];
+                for (int j = 0; j < nodes.size(); j++) {
+                    connectedNodes[i][j] = nodes.get(j).getPrivateId();
+                }
+            }
+
+            this.outgoingSelectors = new BitSet[graph.size()];
+            this.hasConnectedEdges = new boolean[graph.size()];
+            for (int privateId = 0; privateId < graph.size(); privateId++) {
+                outgoingSelectors[privateId] = new BitSet();
+                if (graph.getNodeLabel(privateId) instanceof Type) {
+                    NodeGraphElement node = new NodeGraphElement(privateId);
+                    for (String selectorLabel : node.getOutgoingSelectors(graph)) {
+                        outgoingSelectors[privateId].set(getSelectorId(selectorLabel));
+                    }
+                    hasConnectedEdges[privateId] = node.hasConnectedEdges(graph);
+                }
+            }
+
+            Collection<Pair<NodeGraphElement, NodeGraphElement>> nodePairs = EdgeGraphElement.getSelectorNodePairs(graph);
+            this.selectorNodePairs = new int[nodePairs.size()][];
+            this.selectorNodePairLabels = new BitSet[nodePairs.size()];
+            int i = 0;
+            for (Pair<NodeGraphElement, NodeGraphElement> nodePair : nodePairs) {
+                selectorNodePairs[i] = new int[] {nodePair.first().getPrivateId(), nodePair.second().getPrivateId()};
+                selectorNodePairLabels[i] = new BitSet();
+                for (String selectorLabel : EdgeGraphElement.getSelectorLabels(graph, nodePair)) {
+                    selectorNodePairLabels[i].set(getSelectorId(selectorLabel));
+                }
+                i++;
+            }
+        }
+
+        int getEdgeIndex(EdgeGraphElement edge) {
+            return edgeIndices.get(edge);
+        }
+
+        /**
+         * @return The private ids of the nodes connected to the edge (must not be modified)
+         */
+        int[] getConnectedNodes(EdgeGraphElement edge) {
+            return connectedNodes[getEdgeIndex(edge)];
+        }
+
+        /**
+         * @return The selector ids of the outgoing selectors of the node (must not be modified)
+         */
+        BitSet getOutgoingSelectors(int node) {
+            return outgoingSelectors[node];
+        }
+
+        boolean hasConnectedEdges(int node) {
+            return hasConnectedEdges[node];
+        }
+
+        int getNumberSelectorNodePairs() {
+            return selectorNodePairs.length;
+        }
+
+        int getSelectorNodePairSource(int pairIdx) {
+            return selectorNodePairs[pairIdx][0];
+        }
+
+        int getSelectorNodePairTarget(int pairIdx) {
+            return selectorNodePairs[pairIdx][1];
+        }
+
+        /**
+         * @return The selector ids of the selectors from the source to the target of the pair (must not be modified)
+         */
+        BitSet getSelectorNodePairLabels(int pairIdx) {
+            return selectorNodePairLabels[pairIdx];
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+/**
+ * The order in which the overlappings are enumerated by an Overlapping.
+ * Both orders enumerate exactly the same overlappings.
+ */
+public enum OverlappingEnumerationOrder {
+    /**
+     * Enumerates the overlappings level by level. All overlappings of the current level are kept in memory.
+     */
+    BREADTH_FIRST,
+    /**
+     * Enumerates the overlappings depth first. Only the overlappings on the path to the current overlapping are kept
+     * in memory, so the required memory is proportional to the depth of the overlappings (instead of the width of a level).
+     */
+    DEPTH_FIRST
+}
@@ -0,0 +1,72 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pair of automorphisms of the two graphs in a HeapConfigurationContext (that keep the external nodes fixed).
+ * Two overlappings that are mapped onto each other by such a pair lead to isomorphic critical pairs.
+ */
+class OverlappingSymmetry {
+    /**
+     * The maximal number of automorphisms that are computed per graph
+     */
+    private static final int MAX_AUTOMORPHISMS = 64;
+    /**
+     * The maximal number of pairs of automorphisms. If there are more pairs only the pairs where one of the
+     * automorphisms is the identity are used.
+     */
+    private static final int MAX_SYMMETRIES = 1024;
+
+    private final int[] privateIdMap1, privateIdMap2;
+
+    private OverlappingSymmetry(int[] privateIdMap1, int[] privateIdMap2) {
+        this.privateIdMap1 = privateIdMap1;
+        this.privateIdMap2 = privateIdMap2;
+    }
+
+    int[] getPrivateIdMap1() {
+        return privateIdMap1;
+    }
+
+    int[] getPrivateIdMap2() {
+        return privateIdMap2;
+    }
+
+    /**
+     * Computes the symmetries of the context (without the identity).
+     * The symmetries are not necessarily complete (if there are too many automorphisms), but every returned symmetry
+     * maps overlappings onto isomorphic overlappings.
+     */
+    static List<OverlappingSymmetry> getSymmetries(HeapConfigurationContext context) {
+        List<int[]> automorphisms1 = GraphAutomorphisms.getAutomorphisms(context.getGraph1(), MAX_AUTOMORPHISMS);
+        List<int[]> automorphisms2 = GraphAutomorphisms.getAutomorphisms(context.getGraph2(), MAX_AUTOMORPHISMS);
+
+        // The base edge overlapping contains an equivalence of the null nodes, which must not be changed
+        NodeGraphElement nullNode = NodeGraphElement.getNullNode(context.getGraph1());
+        if (nullNode != null) {
+            automorphisms1.removeIf(automorphism -> !GraphAutomorphisms.isFixed(automorphism, nullNode.getPrivateId()));
+            automorphisms2.removeIf(automorphism -> !GraphAutomorphisms.isFixed(automorphism, nullNode.getPrivateId()));
+        }
+
+        List<OverlappingSymmetry> result = new ArrayList<>();
+        if (automorphisms1.isEmpty() || automorphisms2.isEmpty()) {
+            return result;
+        }
+        // The first automorphism is the identity
+        int[] identity1 = automorphisms1.get(0);
+        int[] identity2 = automorphisms2.get(0);
+        boolean allPairs = automorphisms1.size() * automorphisms2.size() <= MAX_SYMMETRIES;
+        for (int[] automorphism1 : automorphisms1) {
+            for (int[] automorphism2 : automorphisms2) {
+                boolean isIdentity1 = automorphism1 == identity1;
+                boolean isIdentity2 = automorphism2 == identity2;
+                if ((isIdentity1 && isIdentity2) || (!allPairs && !isIdentity1 && !isIdentity2)) {
+                    continue;
+                }
+                result.add(new OverlappingSymmetry(automorphism1, automorphism2));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.digraph.NodeLabel;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import de.rwth.i2.attestor.types.Type;
+
+import java.util.*;
+
+/**
+ * An index over the collapsed right hand sides of a grammar that rejects rule pairs which cannot have a dependent
+ * overlapping (and therefore no critical pair) before a HeapConfigurationContext is created.
+ *
+ * A rule pair can only have a dependent overlapping if
+ * 1. there is a pair of compatible edges (same selector label or matching nonterminals, matching types of the attached
+ *    nodes), or
+ * 2. an internal node of one right hand side can be merged with an isolated node of the other right hand side that
+ *    has a matching type (NodeOverlapping does not allow to merge an internal node with a node that has edges).
+ *
+ * The signatures are indexed by the identity of the collapsed heap configurations (heap configurations of rules are
+ * never modified), so the index of a modified grammar can reuse the signatures of the unchanged rules.
+ */
+public class RulePairPrefilter {
+    private final Map<HeapConfiguration, RuleSignature> signatures;
+    private final int numberComputedSignatures;
+
+    /**
+     * @param rules The rules that should be indexed
+     * @param parent The index of the grammar the rules are derived from (null to compute all signatures)
+     */
+    public RulePairPrefilter(Collection<GrammarRule> rules, RulePairPrefilter parent) {
+        this.signatures = new IdentityHashMap<>();
+        int computed = 0;
+        for (GrammarRule rule : rules) {
+            HeapConfiguration collapsed = rule.getCollapsedHeapConfiguration().getCollapsed();
+            if (signatures.containsKey(collapsed)) {
+                continue;
+            }
+            RuleSignature signature = parent != null ? parent.signatures.get(collapsed) : null;
+            if (signature == null) {
+                signature = new RuleSignature((Graph) collapsed);
+                computed++;
+            }
+            signatures.put(collapsed, signature);
+        }
+        this.numberComputedSignatures = computed;
+    }
+
+    /**
+     * @return False if the two rules cannot have a dependent overlapping, true if they might have one
+     */
+    public boolean mayOverlap(GrammarRule r1, GrammarRule r2) {
+        RuleSignature signature1 = getSignature(r1);
+        RuleSignature signature2 = getSignature(r2);
+        return signature1.hasCompatibleEdge(signature2)
+                || containsMatchingType(signature1.internalNodeTypes, signature2.isolatedNodeTypes)
+                || containsMatchingType(signature1.isolatedNodeTypes, signature2.internalNodeTypes);
+    }
+
+    /**
+     * @return The number of signatures that were not taken from the parent index
+     */
+    public int getNumberComputedSignatures() {
+        return numberComputedSignatures;
+    }
+
+    private RuleSignature getSignature(GrammarRule rule) {
+        HeapConfiguration collapsed = rule.getCollapsedHeapConfiguration().getCollapsed();
+        RuleSignature signature = signatures.get(collapsed);
+        if (signature == null) {
+            // The rule is not part of the indexed grammar
+            signature = new RuleSignature((Graph) collapsed);
+        }
+        return signature;
+    }
+
+    private static boolean containsMatchingType(Collection<Type> types1, Collection<Type> types2) {
+        for (Type t1 : types1) {
+            for (Type t2 : types2) {
+                if (t1.matches(t2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The labels of the edges (with the types of the attached nodes) and the types of the internal and isolated nodes
+     * of a single right hand side
+     */
+    private static class RuleSignature {
+        // The types of the attached nodes of the selector edges grouped by their label
+        final Map<String, List<Type[]>> selectorEdges = new HashMap<>();
+        // The nonterminals with the types of the attached nodes
+        final List<Nonterminal> nonterminals = new ArrayList<>();
+        final List<Type[]> nonterminalTentacleTypes = new ArrayList<>();
+        final Set<Type> internalNodeTypes = new HashSet<>();
+        final Set<Type> isolatedNodeTypes = new HashSet<>();
+
+        RuleSignature(Graph graph) {
+            for (EdgeGraphElement edge : EdgeGraphElement.getEdgesOfGraph(graph)) {
+                List<NodeGraphElement> connectedNodes = edge.getConnectedNodes(graph);
+                Type[] types = new Type[connectedNodes.size()];
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = (Type) graph.getNodeLabel(connectedNodes.get(i).getPrivateId());
+                }
+                if (edge.isSelector()) {
+                    selectorEdges.computeIfAbsent(edge.getSelectorLabel(), label -> new ArrayList<>()).add(types);
+                } else {
+                    nonterminals.add((Nonterminal) graph.getNodeLabel(edge.getPrivateId()));
+                    nonterminalTentacleTypes.add(types);
+                }
+            }
+            for (NodeGraphElement node : NodeGraphElement.getNodes(graph)) {
+                Type type = (Type) graph.getNodeLabel(node.getPrivateId());
+                if (!graph.isExternal(node.getPrivateId())) {
+                    internalNodeTypes.add(type);
+                }
+                if (!node.hasConnectedEdges(graph)) {
+                    isolatedNodeTypes.add(type);
+                }
+            }
+        }
+
+        boolean hasCompatibleEdge(RuleSignature other) {
+            for (Map.Entry<String, List<Type[]>> entry : selectorEdges.entrySet()) {
+                List<Type[]> otherTypes = other.selectorEdges.get(entry.getKey());
+                if (otherTypes != null) {
+                    for (Type[] types : entry.getValue()) {
+                        for (Type[] otherType : otherTypes) {
+                            if (typesMatch(types, otherType)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < nonterminals.size(); i++) {
+                NodeLabel nonterminal = nonterminals.get(i);
+                for (int j = 0; j < other.nonterminals.size(); j++) {
+                    if (nonterminal.matches(other.nonterminals.get(j))
+                            && typesMatch(nonterminalTentacleTypes.get(i), other.nonterminalTentacleTypes.get(j))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean typesMatch(Type[] types1, Type[] types2) {
+            if (types1.length != types2.length) {
+                return false;
+            }
+            for (int i = 0; i < types1.length; i++) {
+                if (!types1[i].matches(types2[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package de.rwth.i2.attestor.grammar.confluence.main;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.Grammar;
+import de.rwth.i2.attestor.grammar.confluence.CancellationToken;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.Joinability;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionPhase;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.main.scene.DefaultScene;
+import de.rwth.i2.attestor.phases.parser.ParseGrammarPhase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Checks (and optionally completes) many grammars in one JVM, so the JVM startup, class loading and JIT warm-up are
+ * only paid once. The grammars are processed by a bounded pool of worker threads. Every grammar is parsed with its
+ * own scene, so the grammars do not share any labels.
+ *
+ * For every grammar one line with a JSON object is written to the output (NDJSON) as soon as the grammar has been
+ * processed, so the lines are not in the order of the input. A line contains
+ * - grammar: The path of the grammar file
+ * - status: ok, timeBudgetExceeded, allocationBudgetExceeded, outOfMemory, cancelled (if the batch was aborted) or
+ *   error (with the message in error)
+ * - numberStronglyJoinable, numberWeaklyJoinable, numberNotJoinable, confluent: The result of the confluence check
+ *   (the numbers include isomorphic critical pairs)
+ * - completion: The result of the completion (only if a completion algorithm or heuristics are set and the grammar
+ *   is not confluent)
+ * - parseTime, checkTime, totalTime: The wall-clock times in milliseconds
+ *
+ * The processing of a grammar is cancelled cooperatively (see CancellationToken) once its time budget has elapsed or
+ * its worker thread has allocated more bytes than the allocation budget. The allocation budget counts all allocations
+ * of the worker thread (also of objects that are already garbage), so it bounds the work rather than the live memory
+ * of a grammar. If the completion is cancelled, the best grammar found so far is reported. Completion algorithms that
+ * evaluate candidates in other threads are not covered by the allocation budget. If the batch fails (e.g. because the
+ * output cannot be written), all running grammars are cancelled.
+ */
+public class ConfluenceBatch {
+    private static final Logger logger = LogManager.getLogger("ConfluenceBatch");
+    private static final long WATCHDOG_INTERVAL_MILLIS = 100;
+
+    private final int numberWorkers;
+    private final long timeBudgetMillis;
+    private final long allocationBudgetBytes;
+    private String completionAlgorithm = "";
+    private List<String> completionHeuristics = Collections.emptyList();
+
+    /**
+     * @param numberWorkers The number of grammars that are processed at the same time
+     * @param timeBudgetMillis The wall-clock time budget per grammar in milliseconds (no budget if set to 0)
+     * @param allocationBudgetBytes The number of bytes the worker thread may allocate per grammar (no budget if set to 0)
+     */
+    public ConfluenceBatch(int numberWorkers, long timeBudgetMillis, long allocationBudgetBytes) {
+        if (numberWorkers < 1 || timeBudgetMillis < 0 || allocationBudgetBytes < 0) {
+            throw new IllegalArgumentException("Invalid batch settings");
+        }
+        this.numberWorkers = numberWorkers;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.allocationBudgetBytes = allocationBudgetBytes;
+    }
+
+    /**
+     * Completes every grammar that is not confluent with the given completion algorithm (see CompletionPhase)
+     *
+     * @throws IOException If the algorithm or one of the heuristics is unknown
+     */
+    public ConfluenceBatch setCompletion(String algorithm, List<String> heuristics) throws IOException {
+        // Fail before the batch is started
+        CompletionPhase.buildCompletionAlgorithm(algorithm, heuristics);
+        this.completionAlgorithm = algorithm;
+        this.completionHeuristics = new ArrayList<>(heuristics);
+        return this;
+    }
+
+    /**
+     * Returns the grammar files (.json or .sid) of the input. The input is either a directory (all grammar files
+     * directly contained in it, sorted by name) or a manifest file that contains one path per line (relative paths
+     * are resolved against the directory of the manifest, empty lines and lines starting with '#' are ignored).
+     */
+    public static List<String> getGrammarFiles(String input) throws IOException {
+        File inputFile = new File(input);
+        List<String> result = new ArrayList<>();
+        if (inputFile.isDirectory()) {
+            File[] files = inputFile.listFiles();
+            if (files == null) {
+                throw new IOException("Could not list directory " + input);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile() && (file.getName().endsWith(".json") || file.getName().endsWith(".sid"))) {
+                    result.add(file.getPath());
+                }
+            }
+        } else {
+            for (String line : Files.readAllLines(inputFile.toPath(), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                File file = new File(line);
+                if (!file.isAbsolute()) {
+                    file = new File(inputFile.getAbsoluteFile().getParentFile(), line);
+                }
+                result.add(file.getPath());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Processes all grammars and writes one result line per grammar to output
+     *
+     * @throws IOException If the output could not be written
+     */
+    public void run(List<String> grammarFiles, Writer output) throws IOException, InterruptedException {
+        Set<GrammarTask> runningTasks = ConcurrentHashMap.newKeySet();
+        List<GrammarTask> tasks = new ArrayList<>();
+        ScheduledExecutorService watchdog = null;
+        com.sun.management.ThreadMXBean allocationBean = getAllocationBean();
+        if (allocationBudgetBytes > 0 && allocationBean != null) {
+            watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ConfluenceBatchWatchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watchdog.scheduleWithFixedDelay(() -> {
+                for (GrammarTask task : runningTasks) {
+                    task.checkAllocationBudget(allocationBean);
+                }
+            }, WATCHDOG_INTERVAL_MILLIS, WATCHDOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } else if (allocationBudgetBytes > 0) {
+            logger.warn("The JVM cannot measure the allocated memory of threads. The allocation budget is ignored.");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberWorkers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String grammarFile : grammarFiles) {
+                GrammarTask task = new GrammarTask(grammarFile, allocationBean);
+                tasks.add(task);
+                futures.add(executor.submit(() -> {
+                    runningTasks.add(task);
+                    JSONObject result;
+                    try {
+                        result = task.process();
+                    } finally {
+                        runningTasks.remove(task);
+                    }
+                    writeLine(output, result);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException("Batch processing failed", e.getCause());
+                }
+            }
+        } finally {
+            // The tasks do not react to interrupts, so they are cancelled explicitly (also the tasks that are about
+            // to start, finished tasks are not affected)
+            for (GrammarTask task : tasks) {
+                task.cancel();
+            }
+            executor.shutdownNow();
+            if (watchdog != null) {
+                watchdog.shutdownNow();
+            }
+        }
+    }
+
+    private static void writeLine(Writer output, JSONObject result) throws IOException {
+        synchronized (output) {
+            output.write(result.toString());
+            output.write('\n');
+            output.flush();
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationBean() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (allocationBean.isThreadAllocatedMemorySupported()) {
+                allocationBean.setThreadAllocatedMemoryEnabled(true);
+                return allocationBean;
+            }
+        }
+        return null;
+    }
+
+    private static ConfluenceWrapperGrammar parseGrammar(String grammarFile) {
+        ParseGrammarPhase parseGrammarPhase = new ParseGrammarPhase(new DefaultScene());
+        if (grammarFile.endsWith(".sid")) {
+            parseGrammarPhase.loadGrammarFromSidFile(grammarFile);
+        } else {
+            parseGrammarPhase.loadGrammarFromFile(grammarFile);
+        }
+        Grammar grammar = parseGrammarPhase.getGrammar();
+        if (grammar == null || grammar.getAllLeftHandSides().isEmpty()) {
+            throw new IllegalArgumentException("Could not parse grammar " + grammarFile);
+        }
+        String grammarName = new File(grammarFile).getName();
+        if (grammarName.lastIndexOf('.') > 0) {
+            grammarName = grammarName.substring(0, grammarName.lastIndexOf('.'));
+        }
+        return new ConfluenceWrapperGrammar(grammar, grammarName);
+    }
+
+    private static long getMillisSince(long startTime) {
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    /**
+     * The processing of a single grammar
+     */
+    private class GrammarTask {
+        final String grammarFile;
+        final com.sun.management.ThreadMXBean allocationBean;  // null if the allocated memory cannot be measured
+        volatile CancellationToken cancellation;  // null until the task is started
+        volatile Thread thread = null;  // The worker thread (null if the task is not running)
+        volatile long allocatedBytesAtStart;
+        volatile boolean allocationBudgetExceeded = false;
+        volatile boolean aborted = false;  // True if the batch has been aborted
+
+        GrammarTask(String grammarFile, com.sun.management.ThreadMXBean allocationBean) {
+            this.grammarFile = grammarFile;
+            this.allocationBean = allocationBean;
+        }
+
+        JSONObject process() {
+            long startTime = System.nanoTime();
+            cancellation = new CancellationToken(timeBudgetMillis);
+            if (aborted) {
+                // The batch was aborted before the token was created
+                cancellation.cancel();
+            }
+            if (allocationBean != null) {
+                allocatedBytesAtStart = allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+            thread = Thread.currentThread();
+
+            JSONObject result = new JSONObject();
+            result.put("grammar", grammarFile);
+            String status = "ok";
+            try {
+                ConfluenceWrapperGrammar grammar = parseGrammar(grammarFile);
+                result.put("parseTime", getMillisSince(startTime));
+
+                long checkStartTime = System.nanoTime();
+                CompletionState initialState = CompletionState.createCancellable(grammar, cancellation);
+                int numberWeaklyJoinable = initialState.getNumberCriticalPairs(Joinability.WEAKLY_JOINABLE);
+                int numberNotJoinable = initialState.getNumberCriticalPairs(Joinability.NOT_JOINABLE);
+                result.put("numberStronglyJoinable", initialState.getNumberCriticalPairs(Joinability.STRONGLY_JOINABLE));
+                result.put("numberWeaklyJoinable", numberWeaklyJoinable);
+                result.put("numberNotJoinable", numberNotJoinable);
+                result.put("confluent", numberWeaklyJoinable + numberNotJoinable == 0);
+                result.put("checkTime", getMillisSince(checkStartTime));
+
+                if ((!completionAlgorithm.isEmpty() || !completionHeuristics.isEmpty())
+                        && numberWeaklyJoinable + numberNotJoinable > 0) {
+                    result.put("completion", complete(initialState));
+                }
+                if (cancellation.isCancelled()) {
+                    status = getCancellationStatus();
+                }
+            } catch (CancellationException e) {
+                status = getCancellationStatus();
+            } catch (OutOfMemoryError e) {
+                // The objects of the grammar are garbage now, so the other grammars can still be processed
+                status = "outOfMemory";
+            } catch (Exception e) {
+                status = "error";
+                result.put("error", e.toString());
+            } finally {
+                thread = null;
+            }
+            result.put("status", status);
+            result.put("totalTime", getMillisSince(startTime));
+            return result;
+        }
+
+        /**
+         * Completes the grammar of the initial state. If the completion is cancelled the best state found so far is
+         * reported.
+         */
+        private JSONObject complete(CompletionState initialState) throws IOException {
+            long startTime = System.nanoTime();
+            CompletionAlgorithm algorithm = CompletionPhase.buildCompletionAlgorithm(completionAlgorithm, completionHeuristics);
+            CompletionState completedState = algorithm.runCompletionAlgorithm(initialState);
+
+            JSONObject result = new JSONObject();
+            result.put("algorithmIdentifier", algorithm.getAlgorithmIdentifier());
+            result.put("numberCriticalPairs", CriticalPairFinder.getNumberCriticalPairs(completedState.getCriticalPairs()));
+            result.put("loss", algorithm.getCompletionStateLoss().getLoss(completedState));
+            result.put("confluent", completedState.getCriticalPairs().isEmpty());
+            result.put("numberActiveRules", completedState.getGrammar().getActiveRules().size());
+            result.put("time", getMillisSince(startTime));
+            return result;
+        }
+
+        private String getCancellationStatus() {
+            if (aborted) {
+                return "cancelled";
+            }
+            return allocationBudgetExceeded ? "allocationBudgetExceeded" : "timeBudgetExceeded";
+        }
+
+        /**
+         * Called by the watchdog thread. Cancels the task if its worker thread has allocated too many bytes.
+         */
+        void checkAllocationBudget(com.sun.management.ThreadMXBean allocationBean) {
+            Thread currentThread = thread;
+            if (currentThread != null && !allocationBudgetExceeded
+                    && allocationBean.getThreadAllocatedBytes(currentThread.getId()) - allocatedBytesAtStart > allocationBudgetBytes) {
+                allocationBudgetExceeded = true;
+                cancellation.cancel();
+            }
+        }
+
+        /**
+         * Called if the batch is aborted. Cancels the task if it is running or as soon as it starts.
+         */
+        void cancel() {
+            aborted = true;
+            CancellationToken currentCancellation = cancellation;
+            if (currentCancellation != null) {
+                currentCancellation.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package de.rwth.i2.attestor.grammar.confluence.main;
+
+import org.apache.commons.cli.*;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The command line interface of ConfluenceBatch (started with "java -jar AttestorConfluence batch [options]")
+ */
+public class ConfluenceBatchTool {
+    private static final Logger logger = LogManager.getLogger("ConfluenceBatchTool");
+
+    private final Options commandLineOptions = new Options();
+
+    public ConfluenceBatchTool() {
+        setupOptions();
+    }
+
+    /**
+     * @return True if all grammars have been processed
+     */
+    public boolean run(String[] args) {
+        try {
+            CommandLine commandLine = new DefaultParser().parse(commandLineOptions, args);
+            if (commandLine.hasOption("quiet")) {
+                Configurator.setRootLevel(Level.OFF);
+            }
+            String input = commandLine.getOptionValue("input");
+            int numberWorkers = Integer.parseInt(commandLine.getOptionValue("workers",
+                    Integer.toString(Runtime.getRuntime().availableProcessors())));
+            long timeBudgetMillis = Long.parseLong(commandLine.getOptionValue("time-budget", "0")) * 1000;
+            long allocationBudgetBytes = Long.parseLong(commandLine.getOptionValue("allocation-budget", "0")) * 1024 * 1024;
+
+            ConfluenceBatch batch = new ConfluenceBatch(numberWorkers, timeBudgetMillis, allocationBudgetBytes);
+            String algorithm = commandLine.getOptionValue("completion-algorithm", "");
+            String[] heuristics = commandLine.getOptionValues("completion-heuristics");
+            List<String> heuristicList = heuristics == null ? Collections.emptyList() : Arrays.asList(heuristics);
+            if (!algorithm.isEmpty() || !heuristicList.isEmpty()) {
+                batch.setCompletion(algorithm, heuristicList);
+            }
+
+            List<String> grammarFiles = ConfluenceBatch.getGrammarFiles(input);
+            logger.info("Processing " + grammarFiles.size() + " grammars with " + numberWorkers + " workers");
+            if (commandLine.hasOption("output")) {
+                try (Writer output = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(commandLine.getOptionValue("output")), StandardCharsets.UTF_8))) {
+                    batch.run(grammarFiles, output);
+                }
+            } else {
+                Writer output = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                batch.run(grammarFiles, output);
+                output.flush();
+            }
+            return true;
+        } catch (ParseException | IllegalArgumentException e) {
+            logger.fatal(e.getMessage());
+            printHelp();
+        } catch (IOException e) {
+            logger.fatal(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.fatal("The batch has been interrupted");
+        }
+        return false;
+    }
+
+    public void printHelp() {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp("java -jar AttestorConfluence batch", this.commandLineOptions);
+    }
+
+    private void setupOptions() {
+        commandLineOptions.addOption(
+                Option.builder("i")
+                        .longOpt("input")
+                        .hasArg()
+                        .argName("path")
+                        .required()
+                        .desc("A directory containing the grammars (.json or .sid files) or a manifest file that " +
+                                "lists one grammar file per line (relative to the directory of the manifest).")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder("o")
+                        .longOpt("output")
+                        .hasArg()
+                        .argName("file")
+                        .desc("Writes one json line per grammar to the given file (default: standard output).")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder("w")
+                        .longOpt("workers")
+                        .hasArg()
+                        .argName("number")
+                        .desc("The number of grammars that are processed at the same time (default: the number " +
+                                "of available processors).")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("time-budget")
+                        .hasArg()
+                        .argName("seconds")
+                        .desc("Stops the processing of a grammar after the given wall-clock time. If the " +
+                                "completion is stopped the best grammar found so far is reported.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("allocation-budget")
+                        .hasArg()
+                        .argName("MB")
+                        .desc("Stops the processing of a grammar after its worker thread has allocated the given " +
+                                "amount of memory in total (including objects that are already garbage).")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder("ch")
+                        .longOpt("completion-heuristics")
+                        .hasArgs()
+                        .valueSeparator(',')
+                        .argName("list")
+                        .desc("Completes every grammar that is not confluent with the given heuristics.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder("ca")
+                        .longOpt("completion-algorithm")
+                        .hasArg()
+                        .argName("name")
+                        .desc("Completes every grammar that is not confluent with the given completion algorithm.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder("q")
+                        .longOpt("quiet")
+                        .desc("Suppresses all log messages.")
+                        .build()
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package de.rwth.i2.attestor.grammar.confluence.main;
 
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.OverlappingEnumerationOrder;
 import de.rwth.i2.attestor.main.AbstractPhase;
 import de.rwth.i2.attestor.main.scene.DefaultScene;
 import de.rwth.i2.attestor.phases.communication.InputSettings;
@@ -115,6 +116,57 @@ public class ConfluenceCommandLinePhase extends AbstractPhase implements InputSe
                 logger.info("Completion Algorithm: "+ algorithm);
                 inputSettings.setCompletionAlgorithm(algorithm);
                 break;
+            case "completion-time-budget":
+                String timeBudget = option.getValue();
+                logger.info("Completion time budget: " + timeBudget + "s");
+                try {
+                    inputSettings.setCompletionTimeBudget(Long.parseLong(timeBudget));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid completion time budget: " + timeBudget);
+                }
+                if (inputSettings.getCompletionTimeBudget() < 0) {
+                    throw new IllegalArgumentException("Invalid completion time budget: " + timeBudget);
+                }
+                break;
+            case "completion-snapshots":
+                String snapshotDirectory = option.getValue();
+                logger.info("Completion snapshot directory: " + snapshotDirectory);
+                outputSettings.setCompletionSnapshotPath(snapshotDirectory);
+                break;
+            case "early-abort":
+                logger.info("Confluence check stops at the first critical pair that is not strongly joinable");
+                inputSettings.setConfluenceCheckEarlyAbort(true);
+                break;
+            case "critical-pair-workers":
+                String workers = option.getValue();
+                logger.info("Critical pair workers: " + workers);
+                try {
+                    inputSettings.setCriticalPairWorkers(Integer.parseInt(workers));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid number of critical pair workers: " + workers);
+                }
+                if (inputSettings.getCriticalPairWorkers() < 1) {
+                    throw new IllegalArgumentException("Invalid number of critical pair workers: " + workers);
+                }
+                break;
+            case "overlapping-order":
+                String order = option.getValue();
+                logger.info("Overlapping enumeration order: " + order);
+                switch (order) {
+                    case "breadth-first":
+                        inputSettings.setOverlappingEnumerationOrder(OverlappingEnumerationOrder.BREADTH_FIRST);
+                        break;
+                    case "depth-first":
+                        inputSettings.setOverlappingEnumerationOrder(OverlappingEnumerationOrder.DEPTH_FIRST);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown overlapping enumeration order: " + order);
+                }
+                break;
+            case "symmetry-reduction":
+                logger.info("Only one of several isomorphic overlappings is considered");
+                inputSettings.setSymmetryReduction(true);
+                break;
             case "export-grammar":
                 String file = option.getValue();
                 logger.info("Export grammar: "+file);
@@ -234,6 +286,70 @@ public class ConfluenceCommandLinePhase extends AbstractPhase implements InputSe
                         .build()
         );
 
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("completion-time-budget")
+                        .hasArg()
+                        .argName("seconds")
+                        .desc("Stops the completion after the given wall-clock time and continues with the best " +
+                                "grammar (the grammar with the fewest remaining critical pairs) found so far.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("completion-snapshots")
+                        .hasArg()
+                        .argName("directory")
+                        .desc("Writes a snapshot every time the completion finds a better grammar. Each snapshot " +
+                                "contains the grammar as a json file (in the input format), the grammar as tikz " +
+                                "pictures and the number of remaining critical pairs. The snapshots are written to " +
+                                "the directory ROOT_PATH/<directory>, where ROOT_PATH is the path determined by " +
+                                "--root-path.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("early-abort")
+                        .desc("Stops the confluence check as soon as a critical pair is found that is not strongly " +
+                                "joinable. This answers whether the grammar is confluent much faster, but the " +
+                                "reported numbers of critical pairs (and the exported critical pairs) are incomplete " +
+                                "if the grammar is not confluent.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("critical-pair-workers")
+                        .hasArg()
+                        .argName("number")
+                        .desc("Computes the critical pairs of different rule pairs in parallel with the given number " +
+                                "of threads (default 1). The critical pairs do not depend on the number of threads. " +
+                                "The confluence check with --early-abort always uses a single thread.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("overlapping-order")
+                        .hasArg()
+                        .argName("order")
+                        .desc("Determines the order in which the overlappings of a rule pair are enumerated: " +
+                                "breadth-first (default) or depth-first. Both orders find the same critical pairs, " +
+                                "but depth-first requires less memory for large right-hand sides.")
+                        .build()
+        );
+
+        commandLineOptions.addOption(
+                Option.builder()
+                        .longOpt("symmetry-reduction")
+                        .desc("Only considers one of several isomorphic overlappings of a rule pair. This finds the " +
+                                "same critical pairs up to isomorphism, but isomorphic critical pairs are no longer " +
+                                "counted multiple times.")
+                        .build()
+        );
+
         commandLineOptions.addOption(
                 Option.builder()
                         .longOpt("export-grammar")
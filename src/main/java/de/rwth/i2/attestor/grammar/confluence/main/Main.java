@@ -1,12 +1,21 @@
 package de.rwth.i2.attestor.grammar.confluence.main;
 
+import de.rwth.i2.attestor.grammar.confluence.benchmark.StatisticCollectorSettings;
 import de.rwth.i2.attestor.main.AbstractAttestor;
 import de.rwth.i2.attestor.main.Attestor;
 
+import java.util.Arrays;
+
 public class Main {
 
     public static void main(String[] args) {
 
+        // The benchmark statistics are not reported by the command line tool
+        StatisticCollectorSettings.setEnabled(false);
+        if (args.length > 0 && args[0].equals("batch")) {
+            boolean success = new ConfluenceBatchTool().run(Arrays.copyOfRange(args, 1, args.length));
+            System.exit(success ? 0 : 1);
+        }
         AbstractAttestor main = new ConfluenceTool();
         main.run(args);
     }
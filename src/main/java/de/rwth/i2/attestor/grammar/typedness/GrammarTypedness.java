@@ -12,23 +12,120 @@ import java.util.*;
 
 /**
  * A class that stores for each non terminal in the grammar, which outgoing selectors can be generated at each outgoing selector
+ *
+ * The types of all tentacles are computed eagerly as the least fixpoint of
+ *   types(nt, tentacle) = immediate selectors at the external node ∪ types of the tentacles connected to this node
+ * over all right hand sides of nt with a worklist over (nonterminal, tentacle) pairs. The types are stored as bitsets
+ * over interned selector ids per nonterminal.
+ *
+ * The object is not modified after construction. If the grammar of a derived typedness only contains additional rules
+ * (the right hand sides of the parent are still present as the same objects) the fixpoint of the parent is reused and
+ * only the added rules are propagated (adding rules can only add types).
  */
 public class GrammarTypedness {
     private final Grammar grammar;
-    private final Map<Pair<Nonterminal, Integer>, TentacleType> types;
+    // The rules the types were computed for (the right hand sides are compared by identity)
+    private final Map<Nonterminal, Set<HeapConfiguration>> computedRules;
+    private final List<SelectorLabel> selectorLabels;  // The selector label of each selector id
+    private final Map<SelectorLabel, Integer> selectorIds;
+    private final Map<Nonterminal, BitSet[]> types;  // The selector ids that can be generated at each tentacle
+    // For each tentacle the tentacles whose types contain its types (reverse edges of the fixpoint equations)
+    private final Map<Pair<Nonterminal, Integer>, Set<Pair<Nonterminal, Integer>>> dependents;
 
 
     public GrammarTypedness(Grammar grammar) {
+        this(grammar, null);
+    }
+
+    /**
+     * @param parent A typedness whose grammar only contains a subset of the rules of grammar (or null)
+     */
+    private GrammarTypedness(Grammar grammar, GrammarTypedness parent) {
         this.grammar = grammar;
+        this.computedRules = new HashMap<>();
+        this.selectorLabels = parent == null ? new ArrayList<>() : new ArrayList<>(parent.selectorLabels);
+        this.selectorIds = parent == null ? new HashMap<>() : new HashMap<>(parent.selectorIds);
         this.types = new HashMap<>();
+        this.dependents = new HashMap<>();
+        if (parent != null) {
+            parent.types.forEach((nt, tentacleTypes) -> {
+                BitSet[] copy = new BitSet[tentacleTypes.length];
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = (BitSet) tentacleTypes[i].clone();
+                }
+                types.put(nt, copy);
+            });
+            parent.dependents.forEach((tentacle, tentacleDependents) -> dependents.put(tentacle, new HashSet<>(tentacleDependents)));
+        }
+
+        Deque<Pair<Nonterminal, Integer>> worklist = new ArrayDeque<>();
+        for (Nonterminal nt : grammar.getAllLeftHandSides()) {
+            Set<HeapConfiguration> parentRules = parent == null ? Collections.emptySet() : parent.computedRules.getOrDefault(nt, Collections.emptySet());
+            for (HeapConfiguration rhs : grammar.getRightHandSidesFor(nt)) {
+                getComputedRules(nt).add(rhs);
+                if (!parentRules.contains(rhs)) {
+                    addRule(nt, rhs, worklist);
+                }
+            }
+        }
+
+        // Propagate the changed types to the dependent tentacles
+        while (!worklist.isEmpty()) {
+            Pair<Nonterminal, Integer> tentacle = worklist.poll();
+            BitSet tentacleTypes = getTypes(tentacle.first(), tentacle.second());
+            for (Pair<Nonterminal, Integer> dependent : dependents.getOrDefault(tentacle, Collections.emptySet())) {
+                if (addTypes(dependent, tentacleTypes)) {
+                    worklist.add(dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the typedness of grammar. If grammar contains all rules of the grammar of parent (as the same objects)
+     * the types are derived incrementally from parent. If it contains exactly the same rules, parent is returned.
+     *
+     * @param parent The typedness of a previous version of the grammar (null to compute from scratch)
+     */
+    public static GrammarTypedness derive(Grammar grammar, GrammarTypedness parent) {
+        if (parent == null) {
+            return new GrammarTypedness(grammar);
+        }
+        boolean containsParentRules = true;
+        int numberRules = 0;
+        for (Nonterminal nt : grammar.getAllLeftHandSides()) {
+            numberRules += grammar.getRightHandSidesFor(nt).size();
+        }
+        int numberParentRules = 0;
+        for (Map.Entry<Nonterminal, Set<HeapConfiguration>> entry : parent.computedRules.entrySet()) {
+            numberParentRules += entry.getValue().size();
+            Set<HeapConfiguration> rightHandSides = Collections.newSetFromMap(new IdentityHashMap<>());
+            rightHandSides.addAll(grammar.getRightHandSidesFor(entry.getKey()));
+            if (!rightHandSides.containsAll(entry.getValue())) {
+                containsParentRules = false;
+                break;
+            }
+        }
+
+        if (!containsParentRules) {
+            // Rules were removed or modified -> Types might be removed
+            return new GrammarTypedness(grammar);
+        } else if (numberRules == numberParentRules) {
+            return parent;
+        } else {
+            return new GrammarTypedness(grammar, parent);
+        }
     }
 
     public Grammar getGrammar() {
         return grammar;
     }
 
-    public TentacleType getTentacleType(Nonterminal nt, int tentacle) {
-        return types.computeIfAbsent(new Pair<>(nt, tentacle), key -> new TentacleType(this, nt, tentacle));
+    /**
+     * @return All selectors that can be generated at the given tentacle
+     */
+    public Set<SelectorLabel> getTypesAtTentacle(Nonterminal nt, int tentacle) {
+        return toSelectorLabels(getTypes(nt, tentacle));
     }
 
     public Set<SelectorLabel> getTypesAtNode(HeapConfiguration hc, int node) {
@@ -37,11 +134,89 @@ public class GrammarTypedness {
         result.addAll(hc.selectorLabelsOf(node));
 
         // Add recursive selectors
+        BitSet recursiveSelectors = new BitSet();
         for (Pair<Nonterminal, Integer> ntTentacle : GrammarTypedness.getConnectedTentacles(hc, node)) {
-            Set<SelectorLabel> recursiveSelectors = getTentacleType(ntTentacle.first(), ntTentacle.second()).getAllTypes();
-            result.addAll(recursiveSelectors);
+            recursiveSelectors.or(getTypes(ntTentacle.first(), ntTentacle.second()));
+        }
+        result.addAll(toSelectorLabels(recursiveSelectors));
+
+        return result;
+    }
+
+    private Set<SelectorLabel> toSelectorLabels(BitSet selectors) {
+        Set<SelectorLabel> result = new HashSet<>();
+        for (int selectorId = selectors.nextSetBit(0); selectorId >= 0; selectorId = selectors.nextSetBit(selectorId + 1)) {
+            result.add(selectorLabels.get(selectorId));
+        }
+        return result;
+    }
+
+    private Set<HeapConfiguration> getComputedRules(Nonterminal nt) {
+        return computedRules.computeIfAbsent(nt, key -> Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @return The selector ids of the tentacle (must not be modified after construction)
+     */
+    private BitSet getTypes(Nonterminal nt, int tentacle) {
+        BitSet[] tentacleTypes = types.get(nt);
+        if (tentacleTypes == null || tentacle >= tentacleTypes.length) {
+            // No rule for the nonterminal
+            return new BitSet();
         }
+        return tentacleTypes[tentacle];
+    }
 
+    private BitSet getOrCreateTypes(Nonterminal nt, int tentacle) {
+        BitSet[] tentacleTypes = types.computeIfAbsent(nt, key -> {
+            BitSet[] result = new BitSet[key.getRank()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = new BitSet();
+            }
+            return result;
+        });
+        return tentacleTypes[tentacle];
+    }
+
+    /**
+     * @return True if the types of the tentacle changed
+     */
+    private boolean addTypes(Pair<Nonterminal, Integer> tentacle, BitSet newTypes) {
+        BitSet tentacleTypes = getOrCreateTypes(tentacle.first(), tentacle.second());
+        int oldCardinality = tentacleTypes.cardinality();
+        tentacleTypes.or(newTypes);
+        return tentacleTypes.cardinality() != oldCardinality;
+    }
+
+    /**
+     * Adds the immediate selectors and dependencies of the rule and adds all tentacles of nt whose types changed to
+     * the worklist
+     */
+    private void addRule(Nonterminal nt, HeapConfiguration rhs, Deque<Pair<Nonterminal, Integer>> worklist) {
+        for (int tentacle = 0; tentacle < nt.getRank(); tentacle++) {
+            Pair<Nonterminal, Integer> ntTentacle = new Pair<>(nt, tentacle);
+            int node = rhs.externalNodeAt(tentacle);
+            BitSet newTypes = new BitSet();
+            for (SelectorLabel selectorLabel : rhs.selectorLabelsOf(node)) {
+                newTypes.set(getSelectorId(selectorLabel));
+            }
+            for (Pair<Nonterminal, Integer> dependency : GrammarTypedness.getConnectedTentacles(rhs, node)) {
+                dependents.computeIfAbsent(dependency, key -> new HashSet<>()).add(ntTentacle);
+                newTypes.or(getTypes(dependency.first(), dependency.second()));
+            }
+            if (addTypes(ntTentacle, newTypes)) {
+                worklist.add(ntTentacle);
+            }
+        }
+    }
+
+    private int getSelectorId(SelectorLabel selectorLabel) {
+        Integer result = selectorIds.get(selectorLabel);
+        if (result == null) {
+            result = selectorLabels.size();
+            selectorLabels.add(selectorLabel);
+            selectorIds.put(selectorLabel, result);
+        }
         return result;
     }
 
@@ -71,10 +246,10 @@ public class GrammarTypedness {
         Grammar grammar = ConfluenceTool.parseGrammar("DLList").getConcretizationGrammar();
         GrammarTypedness typedness = new GrammarTypedness(grammar);
         Nonterminal nt = grammar.getAllLeftHandSides().iterator().next();
-        System.out.println(typedness.getTentacleType(nt, 0).getAllTypes());
-        System.out.println(typedness.getTentacleType(nt, 1).getAllTypes());
-        System.out.println(typedness.getTentacleType(nt, 2).getAllTypes());
-        System.out.println(typedness.getTentacleType(nt, 3).getAllTypes());
+        System.out.println(typedness.getTypesAtTentacle(nt, 0));
+        System.out.println(typedness.getTypesAtTentacle(nt, 1));
+        System.out.println(typedness.getTypesAtTentacle(nt, 2));
+        System.out.println(typedness.getTypesAtTentacle(nt, 3));
     }
 
 }
@@ -3,31 +3,65 @@ package de.rwth.i2.attestor.grammar.util;
 import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
 import de.rwth.i2.attestor.types.Type;
 import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.map.TIntIntMap;
-import gnu.trove.map.hash.TIntIntHashMap;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+
+/**
+ * Computes the ways to merge the external nodes of a right-hand side into fewer external nodes (the collapsed rules).
+ * A partition maps the index of every external node to its external index in the collapsed heap configuration.
+ * Only external nodes with the same type are merged and every merged node has at most one tentacle that is not a
+ * reduction tentacle.
+ *
+ * The partitions are enumerated as restricted growth strings (every index is at most one larger than all previous
+ * indices), so every partition is generated exactly once and no partitions have to be compared afterwards.
+ * The partitions only depend on the types of the external nodes and the reduction tentacles, so they are cached for
+ * these and shared by all right-hand sides (of all grammars) with the same external nodes. The cache only keeps the
+ * partitions of the MAX_CACHED_KEYS most recently used external nodes, so it does not grow with the number of grammars
+ * that are processed in one JVM.
+ *
+ * Right-hand sides with fewer than two external nodes have no partitions (there is nothing to merge).
+ */
 public class ExternalNodesPartitioner {
 
-    private HeapConfiguration heapConfiguration;
+    private static final int MAX_CACHED_KEYS = 256;
 
-    int countOldExternals;
-    int countNewExternals;
+    // Maps the type classes and reduction tentacles of the external nodes (see getCacheKey) to the partitions
+    // (least recently used keys are removed first)
+    private static final Map<TIntArrayList, List<int[]>> partitionCache = Collections.synchronizedMap(
+            new LinkedHashMap<TIntArrayList, List<int[]>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TIntArrayList, List<int[]>> eldest) {
+                    return size() > MAX_CACHED_KEYS;
+                }
+            });
 
-    List<TIntArrayList> partitions = new LinkedList<>();
-    boolean[] reductionTentacles;
+    private final List<TIntArrayList> partitions;
 
     public ExternalNodesPartitioner(HeapConfiguration heapConfiguration, boolean[] reductionTentacles) {
 
-        this.heapConfiguration = heapConfiguration;
-        this.reductionTentacles = reductionTentacles;
+        int[] typeClasses = getTypeClasses(heapConfiguration);
+        if(typeClasses.length < 2) {
+            this.partitions = new ArrayList<>();
+            return;
+        }
 
-        this.countOldExternals = heapConfiguration.countExternalNodes();
-        this.countNewExternals = countOldExternals-1;
+        // The partitions are generated outside of the lock (two threads might generate the same partitions)
+        TIntArrayList cacheKey = getCacheKey(typeClasses, reductionTentacles);
+        List<int[]> cachedPartitions = partitionCache.get(cacheKey);
+        if(cachedPartitions == null) {
+            cachedPartitions = new PartitionGenerator(typeClasses, reductionTentacles).getPartitions();
+            partitionCache.put(cacheKey, cachedPartitions);
+        }
 
-        generate(new TIntArrayList(), 0);
+        // The callers own the returned lists, so the cached partitions are copied
+        this.partitions = new ArrayList<>(cachedPartitions.size());
+        for(int[] partition : cachedPartitions) {
+            partitions.add(new TIntArrayList(partition));
+        }
     }
 
     public List<TIntArrayList> getPartitions() {
@@ -35,95 +69,94 @@ public class ExternalNodesPartitioner {
         return partitions;
     }
 
-    private void generate(TIntArrayList chosen, int start) {
-
-        if(chosen.size() >= countOldExternals) {
-
-            for(int i=0; i <= chosen.max(); i++) {
-                if(!chosen.contains(i)) {
-                    return;
-                }
-            }
-
-            for(TIntArrayList list : partitions) {
-                if(isIsomorphic(list, chosen)) {
-                    return;
-                }
+    /**
+     * @return The index of the type of every external node, where the types are numbered in the order of their first
+     * occurrence (so the indices do not depend on the scene the types belong to)
+     */
+    private static int[] getTypeClasses(HeapConfiguration heapConfiguration) {
+
+        int[] typeClasses = new int[heapConfiguration.countExternalNodes()];
+        List<Type> types = new ArrayList<>();
+        for(int extIndex=0; extIndex < typeClasses.length; extIndex++) {
+            Type type = heapConfiguration.nodeTypeOf(heapConfiguration.externalNodeAt(extIndex));
+            int typeClass = types.indexOf(type);
+            if(typeClass < 0) {
+                typeClass = types.size();
+                types.add(type);
             }
+            typeClasses[extIndex] = typeClass;
+        }
+        return typeClasses;
+    }
 
-            partitions.add(chosen);
-        } else {
-            for(int i=0; i < countNewExternals; i++) {
-                TIntArrayList updated = new TIntArrayList(chosen);
-
-                if(updated.contains(i)) {
-
-                    // check node types
-                    if(!hasMatchingNodeTypes(updated, i)
-                            || !hasAtMostOneNonReductionTentacle(updated, i)) {
-                        continue;
-                    }
+    private static TIntArrayList getCacheKey(int[] typeClasses, boolean[] reductionTentacles) {
 
-                }
-
-                updated.add(i);
-                generate(updated, 0);
-            }
+        TIntArrayList key = new TIntArrayList(typeClasses.length);
+        for(int extIndex=0; extIndex < typeClasses.length; extIndex++) {
+            key.add(2 * typeClasses[extIndex] + (reductionTentacles[extIndex] ? 1 : 0));
         }
+        return key;
     }
 
-    private boolean hasMatchingNodeTypes(TIntArrayList current, int newExtPos) {
+    private static class PartitionGenerator {
 
-        int prevExtIndex = current.indexOf(newExtPos);
-        Type prevType = getType(prevExtIndex);
-        Type nextType = getType(current.size());
-        return prevType.equals(nextType);
-    }
+        private final int[] typeClasses;
+        private final boolean[] reductionTentacles;
 
-    private boolean hasAtMostOneNonReductionTentacle(TIntArrayList current, int newExtPos) {
+        // The partition of the external nodes before the current external node
+        private final int[] partition;
+        private final int[] blockTypeClasses;
+        private final boolean[] blockHasNonReductionTentacle;
 
-        int pos = current.size();
-        if(reductionTentacles[pos]) {
-            return true;
-        }
+        private final List<int[]> partitions = new ArrayList<>();
 
-        for(int j=0; j < current.size(); j++) {
-            if(!reductionTentacles[j] && current.get(j) == newExtPos) {
-                return false;
-            }
-        }
-        return true;
-    }
+        PartitionGenerator(int[] typeClasses, boolean[] reductionTentacles) {
 
-    private Type getType(int extIndex) {
+            this.typeClasses = typeClasses;
+            this.reductionTentacles = reductionTentacles;
+            this.partition = new int[typeClasses.length];
+            this.blockTypeClasses = new int[typeClasses.length];
+            this.blockHasNonReductionTentacle = new boolean[typeClasses.length];
 
-        int node = heapConfiguration.externalNodeAt(extIndex);
-        return heapConfiguration.nodeTypeOf(node);
-    }
+            generate(0, 0);
+        }
 
-    private boolean isIsomorphic(TIntArrayList left, TIntArrayList right) {
+        List<int[]> getPartitions() {
 
-        if(left.size() != right.size()) {
-            return false;
+            return partitions;
         }
 
-        TIntIntMap map = new TIntIntHashMap();
-        for(int i=0; i < left.size(); i++) {
-            int l = left.get(i);
-            int r = right.get(i);
+        /**
+         * Assigns the external node with the given index to every block it can be added to and to a new block.
+         * The blocks are tried in ascending order, so the partitions are generated in lexicographic order.
+         */
+        private void generate(int extIndex, int numberBlocks) {
 
-            if(map.containsKey(l)) {
-                if(map.get(l) != r) {
-                    return false;
-                }
-            } else {
-                if(map.containsValue(r)) {
-                    return false;
+            if(extIndex == typeClasses.length) {
+                partitions.add(partition.clone());
+                return;
+            }
+
+            int typeClass = typeClasses[extIndex];
+            boolean isReductionTentacle = reductionTentacles[extIndex];
+            for(int block=0; block < numberBlocks; block++) {
+                boolean hasNonReductionTentacle = blockHasNonReductionTentacle[block];
+                if(blockTypeClasses[block] != typeClass || (hasNonReductionTentacle && !isReductionTentacle)) {
+                    continue;
                 }
-                map.put(l, r);
+                partition[extIndex] = block;
+                blockHasNonReductionTentacle[block] = hasNonReductionTentacle || !isReductionTentacle;
+                generate(extIndex + 1, numberBlocks);
+                blockHasNonReductionTentacle[block] = hasNonReductionTentacle;
+            }
+
+            // The collapsed heap configuration has fewer external nodes than the original one
+            if(numberBlocks < typeClasses.length - 1) {
+                partition[extIndex] = numberBlocks;
+                blockTypeClasses[numberBlocks] = typeClass;
+                blockHasNonReductionTentacle[numberBlocks] = !isReductionTentacle;
+                generate(extIndex + 1, numberBlocks + 1);
             }
         }
-        return true;
     }
-
 }
@@ -0,0 +1,41 @@
+package de.rwth.i2.attestor.io.jsonExport.inputFormat;
+
+import de.rwth.i2.attestor.grammar.Grammar;
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class GrammarToInputFormatExporter {
+
+    /**
+     * Transforms the (not indexed) grammar into a JSONArray in the input format of grammars, such that
+     * the written file can be used as the grammar of another run.
+     *
+     * @param grammar the grammar to transform
+     * @return a JSONArray with one entry per nonterminal
+     */
+    public static JSONArray getInInputFormat(Grammar grammar) {
+
+        JSONArray res = new JSONArray();
+        for (Nonterminal nonterminal : grammar.getAllLeftHandSides()) {
+            JSONObject fragment = new JSONObject();
+            fragment.put("nonterminal", nonterminal.getLabel());
+            fragment.put("rank", nonterminal.getRank());
+
+            JSONArray reductionTentacles = new JSONArray();
+            for (int tentacle = 0; tentacle < nonterminal.getRank(); tentacle++) {
+                reductionTentacles.put(nonterminal.isReductionTentacle(tentacle));
+            }
+            fragment.put("reductionTentacles", reductionTentacles);
+
+            JSONArray rules = new JSONArray();
+            for (HeapConfiguration rhs : grammar.getRightHandSidesFor(nonterminal)) {
+                rules.put(HCtoInputFormatExporter.getInInputFormat(rhs));
+            }
+            fragment.put("rules", rules);
+            res.put(fragment);
+        }
+        return res;
+    }
+}
@@ -1,5 +1,6 @@
 package de.rwth.i2.attestor.phases.communication;
 
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.OverlappingEnumerationOrder;
 import de.rwth.i2.attestor.io.jsonImport.HeapConfigurationRenaming;
 
 import java.io.File;
@@ -64,6 +65,31 @@ public class InputSettings implements HeapConfigurationRenaming {
     private List<String> completionHeuristics = new ArrayList<>();
     private String completionAlgorithm = "";
 
+    /**
+     * stop the confluence check at the first critical pair that is not strongly joinable
+     */
+    private boolean confluenceCheckEarlyAbort = false;
+
+    /**
+     * wall-clock time in seconds after which the completion returns the best grammar found so far (0 for no limit)
+     */
+    private long completionTimeBudget = 0;
+
+    /**
+     * number of threads that compute the critical pairs (1 to compute them in the current thread)
+     */
+    private int criticalPairWorkers = 1;
+
+    /**
+     * order in which the overlappings of a rule pair are enumerated
+     */
+    private OverlappingEnumerationOrder overlappingEnumerationOrder = OverlappingEnumerationOrder.BREADTH_FIRST;
+
+    /**
+     * only consider one of several isomorphic overlappings
+     */
+    private boolean symmetryReduction = false;
+
     public String getRootPath() {
 
         if(rootPath.equals("")) {
@@ -295,5 +321,45 @@ public class InputSettings implements HeapConfigurationRenaming {
         this.completionAlgorithm = algorithm;
     }
 
+    public boolean isConfluenceCheckEarlyAbort() {
+        return confluenceCheckEarlyAbort;
+    }
+
+    public void setConfluenceCheckEarlyAbort(boolean confluenceCheckEarlyAbort) {
+        this.confluenceCheckEarlyAbort = confluenceCheckEarlyAbort;
+    }
+
+    public long getCompletionTimeBudget() {
+        return completionTimeBudget;
+    }
+
+    public void setCompletionTimeBudget(long completionTimeBudget) {
+        this.completionTimeBudget = completionTimeBudget;
+    }
+
+    public int getCriticalPairWorkers() {
+        return criticalPairWorkers;
+    }
+
+    public void setCriticalPairWorkers(int criticalPairWorkers) {
+        this.criticalPairWorkers = criticalPairWorkers;
+    }
+
+    public OverlappingEnumerationOrder getOverlappingEnumerationOrder() {
+        return overlappingEnumerationOrder;
+    }
+
+    public void setOverlappingEnumerationOrder(OverlappingEnumerationOrder overlappingEnumerationOrder) {
+        this.overlappingEnumerationOrder = overlappingEnumerationOrder;
+    }
+
+    public boolean isSymmetryReduction() {
+        return symmetryReduction;
+    }
+
+    public void setSymmetryReduction(boolean symmetryReduction) {
+        this.symmetryReduction = symmetryReduction;
+    }
+
 
 }
@@ -24,6 +24,8 @@ public class OutputSettings {
 
     private String exportLatexPath = null;
 
+    private String completionSnapshotPath = null;
+
     public void setRootPath(String rootPath) {
 
         this.rootPath = rootPath;
@@ -112,4 +114,13 @@ public class OutputSettings {
         }
         return getRootPath() + exportLatexPath;
     }
+
+    public void setCompletionSnapshotPath(String directory) { this.completionSnapshotPath = directory; }
+
+    public String getCompletionSnapshotPath() {
+        if(completionSnapshotPath == null) {
+            return null;
+        }
+        return getRootPath() + completionSnapshotPath;
+    }
 }
@@ -0,0 +1,96 @@
+package de.rwth.i2.attestor.grammar;
+
+import de.rwth.i2.attestor.grammar.canonicalization.EmbeddingCheckerProvider;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import de.rwth.i2.attestor.graph.heap.matching.AbstractMatchingChecker;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AbstractionBlockingIndexTest {
+
+    @Test
+    public void testIndexBlocksSameHeapConfigurationsAsEmbeddingChecks() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        List<HeapConfiguration> heapConfigurations = new ArrayList<>();
+        List<HeapConfiguration> patterns = new ArrayList<>();
+        for (CriticalPair criticalPair : new CriticalPairFinder(grammar).getCriticalPairs()) {
+            HeapConfiguration hc = criticalPair.getJointHeapConfiguration().getHeapConfiguration();
+            if (heapConfigurations.size() % 3 == 0) {
+                patterns.add(hc);
+            }
+            heapConfigurations.add(hc);
+        }
+        for (GrammarRule rule : grammar.getAllGrammarRules()) {
+            heapConfigurations.add(rule.getCollapsedHeapConfiguration().getCollapsed());
+        }
+
+        ConfluenceWrapperGrammar blockingGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.emptySet(), patterns);
+        assertEquals(patterns.size(), blockingGrammar.getNumberAbstractionBlockingRules());
+        EmbeddingCheckerProvider embeddingCheckerProvider = new EmbeddingCheckerProvider(new AbstractionOptions());
+        for (HeapConfiguration hc : heapConfigurations) {
+            boolean expected = false;
+            for (HeapConfiguration pattern : patterns) {
+                expected |= embeddingCheckerProvider.getEmbeddingChecker(hc, pattern).hasMatching();
+            }
+            assertEquals(expected, blockingGrammar.blockHeapAbstraction(hc));
+        }
+    }
+
+    @Test
+    public void testSubsumedPatternsAreRemoved() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        HeapConfiguration hc = grammar.getOriginalGrammarRules().iterator().next().getHeapConfiguration();
+        EmbeddingCheckerProvider embeddingCheckerProvider = new EmbeddingCheckerProvider(new AbstractionOptions());
+
+        // Of isomorphic patterns only the first one is kept
+        List<HeapConfiguration> patterns = Arrays.asList(hc, hc.clone());
+        AbstractionBlockingIndex index = new AbstractionBlockingIndex(patterns, null, embeddingCheckerProvider);
+        assertEquals(1, index.getNumberSubsumedPatterns());
+        assertTrue(index.containsPattern(hc));
+
+        // The patterns of the parent index are reused
+        AbstractionBlockingIndex childIndex = new AbstractionBlockingIndex(new ArrayList<>(patterns), index, embeddingCheckerProvider);
+        assertEquals(1, childIndex.getNumberSubsumedPatterns());
+        assertFalse(new AbstractionBlockingIndex(Collections.emptyList(), index, embeddingCheckerProvider).containsPattern(hc));
+    }
+
+    @Test
+    public void testDerivedIndexOnlyChecksNewPatterns() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        List<HeapConfiguration> patterns = new ArrayList<>();
+        for (CriticalPair criticalPair : new CriticalPairFinder(grammar).getCriticalPairs()) {
+            patterns.add(criticalPair.getJointHeapConfiguration().getHeapConfiguration());
+        }
+        HeapConfiguration newPattern = patterns.remove(patterns.size() - 1);
+        List<HeapConfiguration[]> checkedPairs = new ArrayList<>();
+        EmbeddingCheckerProvider embeddingCheckerProvider = new EmbeddingCheckerProvider(new AbstractionOptions()) {
+            @Override
+            public AbstractMatchingChecker getEmbeddingChecker(HeapConfiguration graph, HeapConfiguration pattern) {
+                checkedPairs.add(new HeapConfiguration[]{graph, pattern});
+                return super.getEmbeddingChecker(graph, pattern);
+            }
+        };
+
+        AbstractionBlockingIndex index = new AbstractionBlockingIndex(patterns, null, embeddingCheckerProvider);
+        checkedPairs.clear();
+        List<HeapConfiguration> childPatterns = new ArrayList<>(patterns);
+        childPatterns.add(0, newPattern);
+        AbstractionBlockingIndex childIndex = new AbstractionBlockingIndex(childPatterns, index, embeddingCheckerProvider);
+
+        // Only pairs with the new pattern are checked and the result is the same as without the parent index
+        for (HeapConfiguration[] pair : checkedPairs) {
+            assertTrue(pair[0] == newPattern || pair[1] == newPattern);
+        }
+        assertEquals(new AbstractionBlockingIndex(childPatterns, null, embeddingCheckerProvider).getNumberSubsumedPatterns(),
+                childIndex.getNumberSubsumedPatterns());
+    }
+}
@@ -0,0 +1,88 @@
+package de.rwth.i2.attestor.grammar;
+
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConfluenceWrapperGrammarTest {
+
+    @Test
+    public void testModifiedGrammarSharesUnchangedParts() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+
+        // Only the abstraction blocking heap configurations are set again
+        ConfluenceWrapperGrammar sameGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.emptySet(),
+                new ArrayList<>(grammar.getAbstractionBlockingHeapConfigurations()));
+        assertSame(grammar.getAbstractionGrammar(), sameGrammar.getAbstractionGrammar());
+        assertSame(grammar.getConcretizationGrammar(), sameGrammar.getConcretizationGrammar());
+        assertSame(grammar.getCanonicalizationCache(), sameGrammar.getCanonicalizationCache());
+
+        // Deactivating an original rule only changes the abstraction grammar and that rule
+        GrammarRuleOriginal deactivatedRule = grammar.getOriginalGrammarRules().iterator().next();
+        ConfluenceWrapperGrammar modifiedGrammar = grammar.getModifiedGrammar(Collections.singleton(deactivatedRule), Collections.emptySet(), null);
+        assertNotSame(grammar.getAbstractionGrammar(), modifiedGrammar.getAbstractionGrammar());
+        assertSame(grammar.getConcretizationGrammar(), modifiedGrammar.getConcretizationGrammar());
+        assertNotSame(grammar.getCanonicalizationCache(), modifiedGrammar.getCanonicalizationCache());
+        Iterator<GrammarRuleOriginal> modifiedRules = modifiedGrammar.getOriginalGrammarRules().iterator();
+        for (GrammarRuleOriginal rule : grammar.getOriginalGrammarRules()) {
+            GrammarRuleOriginal modifiedRule = modifiedRules.next();
+            if (rule == deactivatedRule) {
+                assertEquals(GrammarRule.RuleStatus.INACTIVE, modifiedRule.getRuleStatus());
+            } else {
+                assertSame(rule, modifiedRule);
+            }
+        }
+    }
+
+    @Test
+    public void testReusedParentCanonicalizationsMatchCanonicalization() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        List<HeapConfiguration> heapConfigurations = new ArrayList<>();
+        for (CriticalPair criticalPair : new CriticalPairFinder(grammar).getCriticalPairs()) {
+            heapConfigurations.add(criticalPair.getRule1Applied());
+            heapConfigurations.add(criticalPair.getRule2Applied());
+        }
+
+        long numberParentHits = 0;
+        for (GrammarRuleOriginal rule : grammar.getOriginalGrammarRules()) {
+            ConfluenceWrapperGrammar modifiedGrammar = grammar.getModifiedGrammar(Collections.singleton(rule), Collections.emptySet(), null);
+            for (HeapConfiguration hc : heapConfigurations) {
+                assertEquals(modifiedGrammar.getCanonicalizationStrategy().canonicalize(hc),
+                        modifiedGrammar.getCanonicalizationCache().canonicalize(hc));
+            }
+            numberParentHits += modifiedGrammar.getCanonicalizationCache().getNumberParentHits();
+        }
+        assertTrue(numberParentHits > 0);
+    }
+
+    @Test
+    public void testModifiedGrammarDoesNotKeepParentAlive() throws InterruptedException {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        GrammarRuleOriginal deactivatedRule = grammar.getOriginalGrammarRules().iterator().next();
+        ConfluenceWrapperGrammar modifiedGrammar = grammar.getModifiedGrammar(Collections.singleton(deactivatedRule), Collections.emptySet(), null);
+        HeapConfiguration hc = new CriticalPairFinder(grammar).getCriticalPairs().iterator().next().getRule1Applied();
+        grammar.getCanonicalizationCache().canonicalize(hc);
+        WeakReference<ConfluenceWrapperGrammar> parent = new WeakReference<>(grammar);
+        grammar = null;
+
+        for (int i = 0; i < 20 && parent.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(parent.get());
+        // Without the parent the result is computed again
+        assertEquals(modifiedGrammar.getCanonicalizationStrategy().canonicalize(hc),
+                modifiedGrammar.getCanonicalizationCache().canonicalize(hc));
+        assertEquals(0, modifiedGrammar.getCanonicalizationCache().getNumberParentHits());
+    }
+}
@@ -0,0 +1,113 @@
+package de.rwth.i2.attestor.grammar.confluence;
+
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares critical pairs by their rules, joinabilities and joint graphs (up to isomorphism). CriticalPair.hashCode
+ * only depends on the rules and the joinability, so comparing hashes would not detect different joint graphs.
+ */
+public final class CriticalPairAssertions {
+
+    private CriticalPairAssertions() {
+    }
+
+    /**
+     * Checks that both collections contain the same critical pairs with the same multiplicities in the same order
+     */
+    public static void assertSameCriticalPairsInOrder(Collection<CriticalPair> expected, Collection<CriticalPair> actual) {
+        assertEquals(expected.size(), actual.size());
+        Iterator<CriticalPair> actualIterator = actual.iterator();
+        for (CriticalPair expectedCriticalPair : expected) {
+            CriticalPair actualCriticalPair = actualIterator.next();
+            assertEquals(getKey(expectedCriticalPair), getKey(actualCriticalPair));
+            assertEquals(expectedCriticalPair.getMultiplicity(), actualCriticalPair.getMultiplicity());
+            assertEquals(getJointGraph(expectedCriticalPair), getJointGraph(actualCriticalPair));
+        }
+    }
+
+    /**
+     * Checks that both collections contain the same critical pairs (in any order). Isomorphic critical pairs are
+     * counted with their multiplicities, so a deduplicated collection is the same as the complete one.
+     */
+    public static void assertSameCriticalPairs(Collection<CriticalPair> expected, Collection<CriticalPair> actual) {
+        assertSameClasses(expected, actual, true);
+    }
+
+    /**
+     * Checks that both collections contain the same classes of isomorphic critical pairs (in any order), but ignores
+     * how many critical pairs each class contains (e.g. if isomorphic overlappings are not enumerated at all)
+     */
+    public static void assertSameCriticalPairClasses(Collection<CriticalPair> expected, Collection<CriticalPair> actual) {
+        assertSameClasses(expected, actual, false);
+    }
+
+    private static void assertSameClasses(Collection<CriticalPair> expected, Collection<CriticalPair> actual,
+                                          boolean compareMultiplicities) {
+        Map<String, List<CriticalPairClass>> expectedClasses = getClasses(expected);
+        Map<String, List<CriticalPairClass>> actualClasses = getClasses(actual);
+        assertEquals(expectedClasses.keySet(), actualClasses.keySet());
+        for (Map.Entry<String, List<CriticalPairClass>> entry : expectedClasses.entrySet()) {
+            List<CriticalPairClass> classes = actualClasses.get(entry.getKey());
+            assertEquals(entry.getValue().size(), classes.size());
+            for (CriticalPairClass expectedClass : entry.getValue()) {
+                CriticalPairClass actualClass = findClass(classes, expectedClass.jointGraph);
+                assertNotNull("No isomorphic critical pair of " + entry.getKey(), actualClass);
+                if (compareMultiplicities) {
+                    assertEquals(expectedClass.multiplicity, actualClass.multiplicity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Groups the critical pairs into classes of isomorphic critical pairs (indexed by the key of the critical pairs
+     * and the hash of the joint graph)
+     */
+    private static Map<String, List<CriticalPairClass>> getClasses(Collection<CriticalPair> criticalPairs) {
+        Map<String, List<CriticalPairClass>> result = new HashMap<>();
+        for (CriticalPair criticalPair : criticalPairs) {
+            HeapConfiguration jointGraph = getJointGraph(criticalPair);
+            List<CriticalPairClass> classes = result.computeIfAbsent(getKey(criticalPair) + " " + jointGraph.hashCode(),
+                    key -> new ArrayList<>());
+            CriticalPairClass criticalPairClass = findClass(classes, jointGraph);
+            if (criticalPairClass == null) {
+                criticalPairClass = new CriticalPairClass(jointGraph);
+                classes.add(criticalPairClass);
+            }
+            criticalPairClass.multiplicity += criticalPair.getMultiplicity();
+        }
+        return result;
+    }
+
+    private static CriticalPairClass findClass(List<CriticalPairClass> classes, HeapConfiguration jointGraph) {
+        for (CriticalPairClass criticalPairClass : classes) {
+            if (criticalPairClass.jointGraph.equals(jointGraph)) {
+                return criticalPairClass;
+            }
+        }
+        return null;
+    }
+
+    private static String getKey(CriticalPair criticalPair) {
+        return criticalPair.getR1().getRuleIdentifier() + " / " + criticalPair.getR2().getRuleIdentifier() + " "
+                + criticalPair.getJoinability();
+    }
+
+    private static HeapConfiguration getJointGraph(CriticalPair criticalPair) {
+        return criticalPair.getJointHeapConfiguration().getHeapConfiguration();
+    }
+
+    private static class CriticalPairClass {
+        final HeapConfiguration jointGraph;
+        int multiplicity = 0;
+
+        CriticalPairClass(HeapConfiguration jointGraph) {
+            this.jointGraph = jointGraph;
+        }
+    }
+}
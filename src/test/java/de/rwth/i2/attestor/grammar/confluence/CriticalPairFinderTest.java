@@ -4,6 +4,17 @@ import de.rwth.i2.attestor.MockupSceneObject;
 import de.rwth.i2.attestor.grammar.Grammar;
 import de.rwth.i2.attestor.grammar.GrammarBuilder;
 import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.GrammarRuleCollapsed;
+import de.rwth.i2.attestor.grammar.GrammarRuleOriginal;
+import de.rwth.i2.attestor.grammar.canonicalization.CanonicalizationCache;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.EdgeOverlapping;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.HeapConfigurationContext;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.NodeOverlapping;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.Overlapping;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.OverlappingEnumerationOrder;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.RulePairPrefilter;
 import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
 import de.rwth.i2.attestor.graph.Nonterminal;
 import de.rwth.i2.attestor.graph.SelectorLabel;
@@ -17,10 +28,23 @@ import gnu.trove.list.array.TIntArrayList;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static de.rwth.i2.attestor.grammar.confluence.CriticalPairAssertions.assertSameCriticalPairClasses;
+import static de.rwth.i2.attestor.grammar.confluence.CriticalPairAssertions.assertSameCriticalPairs;
+import static de.rwth.i2.attestor.grammar.confluence.CriticalPairAssertions.assertSameCriticalPairsInOrder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class CriticalPairFinderTest {
@@ -94,7 +118,11 @@ public class CriticalPairFinderTest {
 
     @Test
     public void testDefaultGrammar_DLList() {
-        testGrammar("DLList", 1265649489);
+        // In one critical pair two elements of one graph are equivalent to the same element of the other graph, so the
+        // joint graph depends on the iteration order of the equivalences. Since the overlappings iterate them in the
+        // order they have been added (instead of the hash order), this critical pair is weakly instead of strongly
+        // joinable. The number of critical pairs and the overall result are unchanged.
+        testGrammar("DLList", 1265649488);
     }
 
     @Test
@@ -112,6 +140,275 @@ public class CriticalPairFinderTest {
         testGrammar("DLList_simple_two_way", 517180831);
     }
 
+    @Test
+    public void testParallelDetectionMatchesSequential() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String grammarName : new String[] {"BT", "DLList", "SLList"}) {
+                ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+                CriticalPairFinder sequential = new CriticalPairFinder(grammar);
+                CriticalPairFinder parallel = new CriticalPairFinder(grammar, new CriticalPairFinderSettings().setExecutor(executor));
+                assertSameFinderResult(sequential, parallel);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDepthFirstEnumerationMatchesBreadthFirst() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            CriticalPairFinder breadthFirst = new CriticalPairFinder(grammar);
+            CriticalPairFinder depthFirst = new CriticalPairFinder(grammar,
+                    new CriticalPairFinderSettings().setEnumerationOrder(OverlappingEnumerationOrder.DEPTH_FIRST));
+            // The critical pairs are the same, but they are found in a different order
+            assertSameCriticalPairs(breadthFirst.getCriticalPairs(), depthFirst.getCriticalPairs());
+            assertEquals(breadthFirst.getJoinabilityResult(), depthFirst.getJoinabilityResult());
+        }
+    }
+
+    @Test
+    public void testSymmetryReductionPreservesCriticalPairs() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            CriticalPairFinder complete = new CriticalPairFinder(grammar);
+            CriticalPairFinder reduced = new CriticalPairFinder(grammar, new CriticalPairFinderSettings().setSymmetryReduction(true));
+            // Only the multiplicity of isomorphic critical pairs changes, every class of isomorphic critical pairs is kept
+            assertSameCriticalPairClasses(complete.getCriticalPairs(), reduced.getCriticalPairs());
+            assertEquals(complete.getJoinabilityResult(), reduced.getJoinabilityResult());
+            assertTrue(reduced.getCriticalPairs().size() < complete.getCriticalPairs().size());
+        }
+    }
+
+    @Test
+    public void testDeduplicationKeepsMultiplicities() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            CriticalPairFinder complete = new CriticalPairFinder(grammar);
+            CriticalPairFinder deduplicated = new CriticalPairFinder(grammar, new CriticalPairFinderSettings().setDeduplicate(true));
+
+            assertTrue(deduplicated.getCriticalPairs().size() < complete.getCriticalPairs().size());
+            assertEquals(complete.getCriticalPairs().size(), deduplicated.getNumberCriticalPairs());
+            assertEquals(complete.getJoinabilityResult(), deduplicated.getJoinabilityResult());
+            // Counting each representative with its multiplicity leads to the same critical pairs
+            assertSameCriticalPairs(complete.getCriticalPairs(), deduplicated.getCriticalPairs());
+        }
+    }
+
+    @Test
+    public void testCanonicalFormsAreMemoized() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CriticalPairFinder finder = new CriticalPairFinder(grammar);
+        CanonicalizationCache cache = grammar.getCanonicalizationCache();
+        // The constructor of each critical pair canonicalizes both rule applications
+        assertEquals(2 * finder.getCriticalPairs().size(), cache.getNumberHits() + cache.getNumberMisses());
+
+        CriticalPair criticalPair = finder.getCriticalPairs().iterator().next();
+        long memoizedHits = cache.getNumberMemoizedHits();
+        assertSame(criticalPair.getCanonical1(), criticalPair.getCanonical1());
+        assertSame(criticalPair.getCanonical2(), criticalPair.getCanonical2());
+        assertEquals(memoizedHits + 4, cache.getNumberMemoizedHits());
+
+        // Canonicalizing the same heap configuration again is a cache hit
+        long hits = cache.getNumberHits();
+        HeapConfiguration canonical = cache.canonicalize(criticalPair.getRule1Applied());
+        assertEquals(hits + 1, cache.getNumberHits());
+        assertSame(criticalPair.getCanonical1(), canonical);
+    }
+
+    @Test
+    public void testIncrementalDetectionMatchesFromScratch() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CriticalPairFinder initialFinder = new CriticalPairFinder(grammar);
+
+        // Deactivate a collapsed rule
+        GrammarRule collapsedRule = null;
+        for (GrammarRule rule : grammar.getActiveRules()) {
+            if (rule instanceof GrammarRuleCollapsed) {
+                collapsedRule = rule;
+                break;
+            }
+        }
+        ConfluenceWrapperGrammar deactivatedGrammar = grammar.getModifiedGrammar(Collections.singleton(collapsedRule), Collections.emptySet(), null);
+        CriticalPairFinder deactivatedFinder = new CriticalPairFinder(deactivatedGrammar, new CriticalPairFinderSettings().setParentFinder(initialFinder));
+        assertSameFinderResult(new CriticalPairFinder(deactivatedGrammar), deactivatedFinder);
+
+        // Reactivate the rule again
+        GrammarRule inactiveRule = deactivatedGrammar.getInactiveRules().iterator().next();
+        ConfluenceWrapperGrammar reactivatedGrammar = deactivatedGrammar.getModifiedGrammar(Collections.singleton(inactiveRule), Collections.emptySet(), null);
+        CriticalPairFinder reactivatedFinder = new CriticalPairFinder(reactivatedGrammar, new CriticalPairFinderSettings().setParentFinder(deactivatedFinder));
+        assertSameFinderResult(initialFinder, reactivatedFinder);
+
+        // Add a rule
+        GrammarRuleOriginal someRule = grammar.getOriginalGrammarRules().iterator().next();
+        GrammarRuleOriginal newRule = new GrammarRuleOriginal(grammar.getGrammarName(), someRule.getNonterminal(),
+                someRule.getHeapConfiguration().clone(), grammar.getMaxOriginalRuleIdx() + 1);
+        ConfluenceWrapperGrammar extendedGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.singleton(newRule), null);
+        CriticalPairFinder extendedFinder = new CriticalPairFinder(extendedGrammar, new CriticalPairFinderSettings().setParentFinder(initialFinder));
+        assertSameFinderResult(new CriticalPairFinder(extendedGrammar), extendedFinder);
+        assertTrue(extendedFinder.getJsonStatistic().getInt("numberReusedRulePairs") > 0);
+    }
+
+    @Test
+    public void testJoinabilityIsOnlyReevaluatedForAffectedCriticalPairs() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CriticalPairFinder initialFinder = new CriticalPairFinder(grammar);
+
+        int numberReusedJoinabilities = 0;
+        for (GrammarRuleOriginal rule : grammar.getOriginalGrammarRules()) {
+            // Deactivate an original rule (this changes the abstraction grammar)
+            ConfluenceWrapperGrammar deactivatedGrammar = grammar.getModifiedGrammar(Collections.singleton(rule), Collections.emptySet(), null);
+            CriticalPairFinder deactivatedFinder = new CriticalPairFinder(deactivatedGrammar, new CriticalPairFinderSettings().setParentFinder(initialFinder));
+            assertSameFinderResult(new CriticalPairFinder(deactivatedGrammar), deactivatedFinder);
+
+            // Reactivate the rule again
+            GrammarRule inactiveRule = deactivatedGrammar.getInactiveRules().iterator().next();
+            ConfluenceWrapperGrammar reactivatedGrammar = deactivatedGrammar.getModifiedGrammar(Collections.singleton(inactiveRule), Collections.emptySet(), null);
+            CriticalPairFinder reactivatedFinder = new CriticalPairFinder(reactivatedGrammar, new CriticalPairFinderSettings().setParentFinder(deactivatedFinder));
+            assertSameFinderResult(initialFinder, reactivatedFinder);
+            numberReusedJoinabilities += deactivatedFinder.getJsonStatistic().getInt("numberReusedJoinabilities")
+                    + reactivatedFinder.getJsonStatistic().getInt("numberReusedJoinabilities");
+        }
+        assertTrue(numberReusedJoinabilities > 0);
+    }
+
+    @Test
+    public void testLazyCriticalPairsMatchFinder() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList", "DLList_simple_one_way"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            CriticalPairFinder finder = new CriticalPairFinder(grammar);
+
+            List<CriticalPair> lazyCriticalPairs = new ArrayList<>();
+            for (CriticalPair criticalPair : CriticalPairFinder.lazyCriticalPairs(grammar, Joinability.WEAKLY_JOINABLE)) {
+                lazyCriticalPairs.add(criticalPair);
+            }
+            assertSameCriticalPairsInOrder(finder.getCriticalPairsMaxJoinability(Joinability.WEAKLY_JOINABLE), lazyCriticalPairs);
+
+            assertEquals(finder.getCriticalPairs().size(),
+                    CriticalPairFinder.streamCriticalPairs(grammar, Joinability.STRONGLY_JOINABLE).count());
+            assertEquals(finder.getJoinabilityResult(), CriticalPairFinder.computeJoinability(grammar, Joinability.NOT_JOINABLE));
+            assertEquals(finder.getJoinabilityResult() == Joinability.STRONGLY_JOINABLE,
+                    CriticalPairFinder.computeJoinability(grammar, Joinability.WEAKLY_JOINABLE) == Joinability.STRONGLY_JOINABLE);
+        }
+    }
+
+    @Test
+    public void testCriticalPairIteratorMatchesFinder() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList", "DLList_simple_one_way"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            CriticalPairFinderSettings[] allSettings = new CriticalPairFinderSettings[] {
+                    new CriticalPairFinderSettings(),
+                    new CriticalPairFinderSettings()
+                            .setEnumerationOrder(OverlappingEnumerationOrder.DEPTH_FIRST)
+                            .setSymmetryReduction(true)
+                            .setDeduplicate(true)
+            };
+            for (CriticalPairFinderSettings settings : allSettings) {
+                CriticalPairFinder finder = new CriticalPairFinder(grammar, settings);
+                List<CriticalPair> lazyCriticalPairs = new ArrayList<>();
+                for (CriticalPair criticalPair : CriticalPairFinder.lazyCriticalPairs(grammar, settings, Joinability.STRONGLY_JOINABLE)) {
+                    lazyCriticalPairs.add(criticalPair);
+                }
+                assertSameCriticalPairsInOrder(finder.getCriticalPairs(), lazyCriticalPairs);
+            }
+        }
+    }
+
+    @Test
+    public void testRulePairPrefilterOnlySkipsIndependentRulePairs() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList", "DLList_simple_one_way"}) {
+            ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
+            RulePairPrefilter prefilter = grammar.getRulePairPrefilter();
+            List<GrammarRule> rules = new ArrayList<>(grammar.getActiveRules());
+            for (int i = 0; i < rules.size(); i++) {
+                for (int j = i; j < rules.size(); j++) {
+                    if (prefilter.mayOverlap(rules.get(i), rules.get(j))) {
+                        continue;
+                    }
+                    HeapConfigurationContext context = new HeapConfigurationContext(
+                            rules.get(i).getCollapsedHeapConfiguration(), rules.get(j).getCollapsedHeapConfiguration());
+                    for (Overlapping edgeOverlapping : EdgeOverlapping.getEdgeOverlapping(context)) {
+                        if (((EdgeOverlapping) edgeOverlapping).isEdgeOverlappingValid()) {
+                            for (Overlapping nodeOverlapping : NodeOverlapping.getNodeOverlapping((EdgeOverlapping) edgeOverlapping)) {
+                                assertTrue(((NodeOverlapping) nodeOverlapping).isNodeOverlappingIndependent());
+                            }
+                        }
+                    }
+                }
+            }
+            CriticalPairFinder finder = new CriticalPairFinder(grammar);
+            int numberRulePairs = rules.size() * (rules.size() + 1) / 2;
+            assertEquals(numberRulePairs, finder.getJsonStatistic().getInt("numberComputedRulePairs")
+                    + finder.getJsonStatistic().getInt("numberSkippedRulePairs"));
+        }
+    }
+
+    @Test
+    public void testRulePairPrefilterIsMaintainedIncrementally() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        GrammarRuleOriginal someRule = grammar.getOriginalGrammarRules().iterator().next();
+        GrammarRuleOriginal newRule = new GrammarRuleOriginal(grammar.getGrammarName(), someRule.getNonterminal(),
+                someRule.getHeapConfiguration().clone(), grammar.getMaxOriginalRuleIdx() + 1);
+        ConfluenceWrapperGrammar extendedGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.singleton(newRule), null);
+
+        // Only the signatures of the new rule and its collapsed rules are computed
+        assertEquals(1 + newRule.getCollapsedRules().size(), extendedGrammar.getRulePairPrefilter().getNumberComputedSignatures());
+        assertEquals(grammar.getAllGrammarRules().size(), grammar.getRulePairPrefilter().getNumberComputedSignatures());
+    }
+
+    @Test
+    public void testThresholdComputationCanBeContinued() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CriticalPairFinder fullFinder = new CriticalPairFinder(grammar);
+        assertTrue(fullFinder.isComplete());
+
+        CriticalPairFinder thresholdFinder = new CriticalPairFinder(grammar,
+                new CriticalPairFinderSettings().setMaxNumberNotStronglyJoinable(1));
+        assertTrue(thresholdFinder.getNumberNotStronglyJoinable() >= 1);
+        assertTrue(!thresholdFinder.isComplete());
+
+        thresholdFinder.continueComputation(Integer.MAX_VALUE);
+        assertTrue(thresholdFinder.isComplete());
+        assertEquals(fullFinder.getNumberNotStronglyJoinable(), thresholdFinder.getNumberNotStronglyJoinable());
+        assertSameFinderResult(fullFinder, thresholdFinder);
+    }
+
+    @Test
+    public void testCancelledDetectionOfSuccessorState() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CancellationToken cancellation = new CancellationToken();
+        CompletionState initialState = new CompletionState(grammar, null).withCancellation(cancellation);
+        cancellation.cancel();
+
+        // The critical pairs of the initial state have already been computed
+        assertEquals(new CriticalPairFinder(grammar).getCriticalPairsMaxJoinability(Joinability.WEAKLY_JOINABLE).size(),
+                CriticalPairFinder.getNumberCriticalPairs(initialState.getCriticalPairs()));
+
+        GrammarRuleOriginal someRule = grammar.getOriginalGrammarRules().iterator().next();
+        GrammarRuleOriginal newRule = new GrammarRuleOriginal(grammar.getGrammarName(), someRule.getNonterminal(),
+                someRule.getHeapConfiguration().clone(), grammar.getMaxOriginalRuleIdx() + 1);
+        ConfluenceWrapperGrammar extendedGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.singleton(newRule), null);
+        CompletionState successorState = new CompletionState(extendedGrammar, initialState);
+        try {
+            successorState.getCriticalPairs();
+            fail("The critical pair detection should have been cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCancellingNoneHasNoEffect() {
+        CancellationToken.NONE.cancel();
+        assertFalse(CancellationToken.NONE.isCancelled());
+        CancellationToken.NONE.throwIfCancelled();
+    }
+
+    private static void assertSameFinderResult(CriticalPairFinder expected, CriticalPairFinder actual) {
+        assertSameCriticalPairsInOrder(expected.getCriticalPairs(), actual.getCriticalPairs());
+        assertEquals(expected.getJoinabilityResult(), actual.getJoinabilityResult());
+    }
 
     public void testGrammar(String grammarName, int hash) {
         ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar(grammarName);
@@ -0,0 +1,133 @@
+package de.rwth.i2.attestor.grammar.confluence.benchmark;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases:
+ *
+ * CompletionHeuristicStatisticCollector / OverlappingStatisticCollector:
+ *   - Counts are exact if the collector is used from multiple threads
+ *   - Disabled statistics return a collector that ignores all calls
+ *
+ * StartStopTimer:
+ *   - Nested starts in different threads
+ *   - The runtime includes the time of the calling thread while the timer is running in it
+ */
+public class StatisticCollectorTest {
+    private static final int NUMBER_THREADS = 4;
+    private static final int NUMBER_CALLS = 10000;
+
+    @After
+    public void tearDown() {
+        StatisticCollectorSettings.setEnabled(true);
+    }
+
+    private static void runInParallel(Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NUMBER_THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < NUMBER_THREADS; i++) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCompletionHeuristicStatisticCollector_Parallel() throws Exception {
+        CompletionHeuristicStatisticCollector collector = CompletionHeuristicStatisticCollector.create();
+        runInParallel(() -> {
+            for (int i = 0; i < NUMBER_CALLS; i++) {
+                collector.startTimer();
+                collector.incrementNumSuccess();
+                collector.saveSuccessAtTry(i % 3 + 1);
+                collector.stopTimer();
+            }
+        });
+
+        JSONObject result = collector.getJsonResult();
+        assertEquals(NUMBER_THREADS * NUMBER_CALLS, result.getLong("numSuccess"));
+        JSONObject histogram = result.getJSONObject("numTriesPerSuccessfulHeuristicInvocation");
+        long total = histogram.getLong("1") + histogram.getLong("2") + histogram.getLong("3");
+        assertEquals(NUMBER_THREADS * NUMBER_CALLS, total);
+    }
+
+    @Test
+    public void testOverlappingStatisticCollector_Parallel() throws Exception {
+        OverlappingStatisticCollector collector = OverlappingStatisticCollector.create();
+        runInParallel(() -> {
+            for (int i = 0; i < NUMBER_CALLS; i++) {
+                collector.logSymmetryPruning(i % 5);
+            }
+        });
+
+        assertEquals(NUMBER_THREADS * NUMBER_CALLS, collector.getNumberSymmetryPruned());
+    }
+
+    @Test
+    public void testDisabledStatistics() {
+        StatisticCollectorSettings.setEnabled(false);
+        CompletionHeuristicStatisticCollector collector = CompletionHeuristicStatisticCollector.create();
+        assertSame(collector, CompletionHeuristicStatisticCollector.create());
+        collector.startTimer();
+        collector.incrementNumSuccess();
+        collector.stopTimer();
+        // Stopping a timer that was never started is ignored as well
+        collector.stopTimer();
+        assertEquals(0, collector.getJsonResult().getLong("numSuccess"));
+
+        OverlappingStatisticCollector overlappingCollector = OverlappingStatisticCollector.create();
+        overlappingCollector.logSymmetryPruning(1);
+        assertEquals(0, overlappingCollector.getNumberSymmetryPruned());
+    }
+
+    @Test
+    public void testStartStopTimer_NestedInThreads() throws Exception {
+        StartStopTimer timer = new StartStopTimer();
+        runInParallel(() -> {
+            for (int i = 0; i < 100; i++) {
+                timer.startTimer();
+                timer.startTimer();
+                timer.stopTimer();
+                timer.stopTimer();
+            }
+        });
+        // All threads have stopped the timer, so stopping it again fails
+        try {
+            timer.stopTimer();
+        } catch (RuntimeException e) {
+            return;
+        }
+        throw new AssertionError("The timer should not be running");
+    }
+
+    @Test
+    public void testStartStopTimer_RuntimeWhileRunning() {
+        StartStopTimer timer = new StartStopTimer();
+        timer.startTimer();
+        long runningTime;
+        do {
+            // Busy wait until the CPU time of the thread advances
+            runningTime = timer.getRuntime();
+        } while (runningTime == 0);
+        timer.stopTimer();
+        assertTrue(runningTime > 0);
+        assertTrue(timer.getRuntime() >= runningTime);
+    }
+}
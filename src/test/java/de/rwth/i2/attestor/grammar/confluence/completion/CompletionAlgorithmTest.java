@@ -0,0 +1,137 @@
+package de.rwth.i2.attestor.grammar.confluence.completion;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.GrammarRuleOriginal;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinderSettings;
+import de.rwth.i2.attestor.grammar.confluence.Joinability;
+import de.rwth.i2.attestor.grammar.confluence.jointMorphism.OverlappingEnumerationOrder;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CompletionAlgorithmTest {
+
+    @Test
+    public void testIncumbentsImproveUntilResult() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        List<CompletionState> states = new ArrayList<>();
+        List<Double> losses = new ArrayList<>();
+        CompletionAlgorithm algorithm = ExampleCompletionAlgorithms.ruleRestriction()
+                .addIncumbentListener((state, loss) -> {
+                    states.add(state);
+                    losses.add(loss);
+                });
+        CompletionState result = algorithm.runCompletionAlgorithm(grammar);
+
+        assertSame(grammar, states.get(0).getGrammar());
+        for (int i = 1; i < losses.size(); i++) {
+            assertTrue(losses.get(i) < losses.get(i - 1));
+        }
+        assertSame(result, states.get(states.size() - 1));
+    }
+
+    @Test
+    public void testCriticalPairFinderSettingsAreUsedForAllStates() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CompletionState expected = ExampleCompletionAlgorithms.ruleRestriction().runCompletionAlgorithm(grammar);
+
+        AtomicInteger numberThreads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            numberThreads.incrementAndGet();
+            return new Thread(runnable);
+        });
+        try {
+            CriticalPairFinderSettings settings = new CriticalPairFinderSettings()
+                    .setExecutor(executor)
+                    .setEnumerationOrder(OverlappingEnumerationOrder.DEPTH_FIRST);
+            CompletionAlgorithm algorithm = ExampleCompletionAlgorithms.ruleRestriction().setCriticalPairFinderSettings(settings);
+            CompletionState result = algorithm.runCompletionAlgorithm(grammar);
+
+            assertEquals(expected.getGrammar().getActiveRules().size(), result.getGrammar().getActiveRules().size());
+            assertEquals(CriticalPairFinder.getNumberCriticalPairs(expected.getCriticalPairs()),
+                    CriticalPairFinder.getNumberCriticalPairs(result.getCriticalPairs()));
+            // The critical pairs were computed by the executor
+            assertTrue(numberThreads.get() > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExpiredBudgetReturnsSnapshotOfInitialState() throws IOException {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        File directory = Files.createTempDirectory("snapshots").toFile();
+        try {
+            checkExpiredBudget(grammar, directory);
+        } finally {
+            Files.walk(directory.toPath()).sorted((p1, p2) -> p2.compareTo(p1)).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private static void checkExpiredBudget(ConfluenceWrapperGrammar grammar, File directory) throws IOException {
+        CompletionSnapshotWriter snapshotWriter = new CompletionSnapshotWriter(directory.getPath());
+        CompletionState result = ExampleCompletionAlgorithms.ruleRestriction()
+                .setTimeBudget(1)
+                .addIncumbentListener(snapshotWriter)
+                .runCompletionAlgorithm(grammar);
+
+        // The budget expires while the critical pairs of the initial state are computed
+        assertSame(grammar, result.getGrammar());
+        assertEquals(1, snapshotWriter.getNumberSnapshots());
+
+        File snapshot = new File(directory, "snapshot0");
+        assertTrue(new File(snapshot, "grammar.tex").exists());
+        JSONArray exportedGrammar = new JSONArray(read(new File(snapshot, "grammar.json")));
+        assertEquals(grammar.getConcretizationGrammar().getAllLeftHandSides().size(), exportedGrammar.length());
+        JSONObject summary = new JSONObject(read(new File(snapshot, "summary.json")));
+        assertEquals(CriticalPairFinder.getNumberCriticalPairs(result.getCriticalPairs()), summary.getInt("numberCriticalPairs"));
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStateWithGivenCriticalPairsCountsCriticalPairsOfItsGrammar() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CompletionState parentState = new CompletionState(grammar, null);
+        GrammarRuleOriginal deactivatedRule = grammar.getOriginalGrammarRules().iterator().next();
+        ConfluenceWrapperGrammar modifiedGrammar = grammar.getModifiedGrammar(Collections.singleton(deactivatedRule),
+                Collections.emptySet(), null);
+        CompletionState state = new CompletionState(modifiedGrammar, parentState.getCriticalPairs(), parentState);
+
+        int totalParent = 0;
+        int totalModified = 0;
+        for (Joinability joinability : Joinability.values()) {
+            int expected = 0;
+            for (CriticalPair criticalPair : new CriticalPairFinder(modifiedGrammar).getCriticalPairs()) {
+                if (criticalPair.getJoinability() == joinability) {
+                    expected += criticalPair.getMultiplicity();
+                }
+            }
+            assertEquals(expected, state.getNumberCriticalPairs(joinability));
+            totalParent += parentState.getNumberCriticalPairs(joinability);
+            totalModified += expected;
+        }
+        assertNotEquals(totalParent, totalModified);
+        // The given critical pairs are kept
+        assertEquals(parentState.getCriticalPairs().size(), state.getCriticalPairs().size());
+    }
+}
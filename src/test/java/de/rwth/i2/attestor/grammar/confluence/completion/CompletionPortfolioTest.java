@@ -0,0 +1,49 @@
+package de.rwth.i2.attestor.grammar.confluence.completion;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.NumberCriticalPairLoss;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.json.JSONArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompletionPortfolioTest {
+
+    @Test
+    public void testBestStateIsReturned() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CompletionPortfolio.PortfolioResult result = new CompletionPortfolio(new NumberCriticalPairLoss(), 0, 2)
+                .addAlgorithm(ExampleCompletionAlgorithms.ruleRestriction())
+                .addAlgorithm(ExampleCompletionAlgorithms.completionAbstractionBlocking())
+                .runPortfolio(grammar);
+
+        double bestLoss = CriticalPairFinder.getNumberCriticalPairs(result.getBestState().getCriticalPairs());
+        JSONArray runs = result.getStatistic().getJSONArray("runs");
+        assertEquals(2, runs.length());
+        for (int i = 0; i < runs.length(); i++) {
+            assertTrue(runs.getJSONObject(i).getDouble("loss") >= bestLoss);
+        }
+        assertEquals(result.getBestAlgorithm().getAlgorithmIdentifier(), result.getStatistic().getString("bestAlgorithm"));
+        assertTrue(bestLoss < CriticalPairFinder.getNumberCriticalPairs(new CompletionState(grammar, null).getCriticalPairs()));
+    }
+
+    @Test
+    public void testExpiredBudgetReturnsInitialState() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        CompletionPortfolio.PortfolioResult result = new CompletionPortfolio(new NumberCriticalPairLoss(), 1, 2)
+                .addAlgorithm(ExampleCompletionAlgorithms.addRulesNewNonterminalHeuristic())
+                .addAlgorithm(ExampleCompletionAlgorithms.ruleRestriction())
+                .runPortfolio(grammar);
+
+        // The budget expires while the critical pairs of the initial state are computed
+        assertSame(grammar, result.getBestState().getGrammar());
+        JSONArray runs = result.getStatistic().getJSONArray("runs");
+        for (int i = 0; i < runs.length(); i++) {
+            assertTrue(runs.getJSONObject(i).getBoolean("cancelled"));
+        }
+    }
+}
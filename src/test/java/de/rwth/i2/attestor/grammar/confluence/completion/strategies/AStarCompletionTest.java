@@ -0,0 +1,85 @@
+package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
+
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionRuleRestrictionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.NumberCriticalPairLoss;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AStarCompletionTest {
+
+    @Test
+    public void testSearchReachesConfluentGrammar() {
+        AStarCompletion strategy = new AStarCompletion();
+        CompletionState result = createAlgorithm(strategy, new CompletionRuleRestrictionHeuristic(false, false))
+                .runCompletionAlgorithm(ConfluenceTool.parseGrammar("BT_conf"));
+
+        assertTrue(result.getCriticalPairs().isEmpty());
+        assertTrue(strategy.getDescription().getInt("numberExpandedNodes") > 0);
+    }
+
+    @Test
+    public void testNodeBudgetIsAppliedToEveryRun() {
+        AStarCompletion strategy = new AStarCompletion(1000, 0, 2, 1);
+        CompletionAlgorithm algorithm = createAlgorithm(strategy, new CompletionRuleRestrictionHeuristic(false, false));
+
+        // The statistic of a run does not depend on the previous runs
+        for (int run = 0; run < 2; run++) {
+            CompletionState result = algorithm.runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+            assertFalse(result.getCriticalPairs().isEmpty());
+            assertEquals(2, strategy.getDescription().getInt("numberExpandedNodes"));
+        }
+    }
+
+    @Test
+    public void testBeamWidthLimitsQueuedSuccessors() {
+        AStarCompletion strategy = new AStarCompletion(1000, 1, 3, 1);
+        createAlgorithm(strategy, new CompletionRuleRestrictionHeuristic(false, false))
+                .runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+
+        JSONObject description = strategy.getDescription();
+        assertEquals(3, description.getInt("numberExpandedNodes"));
+        // Every expanded state adds at most one successor to the queue
+        assertEquals(3, description.getInt("numberQueuedStates"));
+    }
+
+    @Test
+    public void testStatesWithSameGrammarAreOnlyQueuedOnce() {
+        // The heuristic only finds the grammar of the expanded state again (twice)
+        CompletionHeuristic heuristic = new CompletionHeuristic() {
+            @Override
+            public Iterable<CompletionState> applyHeuristic(CompletionState state) {
+                return Arrays.asList(new CompletionState(state.getGrammar(), state),
+                        new CompletionState(state.getGrammar(), state));
+            }
+
+            @Override
+            public String getIdentifier() {
+                return "sameGrammar";
+            }
+        };
+        AStarCompletion strategy = new AStarCompletion();
+        CompletionState initialState = new CompletionState(ConfluenceTool.parseGrammar("DLList"), null);
+        CompletionState result = createAlgorithm(strategy, heuristic).runCompletionAlgorithm(initialState);
+
+        assertSame(initialState, result);
+        JSONObject description = strategy.getDescription();
+        assertEquals(1, description.getInt("numberExpandedNodes"));
+        assertEquals(0, description.getInt("numberQueuedStates"));
+        assertEquals(2, description.getInt("numberDuplicateStates"));
+    }
+
+    private static CompletionAlgorithm createAlgorithm(AStarCompletion strategy, CompletionHeuristic heuristic) {
+        return new CompletionAlgorithm("test")
+                .setCompletionStrategy(strategy)
+                .setCompletionStateLoss(new NumberCriticalPairLoss())
+                .addHeuristic(heuristic);
+    }
+}
@@ -0,0 +1,114 @@
+package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
+
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.NumberCriticalPairLoss;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AdaptiveHeuristicSchedulerTest {
+
+    @Test
+    public void testHeuristicsAreRankedBySuccessRate() {
+        CompletionHeuristic h1 = new EmptyHeuristic("h1");
+        CompletionHeuristic h2 = new EmptyHeuristic("h2");
+        AdaptiveHeuristicScheduler scheduler = new AdaptiveHeuristicScheduler(Arrays.asList(h1, h2), 0);
+        CompletionState state = new CompletionState(ConfluenceTool.parseGrammar("DLList"), null);
+
+        // Ties are broken by the order of the heuristics
+        assertSame(h1, scheduler.getNextHeuristic(state));
+
+        // h1 needs many tries -> The untried heuristic h2 is preferred
+        for (int i = 0; i < 10; i++) {
+            scheduler.recordTry(h1);
+        }
+        scheduler.recordSuccess(h1, state);
+        assertSame(h2, scheduler.getNextHeuristic(state));
+
+        // An exhausted heuristic is not tried on the same state again
+        scheduler.recordTry(h2);
+        scheduler.recordExhausted(h2, state);
+        assertSame(h1, scheduler.getNextHeuristic(state));
+        scheduler.recordExhausted(h1, state);
+        assertNull(scheduler.getNextHeuristic(state));
+    }
+
+    @Test
+    public void testHeuristicIsSkippedAfterTooManyFailures() {
+        CompletionHeuristic h1 = new EmptyHeuristic("h1");
+        AdaptiveHeuristicScheduler scheduler = new AdaptiveHeuristicScheduler(Collections.singletonList(h1), 2);
+        CompletionState state = new CompletionState(ConfluenceTool.parseGrammar("DLList"), null);
+
+        scheduler.recordTry(h1);
+        scheduler.recordTry(h1);
+        assertSame(h1, scheduler.getNextHeuristic(state));
+        scheduler.recordTry(h1);
+        assertNull(scheduler.getNextHeuristic(state));
+    }
+
+    @Test
+    public void testCriticalPairOrderIsPassedPerInvocation() {
+        List<Comparator<CriticalPair>> orders = new ArrayList<>();
+        CompletionHeuristic heuristic = new EmptyHeuristic("h1") {
+            @Override
+            public Iterable<Supplier<CompletionState>> getSuccessorCandidates(CompletionState state,
+                                                                              Comparator<CriticalPair> criticalPairOrder) {
+                orders.add(criticalPairOrder);
+                return Collections.emptyList();
+            }
+        };
+
+        // The adaptive run orders the critical pairs, the run with the fixed order of the heuristics does not (the
+        // heuristic itself does not keep the order of a previous run)
+        createAlgorithm(heuristic, true).runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+        assertFalse(orders.isEmpty());
+        for (Comparator<CriticalPair> order : orders) {
+            assertNotNull(order);
+        }
+        orders.clear();
+        createAlgorithm(heuristic, false).runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+        assertFalse(orders.isEmpty());
+        for (Comparator<CriticalPair> order : orders) {
+            assertNull(order);
+        }
+    }
+
+    private static CompletionAlgorithm createAlgorithm(CompletionHeuristic heuristic, boolean adaptiveScheduling) {
+        return new CompletionAlgorithm("test")
+                .setCompletionStrategy(new GreedyCompletion(0, 1, adaptiveScheduling, 0))
+                .setCompletionStateLoss(new NumberCriticalPairLoss())
+                .addHeuristic(heuristic);
+    }
+
+    private static class EmptyHeuristic extends CompletionHeuristic {
+        private final String identifier;
+
+        EmptyHeuristic(String identifier) {
+            this.identifier = identifier;
+        }
+
+        @Override
+        public Iterable<CompletionState> applyHeuristic(CompletionState state) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String getIdentifier() {
+            return identifier;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.rwth.i2.attestor.grammar.confluence.completion.strategies;
+
+import de.rwth.i2.attestor.grammar.GrammarRule;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionAlgorithm;
+import de.rwth.i2.attestor.grammar.confluence.completion.CompletionState;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.AddRulesNewNonterminalHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.heuristics.CompletionRuleRestrictionHeuristic;
+import de.rwth.i2.attestor.grammar.confluence.completion.loss.NumberCriticalPairLoss;
+import de.rwth.i2.attestor.grammar.confluence.completion.validity.CheckDataStructureGrammar;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GreedyCompletionTest {
+
+    @Test
+    public void testParallelWindowGivesSameResultAsSequentialStrategy() {
+        CompletionAlgorithm sequential = createAlgorithm(1);
+        CompletionAlgorithm parallel = createAlgorithm(4);
+        CompletionState expected = sequential.runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+        CompletionState actual = parallel.runCompletionAlgorithm(ConfluenceTool.parseGrammar("DLList"));
+
+        assertEquals(getRuleIdentifiers(expected), getRuleIdentifiers(actual));
+        assertEquals(CriticalPairFinder.getNumberCriticalPairs(expected.getCriticalPairs()),
+                CriticalPairFinder.getNumberCriticalPairs(actual.getCriticalPairs()));
+        // The statistics only count the candidates the sequential strategy evaluates (the runtime differs)
+        for (int i = 0; i < sequential.getHeuristics().size(); i++) {
+            assertEquals(getStatistic(sequential.getHeuristics().get(i)).toString(),
+                    getStatistic(parallel.getHeuristics().get(i)).toString());
+        }
+    }
+
+    private static CompletionAlgorithm createAlgorithm(int parallelWindow) {
+        return new CompletionAlgorithm("test")
+                .setCompletionStrategy(new GreedyCompletion(2, parallelWindow))
+                .setCompletionStateLoss(new NumberCriticalPairLoss())
+                .addHeuristic(new AddRulesNewNonterminalHeuristic())
+                .addHeuristic(new CompletionRuleRestrictionHeuristic(false, true))
+                .addGrammarValidityCheck(new CheckDataStructureGrammar());
+    }
+
+    private static List<String> getRuleIdentifiers(CompletionState state) {
+        List<String> result = new ArrayList<>();
+        for (GrammarRule rule : state.getGrammar().getActiveRules()) {
+            result.add(rule.getRuleIdentifier());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static JSONObject getStatistic(CompletionHeuristic heuristic) {
+        JSONObject result = heuristic.getStatisticCollector().getJsonResult();
+        result.put("time", 0);
+        return result;
+    }
+}
@@ -13,7 +13,11 @@ import gnu.trove.list.array.TIntArrayList;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -44,7 +48,7 @@ import static org.junit.Assert.*;
  *
  *  getOverlapping(newPair)
  *    - Just add a pair and check that hc1Remaining, hc2Remaining, ... is correct
- *    - 1. Case: Add one pair TODO
+ *    - 1. Case: Add one pair (the base overlapping must not change)
  *    - 1. Case: Add second pair TODO
  *
  *  TODO: Some kind of test with self loops in the graph
@@ -563,4 +567,55 @@ public class EdgeOverlappingTest {
         assertEquals(null, baseOverlapping.getNextEquivalence(edgePair10));
     }
 
+    @Test
+    public void testGetOverlapping_AddOnePair() {
+        // 1. Setup the test
+        SelectorLabel selector = hcImplFactory.scene().getSelectorLabel("test");
+        Type type = hcImplFactory.scene().getType("node");
+
+        TIntArrayList nodesHc1 = new TIntArrayList(4);
+        HeapConfiguration hc1 = hcImplFactory.getEmptyHc().builder()
+                .addNodes(type, 4, nodesHc1)
+                .addSelector(nodesHc1.get(0), selector, nodesHc1.get(1))
+                .addSelector(nodesHc1.get(2), selector, nodesHc1.get(3))
+                .build();
+        NodeGraphElement[] graphNodesHc1 = NodeGraphElement.getGraphElementsFromPublicIds(hc1, nodesHc1);
+
+        TIntArrayList nodesHc2 = new TIntArrayList(2);
+        HeapConfiguration hc2 = hcImplFactory.getEmptyHc().builder()
+                .addNodes(type, 2, nodesHc2)
+                .addSelector(nodesHc2.get(0), selector, nodesHc2.get(1))
+                .build();
+        NodeGraphElement[] graphNodesHc2 = NodeGraphElement.getGraphElementsFromPublicIds(hc2, nodesHc2);
+
+        HeapConfigurationContext context = new HeapConfigurationContext(hc1, hc2);
+        EdgeOverlapping baseOverlapping = EdgeOverlapping.getEdgeOverlapping(context);
+        EdgeGraphElement edge0Hc1 = graphNodesHc1[0].getOutgoingSelectorEdge("test");
+        EdgeGraphElement edge1Hc1 = graphNodesHc1[2].getOutgoingSelectorEdge("test");
+        EdgeGraphElement edge0Hc2 = graphNodesHc2[0].getOutgoingSelectorEdge("test");
+
+        // 2. Add the pair and check the new overlapping
+        EdgeOverlapping overlapping = baseOverlapping.getOverlapping(new Pair<>(edge0Hc1, edge0Hc2));
+        assertFalse(overlapping.isEmpty());
+        assertEquals(1, overlapping.getLevel());
+        assertEquals(Collections.singletonMap(edge0Hc1, edge0Hc2), new HashMap<>(overlapping.getMapHC1toHC2()));
+        assertEquals(Collections.singletonMap(edge0Hc2, edge0Hc1), new HashMap<>(overlapping.getMapHC2toHC1()));
+        assertEquals(Collections.singletonList(edge1Hc1), new ArrayList<>(overlapping.getHc1Remaining()));
+        assertTrue(overlapping.getHc2Remaining().isEmpty());
+        Map<NodeGraphElement, NodeGraphElement> expectedNodeMap = new HashMap<>();
+        expectedNodeMap.put(graphNodesHc1[0], graphNodesHc2[0]);
+        expectedNodeMap.put(graphNodesHc1[1], graphNodesHc2[1]);
+        assertEquals(expectedNodeMap, new HashMap<>(overlapping.getNodeMapHC1ToHC2()));
+        assertEquals(graphNodesHc2[1], overlapping.getNodeMapHC1ToHC2().get(graphNodesHc1[1]));
+        assertFalse(overlapping.getNodeMapHC1ToHC2().containsKey(graphNodesHc1[2]));
+
+        // 3. Check that the base overlapping did not change
+        assertTrue(baseOverlapping.isEmpty());
+        assertEquals(0, baseOverlapping.getLevel());
+        assertTrue(baseOverlapping.getMapHC1toHC2().isEmpty());
+        assertTrue(baseOverlapping.getNodeMapHC1ToHC2().isEmpty());
+        assertEquals(2, baseOverlapping.getHc1Remaining().size());
+        assertEquals(1, baseOverlapping.getHc2Remaining().size());
+    }
+
 }
@@ -0,0 +1,91 @@
+package de.rwth.i2.attestor.grammar.confluence.jointMorphism;
+
+import de.rwth.i2.attestor.MockupSceneObject;
+import de.rwth.i2.attestor.graph.SelectorLabel;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import de.rwth.i2.attestor.graph.heap.internal.ExampleHcImplFactory;
+import de.rwth.i2.attestor.graph.morphism.Graph;
+import de.rwth.i2.attestor.main.scene.SceneObject;
+import de.rwth.i2.attestor.types.Type;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases:
+ *
+ * getAutomorphisms:
+ *   - Two interchangeable internal nodes
+ *   - Interchangeable nodes that are external (must stay fixed)
+ *
+ * getEdgeOverlapping with symmetry reduction:
+ *   - Fewer overlappings are enumerated
+ */
+public class GraphAutomorphismsTest {
+
+    private ExampleHcImplFactory hcImplFactory;
+
+    @Before
+    public void setUp() {
+        SceneObject sceneObject = new MockupSceneObject();
+        hcImplFactory = new ExampleHcImplFactory(sceneObject);
+    }
+
+    /**
+     * Two internal nodes that both have a selector to an external node
+     */
+    private HeapConfiguration getHcWithTwoPredecessors(boolean externalPredecessors) {
+        Type type = hcImplFactory.scene().getType("node");
+        SelectorLabel selector = hcImplFactory.scene().getSelectorLabel("next");
+        TIntArrayList nodes = new TIntArrayList(3);
+        HeapConfiguration hc = hcImplFactory.getEmptyHc().builder()
+                .addNodes(type, 3, nodes)
+                .addSelector(nodes.get(1), selector, nodes.get(0))
+                .addSelector(nodes.get(2), selector, nodes.get(0))
+                .setExternal(nodes.get(0))
+                .build();
+        if (externalPredecessors) {
+            hc = hc.builder().setExternal(nodes.get(1)).setExternal(nodes.get(2)).build();
+        }
+        return hc;
+    }
+
+    @Test
+    public void testGetAutomorphisms_InterchangeableNodes() {
+        Graph graph = (Graph) getHcWithTwoPredecessors(false);
+        List<int[]> automorphisms = GraphAutomorphisms.getAutomorphisms(graph, 10);
+
+        assertEquals(2, automorphisms.size());
+        // The identity is always the first automorphism
+        for (int privateId = 0; privateId < graph.size(); privateId++) {
+            assertTrue(GraphAutomorphisms.isFixed(automorphisms.get(0), privateId));
+        }
+    }
+
+    @Test
+    public void testGetAutomorphisms_ExternalNodesFixed() {
+        Graph graph = (Graph) getHcWithTwoPredecessors(true);
+        assertEquals(1, GraphAutomorphisms.getAutomorphisms(graph, 10).size());
+    }
+
+    @Test
+    public void testGetEdgeOverlapping_SymmetryReduction() {
+        HeapConfiguration hc = getHcWithTwoPredecessors(false);
+        HeapConfigurationContext context = new HeapConfigurationContext(hc, hc);
+
+        int numberComplete = 0;
+        for (Overlapping<EdgeGraphElement> ignored : EdgeOverlapping.getEdgeOverlapping(context, null, false)) {
+            numberComplete++;
+        }
+        int numberReduced = 0;
+        for (Overlapping<EdgeGraphElement> ignored : EdgeOverlapping.getEdgeOverlapping(context, null, true)) {
+            numberReduced++;
+        }
+        assertTrue(numberReduced < numberComplete);
+    }
+}
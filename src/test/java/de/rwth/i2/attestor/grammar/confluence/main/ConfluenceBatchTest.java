@@ -0,0 +1,165 @@
+package de.rwth.i2.attestor.grammar.confluence.main;
+
+import de.rwth.i2.attestor.grammar.confluence.CriticalPair;
+import de.rwth.i2.attestor.grammar.confluence.CriticalPairFinder;
+import de.rwth.i2.attestor.grammar.confluence.Joinability;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConfluenceBatchTest {
+    private static final String PREDEFINED_GRAMMARS = "src/main/assets/predefinedGrammars/";
+
+    @Test
+    public void testDirectoryResultsMatchConfluenceCheck() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        try {
+            copyPredefinedGrammar("BT_conf", directory);
+            copyPredefinedGrammar("DLList_simple_one_way", directory);
+            Files.write(new File(directory, "invalid.json").toPath(), "[]".getBytes(StandardCharsets.UTF_8));
+            Files.write(new File(directory, "notes.txt").toPath(), "ignored".getBytes(StandardCharsets.UTF_8));
+
+            List<String> grammarFiles = ConfluenceBatch.getGrammarFiles(directory.getPath());
+            assertEquals(3, grammarFiles.size());
+            Map<String, JSONObject> results = runBatch(new ConfluenceBatch(2, 0, 0), grammarFiles);
+
+            checkResult("BT_conf", results.get(new File(directory, "BT_conf.json").getPath()));
+            checkResult("DLList_simple_one_way", results.get(new File(directory, "DLList_simple_one_way.json").getPath()));
+            assertEquals("error", results.get(new File(directory, "invalid.json").getPath()).getString("status"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testManifestWithExpiredTimeBudget() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        try {
+            File manifest = new File(directory, "manifest.txt");
+            String dlList = new File(PREDEFINED_GRAMMARS + "DLList.json").getAbsolutePath();
+            Files.write(manifest.toPath(), Arrays.asList("# Grammars", "", dlList), StandardCharsets.UTF_8);
+
+            List<String> grammarFiles = ConfluenceBatch.getGrammarFiles(manifest.getPath());
+            assertEquals(Collections.singletonList(dlList), grammarFiles);
+            JSONObject result = runBatch(new ConfluenceBatch(1, 1, 0), grammarFiles).get(dlList);
+            assertEquals("timeBudgetExceeded", result.getString("status"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testFailedOutputCancelsRunningGrammars() throws Exception {
+        File directory = Files.createTempDirectory("batch").toFile();
+        try {
+            // The invalid grammar is processed immediately and writing its result fails while DLList is completed
+            File invalid = new File(directory, "invalid.json");
+            Files.write(invalid.toPath(), "[]".getBytes(StandardCharsets.UTF_8));
+            List<String> grammarFiles = Arrays.asList(invalid.getPath(),
+                    new File(PREDEFINED_GRAMMARS + "DLList.json").getAbsolutePath());
+            ConfluenceBatch batch = new ConfluenceBatch(2, 0, 0)
+                    .setCompletion("combinedAlgorithm1", Collections.emptyList());
+            try {
+                batch.run(grammarFiles, new FailingWriter());
+                fail("The output error should be reported");
+            } catch (IOException e) {
+                // expected
+            }
+
+            // The grammar that was still processed is cancelled, so its worker thread stops soon
+            long deadline = System.currentTimeMillis() + 5000;
+            while (isGrammarTaskRunning()) {
+                assertTrue("The running grammar was not cancelled", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static boolean isGrammarTaskRunning() {
+        String taskClassName = ConfluenceBatch.class.getName() + "$GrammarTask";
+        for (StackTraceElement[] stackTrace : Thread.getAllStackTraces().values()) {
+            for (StackTraceElement element : stackTrace) {
+                if (element.getClassName().equals(taskClassName)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fails once another grammar is processed (the result is written after the grammar has been processed, so the
+     * writing thread itself does not process a grammar)
+     */
+    private static class FailingWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            try {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!isGrammarTaskRunning() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("The output is closed");
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Map<String, JSONObject> runBatch(ConfluenceBatch batch, List<String> grammarFiles) throws Exception {
+        StringWriter output = new StringWriter();
+        batch.run(grammarFiles, output);
+        Map<String, JSONObject> results = new HashMap<>();
+        for (String line : output.toString().split("\n")) {
+            JSONObject result = new JSONObject(line);
+            results.put(result.getString("grammar"), result);
+        }
+        assertEquals(grammarFiles.size(), results.size());
+        return results;
+    }
+
+    private static void checkResult(String grammarName, JSONObject result) {
+        CriticalPairFinder finder = new CriticalPairFinder(ConfluenceTool.parseGrammar(grammarName));
+        Map<Joinability, Integer> expected = new EnumMap<>(Joinability.class);
+        for (Joinability joinability : Joinability.values()) {
+            expected.put(joinability, 0);
+        }
+        for (CriticalPair criticalPair : finder.getCriticalPairs()) {
+            expected.merge(criticalPair.getJoinability(), criticalPair.getMultiplicity(), Integer::sum);
+        }
+
+        assertEquals("ok", result.getString("status"));
+        assertEquals((int) expected.get(Joinability.STRONGLY_JOINABLE), result.getInt("numberStronglyJoinable"));
+        assertEquals((int) expected.get(Joinability.WEAKLY_JOINABLE), result.getInt("numberWeaklyJoinable"));
+        assertEquals((int) expected.get(Joinability.NOT_JOINABLE), result.getInt("numberNotJoinable"));
+    }
+
+    private static void copyPredefinedGrammar(String grammarName, File directory) throws IOException {
+        Files.copy(Paths.get(PREDEFINED_GRAMMARS + grammarName + ".json"), new File(directory, grammarName + ".json").toPath());
+    }
+
+    private static void delete(File directory) throws IOException {
+        Files.walk(directory.toPath()).sorted((p1, p2) -> p2.compareTo(p1)).map(Path::toFile).forEach(File::delete);
+    }
+}
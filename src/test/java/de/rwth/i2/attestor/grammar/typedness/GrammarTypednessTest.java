@@ -0,0 +1,76 @@
+package de.rwth.i2.attestor.grammar.typedness;
+
+import de.rwth.i2.attestor.grammar.ConfluenceWrapperGrammar;
+import de.rwth.i2.attestor.grammar.Grammar;
+import de.rwth.i2.attestor.grammar.GrammarRuleOriginal;
+import de.rwth.i2.attestor.grammar.confluence.main.ConfluenceTool;
+import de.rwth.i2.attestor.graph.Nonterminal;
+import de.rwth.i2.attestor.graph.SelectorLabel;
+import de.rwth.i2.attestor.graph.heap.HeapConfiguration;
+import de.rwth.i2.attestor.util.Pair;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class GrammarTypednessTest {
+
+    @Test
+    public void testTypesMatchReachableSelectors() {
+        for (String grammarName : new String[] {"BT", "DLList", "SLList"}) {
+            Grammar grammar = ConfluenceTool.parseGrammar(grammarName).getConcretizationGrammar();
+            assertSameTypes(grammar, new GrammarTypedness(grammar));
+        }
+    }
+
+    @Test
+    public void testDerivedTypedness() {
+        ConfluenceWrapperGrammar grammar = ConfluenceTool.parseGrammar("DLList");
+        GrammarTypedness typedness = new GrammarTypedness(grammar.getConcretizationGrammar());
+
+        // Deactivating a rule does not change the concretization grammar
+        GrammarRuleOriginal someRule = grammar.getOriginalGrammarRules().iterator().next();
+        ConfluenceWrapperGrammar deactivatedGrammar = grammar.getModifiedGrammar(Collections.singleton(someRule), Collections.emptySet(), null);
+        assertSame(typedness, GrammarTypedness.derive(deactivatedGrammar.getConcretizationGrammar(), typedness));
+
+        // Adding a rule derives the types incrementally (the new right hand side has an additional node, so it is not
+        // isomorphic to the existing right hand side)
+        HeapConfiguration hc = someRule.getHeapConfiguration();
+        HeapConfiguration newRhs = hc.clone().builder().addNodes(hc.nodeTypeOf(hc.nodes().get(0)), 1, new TIntArrayList()).build();
+        GrammarRuleOriginal newRule = new GrammarRuleOriginal(grammar.getGrammarName(), someRule.getNonterminal(),
+                newRhs, grammar.getMaxOriginalRuleIdx() + 1);
+        Grammar extendedGrammar = grammar.getModifiedGrammar(Collections.emptySet(), Collections.singleton(newRule), null).getConcretizationGrammar();
+        GrammarTypedness extendedTypedness = GrammarTypedness.derive(extendedGrammar, typedness);
+        assertNotSame(typedness, extendedTypedness);
+        assertSameTypes(extendedGrammar, extendedTypedness);
+    }
+
+    /**
+     * Checks the types against the selectors that are reachable by a depth first search over the tentacles
+     */
+    private static void assertSameTypes(Grammar grammar, GrammarTypedness typedness) {
+        for (Nonterminal nt : grammar.getAllLeftHandSides()) {
+            for (int tentacle = 0; tentacle < nt.getRank(); tentacle++) {
+                Set<SelectorLabel> expected = new HashSet<>();
+                Set<Pair<Nonterminal, Integer>> visited = new HashSet<>();
+                Deque<Pair<Nonterminal, Integer>> stack = new ArrayDeque<>();
+                stack.push(new Pair<>(nt, tentacle));
+                while (!stack.isEmpty()) {
+                    Pair<Nonterminal, Integer> current = stack.pop();
+                    if (visited.add(current)) {
+                        for (HeapConfiguration rhs : grammar.getRightHandSidesFor(current.first())) {
+                            int node = rhs.externalNodeAt(current.second());
+                            expected.addAll(rhs.selectorLabelsOf(node));
+                            GrammarTypedness.getConnectedTentacles(rhs, node).forEach(stack::push);
+                        }
+                    }
+                }
+                assertEquals(expected, typedness.getTypesAtTentacle(nt, tentacle));
+            }
+        }
+    }
+}
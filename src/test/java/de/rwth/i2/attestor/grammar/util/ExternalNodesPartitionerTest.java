@@ -8,8 +8,10 @@ import gnu.trove.list.array.TIntArrayList;
 import org.junit.Before;
 import org.junit.Test;
 
-import static org.junit.Assert.assertNotEquals;
-import static org.junit.Assert.assertTrue;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
 
 public class ExternalNodesPartitionerTest {
 
@@ -103,4 +105,71 @@ public class ExternalNodesPartitionerTest {
         }
     }
 
+    @Test
+    public void testNoPartitionsForLessThanTwoExternalNodes() {
+
+        Type type = sceneObject.scene().getType("t1");
+
+        TIntArrayList nodes = new TIntArrayList();
+
+        HeapConfiguration noExternals = sceneObject.scene().createHeapConfiguration()
+                .builder()
+                .addNodes(type, 2, nodes)
+                .build();
+        assertTrue(new ExternalNodesPartitioner(noExternals, new boolean[0]).getPartitions().isEmpty());
+
+        HeapConfiguration oneExternal = sceneObject.scene().createHeapConfiguration()
+                .builder()
+                .addNodes(type, 2, nodes)
+                .setExternal(nodes.get(0))
+                .build();
+        assertTrue(new ExternalNodesPartitioner(oneExternal, new boolean[]{true}).getPartitions().isEmpty());
+    }
+
+    @Test
+    public void testEveryPartitionIsGeneratedOnce() {
+
+        Type t1 = sceneObject.scene().getType("t1");
+
+        TIntArrayList nodes = new TIntArrayList();
+
+        HeapConfiguration hc = sceneObject.scene().createHeapConfiguration()
+                .builder()
+                .addNodes(t1, 4, nodes)
+                .setExternal(nodes.get(0))
+                .setExternal(nodes.get(1))
+                .setExternal(nodes.get(2))
+                .setExternal(nodes.get(3))
+                .build();
+
+        boolean reductionTentacles[] = new boolean[]{true,true,true,true};
+        List<TIntArrayList> partitions = new ExternalNodesPartitioner(hc, reductionTentacles).getPartitions();
+
+        // All 15 partitions of four nodes except the one without merged nodes
+        assertEquals(14, partitions.size());
+        assertEquals(14, new HashSet<>(partitions).size());
+        for(TIntArrayList part : partitions) {
+            int max = -1;
+            for(int i=0; i < part.size(); i++) {
+                assertTrue(part.get(i) <= max + 1);
+                max = Math.max(max, part.get(i));
+            }
+        }
+
+        // Partitions are cached for the external node types, but every partitioner returns its own lists
+        Type t2 = sceneObject.scene().getType("t2");
+        nodes.clear();
+        HeapConfiguration otherHc = sceneObject.scene().createHeapConfiguration()
+                .builder()
+                .addNodes(t2, 4, nodes)
+                .setExternal(nodes.get(3))
+                .setExternal(nodes.get(2))
+                .setExternal(nodes.get(1))
+                .setExternal(nodes.get(0))
+                .build();
+        List<TIntArrayList> otherPartitions = new ExternalNodesPartitioner(otherHc, reductionTentacles).getPartitions();
+        assertEquals(partitions, otherPartitions);
+        partitions.get(0).set(0, 3);
+        assertNotEquals(partitions.get(0), otherPartitions.get(0));
+    }
 }